@@ -0,0 +1,155 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsDispatchBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.handler.EventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of passing one event to the event handlers in {@link EventsManagerImpl}, for an event class with
+ * a fast path and for a custom event class.  The <code>legacy</code> implementation, {@link LegacyEventsManagerImpl},
+ * dispatches as {@link EventsManagerImpl} did before it resolved the handler calls once per event class and handler,
+ * and serves as the baseline.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar:libs/* org.matsim.benchmark.EventsDispatchBenchmark</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventsDispatchBenchmark {
+
+	@Param({"current", "legacy"})
+	public String implementation;
+
+	@Param({"1", "4"})
+	public int numberOfHandlers;
+
+	private EventsManager events;
+	private Event linkEnterEvent;
+	private Event customEvent;
+
+	@Setup(Level.Trial)
+	public void setUp(final Blackhole blackhole) {
+		this.events = "legacy".equals(this.implementation) ? new LegacyEventsManagerImpl() : new EventsManagerImpl();
+		for (int i = 0; i < this.numberOfHandlers; i++) {
+			this.events.addHandler(new ConsumingCustomEventHandler(blackhole));
+			this.events.addHandler(new ConsumingLinkEnterEventHandler(blackhole));
+		}
+		this.linkEnterEvent = new LinkEnterEvent(7.0 * 3600, Id.createVehicleId(1), Id.createLinkId(1));
+		this.customEvent = new CustomEvent(7.0 * 3600);
+	}
+
+	@Benchmark
+	public void fastPathEvent() {
+		this.events.processEvent(this.linkEnterEvent);
+	}
+
+	@Benchmark
+	public void customEvent() {
+		this.events.processEvent(this.customEvent);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventsDispatchBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	public static class CustomEvent extends Event {
+
+		public CustomEvent(final double time) {
+			super(time);
+		}
+
+		@Override
+		public String getEventType() {
+			return "custom";
+		}
+
+	}
+
+	public interface CustomEventHandler extends EventHandler {
+		public void handleEvent(final CustomEvent event);
+	}
+
+	private static class ConsumingCustomEventHandler implements CustomEventHandler {
+
+		private final Blackhole blackhole;
+
+		ConsumingCustomEventHandler(final Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(final CustomEvent event) {
+			this.blackhole.consume(event);
+		}
+
+		@Override
+		public void reset(final int iteration) {
+		}
+
+	}
+
+	private static class ConsumingLinkEnterEventHandler implements LinkEnterEventHandler {
+
+		private final Blackhole blackhole;
+
+		ConsumingLinkEnterEventHandler(final Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(final LinkEnterEvent event) {
+			this.blackhole.consume(event);
+		}
+
+		@Override
+		public void reset(final int iteration) {
+		}
+
+	}
+
+}
@@ -20,12 +20,11 @@ package org.matsim.contrib.protobuf;
  * *********************************************************************** */
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.contrib.protobuf.events.ProtobufEvents;
 import org.matsim.core.gbl.Gbl;
 
-import java.util.Map;
-
 /**
  * Created by laemmel on 16/02/16.
  */
@@ -175,9 +174,7 @@ public abstract class Event2ProtoEvent {
 //																throw new RuntimeException("Unsopported event type:" + event.getEventType());
 																}
 																ProtobufEvents.GenericEvent.Builder ge = ProtobufEvents.GenericEvent.newBuilder();
-																for (Map.Entry<String,String> e : event.getAttributes().entrySet()) {
-																	ge.addAttrVal(ProtobufEvents.AttrVal.newBuilder().setValue(e.getValue()).setAttribut(e.getKey()));
-																}
+																event.writeAttributes(new GenericEventAttributeSink(ge));
 																eb.setType(ProtobufEvents.Event.Type.GenericEvent).setGenericEvent(ge);
 															}
 														}
@@ -196,4 +193,32 @@ public abstract class Event2ProtoEvent {
 
 		return eb.build();
 	}
+
+	/**
+	 * Adds the attributes of an event of unknown type to a generic protobuf event, without the map of Event.getAttributes().
+	 */
+	private static final class GenericEventAttributeSink implements EventAttributeSink {
+
+		private final ProtobufEvents.GenericEvent.Builder ge;
+
+		GenericEventAttributeSink(ProtobufEvents.GenericEvent.Builder ge) {
+			this.ge = ge;
+		}
+
+		@Override
+		public void addAttribute(String name, String value) {
+			this.ge.addAttrVal(ProtobufEvents.AttrVal.newBuilder().setValue(value).setAttribut(name));
+		}
+
+		@Override
+		public void addAttribute(String name, Id<?> value) {
+			addAttribute(name, value.toString());
+		}
+
+		@Override
+		public void addAttribute(String name, double value) {
+			addAttribute(name, Double.toString(value));
+		}
+
+	}
 }
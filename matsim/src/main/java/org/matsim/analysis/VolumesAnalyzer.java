@@ -27,6 +27,7 @@ import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
@@ -35,15 +36,18 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.ShardableEventHandler;
 
 import javax.inject.Inject;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <p></p>
+ * The counting can be split by link, see {@link ShardableEventHandler}.
  *
  * @author mrieser
  */
-public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler {
+public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler, ShardableEventHandler<VolumesAnalyzer> {
 
 	private final static Logger log = Logger.getLogger(VolumesAnalyzer.class);
 	private final int timeBinSize;
@@ -67,15 +71,19 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	}
 	
 	public VolumesAnalyzer(final int timeBinSize, final int maxTime, final Network network, boolean observeModes) {
+		this(timeBinSize, maxTime, network.getLinks().size(), observeModes);
+	}
+
+	private VolumesAnalyzer(final int timeBinSize, final int maxTime, final int numberOfLinks, boolean observeModes) {
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.links = new HashMap<>((int) (numberOfLinks * 1.1), 0.95f);
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
 			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+			this.linksPerMode = new HashMap<>((int) (numberOfLinks * 1.1), 0.95f);
 		} else {
 			this.enRouteModes = null;
 			this.linksPerMode = null;
@@ -115,6 +123,49 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		}
 	}
 
+	@Override
+	public Id<?> getShardKey(Event event) {
+		if (event instanceof LinkLeaveEvent) {
+			return ((LinkLeaveEvent) event).getLinkId();
+		}
+		// all shards need to know the modes of the vehicles
+		return null;
+	}
+
+	@Override
+	public VolumesAnalyzer createShard() {
+		return new VolumesAnalyzer(this.timeBinSize, this.maxTime, 0, this.observeModes);
+	}
+
+	@Override
+	public void mergeShard(VolumesAnalyzer shard) {
+		mergeVolumes(shard.links, this.links);
+		if (observeModes) {
+			for (Map.Entry<Id<Link>, Map<String, int[]>> entry : shard.linksPerMode.entrySet()) {
+				Map<String, int[]> modeVolumes = this.linksPerMode.get(entry.getKey());
+				if (modeVolumes == null) {
+					modeVolumes = new HashMap<>();
+					this.linksPerMode.put(entry.getKey(), modeVolumes);
+				}
+				mergeVolumes(entry.getValue(), modeVolumes);
+			}
+			this.enRouteModes.putAll(shard.enRouteModes);
+		}
+	}
+
+	private static <K> void mergeVolumes(Map<K, int[]> from, Map<K, int[]> to) {
+		for (Map.Entry<K, int[]> entry : from.entrySet()) {
+			int[] volumes = to.get(entry.getKey());
+			if (volumes == null) {
+				to.put(entry.getKey(), entry.getValue().clone());
+			} else {
+				for (int i = 0; i < volumes.length; i++) {
+					volumes[i] += entry.getValue()[i];
+				}
+			}
+		}
+	}
+
 	private int getTimeSlotIndex(final double time) {
 		if (time > this.maxTime) {
 			return this.maxSlotIndex;
@@ -20,8 +20,8 @@
 
 package org.matsim.api.core.v01;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Node;
@@ -39,7 +39,7 @@ import org.matsim.vehicles.Vehicle;
  */
 public abstract class Id<T> implements Comparable<Id<T>> {
 
-	private final static Map<Class<?>, Map<String, Id<?>>> cache = new ConcurrentHashMap<Class<?>, Map<String, Id<?>>>();
+	private final static ConcurrentMap<Class<?>, ConcurrentMap<String, Id<?>>> cache = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Id<?>>>();
 	
 	
 	public static <T> Id<T> create(final long key, final Class<T> type) {
@@ -55,17 +55,24 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	
 	/**
 	 * This method supports a cache where ids are stored and re-used per type.   
+	 * It may be called from several threads at once, e.g. by parallel readers.
 	 */
 	public static <T> Id<T> create(final String key, final Class<T> type) {
-		Map<String, Id<?>> map = cache.get(type);
+		ConcurrentMap<String, Id<?>> map = cache.get(type);
 		if (map == null) {
 			map = new ConcurrentHashMap<String, Id<?>>();
-			cache.put(type, map);
+			ConcurrentMap<String, Id<?>> existingMap = cache.putIfAbsent(type, map);
+			if (existingMap != null) {
+				map = existingMap;
+			}
 		}
 		Id<?> id = map.get(key);
 		if (id == null) {
 			id = new IdImpl<T>(key);
-			map.put(key, id);
+			Id<?> existingId = map.putIfAbsent(key, id);
+			if (existingId != null) {
+				id = existingId;
+			}
 		}
 		
 		return (Id<T>) id;
@@ -85,5 +85,18 @@ public final class ActivityEndEvent extends Event implements HasPersonId {
 		return attr;
 	}
 
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+		if (this.linkId != null) {
+			sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		}
+		if (this.facilityId != null) {
+			sink.addAttribute(ATTRIBUTE_FACILITY, this.facilityId);
+		}
+		sink.addAttribute(ATTRIBUTE_ACTTYPE, this.acttype);
+	}
+
 	
 }
@@ -84,4 +84,17 @@ public class ActivityStartEvent extends Event implements HasPersonId {
 		attr.put(ATTRIBUTE_ACTTYPE, this.acttype);
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+		if (this.linkId != null) {
+			sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		}
+		if (this.facilityId != null) {
+			sink.addAttribute(ATTRIBUTE_FACILITY, this.facilityId);
+		}
+		sink.addAttribute(ATTRIBUTE_ACTTYPE, this.acttype);
+	}
 }
\ No newline at end of file
@@ -23,11 +23,25 @@ package org.matsim.api.core.v01.events;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.matsim.api.core.v01.Id;
+
 public abstract class Event {
 
 	public final static String ATTRIBUTE_TIME = "time";
 	public final static String ATTRIBUTE_TYPE = "type";
 
+	/**
+	 * Whether the class that implements {@link #streamAttributes(EventAttributeSink)} is the one that implements
+	 * {@link #getAttributes()}, or a subclass of it.
+	 */
+	private static final ClassValue<Boolean> STREAMS_ATTRIBUTES = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return getDeclaringClass(type, "getAttributes").isAssignableFrom(
+					getDeclaringClass(type, "streamAttributes", EventAttributeSink.class));
+		}
+	};
+
 	private final double time;
 
 	public Event(final double time) {
@@ -41,6 +55,48 @@ public abstract class Event {
 		return attr;
 	}
 
+	/**
+	 * Passes the attributes to the sink one by one, in the order of {@link #getAttributes()}.  Uses
+	 * {@link #streamAttributes(EventAttributeSink)}, which does not build a map, unless a subclass of the class that
+	 * implements it overrides {@link #getAttributes()}.  Then the attributes of that map are passed, so event types
+	 * that extend another one and only override {@link #getAttributes()} do not lose their additional attributes.
+	 */
+	public final void writeAttributes(EventAttributeSink sink) {
+		if (STREAMS_ATTRIBUTES.get(getClass())) {
+			streamAttributes(sink);
+		} else {
+			for (Map.Entry<String, String> entry : getAttributes().entrySet()) {
+				sink.addAttribute(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Passes the same attributes as {@link #getAttributes()} to the sink, without building a map.  Implementations
+	 * start with {@link #writeTimeAndType(EventAttributeSink)}, and must be overridden together with
+	 * {@link #getAttributes()} to have an effect.
+	 */
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+	}
+
+	protected final void writeTimeAndType(EventAttributeSink sink) {
+		sink.addAttribute(ATTRIBUTE_TIME, this.time);
+		sink.addAttribute(ATTRIBUTE_TYPE, getEventType());
+	}
+
+	private static Class<?> getDeclaringClass(Class<?> type, String methodName, Class<?>... parameterTypes) {
+		for (Class<?> c = type; c != Event.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod(methodName, parameterTypes);
+				return c;
+			} catch (NoSuchMethodException e) {
+				// look in the superclass
+			}
+		}
+		return Event.class;
+	}
+
 	/** @return a unique, descriptive name for this event type, used to identify event types in files. */
 	abstract public String getEventType();
 
@@ -49,14 +105,32 @@ public abstract class Event {
 	}
 	
 	public String toString() {
-		Map<String,String> attr = this.getAttributes() ;
-		StringBuilder eventXML = new StringBuilder("\t<event ");
-		for (Map.Entry<String, String> entry : attr.entrySet()) {
-			eventXML.append(entry.getKey());
-			eventXML.append("=\"");
-			eventXML.append(entry.getValue());
-			eventXML.append("\" ");
-		}
+		final StringBuilder eventXML = new StringBuilder("\t<event ");
+		this.writeAttributes(new EventAttributeSink() {
+			@Override
+			public void addAttribute(String name, String value) {
+				eventXML.append(name);
+				eventXML.append("=\"");
+				eventXML.append(value);
+				eventXML.append("\" ");
+			}
+
+			@Override
+			public void addAttribute(String name, Id<?> value) {
+				eventXML.append(name);
+				eventXML.append("=\"");
+				eventXML.append(value);
+				eventXML.append("\" ");
+			}
+
+			@Override
+			public void addAttribute(String name, double value) {
+				eventXML.append(name);
+				eventXML.append("=\"");
+				eventXML.append(value);
+				eventXML.append("\" ");
+			}
+		});
 		eventXML.append(" />");
 		return eventXML.toString();
 	}
@@ -69,13 +143,13 @@ public abstract class Event {
 			Event other = (Event) obj;
 			return time == other.getTime() &&
 					getEventType().equals(other.getEventType()) &&
-					getAttributes().equals(other.getAttributes());
+					EventAttributeList.of(this).equals(EventAttributeList.of(other));
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		return getAttributes().hashCode(); // Two equal events must at least have the same attributes, so they will get the same hashCode like this.
+		return EventAttributeList.of(this).hashCode(); // Two equal events must at least have the same attributes, so they will get the same hashCode like this.
 	}
 
 }
@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventAttributeList.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01.events;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Collects the attributes of an event with their typed values, for {@link Event#equals(Object)} and {@link Event#hashCode()}.
+ * Values are compared and hashed in their string form, as if they came from {@link Event#getAttributes()}, but without
+ * converting ids and strings.
+ */
+final class EventAttributeList implements EventAttributeSink {
+
+	private String[] names = new String[8];
+	private Object[] values = new Object[8];
+	private int size = 0;
+
+	static EventAttributeList of(Event event) {
+		EventAttributeList list = new EventAttributeList();
+		event.writeAttributes(list);
+		return list;
+	}
+
+	@Override
+	public void addAttribute(String name, String value) {
+		add(name, value);
+	}
+
+	@Override
+	public void addAttribute(String name, Id<?> value) {
+		add(name, value);
+	}
+
+	@Override
+	public void addAttribute(String name, double value) {
+		add(name, value);
+	}
+
+	private void add(String name, Object value) {
+		if (this.size == this.names.length) {
+			this.names = Arrays.copyOf(this.names, 2 * this.size);
+			this.values = Arrays.copyOf(this.values, 2 * this.size);
+		}
+		this.names[this.size] = name;
+		this.values[this.size] = value;
+		this.size++;
+	}
+
+	/**
+	 * Same as the hash code of the map that {@link Event#getAttributes()} returns.
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < this.size; i++) {
+			Object value = this.values[i];
+			hash += this.names[i].hashCode() ^ (value == null ? 0 : value.toString().hashCode());
+		}
+		return hash;
+	}
+
+	/**
+	 * Same as comparing the maps that {@link Event#getAttributes()} returns, i.e. the order of the attributes does not matter.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof EventAttributeList)) {
+			return false;
+		}
+		EventAttributeList other = (EventAttributeList) obj;
+		if (this.size != other.size) {
+			return false;
+		}
+		for (int i = 0; i < this.size; i++) {
+			int j = other.indexOf(this.names[i], i);
+			if (j < 0 || !valuesEqual(this.values[i], other.values[j])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Starts the search at <code>hint</code>, since attributes usually come in the same order.
+	 */
+	private int indexOf(String name, int hint) {
+		for (int k = 0; k < this.size; k++) {
+			int j = (hint + k) % this.size;
+			if (this.names[j].equals(name)) {
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean valuesEqual(Object value1, Object value2) {
+		if (value1 == null || value2 == null) {
+			return value1 == value2;
+		}
+		if (value1 instanceof Double && value2 instanceof Double) {
+			// Double.equals(...) is equivalent to comparing the results of Double.toString(...)
+			return value1.equals(value2);
+		}
+		// ids and strings, or values of different types:
+		return value1.toString().equals(value2.toString());
+	}
+
+}
@@ -0,0 +1,43 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventAttributeSink.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01.events;
+
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Receives the attributes of an {@link Event} one by one, see {@link Event#writeAttributes(EventAttributeSink)}.  In contrast
+ * to {@link Event#getAttributes()}, no map is built, and values are only converted to strings if the sink needs that.
+ * <p></p>
+ * The attributes come in the same order, with the same names, and (in their string form) with the same values as in
+ * {@link Event#getAttributes()}.  Values may be <code>null</code>.
+ */
+public interface EventAttributeSink {
+
+	void addAttribute(String name, String value);
+
+	void addAttribute(String name, Id<?> value);
+
+	/**
+	 * The string form of the value is {@link Double#toString(double)}.
+	 */
+	void addAttribute(String name, double value);
+
+}
@@ -78,4 +78,11 @@ public class LinkLeaveEvent extends Event implements HasLinkId {
 		attr.put(ATTRIBUTE_LINK, this.linkId.toString());
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+	}
 }
\ No newline at end of file
@@ -74,4 +74,14 @@ public class PersonDepartureEvent extends Event implements HasPersonId {
 		}
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+		sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		if (this.legMode != null) {
+			sink.addAttribute(ATTRIBUTE_LEGMODE, this.legMode);
+		}
+	}
 }
\ No newline at end of file
@@ -67,4 +67,11 @@ public class PersonLeavesVehicleEvent extends Event implements HasPersonId {
 		attrs.put(ATTRIBUTE_VEHICLE, this.vehicleId.toString());
 		return attrs;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+		sink.addAttribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+	}
 }
\ No newline at end of file
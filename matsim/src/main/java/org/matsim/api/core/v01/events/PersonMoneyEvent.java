@@ -79,4 +79,11 @@ public final class PersonMoneyEvent extends Event implements HasPersonId {
 		attr.put(ATTRIBUTE_PERSON, this.personId.toString());
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_AMOUNT, this.amount);
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+	}
 }
\ No newline at end of file
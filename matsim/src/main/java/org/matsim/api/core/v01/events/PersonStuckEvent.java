@@ -75,4 +75,16 @@ public class PersonStuckEvent extends Event implements HasPersonId {
 		attr.put(ATTRIBUTE_PERSON, this.personId.toString());
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		if (this.linkId != null) {
+			sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		}
+		if (this.legMode != null) {
+			sink.addAttribute(ATTRIBUTE_LEGMODE, this.legMode);
+		}
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+	}
 }
\ No newline at end of file
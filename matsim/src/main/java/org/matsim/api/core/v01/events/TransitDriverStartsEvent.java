@@ -90,4 +90,14 @@ public class TransitDriverStartsEvent extends Event {
 		atts.put(ATTRIBUTE_DEPARTURE_ID, this.getDepartureId().toString());
 		return atts;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_DRIVER_ID, this.getDriverId());
+		sink.addAttribute(ATTRIBUTE_VEHICLE_ID, this.getVehicleId());
+		sink.addAttribute(ATTRIBUTE_TRANSIT_LINE_ID, this.getTransitLineId());
+		sink.addAttribute(ATTRIBUTE_TRANSIT_ROUTE_ID, this.getTransitRouteId());
+		sink.addAttribute(ATTRIBUTE_DEPARTURE_ID, this.getDepartureId());
+	}
 }
\ No newline at end of file
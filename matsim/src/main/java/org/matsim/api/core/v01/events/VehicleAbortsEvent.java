@@ -62,4 +62,11 @@ public class VehicleAbortsEvent extends Event {
 		attr.put(ATTRIBUTE_VEHICLE, this.vehicleId.toString());
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		sink.addAttribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+	}
 }
\ No newline at end of file
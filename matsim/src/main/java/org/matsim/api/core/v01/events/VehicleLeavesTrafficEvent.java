@@ -97,4 +97,18 @@ public class VehicleLeavesTrafficEvent extends Event implements HasPersonId, Has
 
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_DRIVER, this.driverId);
+		sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		if (this.vehicleId != null) {
+			sink.addAttribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		}
+		if (this.networkMode != null) {
+			sink.addAttribute(ATTRIBUTE_NETWORKMODE, networkMode);
+		}
+		sink.addAttribute(ATTRIBUTE_POSITION, this.relativePositionOnLink);
+	}
 }
\ No newline at end of file
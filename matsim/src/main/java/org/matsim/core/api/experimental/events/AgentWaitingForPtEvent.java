@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
@@ -77,4 +78,13 @@ public final class AgentWaitingForPtEvent extends Event implements HasPersonId {
 		
 		return attr;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		
+		sink.addAttribute(ATTRIBUTE_AGENT, this.agentId);
+		sink.addAttribute(ATTRIBUTE_WAITSTOP, this.waitingAtStopId);
+		sink.addAttribute(ATTRIBUTE_DESTINATIONSTOP, this.destinationStopId);
+	}
 }
\ No newline at end of file
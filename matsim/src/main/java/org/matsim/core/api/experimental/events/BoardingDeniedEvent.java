@@ -26,6 +26,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.vehicles.Vehicle;
@@ -66,6 +67,13 @@ public final class BoardingDeniedEvent extends Event implements HasPersonId
 		atts.put(ATTRIBUTE_VEHICLE_ID, this.vehicleId.toString());
 		return atts;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_PERSON_ID, this.personId);
+		sink.addAttribute(ATTRIBUTE_VEHICLE_ID, this.vehicleId);
+	}
 	
 	@Override
 	public String getEventType() {
@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.lanes.data.Lane;
 import org.matsim.vehicles.Vehicle;
@@ -65,6 +66,14 @@ public final class LaneLeaveEvent extends Event {
 		return attr;
 	}
 
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		sink.addAttribute(ATTRIBUTE_LINK, this.linkId);
+		sink.addAttribute(ATTRIBUTE_LANE, this.laneId);
+	}
+
 	public Id<Vehicle> getVehicleId() {
 		return vehicleId;
 	}
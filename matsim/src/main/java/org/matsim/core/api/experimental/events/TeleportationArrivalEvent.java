@@ -21,6 +21,7 @@ package org.matsim.core.api.experimental.events;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.HasPersonId;
 
@@ -66,4 +67,11 @@ public final class TeleportationArrivalEvent extends Event implements HasPersonI
         attributes.put(ATTRIBUTE_DISTANCE, Double.toString(distance));
         return attributes;
     }
+
+    @Override
+    protected void streamAttributes(EventAttributeSink sink) {
+        writeTimeAndType(sink);
+        sink.addAttribute(ATTRIBUTE_PERSON, agentId);
+        sink.addAttribute(ATTRIBUTE_DISTANCE, distance);
+    }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.vehicles.Vehicle;
 
@@ -78,4 +79,12 @@ public final class VehicleArrivesAtFacilityEvent extends Event {
 		attributes.put(ATTRIBUTE_DELAY, Double.toString(this.delay));
 		return attributes;
 	}
+
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+		sink.addAttribute(ATTRIBUTE_VEHICLE, this.vehicleId);
+		sink.addAttribute(ATTRIBUTE_FACILITY, this.facilityId);
+		sink.addAttribute(ATTRIBUTE_DELAY, this.delay);
+	}
 }
\ No newline at end of file
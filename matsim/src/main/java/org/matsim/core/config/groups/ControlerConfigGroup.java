@@ -38,9 +38,9 @@ import org.matsim.core.utils.misc.StringUtils;
 public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger( ControlerConfigGroup.class );
 
-	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks}
+	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks, ContractionHierarchies, FastBidirectionalDijkstra}
 
-	public enum EventsFileFormat {xml}
+	public enum EventsFileFormat {xml, binary}
 
 	public static final String GROUP_NAME = "controler";
 
@@ -48,11 +48,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String FIRST_ITERATION = "firstIteration";
 	private static final String LAST_ITERATION = "lastIteration";
 	private static final String ROUTINGALGORITHM_TYPE = "routingAlgorithmType";
+	private static final String ROUTE_CACHE_TIME_BIN_SIZE = "routeCacheTimeBinSize";
+	private static final String ROUTE_CACHE_TRAVEL_TIME_CHANGE_THRESHOLD = "routeCacheTravelTimeChangeThreshold";
+	private static final String ROUTE_CACHE_MAX_SIZE = "routeCacheMaxSize";
 	private static final String RUNID = "runId";
 	private static final String LINKTOLINK_ROUTING_ENABLED = "enableLinkToLinkRouting";
 	/*package*/ static final String EVENTS_FILE_FORMAT = "eventsFileFormat";
 	private static final String SNAPSHOT_FORMAT = "snapshotFormat";
 	private static final String WRITE_EVENTS_INTERVAL = "writeEventsInterval";
+	private static final String EVENTS_FILE_INDEX_INTERVAL = "eventsFileIndexInterval";
 	private static final String WRITE_PLANS_INTERVAL = "writePlansInterval";
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
@@ -68,6 +72,9 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private int firstIteration = 0;
 	private int lastIteration = 1000;
 	private RoutingAlgorithmType routingAlgorithmType = RoutingAlgorithmType.Dijkstra;
+	private double routeCacheTimeBinSize = 0.0;
+	private double routeCacheTravelTimeChangeThreshold = 0.05;
+	private int routeCacheMaxSize = 1000000;
 
 	private boolean linkToLinkRoutingEnabled = false;
 
@@ -76,6 +83,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private Set<EventsFileFormat> eventsFileFormats = Collections.unmodifiableSet(EnumSet.of(EventsFileFormat.xml));
 
 	private int writeEventsInterval=10;
+	private double eventsFileIndexInterval = 0.0;
 	private int writePlansInterval=10;
 	private Set<String> snapshotFormat = Collections.emptySet();
 	private String mobsim = MobsimType.qsim.toString();
@@ -92,12 +100,24 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public final Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(ROUTINGALGORITHM_TYPE, "The type of routing (least cost path) algorithm used, may have the values: " + RoutingAlgorithmType.Dijkstra + ", " + 
-				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + " or "  + RoutingAlgorithmType.FastAStarLandmarks);
+				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + ", "  + RoutingAlgorithmType.FastAStarLandmarks + ", " +
+				RoutingAlgorithmType.ContractionHierarchies + " or " + RoutingAlgorithmType.FastBidirectionalDijkstra + ". " + RoutingAlgorithmType.ContractionHierarchies + " searches the paths with the " +
+				"travel disutilities of the hour of departure, and needs some preprocessing per network and iteration. " +
+				RoutingAlgorithmType.FastBidirectionalDijkstra + " also searches backwards from the destination, which pays off for long point-to-point queries.");
+		map.put(ROUTE_CACHE_TIME_BIN_SIZE, "Default=0; if positive, network routes are cached across iterations per mode, origin, destination " +
+				"and departure time bin of that many seconds, and reused as long as the travel times on their links stay within " +
+				ROUTE_CACHE_TRAVEL_TIME_CHANGE_THRESHOLD + ".  Person specific travel disutilities are not considered.  `0' disables the cache.");
+		map.put(ROUTE_CACHE_TRAVEL_TIME_CHANGE_THRESHOLD, "Default=0.05; the relative change of the travel time of a link of a cached route " +
+				"above which the route is computed again.");
+		map.put(ROUTE_CACHE_MAX_SIZE, "Default=1000000; the number of cached routes that are kept at the end of an iteration.  " +
+				"The routes that were not used for the most iterations are removed first.");
 		map.put(RUNID, "An identifier for the current run which is used as prefix for output files and mentioned in output xml files etc.");
-		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: txt, xml."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
+		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml, binary."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
 				"Multiple values can be specified separated by commas (',').");
 		map.put(WRITE_EVENTS_INTERVAL, "iterationNumber % writeEventsInterval == 0 defines in which iterations events are written " +
 				"to a file. `0' disables events writing completely.");
+		map.put(EVENTS_FILE_INDEX_INTERVAL, "Default=0; if positive, xml events files are written in blocks of that many seconds, " +
+				"together with an index of the blocks, so that time windows can be read without reading the whole file. `0' writes no index.");
 		map.put(WRITE_PLANS_INTERVAL, "iterationNumber % writePlansInterval == 0 defines (hopefully) in which iterations plans are " +
 				"written to a file. `0' disables plans writing completely.  Some plans in early iterations are always written");
 		map.put(LINKTOLINK_ROUTING_ENABLED, "Default=false; "); // TODO: add description
@@ -164,6 +184,36 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.routingAlgorithmType = type;
 	}
 
+	@StringGetter( ROUTE_CACHE_TIME_BIN_SIZE )
+	public double getRouteCacheTimeBinSize() {
+		return this.routeCacheTimeBinSize;
+	}
+
+	@StringSetter( ROUTE_CACHE_TIME_BIN_SIZE )
+	public void setRouteCacheTimeBinSize(final double routeCacheTimeBinSize) {
+		this.routeCacheTimeBinSize = routeCacheTimeBinSize;
+	}
+
+	@StringGetter( ROUTE_CACHE_TRAVEL_TIME_CHANGE_THRESHOLD )
+	public double getRouteCacheTravelTimeChangeThreshold() {
+		return this.routeCacheTravelTimeChangeThreshold;
+	}
+
+	@StringSetter( ROUTE_CACHE_TRAVEL_TIME_CHANGE_THRESHOLD )
+	public void setRouteCacheTravelTimeChangeThreshold(final double routeCacheTravelTimeChangeThreshold) {
+		this.routeCacheTravelTimeChangeThreshold = routeCacheTravelTimeChangeThreshold;
+	}
+
+	@StringGetter( ROUTE_CACHE_MAX_SIZE )
+	public int getRouteCacheMaxSize() {
+		return this.routeCacheMaxSize;
+	}
+
+	@StringSetter( ROUTE_CACHE_MAX_SIZE )
+	public void setRouteCacheMaxSize(final int routeCacheMaxSize) {
+		this.routeCacheMaxSize = routeCacheMaxSize;
+	}
+
 	@StringGetter( RUNID )
 	public String getRunId() {
 		return this.runId;
@@ -264,6 +314,16 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.writeEventsInterval = writeEventsInterval;
 	}
 
+	@StringGetter( EVENTS_FILE_INDEX_INTERVAL )
+	public double getEventsFileIndexInterval() {
+		return this.eventsFileIndexInterval;
+	}
+
+	@StringSetter( EVENTS_FILE_INDEX_INTERVAL )
+	public void setEventsFileIndexInterval(final double eventsFileIndexInterval) {
+		this.eventsFileIndexInterval = eventsFileIndexInterval;
+	}
+
 	@StringGetter( MOBSIM )
 	public String getMobsim() {
 		return this.mobsim;
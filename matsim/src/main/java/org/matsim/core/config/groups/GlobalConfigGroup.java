@@ -37,10 +37,12 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	private static final String RANDOM_SEED = "randomSeed";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
+	private static final String REPLANNING_BATCH_SIZE = "replanningBatchSize";
 
 	private long randomSeed = 4711L;
 	private int numberOfThreads = 2;
 	private String coordinateSystem = "Atlantis";
+	private int replanningBatchSize = 0;
 	
 	@Override
 	public Map<String, String> getComments() {
@@ -48,6 +50,10 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "\"global\" number of threads.  "
 				+ "This number is used, e.g., for replanning, but NOT in the mobsim.  "
 				+ "This can typically be set to as many cores as you have available, or possibly even slightly more.") ;
+		map.put(REPLANNING_BATCH_SIZE, "Default=0; the plans are distributed equally to the replanning threads before they start, "
+				+ "which keeps runs reproducible.  If larger than 0, each replanning thread takes the next batch of this many plans "
+				+ "when it is done with its last one, so a few expensive plans do not keep the other threads waiting.  "
+				+ "Runs are then not reproducible if the replanning uses random numbers.") ;
 		return map ;
 	}
 
@@ -81,4 +87,13 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.coordinateSystem = coordinateSystem;
 	}
 
+	@StringGetter( REPLANNING_BATCH_SIZE )
+	public int getReplanningBatchSize() {
+		return this.replanningBatchSize;
+	}
+	@StringSetter( REPLANNING_BATCH_SIZE )
+	public void setReplanningBatchSize(final int replanningBatchSize) {
+		this.replanningBatchSize = replanningBatchSize;
+	}
+
 }
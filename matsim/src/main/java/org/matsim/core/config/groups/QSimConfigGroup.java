@@ -236,6 +236,26 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		{
+			StringBuilder stb = new StringBuilder() ;
+			for ( NetsimPartitioning np : NetsimPartitioning.values() ) {
+				stb.append(" ").append( np.toString() ) ;
+			}
+			map.put(NETSIM_PARTITIONING, "Defines how nodes and their outgoing links are distributed over the runners of the QNetsimEngine when "
+					+ "numberOfThreads > 1.  roundRobin is the historical behavior; recursiveCoordinateBisection assigns spatially contiguous "
+					+ "regions of similar size to the runners, which reduces the number of activations across runners.  Options:" + stb ) ;
+		}
+		map.put(NETSIM_REBALANCING_PERIOD, "time in seconds.  If > 0, the QNetsimEngine re-partitions the network every so many simulated seconds, "
+				+ "using the amount of work that the nodes and links caused since the last re-partitioning.  Only has an effect with more "
+				+ "than one thread and a weight-based " + NETSIM_PARTITIONING + " (not roundRobin).  Default: 0 (off).") ;
+		map.put(THREAD_INDEPENDENT_NETSIM, "if true, the results of the QNetsimEngine do not depend on " + NUMBER_OF_THREADS + ": every node "
+				+ "draws its own random numbers, and events and agent state changes of the network elements are passed on in the order of "
+				+ "the elements after all runners are done with a time step (the latter is always done with more than one thread).  With "
+				+ USING_THREADPOOL + ", the work is then also split into more runners than threads.  Does not (yet) cover passengers "
+				+ "boarding or alighting transit vehicles.  Default: false.") ;
+		map.put(TIME_SKIPPING, "if true, the qsim asks its engines when they next have something to do, and jumps over the time steps "
+				+ "in between, e.g. over night when the network is empty.  The events are the same, but mobsim listeners are not called "
+				+ "for the skipped time steps.  Only has an effect if all engines can tell their next wake-up time.  Default: false.") ;
 		map.put(FAST_CAPACITY_UPDATE, "normally, the qsim accumulates fractional flows up to one flow unit in every time step.  If this switch is set to true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer."
 				+ "Will probably become the default eventually.") ;
@@ -485,6 +505,55 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.usingThreadpool = val ;
 	}
 
+	// ---
+	private static final String NETSIM_PARTITIONING = "netsimPartitioning" ;
+	public static enum NetsimPartitioning { roundRobin, recursiveCoordinateBisection } ;
+	private NetsimPartitioning netsimPartitioning = NetsimPartitioning.roundRobin ;
+	@StringGetter(NETSIM_PARTITIONING)
+	public NetsimPartitioning getNetsimPartitioning() {
+		return this.netsimPartitioning ;
+	}
+	@StringSetter(NETSIM_PARTITIONING)
+	public void setNetsimPartitioning( NetsimPartitioning netsimPartitioning ) {
+		this.netsimPartitioning = netsimPartitioning ;
+	}
+	// ---
+	private static final String NETSIM_REBALANCING_PERIOD = "netsimRebalancingPeriod" ;
+	private double netsimRebalancingPeriod = 0. ;
+	@StringGetter(NETSIM_REBALANCING_PERIOD)
+	public double getNetsimRebalancingPeriod() {
+		return this.netsimRebalancingPeriod ;
+	}
+	@StringSetter(NETSIM_REBALANCING_PERIOD)
+	public void setNetsimRebalancingPeriod( double netsimRebalancingPeriod ) {
+		if ( netsimRebalancingPeriod < 0. ) {
+			throw new IllegalArgumentException( "netsim rebalancing period must not be negative, got " + netsimRebalancingPeriod ) ;
+		}
+		this.netsimRebalancingPeriod = netsimRebalancingPeriod ;
+	}
+	// ---
+	private static final String THREAD_INDEPENDENT_NETSIM = "usingThreadIndependentNetsim" ;
+	private boolean usingThreadIndependentNetsim = false ;
+	@StringGetter(THREAD_INDEPENDENT_NETSIM)
+	public boolean isUsingThreadIndependentNetsim() {
+		return this.usingThreadIndependentNetsim ;
+	}
+	@StringSetter(THREAD_INDEPENDENT_NETSIM)
+	public void setUsingThreadIndependentNetsim( boolean val ) {
+		this.usingThreadIndependentNetsim = val ;
+	}
+	// ---
+	private static final String TIME_SKIPPING = "usingTimeSkipping" ;
+	private boolean usingTimeSkipping = false ;
+	@StringGetter(TIME_SKIPPING)
+	public boolean isUsingTimeSkipping() {
+		return this.usingTimeSkipping ;
+	}
+	@StringSetter(TIME_SKIPPING)
+	public void setUsingTimeSkipping( boolean val ) {
+		this.usingTimeSkipping = val ;
+	}
+	// ---
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
 
@@ -39,6 +39,7 @@ import org.matsim.core.controler.listener.BeforeMobsimListener;
 import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterBinary;
 import org.matsim.core.events.algorithms.EventWriterXML;
 
 import com.google.inject.Inject;
@@ -54,6 +55,8 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 	private List<EventWriter> eventWriters = new LinkedList<>();
 
 	private int writeEventsInterval;
+
+	private double eventsFileIndexInterval;
     
 	private Set<EventsFileFormat> eventsFileFormats ;
 	
@@ -68,6 +71,7 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 			final OutputDirectoryHierarchy controlerIO) {
 		this.eventsManager = eventsManager;
 		this.writeEventsInterval = config.getWriteEventsInterval();
+		this.eventsFileIndexInterval = config.getEventsFileIndexInterval();
 		this.eventsFileFormats = config.getEventsFileFormats();
 		this.controlerIO = controlerIO;
 		this.writeMoreUntilIteration = config.getWriteEventsUntilIteration() ;
@@ -83,8 +87,16 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 			for (EventsFileFormat format : eventsFileFormats) {
 				switch (format) {
 				case xml:
-					this.eventWriters.add(new EventWriterXML(controlerIO.getIterationFilename(event.getIteration(), 
-							Controler.FILENAME_EVENTS_XML)));
+					String filename = controlerIO.getIterationFilename(event.getIteration(), Controler.FILENAME_EVENTS_XML);
+					if (this.eventsFileIndexInterval > 0) {
+						this.eventWriters.add(new EventWriterXML(filename, this.eventsFileIndexInterval));
+					} else {
+						this.eventWriters.add(new EventWriterXML(filename));
+					}
+					break;
+				case binary:
+					this.eventWriters.add(new EventWriterBinary(controlerIO.getIterationFilename(event.getIteration(),
+							Controler.FILENAME_EVENTS_BINARY)));
 					break;
 				default:
 					log.warn("Unknown events file format specified: " + format.toString() + ".");
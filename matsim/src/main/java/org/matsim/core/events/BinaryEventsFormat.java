@@ -0,0 +1,101 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryEventsFormat.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Constants of the binary events file format, written by {@link org.matsim.core.events.algorithms.EventWriterBinary}
+ * and read by {@link EventsReaderBinary}.
+ * <p></p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION} (an int), followed by blocks of at most {@link #BLOCK_SIZE} events.
+ * Each block starts with a header of
+ * <ul>
+ * <li>the number of events (an int; {@link #END_OF_FILE} marks the end of the file),</li>
+ * <li>the times of the first and of the last event of the block (two doubles), so blocks can be skipped by time,</li>
+ * <li>the compressed and uncompressed lengths of the dictionary section, and of the data section (four ints),</li>
+ * </ul>
+ * followed by the two sections, each compressed with {@link java.util.zip.Deflater}.  The dictionary section contains the
+ * strings that are new in this block (their number, then the length and UTF-8 bytes of each); strings are afterwards
+ * referenced by their index in the dictionary of the whole file.  The data section stores the events column by column,
+ * preceded by the lengths in bytes of the {@link #NUMBER_OF_COLUMNS} columns (ints):
+ * <ol>
+ * <li>the times, as runs of equal times (a double and the length of the run),</li>
+ * <li>the types (dictionary indices),</li>
+ * <li>the numbers of attributes per event, not counting time and type,</li>
+ * <li>the attribute names (dictionary indices),</li>
+ * <li>the kinds of the values (bytes, see <code>KIND_*</code>),</li>
+ * <li>the values of kind {@link #KIND_STRING} and {@link #KIND_ID} (dictionary indices),</li>
+ * <li>the values of kind {@link #KIND_DOUBLE} (doubles).</li>
+ * </ol>
+ * Dictionary indices, numbers of attributes and lengths of runs are stored as variable-length unsigned ints (7 bits per
+ * byte, least significant first, the highest bit set in all but the last byte).
+ * <p></p>
+ * All other numbers are big-endian, as written by {@link java.io.DataOutputStream}.
+ */
+public final class BinaryEventsFormat {
+
+	public static final String FILE_EXTENSION = ".bin";
+
+	static final byte[] MAGIC = {'M', 'A', 'T', 'S', 'i', 'm', 'E', 'v'};
+	static final int VERSION = 1;
+	public static final int BLOCK_SIZE = 32 * 1024;
+	public static final int END_OF_FILE = -1;
+
+	public static final int NUMBER_OF_COLUMNS = 7;
+
+	public static final byte KIND_NULL = 0;
+	public static final byte KIND_STRING = 1;
+	public static final byte KIND_ID = 2;
+	public static final byte KIND_DOUBLE = 3;
+
+	private BinaryEventsFormat() {
+	}
+
+	public static byte[] getHeader() {
+		byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + 4);
+		header[MAGIC.length + 3] = (byte) VERSION;
+		return header;
+	}
+
+	/**
+	 * Checks whether the stream starts with a binary events file header, without consuming it.
+	 *
+	 * @param stream a stream that supports {@link InputStream#mark(int)}
+	 */
+	public static boolean isBinaryEventsStream(InputStream stream) throws IOException {
+		byte[] header = getHeader();
+		stream.mark(header.length);
+		try {
+			for (byte expected : header) {
+				if (stream.read() != (expected & 0xff)) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			stream.reset();
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsFileIndex.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * The index of an xml events file that was written in blocks (see
+ * {@link org.matsim.core.events.algorithms.EventWriterXML#EventWriterXML(String, double)}), stored next to the events
+ * file with the additional ending {@link #FILE_SUFFIX}.  It is a text file with a header line and one line per block,
+ * containing the time of the first event of the block and the offset of the block in the events file, separated by a
+ * tab.  The start of the xml document precedes the first block.
+ */
+public final class EventsFileIndex {
+
+	public static final String FILE_SUFFIX = ".idx";
+	public static final String HEADER = "time\toffset";
+
+	private EventsFileIndex() {
+	}
+
+	public static String getIndexFilename(final String eventsFilename) {
+		return eventsFilename + FILE_SUFFIX;
+	}
+
+	/**
+	 * @return the offset of the last block that starts at or before <code>time</code>, i.e. the block that contains the
+	 * first event at or after <code>time</code>, or 0 if reading must start at the beginning of the file
+	 */
+	public static long findOffset(final String indexFilename, final double time) {
+		long offset = 0;
+		try (BufferedReader reader = IOUtils.getBufferedReader(indexFilename)) {
+			String line = reader.readLine();
+			if (!HEADER.equals(line)) {
+				throw new IllegalArgumentException(indexFilename + " is not an events file index.");
+			}
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (Double.parseDouble(line.substring(0, tab)) > time) {
+					break;
+				}
+				offset = Long.parseLong(line.substring(tab + 1));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return offset;
+	}
+
+}
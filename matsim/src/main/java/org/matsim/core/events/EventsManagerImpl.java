@@ -20,6 +20,9 @@
 
 package org.matsim.core.events;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -33,6 +36,7 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.PersonArrivalEvent;
@@ -42,9 +46,12 @@ import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.events.VehicleAbortsEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.events.handler.ActivityEndEventHandler;
 import org.matsim.api.core.v01.events.handler.ActivityStartEventHandler;
+import org.matsim.api.core.v01.events.handler.GenericEventHandler;
 import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
 import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
@@ -54,12 +61,22 @@ import org.matsim.api.core.v01.events.handler.PersonLeavesVehicleEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonMoneyEventHandler;
 import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
 import org.matsim.api.core.v01.events.handler.TransitDriverStartsEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleAbortsEventHandler;
 import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
 import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
+import org.matsim.core.api.experimental.events.BoardingDeniedEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.LaneEnterEvent;
+import org.matsim.core.api.experimental.events.LaneLeaveEvent;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.AgentWaitingForPtEventHandler;
+import org.matsim.core.api.experimental.events.handler.BoardingDeniedEventHandler;
+import org.matsim.core.api.experimental.events.handler.LaneEnterEventHandler;
+import org.matsim.core.api.experimental.events.handler.LaneLeaveEventHandler;
+import org.matsim.core.api.experimental.events.handler.TeleportationArrivalEventHandler;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
@@ -73,9 +90,12 @@ import org.matsim.core.events.handler.EventHandler;
  * <li>add method public void handleEvent(MyEvent event) to it</li>
  * <li>ready to go, just implement the interface somewhere and add a
  * HandlerObject with a call to <code>Events.addHandler(HandlerObject)</code></li>
- * <li>(optional) add an appropriate line in callHandlerFast() for speeding
+ * <li>(optional) add an appropriate line in createFastCall() for speeding
  * up execution!</li>
  * </ol>
+ * Handlers of event classes not listed in createFastCall() are called through
+ * a {@link MethodHandle}, or through reflection if the handler interface is not
+ * accessible from this class.
  *
  * @author dstrippgen
  * @author mrieser
@@ -101,15 +121,23 @@ public class EventsManagerImpl implements EventsManager {
 	static private class HandlerInfo {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
-		protected final Method method;
+		protected final HandlerCall call;
 
 		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
-			this.method = method;
+			this.call = createCall(eventClass, eventHandler, method);
 		}
 	}
 
+	/**
+	 * Passes events of one class to one event handler.  Created once per event class and handler,
+	 * so the type checks are not repeated for every event.
+	 */
+	static private abstract class HandlerCall {
+		abstract void handleEvent(final Event event);
+	}
+
 	private final List<HandlerData> handlerData = new ArrayList<HandlerData>();
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
@@ -219,18 +247,7 @@ public class EventsManagerImpl implements EventsManager {
 	private void computeEvent(final Event event) {
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
 			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
-				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				}
+				info.call.handleEvent(event);
 			}
 		}
 	}
@@ -284,58 +301,243 @@ public class EventsManagerImpl implements EventsManager {
 		return intfs;
 	}
 
+	private static HandlerCall createCall(final Class<?> eventClass, final EventHandler handler, final Method method) {
+		HandlerCall call = createFastCall(eventClass, handler);
+		if (call != null) {
+			return call;
+		}
+		final String problem = "problem invoking EventHandler " + handler.getClass().getCanonicalName() + " for event-class " + eventClass.getCanonicalName();
+		final MethodHandle methodHandle;
+		try {
+			methodHandle = MethodHandles.lookup().unreflect(method).bindTo(handler).asType(MethodType.methodType(void.class, Event.class));
+		} catch (IllegalAccessException e) {
+			// the handler interface is not public: reflection can be told to skip the access checks
+			method.setAccessible(true);
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event event) {
+					try {
+						method.invoke(handler, event);
+					} catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
+						throw new RuntimeException(problem, e);
+					}
+				}
+			};
+		}
+		return new HandlerCall() {
+			@Override
+			void handleEvent(final Event event) {
+				try {
+					methodHandle.invokeExact(event);
+				} catch (Throwable e) {
+					// wrapped the same way as by Method.invoke(), as callers may look at the cause
+					throw new RuntimeException(problem, new InvocationTargetException(e));
+				}
+			}
+		};
+	}
+
 	// this method is purely for performance reasons and need not be implemented
-	private boolean callHandlerFast(final Class<?> klass, final Event ev, final EventHandler handler) {
+	private static HandlerCall createFastCall(final Class<?> klass, final EventHandler handler) {
 		if (klass == LinkLeaveEvent.class) {
-			((LinkLeaveEventHandler)handler).handleEvent((LinkLeaveEvent)ev);
-			return true;
+			final LinkLeaveEventHandler linkLeaveEventHandler = (LinkLeaveEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					linkLeaveEventHandler.handleEvent((LinkLeaveEvent) ev);
+				}
+			};
 		} else if (klass == LinkEnterEvent.class) {
-			((LinkEnterEventHandler)handler).handleEvent((LinkEnterEvent)ev);
-			return true;
+			final LinkEnterEventHandler linkEnterEventHandler = (LinkEnterEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					linkEnterEventHandler.handleEvent((LinkEnterEvent) ev);
+				}
+			};
 		} else if (klass == VehicleEntersTrafficEvent.class) {
-			((VehicleEntersTrafficEventHandler)handler).handleEvent((VehicleEntersTrafficEvent)ev);
-			return true;
+			final VehicleEntersTrafficEventHandler vehicleEntersTrafficEventHandler = (VehicleEntersTrafficEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					vehicleEntersTrafficEventHandler.handleEvent((VehicleEntersTrafficEvent) ev);
+				}
+			};
 		} else if (klass == PersonArrivalEvent.class) {
-			((PersonArrivalEventHandler)handler).handleEvent((PersonArrivalEvent)ev);
-			return true;
+			final PersonArrivalEventHandler personArrivalEventHandler = (PersonArrivalEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					personArrivalEventHandler.handleEvent((PersonArrivalEvent) ev);
+				}
+			};
 		} else if (klass == PersonDepartureEvent.class) {
-			((PersonDepartureEventHandler)handler).handleEvent((PersonDepartureEvent)ev);
-			return true;
+			final PersonDepartureEventHandler personDepartureEventHandler = (PersonDepartureEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					personDepartureEventHandler.handleEvent((PersonDepartureEvent) ev);
+				}
+			};
 		} else if (klass == ActivityEndEvent.class) {
-			((ActivityEndEventHandler)handler).handleEvent((ActivityEndEvent)ev);
-			return true;
+			final ActivityEndEventHandler activityEndEventHandler = (ActivityEndEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					activityEndEventHandler.handleEvent((ActivityEndEvent) ev);
+				}
+			};
 		} else if (klass == ActivityStartEvent.class) {
-			((ActivityStartEventHandler)handler).handleEvent((ActivityStartEvent)ev);
-			return true;
+			final ActivityStartEventHandler activityStartEventHandler = (ActivityStartEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					activityStartEventHandler.handleEvent((ActivityStartEvent) ev);
+				}
+			};
 		} else if (klass == TransitDriverStartsEvent.class) {
-			((TransitDriverStartsEventHandler) handler).handleEvent((TransitDriverStartsEvent) ev);
-			return true;
+			final TransitDriverStartsEventHandler transitDriverStartsEventHandler = (TransitDriverStartsEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					transitDriverStartsEventHandler.handleEvent((TransitDriverStartsEvent) ev);
+				}
+			};
 		} else if (klass == PersonStuckEvent.class) {
-			((PersonStuckEventHandler)handler).handleEvent((PersonStuckEvent)ev);
-			return true;
+			final PersonStuckEventHandler personStuckEventHandler = (PersonStuckEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					personStuckEventHandler.handleEvent((PersonStuckEvent) ev);
+				}
+			};
 		} else if (klass == PersonMoneyEvent.class) {
-			((PersonMoneyEventHandler)handler).handleEvent((PersonMoneyEvent)ev);
-			return true;
+			final PersonMoneyEventHandler personMoneyEventHandler = (PersonMoneyEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					personMoneyEventHandler.handleEvent((PersonMoneyEvent) ev);
+				}
+			};
 		} else if (klass == AgentWaitingForPtEvent.class) {
-			((AgentWaitingForPtEventHandler)handler).handleEvent((AgentWaitingForPtEvent)ev);
-			return true;
+			final AgentWaitingForPtEventHandler agentWaitingForPtEventHandler = (AgentWaitingForPtEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					agentWaitingForPtEventHandler.handleEvent((AgentWaitingForPtEvent) ev);
+				}
+			};
 		} else if (klass == PersonEntersVehicleEvent.class) {
-			((PersonEntersVehicleEventHandler)handler).handleEvent((PersonEntersVehicleEvent)ev);
-			return true;
+			final PersonEntersVehicleEventHandler personEntersVehicleEventHandler = (PersonEntersVehicleEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					personEntersVehicleEventHandler.handleEvent((PersonEntersVehicleEvent) ev);
+				}
+			};
 		} else if (klass == PersonLeavesVehicleEvent.class) {
-			((PersonLeavesVehicleEventHandler)handler).handleEvent((PersonLeavesVehicleEvent)ev);
-			return true;
+			final PersonLeavesVehicleEventHandler personLeavesVehicleEventHandler = (PersonLeavesVehicleEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					personLeavesVehicleEventHandler.handleEvent((PersonLeavesVehicleEvent) ev);
+				}
+			};
 		} else if (klass == VehicleDepartsAtFacilityEvent.class) {
-			((VehicleDepartsAtFacilityEventHandler) handler).handleEvent((VehicleDepartsAtFacilityEvent) ev);
-			return true;
+			final VehicleDepartsAtFacilityEventHandler vehicleDepartsAtFacilityEventHandler = (VehicleDepartsAtFacilityEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					vehicleDepartsAtFacilityEventHandler.handleEvent((VehicleDepartsAtFacilityEvent) ev);
+				}
+			};
 		} else if (klass == VehicleArrivesAtFacilityEvent.class) {
-			((VehicleArrivesAtFacilityEventHandler) handler).handleEvent((VehicleArrivesAtFacilityEvent) ev);
-			return true;
+			final VehicleArrivesAtFacilityEventHandler vehicleArrivesAtFacilityEventHandler = (VehicleArrivesAtFacilityEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					vehicleArrivesAtFacilityEventHandler.handleEvent((VehicleArrivesAtFacilityEvent) ev);
+				}
+			};
+		} else if (klass == VehicleLeavesTrafficEvent.class) {
+			final VehicleLeavesTrafficEventHandler vehicleLeavesTrafficEventHandler = (VehicleLeavesTrafficEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					vehicleLeavesTrafficEventHandler.handleEvent((VehicleLeavesTrafficEvent) ev);
+				}
+			};
+		} else if (klass == VehicleAbortsEvent.class) {
+			final VehicleAbortsEventHandler vehicleAbortsEventHandler = (VehicleAbortsEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					vehicleAbortsEventHandler.handleEvent((VehicleAbortsEvent) ev);
+				}
+			};
+		} else if (klass == GenericEvent.class) {
+			final GenericEventHandler genericEventHandler = (GenericEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					genericEventHandler.handleEvent((GenericEvent) ev);
+				}
+			};
+		} else if (klass == TeleportationArrivalEvent.class) {
+			final TeleportationArrivalEventHandler teleportationArrivalEventHandler = (TeleportationArrivalEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					teleportationArrivalEventHandler.handleEvent((TeleportationArrivalEvent) ev);
+				}
+			};
+		} else if (klass == BoardingDeniedEvent.class) {
+			final BoardingDeniedEventHandler boardingDeniedEventHandler = (BoardingDeniedEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					boardingDeniedEventHandler.handleEvent((BoardingDeniedEvent) ev);
+				}
+			};
+		} else if (klass == LaneEnterEvent.class) {
+			final LaneEnterEventHandler laneEnterEventHandler = (LaneEnterEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					laneEnterEventHandler.handleEvent((LaneEnterEvent) ev);
+				}
+			};
+		} else if (klass == LaneLeaveEvent.class) {
+			final LaneLeaveEventHandler laneLeaveEventHandler = (LaneLeaveEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					laneLeaveEventHandler.handleEvent((LaneLeaveEvent) ev);
+				}
+			};
 		} else if (klass == Event.class) {
-			((BasicEventHandler)handler).handleEvent(ev);
-			return true;
+			final BasicEventHandler basicEventHandler = (BasicEventHandler) handler;
+			return new HandlerCall() {
+				@Override
+				void handleEvent(final Event ev) {
+					basicEventHandler.handleEvent(ev);
+				}
+			};
+		}
+		return null;
+	}
+
+	/**
+	 * @return the event classes for which at least one handler is registered, as declared by the handleEvent methods
+	 */
+	public Set<Class<?>> getHandledEventClasses() {
+		Set<Class<?>> eventClasses = new HashSet<Class<?>>();
+		for (HandlerData handlerType : this.handlerData) {
+			if (!handlerType.handlerList.isEmpty()) {
+				eventClasses.add(handlerType.eventklass);
+			}
 		}
-		return false;
+		return eventClasses;
 	}
 
 	public void printEventHandlers() {
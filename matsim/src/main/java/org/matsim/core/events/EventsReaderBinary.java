@@ -0,0 +1,585 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.events.VehicleAbortsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
+import org.matsim.core.api.experimental.events.BoardingDeniedEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Reads events files in the format described in {@link BinaryEventsFormat}.  Creates the same events as
+ * {@link EventsReaderXMLv1}, i.e. the core event types, and {@link GenericEvent}s or the result of a
+ * {@link CustomEventMapper} for all other types.
+ * <p></p>
+ * Values are not parsed: strings and ids come from the dictionary of the file, and each id is only created once per id
+ * type and dictionary entry.
+ * <p></p>
+ * The dictionary is shared by all blocks of a file, so it cannot be bounded: while a file is read, it holds every
+ * distinct string of the file, i.e. all ids, event types, attribute names and string values, plus one array slot per
+ * entry and id type.  This is about as much memory as the ids need anyway, as {@link Id#create} keeps all ids.  The
+ * dictionary is released when the file has been read.
+ */
+public class EventsReaderBinary implements MatsimReader {
+
+	private final EventsManager events;
+	private final Map<String, CustomEventMapper> customEventMappers = new HashMap<>();
+	private Set<String> eventTypes = null;
+	private double fromTime = Double.NEGATIVE_INFINITY;
+	private double toTime = Double.POSITIVE_INFINITY;
+
+	private String[] dictionary = new String[1024];
+	private String[] internedNames = new String[1024];
+	/** per dictionary entry used as event type: whether such events are read (1) or skipped (2), or not known yet (0) */
+	private byte[] typesRead = new byte[1024];
+	private int dictionarySize = 0;
+	private final Map<Class<?>, Id<?>[]> idCache = new HashMap<>();
+
+	private Inflater inflater;
+	private byte[] compressed = new byte[0];
+	private byte[] raw = new byte[0];
+
+	private final Column times = new Column();
+	private final Column types = new Column();
+	private final Column attributeCounts = new Column();
+	private final Column attributeNames = new Column();
+	private final Column valueKinds = new Column();
+	private final Column dictionaryValueColumn = new Column();
+	private final Column doubleValueColumn = new Column();
+	private final Column[] columns = {this.times, this.types, this.attributeCounts, this.attributeNames, this.valueKinds,
+			this.dictionaryValueColumn, this.doubleValueColumn};
+
+	// the attributes of the current event:
+	private int attributeCount = 0;
+	private String[] names = new String[16];
+	private byte[] kinds = new byte[16];
+	private int[] dictionaryValues = new int[16];
+	private double[] doubleValues = new double[16];
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.events = events;
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.customEventMappers.put(eventType, cem);
+	}
+
+	/**
+	 * @see EventsReaderXMLv1#setEventTypes(Set)
+	 */
+	public void setEventTypes(final Set<String> eventTypes) {
+		this.eventTypes = eventTypes;
+	}
+
+	/**
+	 * Only events with <code>fromTime &lt;= time &lt; toTime</code> are read.  Blocks before the window are skipped
+	 * without decompressing their events, and reading stops at the first block after the window.
+	 */
+	public void setTimeWindow(final double fromTime, final double toTime) {
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		try (InputStream stream = IOUtils.getInputStream(filename)) {
+			readStream(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void readStream(final InputStream stream) {
+		this.inflater = new Inflater();
+		try {
+			InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream);
+			if (!BinaryEventsFormat.isBinaryEventsStream(in)) {
+				throw new IllegalArgumentException("not a binary events file.");
+			}
+			DataInputStream dataIn = new DataInputStream(in);
+			dataIn.readFully(new byte[BinaryEventsFormat.getHeader().length]);
+			while (readBlock(dataIn)) {
+			}
+		} catch (IOException | DataFormatException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.inflater.end();
+			releaseDictionary();
+		}
+	}
+
+	/**
+	 * @return <code>false</code> at the end of the file
+	 */
+	private boolean readBlock(DataInputStream in) throws IOException, DataFormatException {
+		int eventCount = in.readInt();
+		if (eventCount == BinaryEventsFormat.END_OF_FILE) {
+			return false;
+		}
+		double firstTime = in.readDouble();
+		double lastTime = in.readDouble();
+		int dictionaryLength = in.readInt();
+		int rawDictionaryLength = in.readInt();
+		int dataLength = in.readInt();
+		int rawDataLength = in.readInt();
+
+		if (firstTime >= this.toTime) {
+			return false;
+		}
+		// the dictionary is needed by all later blocks
+		readDictionary(inflate(in, dictionaryLength, rawDictionaryLength));
+		if (lastTime < this.fromTime) {
+			in.readFully(ensureCompressedCapacity(dataLength), 0, dataLength);
+			return true;
+		}
+		ByteBuffer data = inflate(in, dataLength, rawDataLength);
+		int position = 4 * BinaryEventsFormat.NUMBER_OF_COLUMNS;
+		for (Column column : this.columns) {
+			column.start(data.array(), position);
+			position += data.getInt();
+		}
+
+		double time = 0.0;
+		int runLength = 0;
+		for (int i = 0; i < eventCount; i++) {
+			if (runLength == 0) {
+				time = this.times.readDouble();
+				runLength = this.times.readVarInt();
+			}
+			runLength--;
+			int typeIndex = this.types.readVarInt();
+			int count = this.attributeCounts.readVarInt();
+			if (time < this.fromTime || time >= this.toTime || !isRead(typeIndex)) {
+				skipAttributes(count);
+				continue;
+			}
+			String eventType = this.dictionary[typeIndex];
+			ensureAttributeCapacity(count);
+			for (int k = 0; k < count; k++) {
+				this.names[k] = getName(this.attributeNames.readVarInt());
+				byte kind = this.valueKinds.readByte();
+				this.kinds[k] = kind;
+				if (kind == BinaryEventsFormat.KIND_STRING || kind == BinaryEventsFormat.KIND_ID) {
+					this.dictionaryValues[k] = this.dictionaryValueColumn.readVarInt();
+				} else if (kind == BinaryEventsFormat.KIND_DOUBLE) {
+					this.doubleValues[k] = this.doubleValueColumn.readDouble();
+				}
+			}
+			this.attributeCount = count;
+			processEvent(time, eventType);
+		}
+		return true;
+	}
+
+	private boolean isRead(int typeIndex) {
+		if (this.eventTypes == null) {
+			return true;
+		}
+		if (this.typesRead[typeIndex] == 0) {
+			this.typesRead[typeIndex] = this.eventTypes.contains(this.dictionary[typeIndex]) ? (byte) 1 : (byte) 2;
+		}
+		return this.typesRead[typeIndex] == 1;
+	}
+
+	private void skipAttributes(int count) {
+		for (int k = 0; k < count; k++) {
+			this.attributeNames.readVarInt();
+			byte kind = this.valueKinds.readByte();
+			if (kind == BinaryEventsFormat.KIND_STRING || kind == BinaryEventsFormat.KIND_ID) {
+				this.dictionaryValueColumn.readVarInt();
+			} else if (kind == BinaryEventsFormat.KIND_DOUBLE) {
+				this.doubleValueColumn.skip(8);
+			}
+		}
+	}
+
+	/**
+	 * Attribute names are interned, so they can be compared to the constants of the event classes by identity.
+	 */
+	private String getName(int index) {
+		String name = this.internedNames[index];
+		if (name == null) {
+			name = this.dictionary[index].intern();
+			this.internedNames[index] = name;
+		}
+		return name;
+	}
+
+	private ByteBuffer inflate(DataInputStream in, int length, int rawLength) throws IOException, DataFormatException {
+		if (this.raw.length < rawLength) {
+			this.raw = new byte[rawLength];
+		}
+		in.readFully(ensureCompressedCapacity(length), 0, length);
+		this.inflater.reset();
+		this.inflater.setInput(this.compressed, 0, length);
+		int inflated = 0;
+		while (inflated < rawLength) {
+			int n = this.inflater.inflate(this.raw, inflated, rawLength - inflated);
+			if (n == 0 && (this.inflater.finished() || this.inflater.needsInput())) {
+				throw new DataFormatException("block is shorter than declared.");
+			}
+			inflated += n;
+		}
+		return ByteBuffer.wrap(this.raw, 0, rawLength);
+	}
+
+	private byte[] ensureCompressedCapacity(int length) {
+		if (this.compressed.length < length) {
+			this.compressed = new byte[length];
+		}
+		return this.compressed;
+	}
+
+	private void readDictionary(ByteBuffer buffer) {
+		int newStrings = buffer.getInt();
+		if (this.dictionarySize + newStrings > this.dictionary.length) {
+			this.dictionary = Arrays.copyOf(this.dictionary, Math.max(2 * this.dictionary.length, this.dictionarySize + newStrings));
+			this.internedNames = Arrays.copyOf(this.internedNames, this.dictionary.length);
+			this.typesRead = Arrays.copyOf(this.typesRead, this.dictionary.length);
+		}
+		for (int i = 0; i < newStrings; i++) {
+			int length = buffer.getInt();
+			this.dictionary[this.dictionarySize++] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		}
+	}
+
+	private void releaseDictionary() {
+		this.dictionary = new String[1024];
+		this.internedNames = new String[1024];
+		this.typesRead = new byte[1024];
+		this.dictionarySize = 0;
+		this.idCache.clear();
+	}
+
+	private void ensureAttributeCapacity(int count) {
+		if (count > this.names.length) {
+			this.names = new String[count];
+			this.kinds = new byte[count];
+			this.dictionaryValues = new int[count];
+			this.doubleValues = new double[count];
+		}
+	}
+
+	private void processEvent(double time, String eventType) {
+		switch (eventType) {
+		case LinkLeaveEvent.EVENT_TYPE:
+			this.events.processEvent(new LinkLeaveEvent(time,
+					getId(LinkLeaveEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getId(LinkLeaveEvent.ATTRIBUTE_LINK, Link.class)));
+			break;
+		case LinkEnterEvent.EVENT_TYPE:
+			this.events.processEvent(new LinkEnterEvent(time,
+					getId(LinkEnterEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getId(LinkEnterEvent.ATTRIBUTE_LINK, Link.class)));
+			break;
+		case VehicleEntersTrafficEvent.EVENT_TYPE:
+			this.events.processEvent(new VehicleEntersTrafficEvent(time,
+					getId(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, Person.class),
+					getId(VehicleEntersTrafficEvent.ATTRIBUTE_LINK, Link.class),
+					getId(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getString(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE),
+					getDouble(VehicleEntersTrafficEvent.ATTRIBUTE_POSITION)));
+			break;
+		case VehicleLeavesTrafficEvent.EVENT_TYPE:
+			this.events.processEvent(new VehicleLeavesTrafficEvent(time,
+					getId(VehicleLeavesTrafficEvent.ATTRIBUTE_DRIVER, Person.class),
+					getId(VehicleLeavesTrafficEvent.ATTRIBUTE_LINK, Link.class),
+					getId(VehicleLeavesTrafficEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getString(VehicleLeavesTrafficEvent.ATTRIBUTE_NETWORKMODE),
+					getDouble(VehicleLeavesTrafficEvent.ATTRIBUTE_POSITION)));
+			break;
+		case ActivityEndEvent.EVENT_TYPE:
+			this.events.processEvent(new ActivityEndEvent(time,
+					getId(ActivityEndEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(ActivityEndEvent.ATTRIBUTE_LINK, Link.class),
+					getId(ActivityEndEvent.ATTRIBUTE_FACILITY, ActivityFacility.class),
+					getString(ActivityEndEvent.ATTRIBUTE_ACTTYPE)));
+			break;
+		case ActivityStartEvent.EVENT_TYPE:
+			this.events.processEvent(new ActivityStartEvent(time,
+					getId(ActivityStartEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(ActivityStartEvent.ATTRIBUTE_LINK, Link.class),
+					getId(ActivityStartEvent.ATTRIBUTE_FACILITY, ActivityFacility.class),
+					getString(ActivityStartEvent.ATTRIBUTE_ACTTYPE)));
+			break;
+		case PersonArrivalEvent.EVENT_TYPE:
+			this.events.processEvent(new PersonArrivalEvent(time,
+					getId(PersonArrivalEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(PersonArrivalEvent.ATTRIBUTE_LINK, Link.class),
+					getString(PersonArrivalEvent.ATTRIBUTE_LEGMODE)));
+			break;
+		case PersonDepartureEvent.EVENT_TYPE:
+			this.events.processEvent(new PersonDepartureEvent(time,
+					getId(PersonDepartureEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(PersonDepartureEvent.ATTRIBUTE_LINK, Link.class),
+					getString(PersonDepartureEvent.ATTRIBUTE_LEGMODE)));
+			break;
+		case PersonStuckEvent.EVENT_TYPE:
+			this.events.processEvent(new PersonStuckEvent(time,
+					getId(PersonStuckEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(PersonStuckEvent.ATTRIBUTE_LINK, Link.class),
+					getString(PersonStuckEvent.ATTRIBUTE_LEGMODE)));
+			break;
+		case VehicleAbortsEvent.EVENT_TYPE:
+			this.events.processEvent(new VehicleAbortsEvent(time,
+					getId(VehicleAbortsEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getId(VehicleAbortsEvent.ATTRIBUTE_LINK, Link.class)));
+			break;
+		case PersonMoneyEvent.EVENT_TYPE:
+			this.events.processEvent(new PersonMoneyEvent(time,
+					getId(PersonMoneyEvent.ATTRIBUTE_PERSON, Person.class),
+					getDouble(PersonMoneyEvent.ATTRIBUTE_AMOUNT)));
+			break;
+		case PersonEntersVehicleEvent.EVENT_TYPE:
+			this.events.processEvent(new PersonEntersVehicleEvent(time,
+					getId(PersonEntersVehicleEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE, Vehicle.class)));
+			break;
+		case PersonLeavesVehicleEvent.EVENT_TYPE:
+			this.events.processEvent(new PersonLeavesVehicleEvent(time,
+					getId(PersonLeavesVehicleEvent.ATTRIBUTE_PERSON, Person.class),
+					getId(PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE, Vehicle.class)));
+			break;
+		case TeleportationArrivalEvent.EVENT_TYPE:
+			this.events.processEvent(new TeleportationArrivalEvent(time,
+					getId(TeleportationArrivalEvent.ATTRIBUTE_PERSON, Person.class),
+					getDouble(TeleportationArrivalEvent.ATTRIBUTE_DISTANCE)));
+			break;
+		case VehicleArrivesAtFacilityEvent.EVENT_TYPE:
+			this.events.processEvent(new VehicleArrivesAtFacilityEvent(time,
+					getId(VehicleArrivesAtFacilityEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getId(VehicleArrivesAtFacilityEvent.ATTRIBUTE_FACILITY, TransitStopFacility.class),
+					getDouble(VehicleArrivesAtFacilityEvent.ATTRIBUTE_DELAY, 0.0)));
+			break;
+		case VehicleDepartsAtFacilityEvent.EVENT_TYPE:
+			this.events.processEvent(new VehicleDepartsAtFacilityEvent(time,
+					getId(VehicleDepartsAtFacilityEvent.ATTRIBUTE_VEHICLE, Vehicle.class),
+					getId(VehicleDepartsAtFacilityEvent.ATTRIBUTE_FACILITY, TransitStopFacility.class),
+					getDouble(VehicleDepartsAtFacilityEvent.ATTRIBUTE_DELAY, 0.0)));
+			break;
+		case TransitDriverStartsEvent.EVENT_TYPE:
+			this.events.processEvent(new TransitDriverStartsEvent(time,
+					getId(TransitDriverStartsEvent.ATTRIBUTE_DRIVER_ID, Person.class),
+					getId(TransitDriverStartsEvent.ATTRIBUTE_VEHICLE_ID, Vehicle.class),
+					getId(TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_LINE_ID, TransitLine.class),
+					getId(TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_ROUTE_ID, TransitRoute.class),
+					getId(TransitDriverStartsEvent.ATTRIBUTE_DEPARTURE_ID, Departure.class)));
+			break;
+		case BoardingDeniedEvent.EVENT_TYPE:
+			this.events.processEvent(new BoardingDeniedEvent(time,
+					getId(BoardingDeniedEvent.ATTRIBUTE_PERSON_ID, Person.class),
+					getId(BoardingDeniedEvent.ATTRIBUTE_VEHICLE_ID, Vehicle.class)));
+			break;
+		case AgentWaitingForPtEvent.EVENT_TYPE:
+			this.events.processEvent(new AgentWaitingForPtEvent(time,
+					getId(AgentWaitingForPtEvent.ATTRIBUTE_AGENT, Person.class),
+					getId(AgentWaitingForPtEvent.ATTRIBUTE_WAITSTOP, TransitStopFacility.class),
+					getId(AgentWaitingForPtEvent.ATTRIBUTE_DESTINATIONSTOP, TransitStopFacility.class)));
+			break;
+		default:
+			GenericEvent event = new GenericEvent(eventType, time);
+			for (int k = 0; k < this.attributeCount; k++) {
+				event.getAttributes().put(this.names[k], getString(k));
+			}
+			CustomEventMapper cem = this.customEventMappers.get(eventType);
+			if (cem != null) {
+				this.events.processEvent(cem.apply(event));
+			} else {
+				this.events.processEvent(event);
+			}
+		}
+	}
+
+	/**
+	 * @param name one of the (interned) constants of the event classes
+	 */
+	private int indexOf(String name) {
+		for (int k = 0; k < this.attributeCount; k++) {
+			if (this.names[k] == name) {
+				return k;
+			}
+		}
+		return -1;
+	}
+
+	private String getString(String name) {
+		int k = indexOf(name);
+		return k < 0 ? null : getString(k);
+	}
+
+	private String getString(int k) {
+		switch (this.kinds[k]) {
+		case BinaryEventsFormat.KIND_STRING:
+		case BinaryEventsFormat.KIND_ID:
+			return this.dictionary[this.dictionaryValues[k]];
+		case BinaryEventsFormat.KIND_DOUBLE:
+			return Double.toString(this.doubleValues[k]);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Like <code>Double.parseDouble(atts.getValue(name))</code> in {@link EventsReaderXMLv1}, i.e. fails if the attribute
+	 * is missing.
+	 */
+	private double getDouble(String name) {
+		int k = indexOf(name);
+		if (k >= 0 && this.kinds[k] == BinaryEventsFormat.KIND_DOUBLE) {
+			return this.doubleValues[k];
+		}
+		return Double.parseDouble(k < 0 ? null : getString(k));
+	}
+
+	private double getDouble(String name, double defaultValue) {
+		int k = indexOf(name);
+		if (k < 0) {
+			return defaultValue;
+		}
+		switch (this.kinds[k]) {
+		case BinaryEventsFormat.KIND_DOUBLE:
+			return this.doubleValues[k];
+		case BinaryEventsFormat.KIND_STRING:
+		case BinaryEventsFormat.KIND_ID:
+			return Double.parseDouble(this.dictionary[this.dictionaryValues[k]]);
+		default:
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @return <code>null</code> if the attribute is missing or <code>null</code>, as optional ids are in xml events files
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Id<T> getId(String name, Class<T> type) {
+		int k = indexOf(name);
+		if (k < 0) {
+			return null;
+		}
+		int index;
+		if (this.kinds[k] == BinaryEventsFormat.KIND_STRING || this.kinds[k] == BinaryEventsFormat.KIND_ID) {
+			index = this.dictionaryValues[k];
+		} else if (this.kinds[k] == BinaryEventsFormat.KIND_DOUBLE) {
+			return Id.create(Double.toString(this.doubleValues[k]), type);
+		} else {
+			return null;
+		}
+		Id<?>[] ids = this.idCache.get(type);
+		if (ids == null || ids.length < this.dictionarySize) {
+			ids = ids == null ? new Id<?>[this.dictionary.length] : Arrays.copyOf(ids, this.dictionary.length);
+			this.idCache.put(type, ids);
+		}
+		Id<T> id = (Id<T>) ids[index];
+		if (id == null) {
+			id = Id.create(this.dictionary[index], type);
+			ids[index] = id;
+		}
+		return id;
+	}
+
+	/**
+	 * Reads one column of the data section.
+	 */
+	private static final class Column {
+
+		private byte[] data;
+		private int position;
+
+		void start(byte[] data, int position) {
+			this.data = data;
+			this.position = position;
+		}
+
+		byte readByte() {
+			return this.data[this.position++];
+		}
+
+		void skip(int bytes) {
+			this.position += bytes;
+		}
+
+		int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = this.data[this.position++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		double readDouble() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits = (bits << 8) | (this.data[this.position++] & 0xff);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+
+	}
+
+}
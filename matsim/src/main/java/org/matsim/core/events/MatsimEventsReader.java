@@ -20,13 +20,32 @@
 
 package org.matsim.core.events;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.Stack;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.EndOfTimeWindowException;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.core.utils.io.MatsimXmlParser;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -34,6 +53,9 @@ import org.xml.sax.SAXException;
 /**
  * A reader for events-files of MATSim. This reader recognizes the format of the events-file and uses
  * the correct reader for the specific events-version, without manual setting.
+ * <p></p>
+ * Events of types that no handler needs are skipped without creating them.  The needed types are derived from the
+ * handlers of an {@link EventsManagerImpl}, or can be set with {@link #setEventTypes(Set)}.
  *
  * @author mrieser
  */
@@ -41,6 +63,9 @@ public class MatsimEventsReader implements MatsimReader {
 
 	private final static Logger log = Logger.getLogger(MatsimEventsReader.class);
 	private final EventsManager events;
+	private int numberOfThreads = 1;
+	private Set<String> eventTypes = null;
+	private boolean eventTypesSet = false;
 
 	/**
 	 * Creates a new reader for MATSim events files.
@@ -51,6 +76,79 @@ public class MatsimEventsReader implements MatsimReader {
 		this.events = events;
 	}
 
+	/**
+	 * With more than one thread, xml events files are read by a {@link ParallelEventsReaderXML} with that many parsing
+	 * threads.  The events still reach the events manager in the order of the file, on the calling thread.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * Only events of these types are created and passed to the events manager, all other events are skipped.  With
+	 * <code>null</code>, all events are read, even if they could be skipped according to the event handlers.
+	 */
+	public void setEventTypes(final Set<String> eventTypes) {
+		this.eventTypes = eventTypes;
+		this.eventTypesSet = true;
+	}
+
+	/**
+	 * @return the types set with {@link #setEventTypes(Set)}, or else the types handled by the events manager, or
+	 * <code>null</code> if all events must be read
+	 */
+	private Set<String> getEventTypes() {
+		if (this.eventTypesSet) {
+			return this.eventTypes;
+		}
+		if (this.events instanceof EventsManagerImpl) {
+			Set<String> eventTypes = getEventTypes(((EventsManagerImpl) this.events).getHandledEventClasses());
+			if (eventTypes != null) {
+				log.info("only reading events of the types " + eventTypes + ", as there are no handlers for other events.");
+			}
+			return eventTypes;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the types of events that are created with the given classes, or <code>null</code> if this cannot be
+	 * determined for all classes, e.g. because handlers for {@link Event} or for {@link GenericEvent}s are registered,
+	 * or because one of the classes does not declare its own <code>EVENT_TYPE</code> constant
+	 */
+	/*package*/ static Set<String> getEventTypes(final Collection<Class<?>> eventClasses) {
+		if (eventClasses.isEmpty()) {
+			return null;
+		}
+		Set<String> eventTypes = new HashSet<>();
+		for (Class<?> eventClass : eventClasses) {
+			if (eventClass == GenericEvent.class || !Event.class.isAssignableFrom(eventClass)
+					|| eventClass.isInterface() || Modifier.isAbstract(eventClass.getModifiers())) {
+				return null;
+			}
+			try {
+				// a subclass that does not declare its own constant would inherit the one of its superclass, and its
+				// events would be skipped as events of that type
+				Field field = eventClass.getDeclaredField("EVENT_TYPE");
+				if (!Modifier.isStatic(field.getModifiers())) {
+					return null;
+				}
+				eventTypes.add((String) field.get(null));
+			} catch (NoSuchFieldException | IllegalAccessException | ClassCastException | NullPointerException e) {
+				// no static type constant
+				return null;
+			}
+		}
+		// the names of the types in older files
+		if (eventTypes.contains(PersonMoneyEvent.EVENT_TYPE)) {
+			eventTypes.add("agentMoney");
+		}
+		if (eventTypes.contains(VehicleEntersTrafficEvent.EVENT_TYPE)) {
+			eventTypes.add("wait2link");
+		}
+		return eventTypes;
+	}
+
 	/**
 	 * Parses the specified events file.
 	 *
@@ -59,8 +157,16 @@ public class MatsimEventsReader implements MatsimReader {
 	@Override
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
-		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
-			new XmlEventsReader(this.events).readFile(filename);
+		if ((lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) && this.numberOfThreads > 1) {
+			ParallelEventsReaderXML reader = new ParallelEventsReaderXML(this.events, this.numberOfThreads);
+			reader.setEventTypes(getEventTypes());
+			reader.readFile(filename);
+		} else if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
+			new XmlEventsReader(this.events, getEventTypes()).readFile(filename);
+		} else if (lcFilename.endsWith(BinaryEventsFormat.FILE_EXTENSION)) {
+			EventsReaderBinary reader = new EventsReaderBinary(this.events);
+			reader.setEventTypes(getEventTypes());
+			reader.readFile(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -68,18 +174,88 @@ public class MatsimEventsReader implements MatsimReader {
 		}
 	}
 
+	/**
+	 * Parses only the events with <code>fromTime &lt;= time &lt; toTime</code> from the specified events file.  For
+	 * xml events files with an {@link EventsFileIndex}, reading starts at the block that contains <code>fromTime</code>;
+	 * without an index, the events before the window are parsed, but not created.  Binary events files are skipped
+	 * block by block.  In all cases, reading stops after the window.
+	 */
+	public void readTimeWindow(final String filename, final double fromTime, final double toTime) {
+		String lcFilename = filename.toLowerCase(Locale.ROOT);
+		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
+			String indexFilename = EventsFileIndex.getIndexFilename(filename);
+			long offset = 0;
+			if (new File(indexFilename).exists()) {
+				offset = EventsFileIndex.findOffset(indexFilename, fromTime);
+			} else {
+				log.info("no index found for " + filename + ", reading it from the start.");
+			}
+			XmlEventsReader reader = new XmlEventsReader(this.events, getEventTypes());
+			reader.setTimeWindow(fromTime, toTime);
+			try (InputStream stream = openXmlAt(filename, lcFilename.endsWith(".gz"), offset)) {
+				reader.parse(stream);
+			} catch (EndOfTimeWindowException e) {
+				// all events of the window are read
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else if (lcFilename.endsWith(BinaryEventsFormat.FILE_EXTENSION)) {
+			EventsReaderBinary reader = new EventsReaderBinary(this.events);
+			reader.setEventTypes(getEventTypes());
+			reader.setTimeWindow(fromTime, toTime);
+			reader.readFile(filename);
+		} else {
+			throw new IllegalArgumentException("Cannot read a time window of the events-file " + filename);
+		}
+	}
+
+	/**
+	 * @return the xml events, starting with the block at <code>offset</code>, behind the start of the xml document
+	 */
+	private static InputStream openXmlAt(final String filename, final boolean compressed, final long offset) throws IOException {
+		FileInputStream file = new FileInputStream(filename);
+		file.getChannel().position(offset);
+		InputStream in = new BufferedInputStream(file, 64 * 1024);
+		if (compressed) {
+			in = new GZIPInputStream(in, 64 * 1024);
+		}
+		if (offset > 0) {
+			byte[] start = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n".getBytes(StandardCharsets.UTF_8);
+			in = new SequenceInputStream(new ByteArrayInputStream(start), in);
+		}
+		return in;
+	}
+
+	/**
+	 * Parses events from the stream, which may contain xml or binary events.
+	 */
 	public void readStream(final InputStream stream) {
-		new XmlEventsReader(this.events).parse(stream);
+		InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream);
+		boolean binary;
+		try {
+			binary = BinaryEventsFormat.isBinaryEventsStream(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (binary) {
+			EventsReaderBinary reader = new EventsReaderBinary(this.events);
+			reader.setEventTypes(getEventTypes());
+			reader.readStream(in);
+		} else {
+			new XmlEventsReader(this.events, getEventTypes()).parse(in);
+		}
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
 
 		final EventsManager events;
+		private final Set<String> eventTypes;
 		private final static String EVENTS_V1 = "events_v1.dtd";
 		private MatsimXmlParser delegate = null;
 
-		public XmlEventsReader(final EventsManager events) {
+		public XmlEventsReader(final EventsManager events, final Set<String> eventTypes) {
 			this.events = events;
+			this.eventTypes = eventTypes;
 			this.setValidating(false); // events-files have no DTD, thus they cannot validate
 			setDoctype("events_v1.dtd"); // manually set a doctype, otherwise delegate would not be initialized
 		}
@@ -99,12 +275,18 @@ public class MatsimEventsReader implements MatsimReader {
 			this.delegate.endTag(name, content, context);
 		}
 
+		void setTimeWindow(final double fromTime, final double toTime) {
+			((EventsReaderXMLv1) this.delegate).setTimeWindow(fromTime, toTime);
+		}
+
 		@Override
 		protected void setDoctype(final String doctype) {
 			super.setDoctype(doctype);
 			// Currently the only events-type is v1
 			if (EVENTS_V1.equals(doctype)) {
-				this.delegate = new EventsReaderXMLv1(this.events);
+				EventsReaderXMLv1 reader = new EventsReaderXMLv1(this.events);
+				reader.setEventTypes(this.eventTypes);
+				this.delegate = reader;
 				log.info("using events_v1-reader.");
 			} else {
 				throw new IllegalArgumentException("Doctype \"" + doctype + "\" not known.");
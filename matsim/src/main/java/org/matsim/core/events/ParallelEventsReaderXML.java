@@ -0,0 +1,384 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsReaderXML.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads xml events files (version 1) with several threads.  One thread decompresses the file and splits it into chunks at
+ * line breaks between tags; the chunks are parsed into events by the other threads; the calling thread passes the events
+ * to the {@link EventsManager}, in the order of the file.  At most {@link #MAX_CHUNKS_PER_THREAD} chunks per parsing
+ * thread are in memory at the same time, so the reading threads wait if the event handlers are slower than them.
+ * <p></p>
+ * The events are the same as the ones created by {@link EventsReaderXMLv1}, but the file is not parsed by a validating xml
+ * parser: only the <code>event</code> tags are read, and everything else (also comments) is ignored.  Custom event
+ * mappers are called by the parsing threads.
+ */
+public class ParallelEventsReaderXML implements MatsimReader {
+
+	private final static Logger log = Logger.getLogger(ParallelEventsReaderXML.class);
+
+	private static final int CHUNK_SIZE = 1024 * 1024;
+	private static final int MAX_CHUNKS_PER_THREAD = 2;
+	private static final byte[] EVENT_TAG = ("<" + EventsReaderXMLv1.EVENT).getBytes(StandardCharsets.US_ASCII);
+
+	private final EventsManager events;
+	private final int numberOfThreads;
+	private final EventsReaderXMLv1 eventCreator;
+
+	/**
+	 * @param numberOfThreads the number of threads that parse events, in addition to the thread that reads the file
+	 */
+	public ParallelEventsReaderXML(final EventsManager events, final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, but is " + numberOfThreads);
+		}
+		this.events = events;
+		this.numberOfThreads = numberOfThreads;
+		this.eventCreator = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.eventCreator.addCustomEventMapper(eventType, cem);
+	}
+
+	/**
+	 * @see EventsReaderXMLv1#setEventTypes(Set)
+	 */
+	public void setEventTypes(final Set<String> eventTypes) {
+		this.eventCreator.setEventTypes(eventTypes);
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		log.info("reading events with " + this.numberOfThreads + " parsing threads from " + filename);
+		try (InputStream stream = IOUtils.getInputStream(filename)) {
+			readStream(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void readStream(final InputStream stream) {
+		ExecutorService parsers = Executors.newFixedThreadPool(this.numberOfThreads, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "EventsParser-" + this.count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// the reorder buffer: the parsed chunks, in the order of the file
+		BlockingQueue<Future<List<Event>>> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS_PER_THREAD * this.numberOfThreads);
+		ChunkReader chunkReader = new ChunkReader(stream, parsers, chunks);
+		Thread readerThread = new Thread(chunkReader, "EventsChunkReader");
+		readerThread.setDaemon(true);
+		readerThread.start();
+		try {
+			while (true) {
+				List<Event> chunk = chunks.take().get();
+				if (chunk == null) {
+					break;
+				}
+				for (Event event : chunk) {
+					this.events.processEvent(event);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			chunkReader.stop();
+			readerThread.interrupt();
+			parsers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Splits the stream into chunks, and hands them to the parsers.  Puts a chunk of <code>null</code> at the end, and
+	 * passes exceptions on as failed chunks.
+	 */
+	private class ChunkReader implements Runnable {
+
+		private final InputStream stream;
+		private final ExecutorService parsers;
+		private final BlockingQueue<Future<List<Event>>> chunks;
+		private volatile boolean stopped = false;
+
+		ChunkReader(InputStream stream, ExecutorService parsers, BlockingQueue<Future<List<Event>>> chunks) {
+			this.stream = stream;
+			this.parsers = parsers;
+			this.chunks = chunks;
+		}
+
+		void stop() {
+			this.stopped = true;
+		}
+
+		@Override
+		public void run() {
+			try {
+				byte[] buffer = new byte[CHUNK_SIZE];
+				int length = 0;
+				boolean endOfStream = false;
+				while (!endOfStream && !this.stopped) {
+					while (length < buffer.length) {
+						int n = this.stream.read(buffer, length, buffer.length - length);
+						if (n < 0) {
+							endOfStream = true;
+							break;
+						}
+						length += n;
+					}
+					int chunkLength = endOfStream ? length : findChunkEnd(buffer, length);
+					if (chunkLength < 0) {
+						// a single, very long line
+						buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+						continue;
+					}
+					byte[] next = new byte[Math.max(CHUNK_SIZE, length - chunkLength)];
+					System.arraycopy(buffer, chunkLength, next, 0, length - chunkLength);
+					final byte[] chunk = buffer;
+					final int finalChunkLength = chunkLength;
+					this.chunks.put(this.parsers.submit(new Callable<List<Event>>() {
+						@Override
+						public List<Event> call() {
+							return parseChunk(chunk, finalChunkLength);
+						}
+					}));
+					buffer = next;
+					length -= chunkLength;
+				}
+				this.chunks.put(completedChunk(null));
+			} catch (InterruptedException e) {
+				// reading was stopped
+			} catch (IOException | RuntimeException e) {
+				final Exception exception = e;
+				FutureTask<List<Event>> failed = new FutureTask<>(new Callable<List<Event>>() {
+					@Override
+					public List<Event> call() throws Exception {
+						throw exception;
+					}
+				});
+				failed.run();
+				try {
+					this.chunks.put(failed);
+				} catch (InterruptedException e1) {
+					// reading was stopped
+				}
+			}
+		}
+
+	}
+
+	private static FutureTask<List<Event>> completedChunk(List<Event> chunk) {
+		FutureTask<List<Event>> future = new FutureTask<>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, chunk);
+		future.run();
+		return future;
+	}
+
+	/**
+	 * @return the length of the longest prefix that ends with a line break after a tag, or -1 if there is none
+	 */
+	private static int findChunkEnd(byte[] buffer, int length) {
+		for (int i = length - 1; i > 0; i--) {
+			if (buffer[i] == '\n') {
+				int j = i - 1;
+				while (j >= 0 && (buffer[j] == '\r' || buffer[j] == ' ' || buffer[j] == '\t')) {
+					j--;
+				}
+				if (j >= 0 && buffer[j] == '>') {
+					return i + 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Parses all <code>event</code> tags in the chunk.
+	 */
+	private List<Event> parseChunk(byte[] chunk, int length) {
+		List<Event> parsed = new ArrayList<>(length / 100);
+		AttributesImpl atts = new AttributesImpl();
+		int pos = 0;
+		while ((pos = indexOf(EVENT_TAG, chunk, pos, length)) >= 0) {
+			pos += EVENT_TAG.length;
+			if (pos >= length || !isWhitespace(chunk[pos])) {
+				continue;
+			}
+			atts.clear();
+			// the remaining attributes of events that are not read are only scanned, to find the end of the tag
+			boolean skipped = false;
+			while (true) {
+				pos = skipWhitespace(chunk, pos, length);
+				if (pos >= length) {
+					throw new RuntimeException("unexpected end of event tag.");
+				}
+				if (chunk[pos] == '/' || chunk[pos] == '>') {
+					break;
+				}
+				int nameStart = pos;
+				while (pos < length && chunk[pos] != '=' && !isWhitespace(chunk[pos])) {
+					pos++;
+				}
+				int nameEnd = pos;
+				pos = skipWhitespace(chunk, pos, length);
+				if (pos >= length || chunk[pos] != '=') {
+					throw new RuntimeException("missing value of attribute " + new String(chunk, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8) + " of an event.");
+				}
+				pos = skipWhitespace(chunk, pos + 1, length);
+				if (pos >= length || (chunk[pos] != '"' && chunk[pos] != '\'')) {
+					throw new RuntimeException("missing quotes around the value of attribute " + new String(chunk, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8) + " of an event.");
+				}
+				byte quote = chunk[pos];
+				int valueStart = pos + 1;
+				pos = valueStart;
+				boolean hasEntities = false;
+				while (pos < length && chunk[pos] != quote) {
+					hasEntities |= chunk[pos] == '&';
+					pos++;
+				}
+				if (pos >= length) {
+					throw new RuntimeException("unexpected end of attribute " + new String(chunk, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8) + " of an event.");
+				}
+				if (!skipped) {
+					String name = new String(chunk, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+					String value = new String(chunk, valueStart, pos - valueStart, StandardCharsets.UTF_8);
+					if (hasEntities) {
+						value = decodeEntities(value);
+					}
+					atts.addAttribute("", name, name, "CDATA", value);
+					skipped = name.equals("type") && !this.eventCreator.isRead(value);
+				}
+				pos++;
+			}
+			if (!skipped) {
+				parsed.add(this.eventCreator.createEvent(atts));
+			}
+		}
+		return parsed;
+	}
+
+	private static int indexOf(byte[] pattern, byte[] data, int from, int length) {
+		outer:
+		for (int i = from; i <= length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (data[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	private static int skipWhitespace(byte[] data, int pos, int length) {
+		while (pos < length && isWhitespace(data[pos])) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Replaces the predefined xml entities and character references, as a sax parser does.
+	 */
+	private static String decodeEntities(String value) {
+		StringBuilder decoded = new StringBuilder(value.length());
+		int pos = 0;
+		while (pos < value.length()) {
+			char ch = value.charAt(pos);
+			int end = ch == '&' ? value.indexOf(';', pos) : -1;
+			if (end < 0) {
+				decoded.append(ch);
+				pos++;
+				continue;
+			}
+			String entity = value.substring(pos + 1, end);
+			switch (entity) {
+			case "lt":
+				decoded.append('<');
+				break;
+			case "gt":
+				decoded.append('>');
+				break;
+			case "amp":
+				decoded.append('&');
+				break;
+			case "quot":
+				decoded.append('"');
+				break;
+			case "apos":
+				decoded.append('\'');
+				break;
+			default:
+				if (entity.startsWith("#x")) {
+					decoded.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+				} else if (entity.startsWith("#")) {
+					decoded.appendCodePoint(Integer.parseInt(entity.substring(1)));
+				} else {
+					throw new RuntimeException("unknown entity &" + entity + "; in events file.");
+				}
+			}
+			pos = end + 1;
+		}
+		return decoded.toString();
+	}
+
+}
@@ -0,0 +1,250 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ShardedEventsManagerImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.ShardableEventHandler;
+
+/**
+ * Runs each {@link ShardableEventHandler} as several shards on separate threads, so that also the work of a single,
+ * expensive handler is parallelized.  All other handlers are passed on to the wrapped events manager.
+ * <p></p>
+ * Between {@link #initProcessing()} and {@link #finishProcessing()}, the events are passed to the shards, where all
+ * events with the same key (see {@link ShardableEventHandler#getShardKey(Event)}) go to the same shard, in the order
+ * in which they occurred.  The results of the shards are merged into the original handler in
+ * {@link #finishProcessing()}, so they are not available before.  Outside of these two calls, the original handler
+ * gets the events directly.
+ */
+public final class ShardedEventsManagerImpl implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(ShardedEventsManagerImpl.class);
+
+	private static final int PRE_INPUT_BUFFER_LENGTH = 10000;
+
+	private final EventsManager delegate;
+	private final int numberOfShards;
+	private final List<ShardedHandler<?>> shardedHandlers = new ArrayList<>();
+	private boolean parallelMode = false;
+	private final AtomicBoolean hadException = new AtomicBoolean(false);
+
+	/**
+	 * @param delegate the events manager for all handlers that are not {@link ShardableEventHandler}s
+	 * @param numberOfShards the number of shards, i.e. of threads, per {@link ShardableEventHandler}
+	 */
+	public ShardedEventsManagerImpl(final EventsManager delegate, final int numberOfShards) {
+		this.delegate = delegate;
+		this.numberOfShards = numberOfShards;
+	}
+
+	/**
+	 * Synchronized, as the shards rely on getting the events in the order in which they occurred.  Producers on
+	 * several threads still need to agree on that order among themselves, e.g. by processing the events of a time step
+	 * one after the other.
+	 */
+	@Override
+	public synchronized void processEvent(final Event event) {
+		this.delegate.processEvent(event);
+		for (ShardedHandler<?> shardedHandler : this.shardedHandlers) {
+			if (this.parallelMode) {
+				shardedHandler.processEvent(event);
+			} else {
+				shardedHandler.events.processEvent(event);
+			}
+		}
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		if (handler instanceof ShardableEventHandler) {
+			log.info("adding Event-Handler " + handler.getClass().getName() + " with " + this.numberOfShards + " shards");
+			this.shardedHandlers.add(createShardedHandler((ShardableEventHandler<?>) handler));
+		} else {
+			this.delegate.addHandler(handler);
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static ShardedHandler<?> createShardedHandler(final ShardableEventHandler<?> handler) {
+		return new ShardedHandler((ShardableEventHandler) handler);
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		this.delegate.removeHandler(handler);
+		for (Iterator<ShardedHandler<?>> iterator = this.shardedHandlers.iterator(); iterator.hasNext(); ) {
+			if (iterator.next().handler == handler) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	public void resetHandlers(final int iteration) {
+		this.delegate.resetHandlers(iteration);
+		for (ShardedHandler<?> shardedHandler : this.shardedHandlers) {
+			shardedHandler.events.resetHandlers(iteration);
+		}
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+		this.hadException.set(false);
+		UncaughtExceptionHandler exceptionHandler = new UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				log.error("Thread " + t.getName() + " died with exception while handling events.", e);
+				ShardedEventsManagerImpl.this.hadException.set(true);
+			}
+		};
+		for (ShardedHandler<?> shardedHandler : this.shardedHandlers) {
+			shardedHandler.start(this.numberOfShards, exceptionHandler);
+		}
+		this.parallelMode = true;
+	}
+
+	@Override
+	public void afterSimStep(final double time) {
+		this.delegate.afterSimStep(time);
+	}
+
+	@Override
+	public void finishProcessing() {
+		if (this.parallelMode) {
+			for (ShardedHandler<?> shardedHandler : this.shardedHandlers) {
+				shardedHandler.finish();
+			}
+			if (!this.hadException.get()) {
+				for (ShardedHandler<?> shardedHandler : this.shardedHandlers) {
+					shardedHandler.merge();
+				}
+			}
+			this.parallelMode = false;
+		}
+		this.delegate.finishProcessing();
+
+		if (this.hadException.get()) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.");
+		}
+	}
+
+	/**
+	 * A {@link ShardableEventHandler} and, while events are processed in parallel, its shards.
+	 */
+	private static class ShardedHandler<T extends ShardableEventHandler<T>> {
+
+		private final T handler;
+		/** passes the events to the handler itself, when they are not processed in parallel */
+		private final SingleHandlerEventsManager events;
+		/** whether the handler has a handleEvent method for an event class, so other events are not passed to the shards */
+		private final Map<Class<?>, Boolean> handledEventClasses = new ConcurrentHashMap<>();
+		private final List<T> shards = new ArrayList<>();
+		private ProcessEventThread[] processEventThreads;
+		private Thread[] threads;
+
+		ShardedHandler(final T handler) {
+			this.handler = handler;
+			this.events = new SingleHandlerEventsManager(handler);
+		}
+
+		void start(final int numberOfShards, final UncaughtExceptionHandler exceptionHandler) {
+			this.shards.clear();
+			this.processEventThreads = new ProcessEventThread[numberOfShards];
+			this.threads = new Thread[numberOfShards];
+			for (int i = 0; i < numberOfShards; i++) {
+				T shard = this.handler.createShard();
+				this.shards.add(shard);
+				this.processEventThreads[i] = new ProcessEventThread(new SingleHandlerEventsManager(shard), PRE_INPUT_BUFFER_LENGTH);
+				this.threads[i] = new Thread(this.processEventThreads[i], "ShardedEvents-" + this.handler.getClass().getSimpleName() + "-" + i);
+				this.threads[i].setDaemon(true);
+				this.threads[i].setUncaughtExceptionHandler(exceptionHandler);
+				this.threads[i].start();
+			}
+		}
+
+		void processEvent(final Event event) {
+			if (!isHandled(event.getClass())) {
+				return;
+			}
+			Id<?> key = this.handler.getShardKey(event);
+			if (key == null) {
+				for (ProcessEventThread processEventThread : this.processEventThreads) {
+					processEventThread.processEvent(event);
+				}
+			} else {
+				int hash = key.hashCode();
+				hash ^= (hash >>> 16);
+				this.processEventThreads[(hash & Integer.MAX_VALUE) % this.processEventThreads.length].processEvent(event);
+			}
+		}
+
+		private boolean isHandled(final Class<?> eventClass) {
+			Boolean handled = this.handledEventClasses.get(eventClass);
+			if (handled == null) {
+				handled = false;
+				for (Method method : this.handler.getClass().getMethods()) {
+					if (method.getName().equals("handleEvent") && method.getParameterTypes().length == 1
+							&& method.getParameterTypes()[0].isAssignableFrom(eventClass)) {
+						handled = true;
+						break;
+					}
+				}
+				this.handledEventClasses.put(eventClass, handled);
+			}
+			return handled;
+		}
+
+		void finish() {
+			for (ProcessEventThread processEventThread : this.processEventThreads) {
+				processEventThread.close();
+			}
+			try {
+				for (Thread thread : this.threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		void merge() {
+			for (T shard : this.shards) {
+				this.handler.mergeShard(shard);
+			}
+			this.shards.clear();
+		}
+
+	}
+
+}
@@ -28,41 +28,63 @@ import org.matsim.core.events.handler.EventHandler;
 import org.matsim.core.gbl.Gbl;
 
 import javax.inject.Inject;
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * An EventsHandler that handles all occurring Events in separate Threads.
  * When a Time Step of the QSim ends, all Events that have been created
  * in that Time Step are processed before the simulation can go on.
  * This is necessary e.g. when using Within-day Replanning.
+ * <p></p>
+ * The events are passed to the threads through a preallocated ring buffer:
+ * each event is written once into a slot, and each thread reads all slots in
+ * order and passes the events to its share of the event handlers.  A slot is
+ * only reused after all threads have read it, so adding events waits if the
+ * threads fall behind by more than the size of the buffer.  Events may be
+ * added by several threads at once, also by the event handlers themselves.
+ * An event handler must not wait for its own thread, so events it adds while
+ * the buffer is full are kept in a queue of its thread and added as soon as
+ * there is room, at the latest before the time step ends.
  * 
  * @author cdobler
  */
 class SimStepParallelEventsManagerImpl implements EventsManager {
 
 	private final static Logger log = Logger.getLogger(SimStepParallelEventsManagerImpl.class);
-	
+
+	/*package*/ static final int DEFAULT_RING_SIZE = 64 * 1024;
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long PARK_NANOS = 100 * 1000;
+
 	private final int numOfThreads;
-	private CyclicBarrier simStepEndBarrier;
-	private CyclicBarrier iterationEndBarrier;
-    private ProcessEventsRunnable[] runnables;
+	private EventsProcessor[] processors;
 	private EventsManagerImpl[] eventsManagers;
 	private EventsManagerImpl delegate;
-	private ProcessedEventsChecker processedEventsChecker;
-	
+
+	// the ring buffer:
+	private final Event[] slots;
+	private final int indexMask;
+	private final int indexShift;
+	/** the round in which each slot was last written, so readers know whether the slot contains the next event */
+	private final AtomicIntegerArray publishedRounds;
+	/** the sequence number of the last event for which a slot was claimed */
+	private final AtomicLong cursor = new AtomicLong(-1);
+	/** the last known sequence number that all threads have processed, a lower bound */
+	private final AtomicLong processedByAll = new AtomicLong(-1);
+	/** the number of events that event handlers added while the buffer was full, and that are not in the buffer yet */
+	private final AtomicInteger overflowCount = new AtomicInteger(0);
+	private volatile boolean running = false;
+
 	private boolean parallelMode = false;
 	private int handlerCount = 0;
 	
-	private AtomicLong counter;
 	private AtomicReference<Throwable> hadException = new AtomicReference<>();
 
 	@Inject
@@ -75,16 +97,23 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	}
 	
 	public SimStepParallelEventsManagerImpl(int numOfThreads) {
+		this(numOfThreads, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * @param ringSize the number of events that may wait for processing, rounded up to a power of two
+	 */
+	/*package*/ SimStepParallelEventsManagerImpl(int numOfThreads, int ringSize) {
 		this.numOfThreads = numOfThreads;
+		int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+		this.slots = new Event[size];
+		this.indexMask = size - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(size);
+		this.publishedRounds = new AtomicIntegerArray(size);
 		init();
 	}
 	
 	private void init() {
-		this.counter = new AtomicLong(0);
-		
-		this.simStepEndBarrier = new CyclicBarrier(this.numOfThreads + 1);
-		this.iterationEndBarrier = new CyclicBarrier(this.numOfThreads + 1);
-		
 		this.delegate = new EventsManagerImpl();
 
 		this.eventsManagers = new EventsManagerImpl[this.numOfThreads];
@@ -93,10 +122,8 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 
 	@Override
 	public void processEvent(final Event event) {
-		this.counter.incrementAndGet();
-		
 		if (parallelMode) {
-			runnables[0].processEvent(event);
+			publish(event);
 		} else delegate.processEvent(event);
 	}
 
@@ -118,7 +145,6 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	@Override
 	public void resetHandlers(int iteration) {
 		delegate.resetHandlers(iteration);
-		counter.set(0);
 	}
 
 	@Override
@@ -126,43 +152,27 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		delegate.initProcessing();
 		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
 
-		Queue<Event>[] eventsQueuesArray = new Queue[this.numOfThreads];
-		List<Queue<Event>> eventsQueues = new ArrayList<Queue<Event>>();
-		for (int i = 0; i < numOfThreads; i++) {
-			Queue<Event> eventsQueue = new LinkedBlockingQueue<>();
-			eventsQueues.add(eventsQueue);
-			eventsQueuesArray[i] = eventsQueue;
-		}
-				
-		/*
-		 * Add a null entry to the list which will be set as nextEventsQueue in the last ProcessEventsThread. 
-		 */
-		eventsQueues.add(null);
-		
-		/*
-		 * Create a ProcessedEventsChecker that checks whether all Events of
-		 * a time step have been processed.
-		 */
-		processedEventsChecker = new ProcessedEventsChecker(this, eventsQueuesArray);
-		
 		/*
-		 *  Create a Barrier that the threads use to synchronize.
+		 * Start with an empty ring buffer.
 		 */
-        CyclicBarrier waitForEmptyQueuesBarrier = new CyclicBarrier(this.numOfThreads, processedEventsChecker);
+		this.cursor.set(-1);
+		this.processedByAll.set(-1);
+		this.overflowCount.set(0);
+		for (int i = 0; i < this.slots.length; i++) {
+			this.publishedRounds.set(i, -1);
+		}
 		
 		hadException = new AtomicReference<>();
-        ExceptionHandler uncaughtExceptionHandler = new ExceptionHandler(hadException, waitForEmptyQueuesBarrier,
-                simStepEndBarrier, iterationEndBarrier);
+		this.running = true;
 		
-		runnables = new ProcessEventsRunnable[numOfThreads];
+		processors = new EventsProcessor[numOfThreads];
 		for (int i = 0; i < numOfThreads; i++) {
-			ProcessEventsRunnable processEventsRunnable = new ProcessEventsRunnable(eventsManagers[i], processedEventsChecker,
-                    waitForEmptyQueuesBarrier, simStepEndBarrier, iterationEndBarrier, eventsQueues.get(i), eventsQueues.get(i + 1));
-			runnables[i] = processEventsRunnable;
-			Thread thread = new Thread(processEventsRunnable);
+			EventsProcessor processor = new EventsProcessor(eventsManagers[i]);
+			processors[i] = processor;
+			Thread thread = new Thread(processor);
+			processor.thread = thread;
 			thread.setDaemon(true);
-			thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
-			thread.setName(ProcessEventsRunnable.class.toString() + i);
+			thread.setName(EventsProcessor.class.toString() + i);
 			thread.start();
 		}		
 		
@@ -181,22 +191,32 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	 */
 	@Override
 	public synchronized void finishProcessing() {
+		if (!this.parallelMode) {
+			delegate.finishProcessing();
+			for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
+			return;
+		}
 		
 		/*
 		 * If an exception occurred, at least one of the events processing threads
-		 * has crashed. As a result, also all other events processing threads have
-		 * been stopped.
-		 * If not, it is waited until all threads have ended processing events.
+		 * has crashed. The other threads are stopped without processing the
+		 * remaining events.
+		 * If not, it is waited until all threads have processed all events.
 		 */
+		awaitProcessedEvents();
 		Throwable throwable = this.hadException.get();
-		if (throwable == null) {
+		this.running = false;
+		for (EventsProcessor processor : this.processors) {
+			LockSupport.unpark(processor.thread);
+		}
+		for (EventsProcessor processor : this.processors) {
 			try {
-				this.processEvent(new LastEventOfIteration(Double.POSITIVE_INFINITY));
-				iterationEndBarrier.await();
-			} catch (InterruptedException | BrokenBarrierException e) {
-				this.hadException.set(e);
+				processor.thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
 			}
-        }
+		}
+		Arrays.fill(this.slots, null);
 		
 		delegate.finishProcessing();
 		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
@@ -217,216 +237,199 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		
 		/*
 		 * If an exception occurred, at least one of the events processing threads
-		 * has crashed. Therefore the remaining threads would get stuck at the
-		 * CyclicBarrier.
+		 * has crashed, so its events would never be processed.
 		 */
-		if (hadException.get() != null) {
+		if (!parallelMode || hadException.get() != null) {
 			return;
 		}
 		
-		try {
-			Gbl.assertNotNull( this.processedEventsChecker );
-			this.processedEventsChecker.setTime(time);
-			this.processEvent(new LastEventOfSimStep(time));
-			simStepEndBarrier.await();
-		} catch (InterruptedException | BrokenBarrierException e) {
-			throw new RuntimeException(e);
+		awaitProcessedEvents();
+	}
+
+	private void publish(final Event event) {
+		EventsProcessor processor = getCurrentProcessor();
+		if (processor != null) {
+			if (!processor.overflow.isEmpty() || !tryPublish(event)) {
+				// keep the order of the events of this thread
+				processor.overflow.add(event);
+				this.overflowCount.incrementAndGet();
+			}
+			return;
 		}
-    }
-	
-	private static class ProcessEventsRunnable implements Runnable {
+		long sequence = this.cursor.incrementAndGet();
+		long wrapPoint = sequence - this.slots.length;
+		if (wrapPoint > this.processedByAll.get()) {
+			/*
+			 * The slot still contains an event that not all threads have processed.
+			 */
+			int idleCount = 0;
+			long processed;
+			while (wrapPoint > (processed = getProcessedByAll())) {
+				if (hadException.get() != null) {
+					/*
+					 * The event would never be processed by the crashed thread.  The
+					 * exception is reported by finishProcessing().
+					 */
+					return;
+				}
+				backOff(idleCount++);
+			}
+			this.processedByAll.set(processed);
+		}
+		write(sequence, event);
+	}
+
+	/**
+	 * Adds the event only if there is a free slot, so it never waits.
+	 *
+	 * @return whether the event was added
+	 */
+	private boolean tryPublish(final Event event) {
+		while (true) {
+			long current = this.cursor.get();
+			long wrapPoint = current + 1 - this.slots.length;
+			if (wrapPoint > this.processedByAll.get()) {
+				long processed = getProcessedByAll();
+				if (wrapPoint > processed) {
+					return false;
+				}
+				this.processedByAll.set(processed);
+			}
+			if (this.cursor.compareAndSet(current, current + 1)) {
+				write(current + 1, event);
+				return true;
+			}
+		}
+	}
+
+	private void write(final long sequence, final Event event) {
+		int index = (int) sequence & this.indexMask;
+		this.slots[index] = event;
+		this.publishedRounds.lazySet(index, (int) (sequence >>> this.indexShift));
+	}
+
+	private long getProcessedByAll() {
+		long minimum = Long.MAX_VALUE;
+		for (EventsProcessor processor : this.processors) {
+			minimum = Math.min(minimum, processor.sequence.get());
+		}
+		return minimum;
+	}
+
+	private EventsProcessor getCurrentProcessor() {
+		for (EventsProcessor processor : this.processors) {
+			if (processor.thread == Thread.currentThread()) {
+				return processor;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Waits until all threads have processed all events, including the ones that event handlers created while this
+	 * method was waiting.  Must not be called while other threads create events, except the events processing threads.
+	 */
+	private void awaitProcessedEvents() {
+		for (EventsProcessor processor : this.processors) {
+			LockSupport.unpark(processor.thread);
+		}
+		int idleCount = 0;
+		while (hadException.get() == null) {
+			/*
+			 * An event handler creates events while it handles an event, i.e. before
+			 * its thread counts that event as processed.  So if all threads have
+			 * processed all events up to the cursor, no events wait in the queues
+			 * of the threads, and the cursor did not move meanwhile, no thread can
+			 * create more events.
+			 */
+			long claimed = this.cursor.get();
+			if (getProcessedByAll() >= claimed && this.overflowCount.get() == 0 && this.cursor.get() == claimed) {
+				return;
+			}
+			backOff(idleCount++);
+		}
+	}
+
+	/**
+	 * Spins, then yields, then sleeps for a short time, so waiting is cheap when events come quickly, but does not burn a
+	 * processor when no events come.
+	 */
+	private static void backOff(int idleCount) {
+		if (idleCount < SPIN_TRIES) {
+			// spin
+		} else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Reads all events from the ring buffer and passes them to one events manager.
+	 */
+	private class EventsProcessor implements Runnable {
 		
 		private final EventsManager eventsManager;
-		private final ProcessedEventsChecker processedEventsChecker;
-		private final CyclicBarrier waitForEmptyQueuesBarrier;
-		private final CyclicBarrier simStepEndBarrier;
-		private final CyclicBarrier iterationEndBarrier;
-		private final Queue<Event> eventsQueue;
-		private final Queue<Event> nextEventsQueue;
+		/** the sequence number of the last processed event */
+		private final AtomicLong sequence = new AtomicLong(-1);
+		/** the events the event handlers of this thread added while the buffer was full */
+		private final ArrayDeque<Event> overflow = new ArrayDeque<>();
+		private volatile Thread thread;
 		private double lastEventTime = 0.0;
 
-		public ProcessEventsRunnable(EventsManager eventsManager, ProcessedEventsChecker processedEventsChecker, 
-				CyclicBarrier waitForEmptyQueuesBarrier,CyclicBarrier simStepEndBarrier,
-				CyclicBarrier iterationEndBarrier, Queue<Event> eventsQueue, Queue<Event> nextEventsQueue) {
+		public EventsProcessor(EventsManager eventsManager) {
 			this.eventsManager = eventsManager;
-			this.processedEventsChecker = processedEventsChecker;
-			this.waitForEmptyQueuesBarrier = waitForEmptyQueuesBarrier;
-			this.simStepEndBarrier = simStepEndBarrier;
-			this.iterationEndBarrier = iterationEndBarrier;
-			this.eventsQueue = eventsQueue;
-			this.nextEventsQueue = nextEventsQueue;
 		}
 
 		@Override
 		public void run() {
 			try {
-				/*
-				 * If the Simulation has ended we may still have some
-				 * Events left to process. So we continue until the
-				 * eventsQueue is empty.
-				 * 
-				 * The loop is ended by a break command when a LastEventOfIteration
-				 * event is found.
-				 */
-				lastEventTime = 0.0;
+				long next = this.sequence.get() + 1;
+				int idleCount = 0;
 				while (true) {
-					Event event = ((LinkedBlockingQueue<Event>) eventsQueue).take();
-					
-					/*
-					 * Check whether the events are ordered chronologically.
-					 */
-					if (event.getTime() < this.lastEventTime) {
-						throw new RuntimeException("Events in the queue are not ordered chronologically. " +
-								"This should never happen. Is the SimTimeStepParallelEventsManager registered " +
-								"as a MobsimAfterSimStepListener?");
-					} else this.lastEventTime = event.getTime();
-					
-					if (event instanceof LastEventOfSimStep) {
-						/*
-						 * Send the event to the next events processing thread, if this is not the last thread.
-						 */
-						if (nextEventsQueue != null) {
-							nextEventsQueue.add(event);
-						}
+					int index = (int) next & indexMask;
+					if (publishedRounds.get(index) == (int) (next >>> indexShift)) {
+						Event event = slots[index];
 						
 						/*
-						 * At the moment, this thread's queue is empty. However, one of the other threads
-						 * could create additional events for this time step. Therefore we have to wait
-						 * until all threads reach this barrier. Afterwards we can check whether still
-						 * all queues are empty. If this is true, the threads reach the sim step end barrier.
-						 */
-						waitForEmptyQueuesBarrier.await();
-						if (!processedEventsChecker.allEventsProcessed()) continue;
-						
-						/*
-						 * All event queues are empty, therefore finish current time step by
-						 * reaching the sim step end barrier.
-						 */
-						simStepEndBarrier.await();
-						continue;
-					} 
-					else {
-						/*
-						 * Handing the event over to the next events processing thread.
-						 * 
-						 * This could be added to the next EventHandlers queue here or in 
-						 * the processEvent(...) method. Doing it here might be a bit faster
-						 * since it is not done in the main thread.
+						 * Check whether the events are ordered chronologically.
 						 */
-						if (nextEventsQueue != null) {
-							nextEventsQueue.add(event);
-						}
+						if (event.getTime() < this.lastEventTime) {
+							throw new RuntimeException("Events in the queue are not ordered chronologically. " +
+									"This should never happen. Is the SimTimeStepParallelEventsManager registered " +
+									"as a MobsimAfterSimStepListener?");
+						} else this.lastEventTime = event.getTime();
 						
+						eventsManager.processEvent(event);
+						this.sequence.lazySet(next);
+						next++;
+						idleCount = 0;
+						publishOverflow();
+					} else if (!running || hadException.get() != null) {
 						/*
-						 * If it is the last Event of the iteration, break the while loop
-						 * and end the parallel events processing.
-						 * TODO: Check whether still some events could be left in the queues...
+						 * finishProcessing() only stops the threads after all events have
+						 * been processed, or after one of the threads has crashed.
 						 */
-						if (event instanceof LastEventOfIteration) {
-							break;
-						}
+						break;
+					} else {
+						publishOverflow();
+						backOff(idleCount++);
 					}
-					eventsManager.processEvent(event);
 				}
-				iterationEndBarrier.await();
-			} catch (InterruptedException | BrokenBarrierException e) {
-				throw new RuntimeException(e);
+			} catch (RuntimeException | Error e) {
+				hadException.compareAndSet(null, e);
+				log.error("Thread " + Thread.currentThread().getName() + " died with exception while handling events.", e);
 			}
             Gbl.printCurrentThreadCpuTime();
 		}
 
-		public void processEvent(Event event) {
-			this.eventsQueue.add(event);
-		}
-		
-	}	// ProcessEventsRunnable
-	
-	private static class ProcessedEventsChecker implements Runnable {
-
-		private final EventsManager evenentsManger;
-		private final Queue<Event>[] eventQueues;
-		private boolean allEventsProcessed;
-		private double time;
-		
-		public ProcessedEventsChecker(EventsManager evenentsManger, Queue<Event>[] eventQueues) {
-			this.evenentsManger = evenentsManger;
-			this.eventQueues = eventQueues;
-			
-			this.allEventsProcessed = true;
-		}
-
-		public void setTime(double time) {
-			this.time = time;
-		}
-		
-		public boolean allEventsProcessed() {
-			return this.allEventsProcessed;
-		}
-		
-		@Override
-		public void run() {
-			for (Queue<Event> eventsQueue : eventQueues) {
-				/*
-				 * Some EventHandlers might have created additional Events [1] which 
-				 * could be located in the list AFTER the LastEventOfSimStep, meaning 
-				 * that they would be processed while the simulation is already processing
-				 * the next time step. Therefore we check whether the eventsQueues are really
-				 * empty.
-				 * If at least one of the queues is not empty, this time steps
-				 * events processing has to go on. This is triggered by setting
-				 * allEventsProcessed to false. Additionally a last event of sim
-				 * step event is created. When all events processing threads
-				 * process that event, it is again checked whether there are
-				 * more events left.
-				 * 
-				 * [1] ... Such a behavior is NOT part of MATSim's default EventHandlers but it
-				 * still might occur.
-				 */
-				if (eventsQueue.size() > 0) {
-					allEventsProcessed = false;
-					evenentsManger.processEvent(new LastEventOfSimStep(time));
-					return;
-				}
+		private void publishOverflow() {
+			while (!this.overflow.isEmpty() && tryPublish(this.overflow.peek())) {
+				this.overflow.poll();
+				overflowCount.decrementAndGet();
 			}
-			
-			// otherwise
-			allEventsProcessed = true;
 		}
 		
-	}	// ProcessedEventsChecker
-	
-	/**
-	 * @author mrieser
-	 */
-	private static class ExceptionHandler implements UncaughtExceptionHandler {
-
-		private final AtomicReference<Throwable> hadException;
-		private final CyclicBarrier simStepEndBarrier;
-		private final CyclicBarrier iterationEndBarrier;
-		private final CyclicBarrier waitForEmptyQueuesBarrier;
-
-		public ExceptionHandler(final AtomicReference<Throwable> hadException, CyclicBarrier waitForEmptyQueuesBarrier,
-				CyclicBarrier simStepEndBarrier, CyclicBarrier iterationEndBarrier) {
-			this.hadException = hadException;
-			this.waitForEmptyQueuesBarrier = waitForEmptyQueuesBarrier;
-			this.simStepEndBarrier = simStepEndBarrier;
-			this.iterationEndBarrier = iterationEndBarrier;
-		}
-
-		@Override
-		public void uncaughtException(Thread t, Throwable e) {
-			this.hadException.set(e);
-			log.error("Thread " + t.getName() + " died with exception while handling events.", e);
-
-			/*
-			 * By reseting the barriers, they will throw a BrokenBarrierException
-			 * which again will stop the events processing threads.
-			 */
-			this.simStepEndBarrier.reset();
-			this.iterationEndBarrier.reset();
-			this.waitForEmptyQueuesBarrier.reset();
-		}
-
-	}
+	}	// EventsProcessor
 
 }
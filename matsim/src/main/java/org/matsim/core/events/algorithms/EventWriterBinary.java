@@ -0,0 +1,291 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
+import org.matsim.core.events.BinaryEventsFormat;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events in the binary, columnar format described in {@link BinaryEventsFormat}.  Files written by this class are
+ * much smaller than xml events files, and are read much faster by {@link org.matsim.core.events.MatsimEventsReader}.
+ * <p></p>
+ * The events are collected in blocks of {@link BinaryEventsFormat#BLOCK_SIZE} and only written when a block is full, or
+ * when the file is closed.
+ */
+public class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	private final DataOutputStream out;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final ByteArrayOutputStream compressedDictionary = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> newStrings = new ArrayList<>();
+
+	// the current block:
+	private int eventCount = 0;
+	private double firstTime;
+	private double runTime;
+	private int runLength = 0;
+	private final Column times = new Column();
+	private final Column types = new Column();
+	private final Column attributeCounts = new Column();
+	private final Column names = new Column();
+	private final Column kinds = new Column();
+	private final Column dictionaryValues = new Column();
+	private final Column doubleValues = new Column();
+	private final Column[] columns = {this.times, this.types, this.attributeCounts, this.names, this.kinds,
+			this.dictionaryValues, this.doubleValues};
+	private int attributeCount;
+
+	public EventWriterBinary(final String outfilename) {
+		this.out = new DataOutputStream(IOUtils.getOutputStream(outfilename));
+		try {
+			this.out.write(BinaryEventsFormat.getHeader());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		try {
+			writeBlock();
+			this.out.writeInt(BinaryEventsFormat.END_OF_FILE);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.deflater.end();
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		double time = event.getTime();
+		if (this.eventCount == 0) {
+			this.firstTime = time;
+			this.runTime = time;
+		} else if (Double.compare(time, this.runTime) != 0) {
+			endTimeRun();
+			this.runTime = time;
+		}
+		this.runLength++;
+		this.types.writeVarInt(getDictionaryIndex(event.getEventType()));
+		this.attributeCount = 0;
+		event.writeAttributes(this.columnWriter);
+		this.attributeCounts.writeVarInt(this.attributeCount);
+		this.eventCount++;
+		if (this.eventCount == BinaryEventsFormat.BLOCK_SIZE) {
+			try {
+				writeBlock();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Appends the attributes to the columns of the current block.  Time and type are stored separately.
+	 */
+	private final EventAttributeSink columnWriter = new EventAttributeSink() {
+
+		@Override
+		public void addAttribute(String name, String value) {
+			if (value == null) {
+				addName(name, BinaryEventsFormat.KIND_NULL);
+			} else if (addName(name, BinaryEventsFormat.KIND_STRING)) {
+				EventWriterBinary.this.dictionaryValues.writeVarInt(getDictionaryIndex(value));
+			}
+		}
+
+		@Override
+		public void addAttribute(String name, Id<?> value) {
+			if (value == null) {
+				addName(name, BinaryEventsFormat.KIND_NULL);
+			} else if (addName(name, BinaryEventsFormat.KIND_ID)) {
+				EventWriterBinary.this.dictionaryValues.writeVarInt(getDictionaryIndex(value.toString()));
+			}
+		}
+
+		@Override
+		public void addAttribute(String name, double value) {
+			if (addName(name, BinaryEventsFormat.KIND_DOUBLE)) {
+				EventWriterBinary.this.doubleValues.writeDouble(value);
+			}
+		}
+
+		/**
+		 * @return whether the attribute was added, i.e. is not the time or the type
+		 */
+		private boolean addName(String name, byte kind) {
+			if (Event.ATTRIBUTE_TIME.equals(name) || Event.ATTRIBUTE_TYPE.equals(name)) {
+				return false;
+			}
+			EventWriterBinary.this.names.writeVarInt(getDictionaryIndex(name));
+			EventWriterBinary.this.kinds.writeByte(kind);
+			EventWriterBinary.this.attributeCount++;
+			return true;
+		}
+
+	};
+
+	private int getDictionaryIndex(String string) {
+		Integer index = this.dictionary.get(string);
+		if (index == null) {
+			index = this.dictionary.size();
+			this.dictionary.put(string, index);
+			this.newStrings.add(string);
+		}
+		return index;
+	}
+
+	private void endTimeRun() {
+		this.times.writeDouble(this.runTime);
+		this.times.writeVarInt(this.runLength);
+		this.runLength = 0;
+	}
+
+	private void writeBlock() throws IOException {
+		if (this.eventCount == 0) {
+			return;
+		}
+		endTimeRun();
+		int dictionaryLength = compressDictionary();
+		int dataLength = compressData();
+
+		this.out.writeInt(this.eventCount);
+		this.out.writeDouble(this.firstTime);
+		this.out.writeDouble(this.runTime);
+		this.out.writeInt(this.compressedDictionary.size());
+		this.out.writeInt(dictionaryLength);
+		this.out.writeInt(this.compressedData.size());
+		this.out.writeInt(dataLength);
+		this.compressedDictionary.writeTo(this.out);
+		this.compressedData.writeTo(this.out);
+
+		this.eventCount = 0;
+		for (Column column : this.columns) {
+			column.size = 0;
+		}
+	}
+
+	/**
+	 * @return the uncompressed length of the dictionary section
+	 */
+	private int compressDictionary() throws IOException {
+		ByteArrayOutputStream raw = new ByteArrayOutputStream();
+		DataOutputStream rawOut = new DataOutputStream(raw);
+		rawOut.writeInt(this.newStrings.size());
+		for (String string : this.newStrings) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			rawOut.writeInt(bytes.length);
+			rawOut.write(bytes);
+		}
+		this.newStrings.clear();
+		DeflaterOutputStream compressedOut = startCompression(this.compressedDictionary);
+		raw.writeTo(compressedOut);
+		compressedOut.finish();
+		return raw.size();
+	}
+
+	/**
+	 * @return the uncompressed length of the data section
+	 */
+	private int compressData() throws IOException {
+		DeflaterOutputStream deflaterOut = startCompression(this.compressedData);
+		DataOutputStream compressedOut = new DataOutputStream(deflaterOut);
+		for (Column column : this.columns) {
+			compressedOut.writeInt(column.size);
+		}
+		for (Column column : this.columns) {
+			compressedOut.write(column.bytes, 0, column.size);
+		}
+		deflaterOut.finish();
+		return compressedOut.size();
+	}
+
+	private DeflaterOutputStream startCompression(ByteArrayOutputStream target) {
+		target.reset();
+		this.deflater.reset();
+		return new DeflaterOutputStream(target, this.deflater, 64 * 1024);
+	}
+
+	/**
+	 * A growing byte array, cheaper than a {@link ByteArrayOutputStream} with a {@link DataOutputStream}.
+	 */
+	private static final class Column {
+
+		private byte[] bytes = new byte[16 * 1024];
+		private int size = 0;
+
+		private void ensureCapacity(int additionalBytes) {
+			if (this.size + additionalBytes > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(2 * this.bytes.length, this.size + additionalBytes));
+			}
+		}
+
+		void writeByte(byte value) {
+			ensureCapacity(1);
+			this.bytes[this.size++] = value;
+		}
+
+		void writeVarInt(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7f) != 0) {
+				this.bytes[this.size++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.size++] = (byte) value;
+		}
+
+		void writeDouble(double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToRawLongBits(value);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.bytes[this.size++] = (byte) (bits >>> shift);
+			}
+		}
+
+	}
+
+}
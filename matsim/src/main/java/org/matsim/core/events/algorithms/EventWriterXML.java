@@ -24,18 +24,59 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
+import org.matsim.core.events.EventsFileIndex;
 import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.BlockOutputStream;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.io.UncheckedIOException;
 
 public class EventWriterXML implements EventWriter, BasicEventHandler {
 	private final BufferedWriter out;
 
+	// only set when an index is written:
+	private final BlockOutputStream blocks;
+	private final BufferedWriter index;
+	private final double indexInterval;
+	private double nextBlockTime = Double.NEGATIVE_INFINITY;
+
 	public EventWriterXML(final String outfilename) {
 		this.out = IOUtils.getBufferedWriter(outfilename);
+		this.blocks = null;
+		this.index = null;
+		this.indexInterval = 0;
+		writeHeader();
+	}
+
+	/**
+	 * Writes the events in blocks of <code>indexInterval</code> seconds of simulated time, and writes an
+	 * {@link EventsFileIndex} with the offsets of the blocks.  With the index,
+	 * {@link org.matsim.core.events.MatsimEventsReader#readTimeWindow(String, double, double)} reads only the part of
+	 * the file with the requested events.  Compressed files are written as one gzip member per block, which makes them
+	 * slightly larger.
+	 */
+	public EventWriterXML(final String outfilename, final double indexInterval) {
+		if (!(indexInterval > 0)) {
+			throw new IllegalArgumentException("The index interval must be positive, but is " + indexInterval);
+		}
+		this.blocks = new BlockOutputStream(outfilename);
+		this.out = new BufferedWriter(new OutputStreamWriter(this.blocks, StandardCharsets.UTF_8));
+		this.index = IOUtils.getBufferedWriter(EventsFileIndex.getIndexFilename(outfilename));
+		this.indexInterval = indexInterval;
+		writeHeader();
+		try {
+			this.index.write(EventsFileIndex.HEADER);
+			this.index.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeHeader() {
 		try {
 			this.out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
 		} catch (IOException e) {
@@ -50,6 +91,9 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	 */
 	public EventWriterXML(final PrintStream stream ) {
 		this.out = new BufferedWriter(new OutputStreamWriter(stream));
+		this.blocks = null;
+		this.index = null;
+		this.indexInterval = 0;
 		try {
 			this.out.write("<events>\n");
 		} catch (IOException e) {
@@ -66,6 +110,9 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 			// fails signalsystems test (and presumably other tests in contrib/playground) since they compare
 			// checksums of event files.  Removed that change again.  kai, oct'12
 			this.out.close();
+			if (this.index != null) {
+				this.index.close();
+			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -83,20 +130,61 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	@Override
 	public void handleEvent(final Event event) {
 		try {
-			this.out.append("\t<event ");
-			Map<String, String> attr = event.getAttributes();
-			for (Map.Entry<String, String> entry : attr.entrySet()) {
-				this.out.append(entry.getKey());
-				this.out.append("=\"");
-				this.out.append(encodeAttributeValue(entry.getValue()));
-				this.out.append("\" ");
+			if (this.blocks != null && event.getTime() >= this.nextBlockTime) {
+				startBlock(event.getTime());
 			}
+			this.out.append("\t<event ");
+			event.writeAttributes(this.attributeWriter);
 			this.out.append(" />\n");
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new UncheckedIOException(e);
 		}
 	}
 
+	private void startBlock(double time) throws IOException {
+		this.out.flush();
+		long offset = this.blocks.startBlock();
+		this.index.write(Double.toString(time));
+		this.index.write('\t');
+		this.index.write(Long.toString(offset));
+		this.index.write('\n');
+		this.nextBlockTime = (Math.floor(time / this.indexInterval) + 1) * this.indexInterval;
+	}
+
+	/**
+	 * Writes the attributes straight into the file, without the map of {@link Event#getAttributes()}.
+	 */
+	private final EventAttributeSink attributeWriter = new EventAttributeSink() {
+
+		@Override
+		public void addAttribute(String name, String value) {
+			write(name, encodeAttributeValue(value));
+		}
+
+		@Override
+		public void addAttribute(String name, Id<?> value) {
+			write(name, value == null ? null : encodeAttributeValue(value.toString()));
+		}
+
+		@Override
+		public void addAttribute(String name, double value) {
+			// (numbers never need to be encoded)
+			write(name, Double.toString(value));
+		}
+
+		private void write(String name, String encodedValue) {
+			try {
+				EventWriterXML.this.out.append(name);
+				EventWriterXML.this.out.append("=\"");
+				EventWriterXML.this.out.append(encodedValue);
+				EventWriterXML.this.out.append("\" ");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+	};
+
 	// the following method was taken from MatsimXmlWriter in order to correctly encode attributes, but
 	// to forego the overhead of using the full MatsimXmlWriter.
 	/**
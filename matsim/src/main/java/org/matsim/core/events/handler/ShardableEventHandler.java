@@ -0,0 +1,54 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ShardableEventHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.handler;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+
+/**
+ * An event handler whose work can be split by a key of the events, e.g. by link or by person, because the events of
+ * one key do not influence the results for other keys.  The
+ * {@link org.matsim.core.events.ShardedEventsManagerImpl} then passes the events to several shards of the handler,
+ * each on its own thread, and merges the shards back into the handler when the events have been processed.
+ * <p></p>
+ * All events with the same key are passed to the same shard, in the order in which they occurred.
+ *
+ * @param <T> the class of the handler itself
+ */
+public interface ShardableEventHandler<T extends ShardableEventHandler<T>> extends EventHandler {
+
+	/**
+	 * @return the id the results for this event belong to, or <code>null</code> if all shards need the event,
+	 * e.g. because it contains information which is later needed for events of all keys
+	 */
+	public Id<?> getShardKey(Event event);
+
+	/**
+	 * @return a new, empty handler with the same settings as this one
+	 */
+	public T createShard();
+
+	/**
+	 * Adds the results of a shard to the results of this handler.
+	 */
+	public void mergeShard(T shard);
+
+}
@@ -71,6 +71,19 @@ public abstract class MatsimRandom {
 		return r;
 	}
 
+	/** Returns an instance of a random number generator whose seed depends on the global seed and on the given key, but
+	 * not on how many other local instances were requested before.  Objects that obtain their generator this way (e.g.
+	 * network elements) thus draw the same random numbers no matter in which order they are created.
+	 *
+	 * @param key identifies the user of the random number generator, e.g. a hash code of its id
+	 * @return pseudo random number generator
+	 */
+	public static Random getLocalInstance(final long key) {
+		Random r = new Random(lastUsedSeed ^ (key * 0x9E3779B97F4A7C15l));
+		prepareRNG(r);
+		return r;
+	}
+
 	/**
 	 * Draw some random numbers to better initialize the pseudo-random number generator.
 	 *
@@ -19,10 +19,16 @@
 
 package org.matsim.core.mobsim.qsim;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
@@ -33,11 +39,12 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.interfaces.ActivityHandler;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.utils.misc.Time;
 
 import javax.inject.Inject;
 
-public class ActivityEngine implements MobsimEngine, ActivityHandler {
+public class ActivityEngine implements MobsimEngine, ActivityHandler, WakeUpTimeProvider {
 
 	private EventsManager eventsManager;
 	private AgentCounter agentCounter;
@@ -53,10 +60,10 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 	}
 
 	/**
-	 * Agents cannot be added directly to the activityEndsList since that would
+	 * Agents cannot be added directly to the activity end calendar since that would
 	 * not be thread-safe when within-day replanning is used. There, an agent's
 	 * activity end time can be modified. As a result, the agent is located at
-	 * the wrong position in the activityEndsList until it is updated by using
+	 * the wrong position in the activity end calendar until it is updated by using
 	 * rescheduleActivityEnd(...). However, if another agent is added to the list
 	 * in the mean time, it might be inserted at the wrong position.
 	 * cdobler, apr'12
@@ -68,35 +75,53 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 		}
 		final MobsimAgent agent;
 		final double activityEndTime;
+		Bucket bucket;
+		// entries are not taken out of their bucket right away when an activity end is rescheduled, but only marked as removed:
+		boolean removed = false;
+	}
+
+	/**
+	 * The entries with the same activity end time.  Removed entries are purged once they make up more than half of the
+	 * bucket, and a bucket with only removed entries is taken out of the calendar, so that rescheduling costs amortized
+	 * O(1) per entry on top of the calendar lookup.
+	 */
+	private static class Bucket {
+		final List<AgentEntry> entries = new ArrayList<>();
+		int removedEntries = 0;
 	}
 
 	private InternalInterface internalInterface;
 	
 	/**
-	 * This list needs to be a "blocking" queue since this is needed for
-	 * thread-safety in the parallel qsim. cdobler, oct'10
+	 * The entries of one bucket all have the same activity end time, so within a bucket, only the agent ids matter.
 	 */
-	private final Queue<AgentEntry> activityEndsList = new PriorityBlockingQueue<>(500, new Comparator<AgentEntry>() {
+	private static final Comparator<AgentEntry> BUCKET_ORDER = new Comparator<AgentEntry>() {
 
 		@Override
 		public int compare(AgentEntry arg0, AgentEntry arg1) {
-			int cmp = Double.compare(arg0.activityEndTime, arg1.activityEndTime);
-			if (cmp == 0) {
-				// Both depart at the same time -> let the one with the larger id be first (=smaller)
-				//
-				// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
-				// to say that the agent with the larger ID should be "smaller" one in the comparison.
-				// In practice, it seems
-				// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
-				// It is unclear why this convention is supposed to be helpful.
-				// kai & dominik, jul'12
-				//
-				return arg1.agent.getId().compareTo(arg0.agent.getId());
-			}
-			return cmp;
+			// Both depart at the same time -> let the one with the larger id be first (=smaller)
+			//
+			// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
+			// to say that the agent with the larger ID should be "smaller" one in the comparison.
+			// In practice, it seems
+			// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
+			// It is unclear why this convention is supposed to be helpful.
+			// kai & dominik, jul'12
+			//
+			return arg1.agent.getId().compareTo(arg0.agent.getId());
 		}
 
-	});
+	};
+
+	/**
+	 * A calendar of the agents that perform an activity: one bucket per activity end time, plus a handle from every agent
+	 * to its entry.  Adding an agent or rescheduling its activity end thus costs O(log(number of distinct end times))
+	 * instead of a search through all performing agents, and doSimStep takes whole buckets at once.
+	 * <p></p>
+	 * Access needs to be synchronized since this is needed for thread-safety in the parallel qsim. cdobler, oct'10
+	 */
+	private final NavigableMap<Double, Bucket> activityEndsCalendar = new TreeMap<>();
+	private final Map<MobsimAgent, AgentEntry> activityEndsHandles = new IdentityHashMap<>();
 	
 	// See handleActivity for the reason for this.
 	private boolean beforeFirstSimStep = true;
@@ -109,29 +134,47 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 	@Override
 	public void doSimStep(double time) {
 		beforeFirstSimStep = false;
-		while (activityEndsList.peek() != null) {
-			if (activityEndsList.peek().activityEndTime <= time) {
-				MobsimAgent agent = activityEndsList.poll().agent;
+		List<AgentEntry> bucket;
+		// (ending an activity may lead to the next activity ending immediately, which may add a bucket that is due as well)
+		while ((bucket = pollDueBucket(time)) != null) {
+			for (AgentEntry entry : bucket) {
+				if (!removeHandle(entry)) {
+					continue;
+				}
+				MobsimAgent agent = entry.agent;
 				unregisterAgentAtActivityLocation(agent);
 				agent.endActivityAndComputeNextState(time);
 				internalInterface.arrangeNextAgentState(agent);
-			} else {
-				return;
 			}
 		}
 	}
 
+	@Override
+	public double getNextWakeUpTime() {
+		synchronized (this.activityEndsCalendar) {
+			return this.activityEndsCalendar.isEmpty() ? Double.POSITIVE_INFINITY : this.activityEndsCalendar.firstKey();
+		}
+	}
+
 	@Override
 	public void afterSim() {
 		double now = this.internalInterface.getMobsim().getSimTimer().getTimeOfDay();
-		for (AgentEntry entry : activityEndsList) {
-			if (entry.activityEndTime!=Double.POSITIVE_INFINITY && entry.activityEndTime!=Time.UNDEFINED_TIME) {
+		List<AgentEntry> entries = new ArrayList<>();
+		synchronized (this.activityEndsCalendar) {
+			for (Bucket bucket : this.activityEndsCalendar.values()) {
+				Collections.sort(bucket.entries, BUCKET_ORDER);
+				entries.addAll(bucket.entries);
+			}
+			this.activityEndsCalendar.clear();
+			this.activityEndsHandles.clear();
+		}
+		for (AgentEntry entry : entries) {
+			if (!entry.removed && entry.activityEndTime!=Double.POSITIVE_INFINITY && entry.activityEndTime!=Time.UNDEFINED_TIME) {
 				// since we are at an activity, it is not plausible to assume that the agents know mode or destination
 				// link id.  Thus generating the event with ``null'' in the corresponding entries.  kai, mar'12
 				eventsManager.processEvent(new PersonStuckEvent(now, entry.agent.getId(), null, null));
 			}
 		}
-		activityEndsList.clear();
 	}
 
 	@Override
@@ -163,7 +206,7 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 			internalInterface.arrangeNextAgentState(agent) ;
 		} else {
 			// The agent commences an activity on this link.
-			activityEndsList.add(new AgentEntry(agent, agent.getActivityEndTime()));
+			addAgentToCalendar(agent, agent.getActivityEndTime());
 			internalInterface.registerAdditionalAgentOnLink(agent);
 		}
 		// Why beforeFirstSimStep matters:
@@ -198,7 +241,7 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 				// agent was de-activated and still should be de-activated - nothing to do here
 			} else {
 				// re-activate the agent
-				activityEndsList.add(new AgentEntry(agent, newActivityEndTime));
+				addAgentToCalendar(agent, newActivityEndTime);
 				internalInterface.registerAdditionalAgentOnLink(agent);
 				((org.matsim.core.mobsim.qsim.AgentCounter) internalInterface.getMobsim().getAgentCounter()).incLiving();
 			}
@@ -213,20 +256,85 @@ public class ActivityEngine implements MobsimEngine, ActivityHandler {
 			/*
 			 *  The activity is just rescheduled during the day, so we keep the agent active. cdobler, oct'11
 			 */
-			activityEndsList.add(new AgentEntry(agent, newActivityEndTime));
+			addAgentToCalendar(agent, newActivityEndTime);
+		}
+	}
+
+	private void addAgentToCalendar(MobsimAgent agent, double activityEndTime) {
+		AgentEntry entry = new AgentEntry(agent, activityEndTime);
+		synchronized (this.activityEndsCalendar) {
+			Bucket bucket = this.activityEndsCalendar.get(activityEndTime);
+			if (bucket == null) {
+				bucket = new Bucket();
+				this.activityEndsCalendar.put(activityEndTime, bucket);
+			}
+			bucket.entries.add(entry);
+			entry.bucket = bucket;
+			this.activityEndsHandles.put(agent, entry);
 		}
 	}
 
 	private AgentEntry removeAgentFromQueue(MobsimAgent agent) {
-		Iterator<AgentEntry> iterator = activityEndsList.iterator();
-		while (iterator.hasNext()) {
-			AgentEntry entry = iterator.next();
-			if (entry.agent == agent) {
-				iterator.remove();
-				return entry;
+		synchronized (this.activityEndsCalendar) {
+			AgentEntry entry = this.activityEndsHandles.remove(agent);
+			if (entry != null) {
+				entry.removed = true;
+				purgeRemovedEntries(entry);
+			}
+			return entry;
+		}
+	}
+
+	private void purgeRemovedEntries(AgentEntry removedEntry) {
+		Bucket bucket = removedEntry.bucket;
+		if (this.activityEndsCalendar.get(removedEntry.activityEndTime) != bucket) {
+			// the bucket is already taken out of the calendar and being handled by doSimStep, which skips removed entries
+			return;
+		}
+		bucket.removedEntries++;
+		if (bucket.removedEntries == bucket.entries.size()) {
+			this.activityEndsCalendar.remove(removedEntry.activityEndTime);
+		} else if (2 * bucket.removedEntries > bucket.entries.size()) {
+			Iterator<AgentEntry> iterator = bucket.entries.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().removed) {
+					iterator.remove();
+				}
+			}
+			bucket.removedEntries = 0;
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the entry had been removed in the meantime, i.e. if the agent is not to be handled
+	 */
+	private boolean removeHandle(AgentEntry entry) {
+		synchronized (this.activityEndsCalendar) {
+			if (entry.removed) {
+				return false;
+			}
+			entry.removed = true;
+			if (this.activityEndsHandles.get(entry.agent) == entry) {
+				this.activityEndsHandles.remove(entry.agent);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @return the earliest bucket if its activity end time is not after <code>time</code> (sorted and taken out of the
+	 * calendar), otherwise <code>null</code>
+	 */
+	private List<AgentEntry> pollDueBucket(double time) {
+		synchronized (this.activityEndsCalendar) {
+			if (this.activityEndsCalendar.isEmpty() || this.activityEndsCalendar.firstKey() > time) {
+				return null;
 			}
+			Entry<Double, Bucket> first = this.activityEndsCalendar.pollFirstEntry();
+			List<AgentEntry> entries = first.getValue().entries;
+			Collections.sort(entries, BUCKET_ORDER);
+			return entries;
 		}
-		return null;
 	}
 
 	private void unregisterAgentAtActivityLocation(final MobsimAgent agent) {
@@ -56,7 +56,9 @@ import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.mobsim.qsim.pt.TransitQSimEngine;
+import org.matsim.core.mobsim.qsim.qnetsimengine.NetElementOutputBufferingEventsManager;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
 import org.matsim.core.utils.misc.Time;
@@ -198,11 +200,13 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	@Inject
 	public QSim(final Scenario sc, EventsManager events) {
 		this.scenario = sc;
+		EventsManager qsimEvents = events;
 		if (sc.getConfig().qsim().getNumberOfThreads() > 1) {
-			this.events = EventsUtils.getParallelFeedableInstance(events);
-		} else {
-			this.events = events;
+			qsimEvents = EventsUtils.getParallelFeedableInstance(qsimEvents);
 		}
+		// events that e.g. transit drivers throw from within the netsim runners are passed on together with those of the
+		// network elements:
+		this.events = NetElementOutputBufferingEventsManager.wrapIfBuffering(qsimEvents, sc.getConfig().qsim());
 		this.listenerManager = new MobsimListenerManager(this);
 		this.agentCounter = new org.matsim.core.mobsim.qsim.AgentCounter();
 		this.simTimer = new MobsimTimer(sc.getConfig().qsim().getTimeStepSize());
@@ -385,6 +389,9 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 
 		if (doContinue) {
 			this.simTimer.incrementTime();
+			if (qsimConfigGroup.isUsingTimeSkipping()) {
+				skipIdleTimeSteps();
+			}
 		}
 		
 		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
@@ -392,6 +399,33 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		return doContinue;
 	}
 
+	/**
+	 * Moves the sim timer forward to the next time step in which one of the engines has something to do.  The skipped time steps
+	 * are ones in which the engines would not have done anything, so the events remain the same; only the mobsim listeners
+	 * (and the console printout) miss them.  Nothing is skipped as soon as one of the engines cannot tell its next wake-up time.
+	 */
+	private void skipIdleTimeSteps() {
+		double wakeUpTime = Double.POSITIVE_INFINITY;
+		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+			if (!(mobsimEngine instanceof WakeUpTimeProvider)) {
+				return;
+			}
+			wakeUpTime = Math.min(wakeUpTime, ((WakeUpTimeProvider) mobsimEngine).getNextWakeUpTime());
+		}
+
+		final QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
+		final boolean onlyUseEndtime = qsimConfigGroup.getSimEndtimeInterpretation() == EndtimeInterpretation.onlyUseEndtime;
+		// The timer is incremented step by step (rather than set) so that it takes exactly the same values as without skipping.
+		// We also stop at the time step in which the simulation would have ended anyway.
+		while (this.simTimer.getTimeOfDay() < wakeUpTime) {
+			final double now = this.simTimer.getTimeOfDay();
+			if (onlyUseEndtime ? now > qsimConfigGroup.getEndTime() : now >= this.stopTime) {
+				break;
+			}
+			this.simTimer.incrementTime();
+		}
+	}
+
 	public void insertAgentIntoMobsim(final MobsimAgent agent) {
 		if (this.agents.containsKey(agent.getId())) {
 			throw new RuntimeException("Agent with same Id (" + agent.getId().toString() + ") already in mobsim; aborting ... ") ;
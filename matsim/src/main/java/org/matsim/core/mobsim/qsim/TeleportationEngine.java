@@ -12,6 +12,7 @@ import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.core.utils.misc.Time;
@@ -28,7 +29,7 @@ import java.util.*;
  * NetsimEngine (often all != "car") or have two activities on the same link
  */
 public final class TeleportationEngine implements DepartureHandler, MobsimEngine,
-VisData {
+VisData, WakeUpTimeProvider {
 	private static final Logger log = Logger.getLogger( TeleportationEngine.class ) ;
 	
 	private final Queue<Tuple<Double, MobsimAgent>> teleportationList = new PriorityQueue<>(
@@ -124,6 +125,12 @@ VisData {
 		}
 	}
 
+	@Override
+	public double getNextWakeUpTime() {
+		Tuple<Double, MobsimAgent> entry = teleportationList.peek();
+		return entry == null ? Double.POSITIVE_INFINITY : entry.getFirst();
+	}
+
 	@Override
 	public void onPrepareSim() {
 
@@ -28,6 +28,7 @@ import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.mobsim.qsim.interfaces.TimeVariantLink;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.network.NetworkChangeEvent;
 import org.matsim.core.network.NetworkUtils;
 
@@ -37,7 +38,7 @@ import java.util.PriorityQueue;
 /**
  * @author dgrether
  */
-public class NetworkChangeEventsEngine implements MobsimEngine {
+public class NetworkChangeEventsEngine implements MobsimEngine, WakeUpTimeProvider {
 	
 	private PriorityQueue<NetworkChangeEvent> networkChangeEventsQueue = null;
 	private Netsim mobsim;
@@ -68,6 +69,14 @@ public class NetworkChangeEventsEngine implements MobsimEngine {
 		}
 	}
 
+	@Override
+	public double getNextWakeUpTime() {
+		if ((this.networkChangeEventsQueue != null) && (this.networkChangeEventsQueue.size() > 0)) {
+			return this.networkChangeEventsQueue.peek().getStartTime();
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
 	private void handleNetworkChangeEvents(final double time) {
 		while ((this.networkChangeEventsQueue.size() > 0) && (this.networkChangeEventsQueue.peek().getStartTime() <= time)) {
 			NetworkChangeEvent event = this.networkChangeEventsQueue.poll();
@@ -0,0 +1,40 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * WakeUpTimeProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.interfaces;
+
+/**
+ * Implemented by {@link MobsimEngine}s that know when they next have something to do.  If all engines of the QSim implement
+ * this, the QSim may jump over time steps in which none of them would do anything (see
+ * {@link org.matsim.core.config.groups.QSimConfigGroup#isUsingTimeSkipping()}).
+ */
+public interface WakeUpTimeProvider {
+
+	/**
+	 * Called between two time steps, i.e. not while any engine is stepped.
+	 *
+	 * @return the earliest time at which doSimStep(...) may change anything, including the generation of events.  A time
+	 * that is not after the next time step means that the engine needs to be stepped next time;
+	 * <code>Double.POSITIVE_INFINITY</code> means that nothing is scheduled, i.e. the engine only needs to be stepped again
+	 * after agents have been handed to it.
+	 */
+	double getNextWakeUpTime();
+
+}
@@ -390,10 +390,16 @@ abstract class AbstractQLink extends QLinkI {
 		return customAttributes;
 	}
 
+	@Override
 	/*package*/ void setNetElementActivationRegistry(NetElementActivationRegistry qSimEngineRunner) {
 		this.netElementActivationRegistry = qSimEngineRunner;
 	}
 
+	@Override
+	/*package*/ NetElementActivationRegistry getNetElementActivationRegistry() {
+		return this.netElementActivationRegistry;
+	}
+
 	@Override
 	/*package*/ void registerDriverAgentWaitingForCar(final MobsimDriverAgent agent) {
 		final Id<Vehicle> vehicleId = agent.getPlannedVehicleId() ;
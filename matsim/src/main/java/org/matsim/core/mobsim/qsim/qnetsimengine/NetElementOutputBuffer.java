@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetElementOutputBuffer.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+
+/**
+ * What the nodes or links of one {@link QNetsimEngineRunner} emitted while they were moved: events, and actions that change
+ * the state of an agent outside of the netsim.  They are only passed on after all runners are done with the time step, in
+ * the order of the emitting elements.
+ * <p></p>
+ * The entries are kept in parallel arrays, which are emptied, but not shrunk, after every time step.  So once they have
+ * reached the size they need, buffering allocates nothing.
+ */
+final class NetElementOutputBuffer {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int[] elementIndices = new int[INITIAL_CAPACITY];
+	private EventsManager[] eventsManagers = new EventsManager[INITIAL_CAPACITY];
+	private Event[] events = new Event[INITIAL_CAPACITY];
+	private Runnable[] actions = new Runnable[INITIAL_CAPACITY];
+	private int size = 0;
+
+	void addEvent(int elementIndex, EventsManager eventsManager, Event event) {
+		int i = add(elementIndex);
+		this.eventsManagers[i] = eventsManager;
+		this.events[i] = event;
+	}
+
+	void addAction(int elementIndex, Runnable action) {
+		int i = add(elementIndex);
+		this.actions[i] = action;
+	}
+
+	private int add(int elementIndex) {
+		if (this.size == this.elementIndices.length) {
+			int capacity = 2 * this.size;
+			this.elementIndices = Arrays.copyOf(this.elementIndices, capacity);
+			this.eventsManagers = Arrays.copyOf(this.eventsManagers, capacity);
+			this.events = Arrays.copyOf(this.events, capacity);
+			this.actions = Arrays.copyOf(this.actions, capacity);
+		}
+		this.elementIndices[this.size] = elementIndex;
+		return this.size++;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	private void process(int i) {
+		if (this.actions[i] == null) {
+			this.eventsManagers[i].processEvent(this.events[i]);
+		} else {
+			this.actions[i].run();
+		}
+	}
+
+	private void clear() {
+		// (the references are dropped, so that the events and agents can be garbage collected)
+		Arrays.fill(this.eventsManagers, 0, this.size, null);
+		Arrays.fill(this.events, 0, this.size, null);
+		Arrays.fill(this.actions, 0, this.size, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Passes on the output of several buffers in the order of the emitting elements, and empties the buffers.  A runner
+	 * moves one element after the other, so the output of an element is one run of entries in the buffer of its runner,
+	 * and only these runs need to be sorted.  The output of one element remains in the order in which it was emitted.
+	 * <p></p>
+	 * Keeps its working arrays between calls.  Not thread-safe.
+	 */
+	static final class Merger {
+
+		/** the element index in the upper and the run number in the lower 32 bits, so that sorting needs no comparator */
+		private long[] runKeys = new long[INITIAL_CAPACITY];
+		private NetElementOutputBuffer[] runBuffers = new NetElementOutputBuffer[INITIAL_CAPACITY];
+		private int[] runStarts = new int[INITIAL_CAPACITY];
+
+		void process(List<NetElementOutputBuffer> buffers) {
+			int runCount = 0;
+			for (NetElementOutputBuffer buffer : buffers) {
+				for (int i = 0; i < buffer.size; i++) {
+					if (i == 0 || buffer.elementIndices[i] != buffer.elementIndices[i - 1]) {
+						if (runCount == this.runKeys.length) {
+							int capacity = 2 * runCount;
+							this.runKeys = Arrays.copyOf(this.runKeys, capacity);
+							this.runBuffers = Arrays.copyOf(this.runBuffers, capacity);
+							this.runStarts = Arrays.copyOf(this.runStarts, capacity);
+						}
+						this.runKeys[runCount] = ((long) buffer.elementIndices[i] << 32) | runCount;
+						this.runBuffers[runCount] = buffer;
+						this.runStarts[runCount] = i;
+						runCount++;
+					}
+				}
+			}
+			Arrays.sort(this.runKeys, 0, runCount);
+			for (int r = 0; r < runCount; r++) {
+				int run = (int) this.runKeys[r];
+				NetElementOutputBuffer buffer = this.runBuffers[run];
+				int start = this.runStarts[run];
+				for (int i = start; i < buffer.size && buffer.elementIndices[i] == buffer.elementIndices[start]; i++) {
+					buffer.process(i);
+				}
+			}
+			for (NetElementOutputBuffer buffer : buffers) {
+				buffer.clear();
+			}
+			Arrays.fill(this.runBuffers, 0, runCount, null);
+		}
+
+	}
+
+}
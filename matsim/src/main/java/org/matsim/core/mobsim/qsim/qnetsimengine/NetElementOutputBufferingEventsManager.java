@@ -0,0 +1,101 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetElementOutputBufferingEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Hands events that are thrown from within a buffering {@link QNetsimEngineRunner} to that runner instead of the delegate.
+ * Events thrown from any other thread (e.g. by departures, which are handled by the main thread) go directly to the delegate.
+ * <p></p>
+ * Besides the network elements themselves, the QSim uses this for its own events manager, since e.g. transit drivers throw
+ * events from within the runners as well.
+ */
+public final class NetElementOutputBufferingEventsManager implements EventsManager {
+
+	private final EventsManager delegate;
+
+	private NetElementOutputBufferingEventsManager(EventsManager delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * The runners buffer their output if there is more than one of them, so that they need not synchronize on the events
+	 * manager, and in the thread independent mode.
+	 */
+	static boolean isBuffering(QSimConfigGroup qsimConfig) {
+		return qsimConfig.isUsingThreadIndependentNetsim() || qsimConfig.getNumberOfThreads() > 1;
+	}
+
+	/**
+	 * @return the given events manager, wrapped if the runners of the {@link QNetsimEngine} buffer their output
+	 */
+	public static EventsManager wrapIfBuffering(EventsManager events, QSimConfigGroup qsimConfig) {
+		if (isBuffering(qsimConfig) && !(events instanceof NetElementOutputBufferingEventsManager)) {
+			return new NetElementOutputBufferingEventsManager(events);
+		}
+		return events;
+	}
+
+	@Override
+	public void processEvent(Event event) {
+		QNetsimEngineRunner runner = QNetsimEngineRunner.getBufferingRunner();
+		if (runner != null) {
+			runner.bufferEvent(this.delegate, event);
+		} else {
+			this.delegate.processEvent(event);
+		}
+	}
+
+	@Override
+	public void addHandler(EventHandler handler) {
+		this.delegate.addHandler(handler);
+	}
+
+	@Override
+	public void removeHandler(EventHandler handler) {
+		this.delegate.removeHandler(handler);
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		this.delegate.afterSimStep(time);
+	}
+
+	@Override
+	public void finishProcessing() {
+		this.delegate.finishProcessing();
+	}
+
+}
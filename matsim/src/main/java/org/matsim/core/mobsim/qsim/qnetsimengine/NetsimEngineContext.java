@@ -18,7 +18,8 @@ public class NetsimEngineContext {
 	public NetsimEngineContext(EventsManager events, double effectiveCellSize, AgentCounter agentCounter,
 			AbstractAgentSnapshotInfoBuilder snapshotInfoBuilder, QSimConfigGroup qsimConfig, MobsimTimer mobsimTimer, 
 			SnapshotLinkWidthCalculator linkWidthCalculator) {
-		this.events = events;
+		// events of the network elements may be buffered by the runners and passed on in a fixed order, see QNetsimEngine
+		this.events = NetElementOutputBufferingEventsManager.wrapIfBuffering(events, qsimConfig);
 		this.effectiveCellSize = effectiveCellSize;
 		this.agentCounter = agentCounter;
 		this.snapshotInfoBuilder = snapshotInfoBuilder;
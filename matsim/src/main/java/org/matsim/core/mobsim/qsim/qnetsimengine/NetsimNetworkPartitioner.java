@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetsimNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.List;
+
+/**
+ * Decides which runner of the {@link QNetsimEngine} handles which {@link QNode}.  The outgoing links of a node are always
+ * handled by the same runner as the node itself, so this also decides about the links.
+ * <p></p>
+ * Implementations must be deterministic, i.e. return the same result for the same input.
+ */
+public interface NetsimNetworkPartitioner {
+
+	/**
+	 * @param nodes the nodes to distribute, in the (deterministic) iteration order of the {@link QNetwork}
+	 * @param weights the estimated amount of work per node, in the same order as <code>nodes</code>
+	 * @param numberOfPartitions the number of runners
+	 * @return for every node (in the same order as <code>nodes</code>) the index of the runner, in [0, numberOfPartitions)
+	 */
+	int[] partition(List<QNode> nodes, double[] weights, int numberOfPartitions);
+
+}
@@ -54,6 +54,23 @@ abstract class QLinkI implements NetsimLink, TimeVariantLink {
 
 	abstract QNode getToNode() ;
 
+	/*
+	 * Number of doSimStep calls since the QNetsimEngine last looked at it.  Only written by the runner that handles
+	 * this link, and only read between time steps.
+	 */
+	int simStepCounter = 0 ;
+
+	// position of this link in the QNetsimEngine; defines the order in which buffered output of the links is passed on
+	int elementIndex = -1 ;
+
+	/**
+	 * The runner of the QNetsimEngine that simulates this link while it is active.  Set when the network is partitioned,
+	 * and again whenever the QNetsimEngine rebalances its runners.
+	 */
+	abstract void setNetElementActivationRegistry(NetElementActivationRegistry netElementActivationRegistry) ;
+
+	abstract NetElementActivationRegistry getNetElementActivationRegistry() ;
+
 	/**
 	 * add vehicle at "activity" location
 	 * <br>
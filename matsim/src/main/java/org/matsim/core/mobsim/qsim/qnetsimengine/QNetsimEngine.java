@@ -42,6 +42,7 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
@@ -60,6 +61,7 @@ import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.mobsim.qsim.interfaces.WakeUpTimeProvider;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -71,7 +73,7 @@ import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine {
+public class QNetsimEngine implements MobsimEngine, WakeUpTimeProvider {
 	public interface NetsimInternalInterface {
 
 		QNetwork getNetsimNetwork();
@@ -88,8 +90,18 @@ public class QNetsimEngine implements MobsimEngine {
 		}
 
 		@Override
-		public void arrangeNextAgentState(MobsimAgent driver) {
-			QNetsimEngine.this.arrangeNextAgentState(driver);
+		public void arrangeNextAgentState(final MobsimAgent driver) {
+			QNetsimEngineRunner runner = QNetsimEngineRunner.getBufferingRunner();
+			if (runner != null) {
+				runner.bufferAction(new Runnable() {
+					@Override
+					public void run() {
+						QNetsimEngine.this.arrangeNextAgentState(driver);
+					}
+				});
+			} else {
+				QNetsimEngine.this.arrangeNextAgentState(driver);
+			}
 		}
 
 		@Override
@@ -129,6 +141,29 @@ public class QNetsimEngine implements MobsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	private final boolean threadIndependent;
+
+	// the runners collect what the network elements emit, which is then passed on at the end of the time step:
+	private final boolean bufferingOutput;
+	private final List<NetElementOutputBuffer> outputBuffers = new ArrayList<>();
+	private final NetElementOutputBuffer.Merger outputMerger = new NetElementOutputBuffer.Merger();
+
+	private NetsimNetworkPartitioner partitioner;
+
+	// the nodes in the order in which they were given to the partitioner, together with their static weights and current runners:
+	private List<QNode> partitionedNodes;
+	private double[] nodeWeights;
+	private int[] nodePartitions;
+
+	/*
+	 * Re-partitioning is only done if the busiest runner had at least this much more work than the average runner
+	 * during the last rebalancing period.
+	 */
+	private static final double REBALANCING_THRESHOLD = 1.1;
+
+	private final double rebalancingPeriod;
+	private double nextRebalancingTime;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -150,6 +185,8 @@ public class QNetsimEngine implements MobsimEngine {
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qsimConfigGroup = config.qsim();
 		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool();
+		this.threadIndependent = qsimConfigGroup.isUsingThreadIndependentNetsim();
+		this.bufferingOutput = NetElementOutputBufferingEventsManager.isBuffering(qsimConfigGroup);
 
 
 		// configuring the car departure hander (including the vehicle behavior)
@@ -189,6 +226,29 @@ public class QNetsimEngine implements MobsimEngine {
 		network.initialize(this, sim.getAgentCounter(), sim.getSimTimer() );
 
 		this.numOfThreads = sim.getScenario().getConfig().qsim().getNumberOfThreads();
+		this.rebalancingPeriod = qSimConfigGroup.getNetsimRebalancingPeriod();
+
+		switch (qSimConfigGroup.getNetsimPartitioning()) {
+		case roundRobin:
+			this.partitioner = new RoundRobinNetsimNetworkPartitioner();
+			if (this.rebalancingPeriod > 0.) {
+				log.warn("netsim rebalancing has no effect with round robin partitioning, since the latter ignores the measured work.");
+			}
+			break;
+		case recursiveCoordinateBisection:
+			this.partitioner = new RecursiveCoordinateBisectionPartitioner();
+			break;
+		default:
+			throw new RuntimeException("Unknown netsim partitioning option.");
+		}
+	}
+
+	/**
+	 * Replaces the partitioner that was selected via {@link QSimConfigGroup#getNetsimPartitioning()}.  Needs to be called before
+	 * the simulation is prepared.
+	 */
+	public void setNetworkPartitioner(NetsimNetworkPartitioner partitioner) {
+		this.partitioner = partitioner;
 	}
 
 	private static int wrnCnt = 0;
@@ -235,6 +295,8 @@ public class QNetsimEngine implements MobsimEngine {
 		 * info at the very first timestep already 
 		 */
 
+		this.nextRebalancingTime = internalInterface.getMobsim().getSimTimer().getSimStartTime() + this.rebalancingPeriod;
+
 		initQSimEngineThreads();
 	}
 
@@ -278,6 +340,15 @@ public class QNetsimEngine implements MobsimEngine {
 	public void doSimStep(final double time) {
 		run(time);
 
+		if (this.bufferingOutput) {
+			processBufferedOutput();
+		}
+
+		if (this.rebalancingPeriod > 0. && this.numOfRunners > 1 && time >= this.nextRebalancingTime) {
+			this.nextRebalancingTime += this.rebalancingPeriod;
+			rebalance(time);
+		}
+
 		this.printSimLog(time);
 	}
 
@@ -358,6 +429,18 @@ public class QNetsimEngine implements MobsimEngine {
 		}
 	}
 
+	@Override
+	public double getNextWakeUpTime() {
+		// Nodes and links only stay active while they have vehicles, so as long as anything is active, we are needed in every
+		// time step.  Vehicles that enter the network come through departures, which activate their links.
+		for (QNetsimEngineRunner engine : this.engines) {
+			if (engine.hasActiveNetElements()) {
+				return Double.NEGATIVE_INFINITY;
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
 	public int getNumberOfSimulatedLinks() {
 
 		int numLinks = 0;
@@ -414,15 +497,52 @@ public class QNetsimEngine implements MobsimEngine {
 	}
 
 	private void letVehicleArrive(QVehicle veh) {
-		double now = this.qsim.getSimTimer().getTimeOfDay();
-		MobsimDriverAgent driver = veh.getDriver();
-		this.qsim.getEventsManager().processEvent(new PersonLeavesVehicleEvent(now, driver.getId(), veh.getId()));
+		final MobsimDriverAgent driver = veh.getDriver();
+		final Id<Vehicle> vehicleId = veh.getId();
 		// reset vehicles driver
 		veh.setDriver(null);
+
+		QNetsimEngineRunner runner = QNetsimEngineRunner.getBufferingRunner();
+		if (runner != null) {
+			// the vehicle may get its next driver before the buffered output is processed, so the driver is memorized here
+			runner.bufferAction(new Runnable() {
+				@Override
+				public void run() {
+					letDriverArrive(driver, vehicleId);
+				}
+			});
+		} else {
+			letDriverArrive(driver, vehicleId);
+		}
+	}
+
+	private void letDriverArrive(MobsimDriverAgent driver, Id<Vehicle> vehicleId) {
+		double now = this.qsim.getSimTimer().getTimeOfDay();
+		this.qsim.getEventsManager().processEvent(new PersonLeavesVehicleEvent(now, driver.getId(), vehicleId));
 		driver.endLegAndComputeNextState(now);
 		this.internalInterface.arrangeNextAgentState(driver);
 	}
 
+	/*
+	 * Passes on what the nodes and links emitted during the last time step: first everything from the nodes, then
+	 * everything from the links, each in the order of the elements.  This order neither depends on the number of runners
+	 * nor on which runner handles which element, nor on the order in which the runners happened to activate each other's
+	 * elements.  Only the main thread touches the events manager, so the runners never wait for each other there.
+	 */
+	private void processBufferedOutput() {
+		this.outputBuffers.clear();
+		for (QNetsimEngineRunner engine : this.engines) {
+			this.outputBuffers.add(engine.nodesOutput);
+		}
+		this.outputMerger.process(this.outputBuffers);
+
+		this.outputBuffers.clear();
+		for (QNetsimEngineRunner engine : this.engines) {
+			this.outputBuffers.add(engine.linksOutput);
+		}
+		this.outputMerger.process(this.outputBuffers);
+	}
+
 	private void initQSimEngineThreads() {
 
 		this.engines = new ArrayList<>();
@@ -436,6 +556,10 @@ public class QNetsimEngine implements MobsimEngine {
 			// The number of runners should be larger than the number of threads, yes,
 			// but see MATSIM-404 - Simulation result still depends on the number of runners.
 //			numOfRunners *= 10 ;
+			// This is not the case if the netsim is thread independent:
+			if (this.threadIndependent && this.numOfThreads > 1) {
+				numOfRunners *= 10 ;
+			}
 			this.pool = Executors.newFixedThreadPool(
 					this.numOfThreads,
 					new NamedThreadFactory());
@@ -445,9 +569,9 @@ public class QNetsimEngine implements MobsimEngine {
 		for (int i = 0; i < numOfRunners; i++) {
 			QNetsimEngineRunner engine ;
 			if (this.usingThreadpool) {
-				engine = new QNetsimEngineRunner();
+				engine = new QNetsimEngineRunner(this.bufferingOutput);
 			} else {
-				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier);
+				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier, this.bufferingOutput);
 				Thread thread = new Thread(engine);
 				thread.setName("QNetsimEngineRunner_" + i);
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
@@ -475,19 +599,32 @@ public class QNetsimEngine implements MobsimEngine {
 		int nodes[] = new int[numOfRunners];
 		int links[] = new int[numOfRunners];
 
-		int roundRobin = 0;
-		for (QNode node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.numOfRunners;
+		List<QNode> qNodes = new ArrayList<>(network.getNetsimNodes().values());
+		double[] weights = new double[qNodes.size()];
+		for (int n = 0; n < weights.length; n++) {
+			// a runner handles the node and all its out links
+			weights[n] = 1 + qNodes.get(n).getNode().getOutLinks().size();
+		}
+		int[] partitions = this.partitioner.partition(qNodes, weights, this.numOfRunners);
+		this.partitionedNodes = qNodes;
+		this.nodeWeights = weights;
+		this.nodePartitions = partitions;
+
+		int linkIndex = 0;
+		for (int n = 0; n < qNodes.size(); n++) {
+			QNode node = qNodes.get(n);
+			node.elementIndex = n;
+			int i = partitions[n];
 			node.setNetElementActivationRegistry(this.engines.get(i));
 			nodes[i]++;
 
 			// set activator for out links
 			for (Link outLink : node.getNode().getOutLinks().values()) {
-				AbstractQLink qLink = (AbstractQLink) network.getNetsimLink(outLink.getId());
-				// (must be of this type to work.  kai, feb'12)
+				QLinkI qLink = network.getNetsimLink(outLink.getId());
 
 				// removing qsim as "person in the middle".  not fully sure if this is the same in the parallel impl.  kai, oct'10
 				qLink.setNetElementActivationRegistry(this.engines.get(i));
+				qLink.elementIndex = linkIndex++;
 
 				/*
 				 * If the QLink contains agents that end their activity in the first time
@@ -501,18 +638,122 @@ public class QNetsimEngine implements MobsimEngine {
 				links[i]++;
 
 			}
-
-			roundRobin++;
 		}
 
 		// print some statistics
 		for (int i = 0; i < this.engines.size(); i++) {
 			log.info("Assigned " + nodes[i] + " nodes and " + links[i] + " links to QSimEngineRunner #" + i);
 		}
+		printPartitioningStatistics(qNodes, weights, partitions);
 
 		this.linksToActivateInitially.clear();
 	}
 
+	/*
+	 * Re-partitions the network based on the work that nodes and their out links caused since the last call, and moves the
+	 * active nodes and links to their new runners.  Work is counted in simulation steps rather than measured in wall clock
+	 * time (as in the runTimes of the runners), so that the result remains deterministic.  Must only be called between two
+	 * time steps.
+	 */
+	private void rebalance(double time) {
+		double[] work = new double[this.partitionedNodes.size()];
+		double[] runnerWork = new double[this.numOfRunners];
+		double totalWork = 0.;
+		for (int n = 0; n < work.length; n++) {
+			QNode node = this.partitionedNodes.get(n);
+			long nodeWork = node.simStepCounter;
+			node.simStepCounter = 0;
+			for (Link outLink : node.getNode().getOutLinks().values()) {
+				QLinkI qLink = network.getNetsimLink(outLink.getId());
+				nodeWork += qLink.simStepCounter;
+				qLink.simStepCounter = 0;
+			}
+			work[n] = nodeWork;
+			runnerWork[this.nodePartitions[n]] += nodeWork;
+			totalWork += nodeWork;
+		}
+
+		double maxRunnerWork = 0.;
+		for (double w : runnerWork) {
+			maxRunnerWork = Math.max(maxRunnerWork, w);
+		}
+		double imbalance = totalWork > 0. ? maxRunnerWork * this.numOfRunners / totalWork : 1.;
+		if (imbalance < REBALANCING_THRESHOLD) {
+			return;
+		}
+
+		double[] weights = new double[work.length];
+		for (int n = 0; n < work.length; n++) {
+			weights[n] = this.nodeWeights[n] + work[n];
+		}
+		int[] partitions = this.partitioner.partition(this.partitionedNodes, weights, this.numOfRunners);
+
+		// take all active elements away from their runners ...
+		List<QNode> activeNodes = new ArrayList<>();
+		List<QLinkI> activeLinks = new ArrayList<>();
+		for (QNetsimEngineRunner engine : this.engines) {
+			engine.removeActiveNetElements(activeNodes, activeLinks);
+		}
+
+		// ... re-assign all elements ...
+		int nofMovedNodes = 0;
+		for (int n = 0; n < partitions.length; n++) {
+			if (partitions[n] == this.nodePartitions[n]) {
+				continue;
+			}
+			nofMovedNodes++;
+			QNode node = this.partitionedNodes.get(n);
+			QNetsimEngineRunner engine = this.engines.get(partitions[n]);
+			node.setNetElementActivationRegistry(engine);
+			for (Link outLink : node.getNode().getOutLinks().values()) {
+				network.getNetsimLink(outLink.getId()).setNetElementActivationRegistry(engine);
+			}
+		}
+		this.nodePartitions = partitions;
+
+		// ... and give the active elements to their (possibly new) runners.  The elements keep their active flags.
+		for (QNode node : activeNodes) {
+			node.getNetElementActivationRegistry().registerNodeAsActive(node);
+		}
+		for (QLinkI link : activeLinks) {
+			link.getNetElementActivationRegistry().registerLinkAsActive(link);
+		}
+
+		log.info("Rebalancing QNetsimEngine runners at " + Time.writeTime(time) + " : work imbalance (max/avg) was " + imbalance
+				+ "; moved " + nofMovedNodes + " nodes (with their out links) to other runners.");
+		printPartitioningStatistics(this.partitionedNodes, weights, partitions);
+	}
+
+	/*
+	 * The edge cut is the number of links whose to-node is handled by a different runner than the link itself.  Every vehicle
+	 * that reaches the end of such a link activates a node of another runner.
+	 */
+	private void printPartitioningStatistics(List<QNode> qNodes, double[] weights, int[] partitions) {
+		Map<Id<Node>, Integer> nodePartitions = new HashMap<>(qNodes.size());
+		double[] loads = new double[this.numOfRunners];
+		double totalLoad = 0.;
+		for (int n = 0; n < qNodes.size(); n++) {
+			nodePartitions.put(qNodes.get(n).getNode().getId(), partitions[n]);
+			loads[partitions[n]] += weights[n];
+			totalLoad += weights[n];
+		}
+		int nofLinks = 0;
+		int edgeCut = 0;
+		for (Link link : network.getNetwork().getLinks().values()) {
+			nofLinks++;
+			if (!nodePartitions.get(link.getFromNode().getId()).equals(nodePartitions.get(link.getToNode().getId()))) {
+				edgeCut++;
+			}
+		}
+		double maxLoad = 0.;
+		for (double load : loads) {
+			maxLoad = Math.max(maxLoad, load);
+		}
+		double imbalance = totalLoad > 0. ? maxLoad * this.numOfRunners / totalLoad : 1.;
+		log.info("Netsim partitioning (" + this.partitioner.getClass().getSimpleName() + "): edge cut = " + edgeCut + " of " + nofLinks
+				+ " links; load imbalance (max/avg) = " + imbalance);
+	}
+
 	public void printEngineRunTimes() {
 		if (!QSim.analyzeRunTimes) return;
 		
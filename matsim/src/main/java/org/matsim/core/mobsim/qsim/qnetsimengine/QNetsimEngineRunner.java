@@ -20,6 +20,8 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.qsim.QSim;
 
@@ -76,6 +78,18 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
+	/*
+	 * If the output of the network elements is buffered, events and agent state changes are not passed on while the
+	 * nodes and links are moved, but collected here, tagged with the element that caused them.  The QNetsimEngine
+	 * passes them on after all runners are done with the time step.
+	 */
+	private static final ThreadLocal<QNetsimEngineRunner> bufferingRunner = new ThreadLocal<>();
+	private final boolean bufferingOutput;
+	/*package*/ final NetElementOutputBuffer nodesOutput;
+	/*package*/ final NetElementOutputBuffer linksOutput;
+	private NetElementOutputBuffer currentOutput = null;
+	private int currentElementIndex = -1;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -83,17 +97,39 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		else runTimes = null;
 	}
 	
-	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
+	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier, boolean bufferingOutput) {
 		this.startBarrier = startBarrier;
 		this.separationBarrier = separationBarrier;
 		this.endBarrier = endBarrier;
+		this.bufferingOutput = bufferingOutput;
+		this.nodesOutput = bufferingOutput ? new NetElementOutputBuffer() : null;
+		this.linksOutput = bufferingOutput ? new NetElementOutputBuffer() : null;
 	}
-	QNetsimEngineRunner() {
+	QNetsimEngineRunner(boolean bufferingOutput) {
 		// this is the execution path with invokeAll and the threadpool; it does not need (and should not use) the barriers.
 		// kai, jan'14
 		this.startBarrier = null;
 		this.separationBarrier = null;
 		this.endBarrier = null;
+		this.bufferingOutput = bufferingOutput;
+		this.nodesOutput = bufferingOutput ? new NetElementOutputBuffer() : null;
+		this.linksOutput = bufferingOutput ? new NetElementOutputBuffer() : null;
+	}
+
+	/**
+	 * @return the runner that the current thread is working for if that runner buffers the output of the network
+	 * elements, otherwise <code>null</code>.
+	 */
+	/*package*/ static QNetsimEngineRunner getBufferingRunner() {
+		return bufferingRunner.get();
+	}
+
+	/*package*/ void bufferEvent(EventsManager events, Event event) {
+		this.currentOutput.addEvent(this.currentElementIndex, events, event);
+	}
+
+	/*package*/ void bufferAction(Runnable action) {
+		this.currentOutput.addAction(this.currentElementIndex, action);
 	}
 
 	/*package*/ void setTime(final double t) {
@@ -116,10 +152,16 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
-		if (this.movingNodes) {
-			moveNodes();
-		} else {
-			moveLinks();
+		if (this.bufferingOutput) bufferingRunner.set(this);
+		try {
+			if (this.movingNodes) {
+				moveNodes();
+			} else {
+				moveLinks();
+			}
+		} finally {
+			// pooled threads may work for another runner next time
+			if (this.bufferingOutput) bufferingRunner.remove();
 		}
 		return true ;
 	}
@@ -127,6 +169,8 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	@Override
 	public void run() {
 
+		if (this.bufferingOutput) bufferingRunner.set(this);
+
 		// The method is ended when the simulationRunning flag is set to false.
 		while(true) {
 
@@ -167,10 +211,13 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	private void moveNodes() {
 		boolean remainsActive;
 		this.lockNodes = true;
+		this.currentOutput = this.nodesOutput;
 		QNode node;
 		Iterator<QNode> simNodes = this.nodesQueue.iterator();
 		while (simNodes.hasNext()) {
 			node = simNodes.next();
+			node.simStepCounter++;
+			this.currentElementIndex = node.elementIndex;
 			remainsActive = node.doSimStep(time);
 			if (!remainsActive) simNodes.remove();
 		}
@@ -179,10 +226,13 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	private void moveLinks() {
 		boolean remainsActive;
 		lockLinks = true;
+		this.currentOutput = this.linksOutput;
 		QLinkI link;
 		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
 		while (simLinks.hasNext()) {
 			link = simLinks.next();
+			link.simStepCounter++;
+			this.currentElementIndex = link.elementIndex;
 
 			remainsActive = link.doSimStep();
 
@@ -229,6 +279,21 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		return this.nodesQueue.size();
 	}
 
+	/*package*/ boolean hasActiveNetElements() {
+		return !this.nodesQueue.isEmpty() || !this.linksList.isEmpty();
+	}
+
+	/*
+	 * Hands all active nodes and links over to the caller, e.g. to move them to other runners.  Must only be called
+	 * between two time steps, i.e. while neither nodes nor links are moved.
+	 */
+	/*package*/ void removeActiveNetElements(List<QNode> activeNodes, List<QLinkI> activeLinks) {
+		activeNodes.addAll(this.nodesQueue);
+		this.nodesQueue.clear();
+		activeLinks.addAll(this.linksList);
+		this.linksList.clear();
+	}
+
 	public void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
@@ -74,6 +74,15 @@ public class QNode implements NetsimNode {
 	// necessary if Nodes are (de)activated
 	private NetElementActivationRegistry activator = null;
 
+	/*
+	 * Number of doSimStep calls since the QNetsimEngine last looked at it.  Only written by the runner that handles
+	 * this node, and only read between time steps.
+	 */
+	int simStepCounter = 0;
+
+	// position of this node in the QNetsimEngine; defines the order in which buffered output of the nodes is passed on
+	int elementIndex = -1;
+
 	// for Customizable
 	private final Map<String, Object> customAttributes = new HashMap<>();
 
@@ -88,7 +97,10 @@ public class QNode implements NetsimNode {
 		int nofInLinks = this.node.getInLinks().size();
 		this.inLinksArrayCache = new QLinkI[nofInLinks];
 		this.tempLinks = new QLinkI[nofInLinks];
-		if (this.context.qsimConfig.getNumberOfThreads() > 1) { 
+		if (this.context.qsimConfig.isUsingThreadIndependentNetsim()) {
+			// The random numbers only depend on the node, not on the number of threads or the order in which nodes are created.
+			this.random = MatsimRandom.getLocalInstance(n.getId().toString().hashCode());
+		} else if (this.context.qsimConfig.getNumberOfThreads() > 1) { 
 			// This could just as well be the "normal" case. The second alternative
 			// is just there so some scenarios / test cases stay
 			// "event-file-compatible". Consider removing the second alternative.
@@ -135,6 +147,10 @@ public class QNode implements NetsimNode {
 		this.activator = activator;
 	}
 
+	/*package*/ NetElementActivationRegistry getNetElementActivationRegistry() {
+		return this.activator;
+	}
+
 	/*
 	 * This method is called from QueueWithBuffer.addToBuffer(...) which is triggered at 
 	 * some placed, but always initially by a QLink's doSomStep(...) method. I.e. QNodes
@@ -549,7 +549,10 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 			return /*(this.remainingflowCap < 0.0) // still accumulating, thus active
 				|| */(!this.vehQueue.isEmpty()) || (!this.isNotOfferingVehicle()) || ( !this.holes.isEmpty() ) ;
 		} else {
-			return (this.flowcap_accumulate.getValue() < 1.0) // still accumulating, thus active
+			return (this.flowCapacityPerTimeStepFractionalPart > 0.0 && this.flowcap_accumulate.getValue() < 1.0) // still accumulating, thus active
+					// (without a fractional part, there is nothing to accumulate, and the accumulated value stays at zero)
+					|| (this.context.qsimConfig.getInflowConstraint() != InflowConstraint.none
+							&& this.accumulatedInflowCap < Math.ceil(this.maxFlowFromFdiag)) // still accumulating inflow capacity
 					|| (!this.vehQueue.isEmpty()) // vehicles are on link, thus active 
 					|| (!this.isNotOfferingVehicle()) // buffer is not empty, thus active
 					|| ( !this.holes.isEmpty() ); // need to process arrival of holes
@@ -608,6 +611,9 @@ final class QueueWithBuffer extends QLaneI implements SignalizeableItem {
 		
 		if( context.qsimConfig.isUsingFastCapacityUpdate() ){
 			flowcap_accumulate.setValue(flowCapacityPerTimeStep);
+		} else if (flowCapacityPerTimeStepFractionalPart > 0.0 && flowcap_accumulate.getValue() < 1.0) {
+			// the link may have been deactivated while there was no fractional part to accumulate, see isActive():
+			qLink.activateLink();
 		}
 	}
 	
@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RecursiveCoordinateBisectionPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+
+/**
+ * Splits the network recursively along the longer side of the bounding box such that both halves carry (approximately)
+ * the same weight.  For a number of partitions that is not a power of two, the halves are weighted accordingly.
+ * <p></p>
+ * The result are spatially contiguous regions, i.e. most links connect nodes that are handled by the same runner.  Ties in
+ * the coordinates are broken by the position in the node list, which keeps the result deterministic.
+ */
+final class RecursiveCoordinateBisectionPartitioner implements NetsimNetworkPartitioner {
+	private static final Logger log = Logger.getLogger(RecursiveCoordinateBisectionPartitioner.class);
+
+	private double[] xs;
+	private double[] ys;
+	private double[] weights;
+	private int[] partitions;
+
+	@Override
+	public int[] partition(List<QNode> nodes, double[] weights, int numberOfPartitions) {
+		final int nofNodes = nodes.size();
+		this.xs = new double[nofNodes];
+		this.ys = new double[nofNodes];
+		this.weights = weights;
+		this.partitions = new int[nofNodes];
+
+		Integer[] order = new Integer[nofNodes];
+		for (int n = 0; n < nofNodes; n++) {
+			Coord coord = nodes.get(n).getNode().getCoord();
+			if (coord == null) {
+				log.warn("node " + nodes.get(n).getNode().getId() + " has no coordinate; falling back to round robin assignment.");
+				return new RoundRobinNetsimNetworkPartitioner().partition(nodes, weights, numberOfPartitions);
+			}
+			this.xs[n] = coord.getX();
+			this.ys[n] = coord.getY();
+			order[n] = n;
+		}
+
+		bisect(order, 0, nofNodes, 0, numberOfPartitions);
+
+		int[] result = this.partitions;
+		this.xs = null;
+		this.ys = null;
+		this.weights = null;
+		this.partitions = null;
+		return result;
+	}
+
+	/**
+	 * Assigns the nodes <code>order[from]</code> to <code>order[to-1]</code> to the partitions
+	 * <code>firstPartition</code> to <code>firstPartition + nofPartitions - 1</code>.
+	 */
+	private void bisect(Integer[] order, int from, int to, int firstPartition, int nofPartitions) {
+		if (nofPartitions == 1) {
+			for (int i = from; i < to; i++) {
+				this.partitions[order[i]] = firstPartition;
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double totalWeight = 0.;
+		for (int i = from; i < to; i++) {
+			int n = order[i];
+			minX = Math.min(minX, this.xs[n]);
+			maxX = Math.max(maxX, this.xs[n]);
+			minY = Math.min(minY, this.ys[n]);
+			maxY = Math.max(maxY, this.ys[n]);
+			totalWeight += this.weights[n];
+		}
+
+		final double[] coords = (maxX - minX >= maxY - minY) ? this.xs : this.ys;
+		Arrays.sort(order, from, to, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer n1, Integer n2) {
+				int cmp = Double.compare(coords[n1], coords[n2]);
+				return cmp != 0 ? cmp : Integer.compare(n1, n2);
+			}
+		});
+
+		int nofLowerPartitions = nofPartitions / 2;
+		double lowerTargetWeight = totalWeight * nofLowerPartitions / nofPartitions;
+		double lowerWeight = 0.;
+		int split = from;
+		while (split < to && lowerWeight + this.weights[order[split]] / 2. <= lowerTargetWeight) {
+			lowerWeight += this.weights[order[split]];
+			split++;
+		}
+
+		bisect(order, from, split, firstPartition, nofLowerPartitions);
+		bisect(order, split, to, firstPartition + nofLowerPartitions, nofPartitions - nofLowerPartitions);
+	}
+
+}
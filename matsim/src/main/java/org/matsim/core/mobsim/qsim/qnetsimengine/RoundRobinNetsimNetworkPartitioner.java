@@ -0,0 +1,39 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoundRobinNetsimNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.List;
+
+/**
+ * The historical assignment: nodes are handed to the runners round robin, in network iteration order.  Ignores the weights.
+ */
+final class RoundRobinNetsimNetworkPartitioner implements NetsimNetworkPartitioner {
+
+	@Override
+	public int[] partition(List<QNode> nodes, double[] weights, int numberOfPartitions) {
+		int[] partitions = new int[nodes.size()];
+		for (int n = 0; n < partitions.length; n++) {
+			partitions[n] = n % numberOfPartitions;
+		}
+		return partitions;
+	}
+
+}
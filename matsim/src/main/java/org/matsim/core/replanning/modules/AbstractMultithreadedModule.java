@@ -28,10 +28,16 @@ import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An abstract strategy module for running multiple plan algorithms in parallel.
@@ -40,15 +46,24 @@ import java.util.concurrent.atomic.AtomicReference;
  * Just overwrite getPlanAlgoInstance() to return an instance of your plan
  * algorithm.
  * <p></p>
- * <code>initThreads()</code> creates the threads, but does not yet start them.
+ * <code>initThreads()</code> creates one plan algorithm per thread.
  * <p></p>
- * <code>handlePlan(Plan)</code> distributes the plans equally to all threads.
+ * <code>handlePlan(Plan)</code> collects the plans.
  * <p></p>
- * <code>finishReplanning()</code> finally starts the threads and waits for all threads to be finished.
+ * <code>finishReplanning()</code> finally hands the plans to the threads and waits for all threads to be finished.
+ * The threads are the ones of a pool which lives as long as the module, so they are reused in consecutive iterations.
+ * Idle threads of the pool end after a minute, so modules which are no longer used do not keep
+ * their threads.  Each thread runs the plans with its own plan algorithm.
  * <p></p>
+ * By default, the plans are distributed equally to all threads.
  * While this approach does not lead to optimal performance gains ("slow threads" vs.
- * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
- * started after all to-be-handled plans are added, we can use unsynchronized data structures.
+ * "fast threads"), it helps building reproducible runs.  If a
+ * {@link GlobalConfigGroup#getReplanningBatchSize() replanning batch size} is set, each thread takes the next batch of
+ * plans when it is done with its last one instead, so threads do not wait for a thread with a few expensive plans.
+ * This is not work stealing as in a fork-join pool: all threads take their batches from one shared counter, in the order
+ * of the plans, and a batch once taken is not split up again.
+ * Additionally, as the plans are only
+ * handed to the threads after all to-be-handled plans are added, we can use unsynchronized data structures.
  * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
@@ -59,21 +74,23 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
 	private final int numOfThreads;
+	/** 0 to distribute the plans equally to the threads */
+	private final int batchSize;
 
-	private PlanAlgoThread[] algothreads = null;
-	private Thread[] threads = null;
+	private ExecutorService executor = null;
+	private PlanAlgoTask[] tasks = null;
 	private PlanAlgorithm directAlgo = null;
 	private String name = null;
 
-	private int count = 0;
-
-	private final AtomicReference<Throwable> hadException = new AtomicReference<>(null);
-	private final ExceptionHandler exceptionHandler = new ExceptionHandler(this.hadException);
+	private final List<Plan> plans = new ArrayList<>();
 
 	private ReplanningContext replanningContext;
 
 	static final private Logger log = Logger.getLogger(AbstractMultithreadedModule.class);
 
+	/** how long an idle thread of the pool waits for the next iteration's plans before it ends */
+	static final int THREAD_KEEP_ALIVE_SECONDS = 60;
+
 	/**
 	 * Design comments:<ul>
 	 * <li> The way I understand this, the instances that this method returns need to be thread-safe (i.e. independent from each other).  They can,
@@ -84,10 +101,12 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this.batchSize = globalConfigGroup.getReplanningBatchSize();
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
 		this.numOfThreads = numOfThreads;
+		this.batchSize = 0;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -118,8 +137,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	@Override
 	public final void handlePlan(final Plan plan) {
 		if (this.directAlgo == null) {
-			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
-			this.count++;
+			this.plans.add(plan);
 		} else {
 			this.directAlgo.run(plan);
 		}
@@ -138,58 +156,61 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		
 		if (this.directAlgo == null) {
 			// only try to start threads if we did not directly work on all the plans
-			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
+			log.info("[" + this.name + "] starting " + this.tasks.length + " threads, handling " + this.plans.size() + " plans");
 
-			// start threads
-			for (Thread thread : this.threads) {
-				thread.start();
+			List<Future<?>> futures = new ArrayList<>();
+			for (PlanAlgoTask task : this.tasks) {
+				futures.add(this.executor.submit(task));
 			}
 
 			// wait until each thread is finished
-			try {
-				for (Thread thread : this.threads) {
-					thread.join();
+			Throwable throwable = null;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					log.error("[" + this.name + "] a thread died with exception. Will stop after all threads finished.", e.getCause());
+					throwable = e.getCause();
 				}
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
 			}
-			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
-			Throwable throwable = this.hadException.get();
+			log.info("[" + this.name + "] all " + this.tasks.length + " threads finished.");
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
 			}
 		}
 		// reset
-		this.algothreads = null;
-		this.threads = null;
+		this.tasks = null;
+		this.plans.clear();
 		this.replanningContext = null;
-		this.count = 0;
 		
 		this.afterFinishReplanningHook();
 	}
 
 	private void initThreads() {
-		if (this.threads != null) {
+		if (this.tasks != null) {
 			throw new RuntimeException("threads are already initialized");
 		}
 
-		this.hadException.set(null);
-		this.threads = new Thread[this.numOfThreads];
-		this.algothreads = new PlanAlgoThread[this.numOfThreads];
+		this.tasks = new PlanAlgoTask[this.numOfThreads];
 
 		Counter counter = null;
-		// setup threads
+		AtomicInteger nextPlan = new AtomicInteger();
+		// setup one plan algorithm per thread
 		for (int i = 0; i < this.numOfThreads; i++) {
 			PlanAlgorithm algo = getPlanAlgoInstance();
 			if (i == 0) {
 				this.name = algo.getClass().getSimpleName();
 				counter = new Counter("[" + this.name + "] handled plan # ");
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
-			Thread thread = new Thread(algothread, this.name + "." + i);
-			thread.setUncaughtExceptionHandler(this.exceptionHandler);
-			this.threads[i] = thread;
-			this.algothreads[i] = algothread;
+			this.tasks[i] = new PlanAlgoTask(algo, counter, this.plans, i, this.numOfThreads, this.batchSize, nextPlan);
+		}
+		if (this.executor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(this.numOfThreads, this.numOfThreads,
+					THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new PlanAlgoThreadFactory(this.name));
+			pool.allowCoreThreadTimeOut(true);
+			this.executor = pool;
 		}
 	}
 
@@ -197,43 +218,67 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		return numOfThreads;
 	}
 
-	private final static class ExceptionHandler implements UncaughtExceptionHandler {
+	private final static class PlanAlgoThreadFactory implements ThreadFactory {
 
-		private final AtomicReference<Throwable> hadException;
+		private final String name;
+		private int count = 0;
 
-		public ExceptionHandler(final AtomicReference<Throwable> hadException) {
-			this.hadException = hadException;
+		public PlanAlgoThreadFactory(final String name) {
+			this.name = name;
 		}
 
 		@Override
-		public void uncaughtException(Thread t, Throwable e) {
-			log.error("Thread " + t.getName() + " died with exception. Will stop after all threads finished.", e);
-			this.hadException.set(e);
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, this.name + "." + this.count++);
+			// idle threads only end after the keep-alive time, they must not keep the application alive until then
+			thread.setDaemon(true);
+			return thread;
 		}
 
 	}
 
-	private final static class PlanAlgoThread implements Runnable {
+	private final static class PlanAlgoTask implements Runnable {
 
 		private final PlanAlgorithm planAlgo;
-		private final List<Plan> plans = new LinkedList<>();
 		private final Counter counter;
-
-		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter) {
+		private final List<Plan> plans;
+		private final int index;
+		private final int numOfTasks;
+		private final int batchSize;
+		/** the first plan of the next batch, if the plans are handled in batches */
+		private final AtomicInteger nextPlan;
+
+		public PlanAlgoTask(final PlanAlgorithm algo, final Counter counter, final List<Plan> plans, final int index,
+				final int numOfTasks, final int batchSize, final AtomicInteger nextPlan) {
 			this.planAlgo = algo;
 			this.counter = counter;
-		}
-
-		public void addPlanToThread(final Plan plan) {
-			this.plans.add(plan);
+			this.plans = plans;
+			this.index = index;
+			this.numOfTasks = numOfTasks;
+			this.batchSize = batchSize;
+			this.nextPlan = nextPlan;
 		}
 
 		@Override
 		public void run() {
-			for (Plan plan : this.plans) {
-				this.planAlgo.run(plan);
-				this.counter.incCounter();
+			if (this.batchSize <= 0) {
+				for (int i = this.index; i < this.plans.size(); i += this.numOfTasks) {
+					runPlan(this.plans.get(i));
+				}
+			} else {
+				int first;
+				while ((first = this.nextPlan.getAndAdd(this.batchSize)) < this.plans.size()) {
+					int end = Math.min(first + this.batchSize, this.plans.size());
+					for (int i = first; i < end; i++) {
+						runPlan(this.plans.get(i));
+					}
+				}
 			}
 		}
+
+		private void runPlan(final Plan plan) {
+			this.planAlgo.run(plan);
+			this.counter.incCounter();
+		}
 	}
 }
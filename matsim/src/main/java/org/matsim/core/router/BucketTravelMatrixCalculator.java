@@ -0,0 +1,408 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BucketTravelMatrixCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.TravelMatrixCalculator.TravelMatrix;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Computes the same matrices as the {@link TravelMatrixCalculator}, but with buckets in a {@link ContractionHierarchy}
+ * instead of one least cost path tree per origin.  A search upwards in the hierarchy from every destination stores the
+ * cost from each node it reaches to the destination in the bucket of that node.  A search upwards from every origin then
+ * scans the buckets of the nodes it reaches, and the least sum of both costs over all these nodes is the cost of the
+ * least cost path.  Both searches only visit the ancestors of a node in the elimination tree of the hierarchy, see
+ * {@link ContractionHierarchies}, so every origin and destination costs about as much as one query of a
+ * {@link ContractionHierarchies} path calculator, independent of the size of the matrix.
+ * <p></p>
+ * Like a {@link ContractionHierarchies} path calculator, all paths are searched with the weights of the time bin of
+ * the departure time, and their travel times are the travel times of their links at the start of that time bin.  For
+ * travel times that change within trips, the values thus differ from the ones of the {@link TravelMatrixCalculator}.
+ * The travel times and distances of the edges of the hierarchy are computed once per time bin, which takes about as
+ * long as customizing a time bin.
+ * <p></p>
+ * The travel time must support being called by several threads at once, as the origins are handled in parallel.
+ */
+public class BucketTravelMatrixCalculator {
+
+	private final ContractionHierarchy hierarchy;
+	private final ContractionHierarchy.Metric metric;
+	private final TravelTime travelTime;
+	private final int numberOfThreads;
+
+	/** per time bin, computed when needed: the travel times and distances of the edges, in the order of the weights */
+	private final float[][] edgeTimes;
+	private final float[][] edgeDistances;
+
+	/**
+	 * @param metric the weights of the hierarchy, i.e. the travel disutilities of the matrices
+	 * @param travelTime the travel time of the links, which must be the one the travel disutility of the metric is
+	 * based on, if any
+	 */
+	public BucketTravelMatrixCalculator(final ContractionHierarchy hierarchy, final ContractionHierarchy.Metric metric,
+			final TravelTime travelTime, final int numberOfThreads) {
+		this.hierarchy = hierarchy;
+		this.metric = metric;
+		this.travelTime = travelTime;
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+		this.edgeTimes = new float[metric.weights.length][];
+		this.edgeDistances = new float[metric.weights.length][];
+	}
+
+	/**
+	 * @param origins the nodes where the paths start
+	 * @param destinations the nodes where the paths end
+	 * @param departureTime the time at which all paths start, which selects the time bin of the weights
+	 * @return the matrix of all origins and destinations.  Destinations that cannot be reached from an origin have
+	 * infinite values.
+	 * @throws IllegalArgumentException if there are more than {@link TravelMatrix#MAX_SIZE} pairs of origins and
+	 * destinations, or if a node is not part of the network of the hierarchy
+	 */
+	public TravelMatrix calcTravelMatrix(final List<? extends Node> origins, final List<? extends Node> destinations,
+			final double departureTime) {
+		final int[] originRanks = getRanks(origins);
+		final int[] destinationRanks = getRanks(destinations);
+		final TravelMatrix matrix = new TravelMatrix(origins.size(), destinations.size());
+		final int timeBin = this.metric.getTimeBin(departureTime);
+		final float[] weights = this.metric.weights[timeBin];
+		final float[] times = getEdgeTimes(timeBin);
+		final float[] distances = this.edgeDistances[timeBin];
+
+		// the destinations are split into fixed parts, so that the buckets are always filled in the same order
+		int threads = Math.min(this.numberOfThreads, Math.max(originRanks.length, destinationRanks.length));
+		final Bucket[] parts = new Bucket[Math.max(1, Math.min(threads, destinationRanks.length))];
+		List<Runnable> tasks = new ArrayList<>();
+		for (int i = 0; i < parts.length; i++) {
+			final int part = i;
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					int from = (int) ((long) part * destinationRanks.length / parts.length);
+					int to = (int) ((long) (part + 1) * destinationRanks.length / parts.length);
+					parts[part] = fillBuckets(destinationRanks, from, to, weights, times, distances);
+				}
+			});
+		}
+		run(tasks);
+		final Buckets buckets = new Buckets(parts, this.hierarchy.nodes.length);
+
+		final AtomicInteger nextOrigin = new AtomicInteger();
+		tasks.clear();
+		for (int i = 0; i < Math.max(1, Math.min(threads, originRanks.length)); i++) {
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					Search search = new Search();
+					double[] bestCosts = new double[destinationRanks.length];
+					double[] bestTimes = new double[destinationRanks.length];
+					double[] bestDistances = new double[destinationRanks.length];
+					int origin;
+					while ((origin = nextOrigin.getAndIncrement()) < originRanks.length) {
+						Arrays.fill(bestCosts, Double.POSITIVE_INFINITY);
+						search.search(originRanks[origin], 0, weights, times, distances);
+						for (int node = originRanks[origin]; node >= 0; node = BucketTravelMatrixCalculator.this.hierarchy.getParent(node)) {
+							double cost = search.costs[node];
+							if (cost == Double.POSITIVE_INFINITY) {
+								continue;
+							}
+							for (int entry = buckets.first[node]; entry < buckets.first[node + 1]; entry++) {
+								int destination = buckets.destinations[entry];
+								double totalCost = cost + buckets.costs[entry];
+								if (totalCost < bestCosts[destination]) {
+									bestCosts[destination] = totalCost;
+									bestTimes[destination] = search.times[node] + buckets.times[entry];
+									bestDistances[destination] = search.distances[node] + buckets.distances[entry];
+								}
+							}
+						}
+						search.reset(originRanks[origin]);
+						int row = origin * matrix.getNumberOfDestinations();
+						for (int d = 0; d < bestCosts.length; d++) {
+							boolean reached = bestCosts[d] < Double.POSITIVE_INFINITY;
+							matrix.getTravelDisutilities()[row + d] = (float) bestCosts[d];
+							matrix.getTravelTimes()[row + d] = reached ? (float) bestTimes[d] : Float.POSITIVE_INFINITY;
+							matrix.getDistances()[row + d] = reached ? (float) bestDistances[d] : Float.POSITIVE_INFINITY;
+						}
+					}
+				}
+			});
+		}
+		run(tasks);
+		return matrix;
+	}
+
+	private int[] getRanks(final List<? extends Node> nodes) {
+		int[] ranks = new int[nodes.size()];
+		for (int i = 0; i < ranks.length; i++) {
+			ranks[i] = this.hierarchy.getRank(nodes.get(i));
+		}
+		return ranks;
+	}
+
+	private void run(final List<Runnable> tasks) {
+		if (tasks.size() == 1) {
+			tasks.get(0).run();
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Runnable task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the bucket entries of the destinations <code>from</code> to <code>to - 1</code>
+	 */
+	private Bucket fillBuckets(final int[] destinationRanks, final int from, final int to, final float[] weights,
+			final float[] times, final float[] distances) {
+		Search search = new Search();
+		Bucket bucket = new Bucket();
+		for (int destination = from; destination < to; destination++) {
+			int start = destinationRanks[destination];
+			search.search(start, 1, weights, times, distances);
+			for (int node = start; node >= 0; node = this.hierarchy.getParent(node)) {
+				if (search.costs[node] < Double.POSITIVE_INFINITY) {
+					bucket.add(node, destination, search.costs[node], search.times[node], search.distances[node]);
+				}
+			}
+			search.reset(start);
+		}
+		return bucket;
+	}
+
+	/**
+	 * @return the travel times of the edges in the time bin, in the order of the weights.  The distances are computed at
+	 * the same time.
+	 */
+	private synchronized float[] getEdgeTimes(final int timeBin) {
+		if (this.edgeTimes[timeBin] == null) {
+			computeEdgeTimesAndDistances(timeBin);
+		}
+		return this.edgeTimes[timeBin];
+	}
+
+	/**
+	 * Follows the customization of the weights in {@link ContractionHierarchy}: an edge gets the travel time and distance
+	 * of the path its weight stands for, i.e. of its link with the least travel disutility, or of the first triangle
+	 * whose weight is less.
+	 */
+	private void computeEdgeTimesAndDistances(final int timeBin) {
+		ContractionHierarchy h = this.hierarchy;
+		float[] weights = this.metric.weights[timeBin];
+		double time = this.metric.getTimeBinStart(timeBin);
+		float[] linkWeights = new float[weights.length];
+		float[] times = new float[weights.length];
+		float[] distances = new float[weights.length];
+		Arrays.fill(linkWeights, Float.POSITIVE_INFINITY);
+		Arrays.fill(times, Float.POSITIVE_INFINITY);
+		Arrays.fill(distances, Float.POSITIVE_INFINITY);
+		for (int i = 0; i < h.links.length; i++) {
+			Link link = h.links[i];
+			float disutility = (float) this.metric.travelDisutility.getLinkTravelDisutility(link, time, null, null);
+			int slot = h.linkSlots[i];
+			if (disutility < linkWeights[slot]) {
+				linkWeights[slot] = disutility;
+				times[slot] = (float) this.travelTime.getLinkTravelTime(link, time, null, null);
+				distances[slot] = (float) link.getLength();
+			}
+		}
+		for (int edge = 0; edge < h.edgeLow.length; edge++) {
+			float upwards = linkWeights[2 * edge];
+			float downwards = linkWeights[2 * edge + 1];
+			int i = h.downFirst[h.edgeLow[edge]];
+			int iEnd = h.downFirst[h.edgeLow[edge] + 1];
+			int j = h.downFirst[h.edgeHigh[edge]];
+			int jEnd = h.downFirst[h.edgeHigh[edge] + 1];
+			while (i < iEnd && j < jEnd) {
+				int lowEdge = h.downEdges[i];
+				int highEdge = h.downEdges[j];
+				int lowMiddle = h.edgeLow[lowEdge];
+				int highMiddle = h.edgeLow[highEdge];
+				if (lowMiddle < highMiddle) {
+					i++;
+				} else if (lowMiddle > highMiddle) {
+					j++;
+				} else {
+					float up = weights[2 * lowEdge + 1] + weights[2 * highEdge];
+					if (up < upwards) {
+						upwards = up;
+						times[2 * edge] = times[2 * lowEdge + 1] + times[2 * highEdge];
+						distances[2 * edge] = distances[2 * lowEdge + 1] + distances[2 * highEdge];
+					}
+					float down = weights[2 * highEdge + 1] + weights[2 * lowEdge];
+					if (down < downwards) {
+						downwards = down;
+						times[2 * edge + 1] = times[2 * highEdge + 1] + times[2 * lowEdge];
+						distances[2 * edge + 1] = distances[2 * highEdge + 1] + distances[2 * lowEdge];
+					}
+					i++;
+					j++;
+				}
+			}
+		}
+		this.edgeDistances[timeBin] = distances;
+		this.edgeTimes[timeBin] = times;
+	}
+
+	/**
+	 * A search from one node to its ancestors (direction 0) or from its ancestors to the node (direction 1), as in
+	 * {@link ContractionHierarchies}, which also adds up the travel times and distances.
+	 */
+	private final class Search {
+
+		final double[] costs;
+		final double[] times;
+		final double[] distances;
+
+		Search() {
+			int numberOfNodes = BucketTravelMatrixCalculator.this.hierarchy.nodes.length;
+			this.costs = new double[numberOfNodes];
+			this.times = new double[numberOfNodes];
+			this.distances = new double[numberOfNodes];
+			Arrays.fill(this.costs, Double.POSITIVE_INFINITY);
+		}
+
+		void search(final int start, final int direction, final float[] weights, final float[] edgeTimes, final float[] edgeDistances) {
+			ContractionHierarchy h = BucketTravelMatrixCalculator.this.hierarchy;
+			this.costs[start] = 0.0;
+			this.times[start] = 0.0;
+			this.distances[start] = 0.0;
+			for (int node = start; node >= 0; node = h.getParent(node)) {
+				double cost = this.costs[node];
+				if (cost == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				for (int edge = h.upFirst[node]; edge < h.upFirst[node + 1]; edge++) {
+					double neighborCost = cost + weights[2 * edge + direction];
+					int neighbor = h.edgeHigh[edge];
+					if (neighborCost < this.costs[neighbor]) {
+						this.costs[neighbor] = neighborCost;
+						this.times[neighbor] = this.times[node] + edgeTimes[2 * edge + direction];
+						this.distances[neighbor] = this.distances[node] + edgeDistances[2 * edge + direction];
+					}
+				}
+			}
+		}
+
+		void reset(final int start) {
+			for (int node = start; node >= 0; node = BucketTravelMatrixCalculator.this.hierarchy.getParent(node)) {
+				this.costs[node] = Double.POSITIVE_INFINITY;
+			}
+		}
+
+	}
+
+	/**
+	 * The bucket entries of some destinations, in the order in which they were found.
+	 */
+	private static final class Bucket {
+
+		int size = 0;
+		int[] nodes = new int[64];
+		int[] destinations = new int[64];
+		double[] costs = new double[64];
+		double[] times = new double[64];
+		double[] distances = new double[64];
+
+		void add(final int node, final int destination, final double cost, final double time, final double distance) {
+			if (this.size == this.nodes.length) {
+				int length = 2 * this.size;
+				this.nodes = Arrays.copyOf(this.nodes, length);
+				this.destinations = Arrays.copyOf(this.destinations, length);
+				this.costs = Arrays.copyOf(this.costs, length);
+				this.times = Arrays.copyOf(this.times, length);
+				this.distances = Arrays.copyOf(this.distances, length);
+			}
+			this.nodes[this.size] = node;
+			this.destinations[this.size] = destination;
+			this.costs[this.size] = cost;
+			this.times[this.size] = time;
+			this.distances[this.size] = distance;
+			this.size++;
+		}
+
+	}
+
+	/**
+	 * The bucket entries of all destinations, sorted by node: the entries of node <code>n</code> are
+	 * <code>first[n]</code> to <code>first[n+1] - 1</code>.
+	 */
+	private static final class Buckets {
+
+		final int[] first;
+		final int[] destinations;
+		final double[] costs;
+		final double[] times;
+		final double[] distances;
+
+		Buckets(final Bucket[] parts, final int numberOfNodes) {
+			this.first = new int[numberOfNodes + 1];
+			int size = 0;
+			for (Bucket part : parts) {
+				for (int i = 0; i < part.size; i++) {
+					this.first[part.nodes[i] + 1]++;
+				}
+				size += part.size;
+			}
+			for (int node = 0; node < numberOfNodes; node++) {
+				this.first[node + 1] += this.first[node];
+			}
+			this.destinations = new int[size];
+			this.costs = new double[size];
+			this.times = new double[size];
+			this.distances = new double[size];
+			int[] next = Arrays.copyOf(this.first, numberOfNodes);
+			for (Bucket part : parts) {
+				for (int i = 0; i < part.size; i++) {
+					int entry = next[part.nodes[i]]++;
+					this.destinations[entry] = part.destinations[i];
+					this.costs[entry] = part.costs[i];
+					this.times[entry] = part.times[i];
+					this.distances[entry] = part.distances[i];
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,252 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Finds least cost paths with a bidirectional search in a {@link ContractionHierarchy}: both searches only follow
+ * edges to higher nodes.  As the hierarchy contains all shortcuts, the higher nodes reachable from a node are exactly
+ * its ancestors in the elimination tree, i.e. the lowest higher neighbor, its lowest higher neighbor and so on.  The
+ * searches thus need no priority queue, they relax the edges of the ancestors in this order.
+ * <p></p>
+ * The path is searched with the weights of the time bin of the start time, i.e. the travel disutilities at the start of
+ * that time bin, as customized for the {@link ContractionHierarchy.Metric}.  Travel time and cost of the resulting path
+ * are then computed link by link with the travel time and disutility of this calculator, as by the other routers.  For
+ * trips that are long compared to the time bins, the path may thus differ from the one a {@link Dijkstra} finds.
+ * <p></p>
+ * Like the other routers, an instance must not be used by several threads at once.
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	private final ContractionHierarchy hierarchy;
+	private final ContractionHierarchy.Metric metric;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+
+	private final double[] forwardCosts;
+	private final double[] backwardCosts;
+	/** the edge on which a node was reached */
+	private final int[] forwardEdges;
+	private final int[] backwardEdges;
+	private int[] stack = new int[3 * 64];
+
+	public ContractionHierarchies(final ContractionHierarchy hierarchy, final ContractionHierarchy.Metric metric,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.hierarchy = hierarchy;
+		this.metric = metric;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		int numberOfNodes = hierarchy.nodes.length;
+		this.forwardCosts = new double[numberOfNodes];
+		this.backwardCosts = new double[numberOfNodes];
+		Arrays.fill(this.forwardCosts, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.backwardCosts, Double.POSITIVE_INFINITY);
+		this.forwardEdges = new int[numberOfNodes];
+		this.backwardEdges = new int[numberOfNodes];
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int from = this.hierarchy.getRank(fromNode);
+		int to = this.hierarchy.getRank(toNode);
+		int timeBin = this.metric.getTimeBin(starttime);
+		float[] weights = this.metric.weights[timeBin];
+
+		search(from, this.forwardCosts, this.forwardEdges, weights, 0);
+		search(to, this.backwardCosts, this.backwardEdges, weights, 1);
+		// the common ancestors
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = -1;
+		for (int node = to; node >= 0; node = this.hierarchy.getParent(node)) {
+			double cost = this.forwardCosts[node] + this.backwardCosts[node];
+			if (cost < best) {
+				best = cost;
+				meeting = node;
+			}
+		}
+		if (meeting < 0) {
+			reset(from, to);
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId());
+			return null;
+		}
+
+		List<Link> links = new ArrayList<>();
+		List<Integer> upwards = new ArrayList<>();
+		for (int node = meeting; node != from; node = this.hierarchy.edgeLow[this.forwardEdges[node]]) {
+			upwards.add(this.forwardEdges[node]);
+		}
+		for (int i = upwards.size() - 1; i >= 0; i--) {
+			int edge = upwards.get(i);
+			unpack(this.hierarchy.edgeLow[edge], this.hierarchy.edgeHigh[edge], edge, timeBin, links);
+		}
+		for (int node = meeting; node != to; node = this.hierarchy.edgeLow[this.backwardEdges[node]]) {
+			int edge = this.backwardEdges[node];
+			unpack(node, this.hierarchy.edgeLow[edge], edge, timeBin, links);
+		}
+		reset(from, to);
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		double time = starttime;
+		double cost = 0.0;
+		for (Link link : links) {
+			cost += this.travelCosts.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTimes.getLinkTravelTime(link, time, person, vehicle);
+			nodes.add(link.getToNode());
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	/**
+	 * Computes the costs from <code>start</code> to its ancestors (direction 0) or from its ancestors to
+	 * <code>start</code> (direction 1).
+	 */
+	private void search(int start, double[] costs, int[] edges, float[] weights, int direction) {
+		int[] upFirst = this.hierarchy.upFirst;
+		int[] edgeHigh = this.hierarchy.edgeHigh;
+		costs[start] = 0.0;
+		edges[start] = -1;
+		for (int node = start; node >= 0; node = this.hierarchy.getParent(node)) {
+			double cost = costs[node];
+			if (cost == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			for (int edge = upFirst[node]; edge < upFirst[node + 1]; edge++) {
+				double neighborCost = cost + weights[2 * edge + direction];
+				int neighbor = edgeHigh[edge];
+				if (neighborCost < costs[neighbor]) {
+					costs[neighbor] = neighborCost;
+					edges[neighbor] = edge;
+				}
+			}
+		}
+	}
+
+	private void reset(int from, int to) {
+		for (int node = from; node >= 0; node = this.hierarchy.getParent(node)) {
+			this.forwardCosts[node] = Double.POSITIVE_INFINITY;
+		}
+		for (int node = to; node >= 0; node = this.hierarchy.getParent(node)) {
+			this.backwardCosts[node] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Replaces the edge from <code>from</code> to <code>to</code> by the links it stands for: shortcuts by the two
+	 * edges of the triangle whose weights add up to the weight of the shortcut.
+	 */
+	private void unpack(int from, int to, int edge, int timeBin, List<Link> links) {
+		float[] weights = this.metric.weights[timeBin];
+		int[] edgeLow = this.hierarchy.edgeLow;
+		int[] downEdges = this.hierarchy.downEdges;
+		int[] downFirst = this.hierarchy.downFirst;
+		int size = 0;
+		size = push(size, from, to, edge);
+		while (size > 0) {
+			size -= 3;
+			int a = this.stack[size];
+			int b = this.stack[size + 1];
+			int e = this.stack[size + 2];
+			boolean upwards = a == edgeLow[e];
+			float weight = weights[upwards ? 2 * e : 2 * e + 1];
+			int low = upwards ? a : b;
+			int high = upwards ? b : a;
+			boolean found = false;
+			int i = downFirst[low];
+			int j = downFirst[high];
+			while (i < downFirst[low + 1] && j < downFirst[high + 1]) {
+				int lowEdge = downEdges[i];
+				int highEdge = downEdges[j];
+				int lowMiddle = edgeLow[lowEdge];
+				int highMiddle = edgeLow[highEdge];
+				if (lowMiddle < highMiddle) {
+					i++;
+				} else if (lowMiddle > highMiddle) {
+					j++;
+				} else {
+					// the weights were computed with the same sums, so they are exactly equal
+					if (upwards && weights[2 * lowEdge + 1] + weights[2 * highEdge] == weight) {
+						size = push(size, lowMiddle, b, highEdge);
+						size = push(size, a, lowMiddle, lowEdge);
+						found = true;
+						break;
+					}
+					if (!upwards && weights[2 * highEdge + 1] + weights[2 * lowEdge] == weight) {
+						size = push(size, lowMiddle, b, lowEdge);
+						size = push(size, a, lowMiddle, highEdge);
+						found = true;
+						break;
+					}
+					i++;
+					j++;
+				}
+			}
+			if (!found) {
+				links.add(getLink(this.hierarchy.nodes[a], this.hierarchy.nodes[b], timeBin));
+			}
+		}
+	}
+
+	private int push(int size, int from, int to, int edge) {
+		if (size + 3 > this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+		}
+		this.stack[size] = from;
+		this.stack[size + 1] = to;
+		this.stack[size + 2] = edge;
+		return size + 3;
+	}
+
+	/**
+	 * @return the link with the least travel disutility in the time bin among the links from <code>from</code> to
+	 * <code>to</code>
+	 */
+	private Link getLink(Node from, Node to, int timeBin) {
+		double time = this.metric.getTimeBinStart(timeBin);
+		Link best = null;
+		double bestDisutility = Double.POSITIVE_INFINITY;
+		for (Link link : from.getOutLinks().values()) {
+			if (link.getToNode() == to) {
+				double disutility = this.metric.travelDisutility.getLinkTravelDisutility(link, time, null, null);
+				if (best == null || disutility < bestDisutility) {
+					best = link;
+					bestDisutility = disutility;
+				}
+			}
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,520 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchy.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The node order and the shortcuts of a contraction hierarchy of a network.  Both only depend on the structure of the
+ * network, so they are computed once, while the weights of the edges are computed by {@link #customize} whenever the
+ * travel disutilities change.
+ * <p></p>
+ * The nodes are ordered by nested dissection: the nodes are split into two parts by their coordinates, the nodes of
+ * the smaller side of the cut are ranked above both parts, and both parts are ordered the same way.  Contracting a
+ * node connects all its neighbors of higher rank, without witness searches, so that the shortcuts are valid for every
+ * metric.
+ * <p></p>
+ * The edges of the hierarchy are undirected and numbered by their lower node.  Every edge has a weight for each
+ * direction and each time bin of a {@link Metric}.
+ */
+public final class ContractionHierarchy {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchy.class);
+
+	/** parts of the network with at most so many nodes are not split further */
+	private static final int LEAF_SIZE = 8;
+
+	private final Network network;
+	/*package*/ final Node[] nodes;
+	private final Map<Id<Node>, Integer> ranks;
+
+	/*package*/ final int[] edgeLow;
+	/*package*/ final int[] edgeHigh;
+	/** the edges to higher nodes of node <code>n</code> are <code>upFirst[n]</code> to <code>upFirst[n+1] - 1</code> */
+	/*package*/ final int[] upFirst;
+	/** the edges to lower nodes of node <code>n</code>, ordered by the lower node */
+	/*package*/ final int[] downFirst;
+	/*package*/ final int[] downEdges;
+
+	/*package*/ final Link[] links;
+	/** per link: 2 * edge for links from the lower to the higher node, 2 * edge + 1 for the other direction */
+	/*package*/ final int[] linkSlots;
+
+	private ContractionHierarchy(final Network network) {
+		this.network = network;
+		int n = network.getNodes().size();
+
+		// the undirected graph of the network, without loops and parallel links
+		Map<Id<Node>, Integer> indices = new HashMap<>();
+		Node[] networkNodes = network.getNodes().values().toArray(new Node[n]);
+		for (int i = 0; i < n; i++) {
+			indices.put(networkNodes[i].getId(), i);
+		}
+		int[][] neighbors = new int[n][];
+		int[] degrees = new int[n];
+		for (int i = 0; i < n; i++) {
+			neighbors[i] = new int[networkNodes[i].getInLinks().size() + networkNodes[i].getOutLinks().size()];
+		}
+		for (Link link : network.getLinks().values()) {
+			int from = indices.get(link.getFromNode().getId());
+			int to = indices.get(link.getToNode().getId());
+			if (from != to) {
+				neighbors[from][degrees[from]++] = to;
+				neighbors[to][degrees[to]++] = from;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			neighbors[i] = distinct(neighbors[i], degrees[i]);
+		}
+
+		int[] order = new NestedDissection(networkNodes, neighbors).order();
+		this.nodes = new Node[n];
+		int[] rankOfIndex = new int[n];
+		this.ranks = new HashMap<>();
+		for (int rank = 0; rank < n; rank++) {
+			this.nodes[rank] = networkNodes[order[rank]];
+			rankOfIndex[order[rank]] = rank;
+			this.ranks.put(this.nodes[rank].getId(), rank);
+		}
+
+		// contraction: the higher neighbors of a node become neighbors of the lowest of them
+		int[][] up = new int[n][];
+		for (int rank = 0; rank < n; rank++) {
+			int[] higher = new int[neighbors[order[rank]].length];
+			int count = 0;
+			for (int neighbor : neighbors[order[rank]]) {
+				if (rankOfIndex[neighbor] > rank) {
+					higher[count++] = rankOfIndex[neighbor];
+				}
+			}
+			higher = Arrays.copyOf(higher, count);
+			Arrays.sort(higher);
+			up[rank] = higher;
+		}
+		for (int rank = 0; rank < n; rank++) {
+			int[] higher = up[rank];
+			if (higher.length > 1) {
+				up[higher[0]] = merge(up[higher[0]], higher, 1);
+			}
+		}
+
+		this.upFirst = new int[n + 1];
+		for (int rank = 0; rank < n; rank++) {
+			this.upFirst[rank + 1] = this.upFirst[rank] + up[rank].length;
+		}
+		int numberOfEdges = this.upFirst[n];
+		this.edgeLow = new int[numberOfEdges];
+		this.edgeHigh = new int[numberOfEdges];
+		this.downFirst = new int[n + 1];
+		for (int rank = 0; rank < n; rank++) {
+			for (int i = 0; i < up[rank].length; i++) {
+				int edge = this.upFirst[rank] + i;
+				this.edgeLow[edge] = rank;
+				this.edgeHigh[edge] = up[rank][i];
+				this.downFirst[up[rank][i] + 1]++;
+			}
+			up[rank] = null;
+		}
+		for (int rank = 0; rank < n; rank++) {
+			this.downFirst[rank + 1] += this.downFirst[rank];
+		}
+		this.downEdges = new int[numberOfEdges];
+		int[] next = Arrays.copyOf(this.downFirst, n);
+		for (int edge = 0; edge < numberOfEdges; edge++) {
+			// edges are numbered by their lower node, so the lists are ordered by the lower node
+			this.downEdges[next[this.edgeHigh[edge]]++] = edge;
+		}
+
+		List<Link> usedLinks = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+		for (Link link : network.getLinks().values()) {
+			int from = this.ranks.get(link.getFromNode().getId());
+			int to = this.ranks.get(link.getToNode().getId());
+			if (from != to) {
+				usedLinks.add(link);
+				slots.add(from < to ? 2 * getEdge(from, to) : 2 * getEdge(to, from) + 1);
+			}
+		}
+		this.links = usedLinks.toArray(new Link[usedLinks.size()]);
+		this.linkSlots = new int[slots.size()];
+		for (int i = 0; i < this.linkSlots.length; i++) {
+			this.linkSlots[i] = slots.get(i);
+		}
+		log.info("contraction hierarchy with " + n + " nodes, " + this.links.length + " links and "
+				+ numberOfEdges + " edges created.");
+	}
+
+	/**
+	 * Orders the nodes and computes the shortcuts of the network.  This takes some time, but as it does not depend on
+	 * the travel disutilities, it is only needed once per network.
+	 */
+	public static ContractionHierarchy create(final Network network) {
+		return new ContractionHierarchy(network);
+	}
+
+	public Network getNetwork() {
+		return this.network;
+	}
+
+	/*package*/ int getRank(final Node node) {
+		Integer rank = this.ranks.get(node.getId());
+		if (rank == null || this.nodes[rank] != node) {
+			throw new IllegalArgumentException("The node " + node.getId() + " is not part of the network of the contraction hierarchy.");
+		}
+		return rank;
+	}
+
+	/**
+	 * @return the parent of the node in the elimination tree, i.e. its lowest higher neighbor, or -1 for roots
+	 */
+	/*package*/ int getParent(final int node) {
+		return this.upFirst[node] < this.upFirst[node + 1] ? this.edgeHigh[this.upFirst[node]] : -1;
+	}
+
+	private int getEdge(int low, int high) {
+		return Arrays.binarySearch(this.edgeHigh, this.upFirst[low], this.upFirst[low + 1], high);
+	}
+
+	/**
+	 * Computes the weights of all edges for the given travel disutility, in time bins of <code>timeBinSize</code>
+	 * seconds.  The weights of an original link in a time bin are its travel disutilities at the start of the time bin,
+	 * the weights of the shortcuts are found through the triangles of the hierarchy.  The time bins are customized in
+	 * parallel.
+	 *
+	 * @throws IllegalArgumentException if the travel disutility cannot be computed without a person, as the weights are
+	 * the same for all persons
+	 */
+	public Metric customize(final TravelDisutility travelDisutility, final double timeBinSize, final int numberOfTimeBins,
+			final int numberOfThreads) {
+		if (this.links.length > 0) {
+			try {
+				travelDisutility.getLinkTravelDisutility(this.links[0], 0.0, null, null);
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("The weights of a contraction hierarchy are customized without a person, " +
+						"but " + travelDisutility.getClass().getName() + " cannot compute travel disutilities without a person. " +
+						"Use a travel disutility that does not depend on the person, e.g. without randomization.", e);
+			}
+		}
+		final Metric metric = new Metric(travelDisutility, timeBinSize, numberOfTimeBins);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, numberOfTimeBins)));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int bin = 0; bin < numberOfTimeBins; bin++) {
+				final int timeBin = bin;
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						metric.weights[timeBin] = computeWeights(travelDisutility, timeBin * timeBinSize);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return metric;
+	}
+
+	private float[] computeWeights(final TravelDisutility travelDisutility, final double time) {
+		float[] weights = new float[2 * this.edgeLow.length];
+		Arrays.fill(weights, Float.POSITIVE_INFINITY);
+		for (int i = 0; i < this.links.length; i++) {
+			float disutility = (float) travelDisutility.getLinkTravelDisutility(this.links[i], time, null, null);
+			int slot = this.linkSlots[i];
+			if (disutility < weights[slot]) {
+				weights[slot] = disutility;
+			}
+		}
+		// the edges to the lower node of a triangle have lower numbers, so their weights are final already
+		for (int edge = 0; edge < this.edgeLow.length; edge++) {
+			float upwards = weights[2 * edge];
+			float downwards = weights[2 * edge + 1];
+			int i = this.downFirst[this.edgeLow[edge]];
+			int iEnd = this.downFirst[this.edgeLow[edge] + 1];
+			int j = this.downFirst[this.edgeHigh[edge]];
+			int jEnd = this.downFirst[this.edgeHigh[edge] + 1];
+			while (i < iEnd && j < jEnd) {
+				int lowEdge = this.downEdges[i];
+				int highEdge = this.downEdges[j];
+				int lowMiddle = this.edgeLow[lowEdge];
+				int highMiddle = this.edgeLow[highEdge];
+				if (lowMiddle < highMiddle) {
+					i++;
+				} else if (lowMiddle > highMiddle) {
+					j++;
+				} else {
+					upwards = Math.min(upwards, weights[2 * lowEdge + 1] + weights[2 * highEdge]);
+					downwards = Math.min(downwards, weights[2 * highEdge + 1] + weights[2 * lowEdge]);
+					i++;
+					j++;
+				}
+			}
+			weights[2 * edge] = upwards;
+			weights[2 * edge + 1] = downwards;
+		}
+		return weights;
+	}
+
+	/**
+	 * The weights of the edges of a contraction hierarchy for one travel disutility.  They are stored as floats, two per
+	 * edge and time bin, i.e. they need <code>8 * edges * time bins</code> bytes, with the shortcuts counted as edges.
+	 * With 31 hourly time bins and three million edges, this is about 750 MB.  Fewer time bins need proportionally less
+	 * memory.
+	 */
+	public static final class Metric {
+
+		/*package*/ final TravelDisutility travelDisutility;
+		private final double timeBinSize;
+		/** per time bin: the weight from the lower to the higher node at 2 * edge, of the other direction at 2 * edge + 1 */
+		/*package*/ final float[][] weights;
+
+		private Metric(final TravelDisutility travelDisutility, final double timeBinSize, final int numberOfTimeBins) {
+			this.travelDisutility = travelDisutility;
+			this.timeBinSize = timeBinSize;
+			this.weights = new float[numberOfTimeBins][];
+		}
+
+		/*package*/ int getTimeBin(final double time) {
+			int bin = (int) (time / this.timeBinSize);
+			return Math.max(0, Math.min(bin, this.weights.length - 1));
+		}
+
+		/*package*/ double getTimeBinStart(final int timeBin) {
+			return timeBin * this.timeBinSize;
+		}
+
+	}
+
+	private static int[] distinct(int[] values, int length) {
+		if (length == 0) {
+			return new int[0];
+		}
+		int[] sorted = Arrays.copyOf(values, length);
+		Arrays.sort(sorted);
+		int count = 1;
+		for (int i = 1; i < length; i++) {
+			if (sorted[i] != sorted[count - 1]) {
+				sorted[count++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, count);
+	}
+
+	/**
+	 * @return the sorted union of <code>a</code> and <code>b[from..]</code>, both sorted
+	 */
+	private static int[] merge(int[] a, int[] b, int from) {
+		int[] result = new int[a.length + b.length - from];
+		int i = 0;
+		int j = from;
+		int count = 0;
+		while (i < a.length || j < b.length) {
+			int value;
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				value = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				value = b[j++];
+			} else {
+				value = a[i++];
+				j++;
+			}
+			result[count++] = value;
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Orders the nodes by recursive bisection, with the separating nodes last.  Each part is split along one of four
+	 * directions of the coordinates, at the position between 30% and 70% of the nodes that cuts the fewest links.
+	 */
+	private static final class NestedDissection {
+
+		private static final double MIN_BALANCE = 0.3;
+
+		private final Node[] nodes;
+		private final int[][] neighbors;
+		/** the part that is currently split, and for its nodes: their position in the current direction */
+		private final int[] parts;
+		private final int[] positions;
+		private final double[] keys;
+		private final int[] order;
+		private int ordered = 0;
+		private int nextPart = 1;
+
+		NestedDissection(Node[] nodes, int[][] neighbors) {
+			this.nodes = nodes;
+			this.neighbors = neighbors;
+			this.parts = new int[nodes.length];
+			this.positions = new int[nodes.length];
+			this.keys = new double[nodes.length];
+			this.order = new int[nodes.length];
+		}
+
+		int[] order() {
+			int[] all = new int[this.nodes.length];
+			for (int i = 0; i < all.length; i++) {
+				all[i] = i;
+			}
+			dissect(all);
+			return this.order;
+		}
+
+		private void dissect(int[] part) {
+			if (part.length <= LEAF_SIZE) {
+				for (int node : part) {
+					this.order[this.ordered++] = node;
+				}
+				return;
+			}
+			int partId = this.nextPart++;
+			for (int node : part) {
+				this.parts[node] = partId;
+			}
+			int minSplit = Math.max(1, (int) (MIN_BALANCE * part.length));
+			int maxSplit = Math.min(part.length - 1, (int) Math.ceil((1 - MIN_BALANCE) * part.length));
+			int[] best = null;
+			int bestSplit = -1;
+			int bestCut = Integer.MAX_VALUE;
+			for (int direction = 0; direction < 4; direction++) {
+				int[] sorted = sort(part, direction);
+				for (int i = 0; i < sorted.length; i++) {
+					this.positions[sorted[i]] = i;
+				}
+				// move the nodes to the first part one by one, and count the links between the parts
+				int cut = 0;
+				for (int i = 0; i < maxSplit; i++) {
+					for (int neighbor : this.neighbors[sorted[i]]) {
+						if (this.parts[neighbor] == partId) {
+							cut += this.positions[neighbor] > i ? 1 : -1;
+						}
+					}
+					if (i + 1 >= minSplit && cut < bestCut) {
+						best = sorted;
+						bestSplit = i + 1;
+						bestCut = cut;
+					}
+				}
+			}
+			for (int i = 0; i < best.length; i++) {
+				this.positions[best[i]] = i;
+			}
+
+			// the nodes of the smaller side of the cut separate the parts
+			boolean[] boundary = new boolean[best.length];
+			int firstBoundary = 0;
+			int secondBoundary = 0;
+			for (int i = 0; i < best.length; i++) {
+				for (int neighbor : this.neighbors[best[i]]) {
+					if (this.parts[neighbor] == partId && (this.positions[neighbor] < bestSplit) != (i < bestSplit)) {
+						boundary[i] = true;
+						if (i < bestSplit) {
+							firstBoundary++;
+						} else {
+							secondBoundary++;
+						}
+						break;
+					}
+				}
+			}
+			boolean separatorInFirst = firstBoundary <= secondBoundary;
+			int[] first = new int[bestSplit - (separatorInFirst ? firstBoundary : 0)];
+			int[] second = new int[best.length - bestSplit - (separatorInFirst ? 0 : secondBoundary)];
+			int[] separator = new int[separatorInFirst ? firstBoundary : secondBoundary];
+			int firstCount = 0;
+			int secondCount = 0;
+			int separatorCount = 0;
+			for (int i = 0; i < best.length; i++) {
+				if (boundary[i] && separatorInFirst == (i < bestSplit)) {
+					separator[separatorCount++] = best[i];
+				} else if (i < bestSplit) {
+					first[firstCount++] = best[i];
+				} else {
+					second[secondCount++] = best[i];
+				}
+			}
+			dissect(first);
+			dissect(second);
+			for (int node : separator) {
+				this.order[this.ordered++] = node;
+			}
+		}
+
+		/**
+		 * @return the nodes ordered by x, y, x + y or x - y
+		 */
+		private int[] sort(int[] part, int direction) {
+			Integer[] sorted = new Integer[part.length];
+			for (int i = 0; i < part.length; i++) {
+				sorted[i] = part[i];
+				Coord coord = this.nodes[part[i]].getCoord();
+				switch (direction) {
+				case 0:
+					this.keys[part[i]] = coord.getX();
+					break;
+				case 1:
+					this.keys[part[i]] = coord.getY();
+					break;
+				case 2:
+					this.keys[part[i]] = coord.getX() + coord.getY();
+					break;
+				default:
+					this.keys[part[i]] = coord.getX() - coord.getY();
+				}
+			}
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare(NestedDissection.this.keys[a], NestedDissection.this.keys[b]);
+				}
+			});
+			int[] result = new int[part.length];
+			for (int i = 0; i < part.length; i++) {
+				result[i] = sorted[i];
+			}
+			return result;
+		}
+
+	}
+
+}
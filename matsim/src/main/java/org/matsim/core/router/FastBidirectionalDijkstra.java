@@ -0,0 +1,318 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FastBidirectionalDijkstra.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.priorityqueue.IntMinHeap;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.PreProcessEuclidean;
+import org.matsim.core.router.util.RoutingNetworkNode;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * <p>
+ * Bidirectional least cost path router on an {@link ArrayRoutingNetwork}, for point-to-point queries with time
+ * dependent travel disutilities.
+ * </p>
+ * <p>
+ * A forward search from the start node, like the one of {@link FastDijkstra}, alternates with a backward search from
+ * the end node.  Without knowing the arrival time, the backward search cannot use the time dependent travel
+ * disutilities, so it uses the minimum travel disutilities of the links instead.  This gives a lower bound of the cost
+ * from every node the backward search has settled to the end node, and the cost of the last node it settled is a
+ * lower bound for all others.  When the forward search first settles a node that the backward search has settled too,
+ * the path continuing along the backward tree is evaluated with the time dependent travel disutilities, which gives an
+ * upper bound of the least cost.  Nodes whose cost plus lower bound is not below the best path found so far are not
+ * relaxed, the backward search stops once its cost exceeds this bound, and the lower bounds direct the forward search
+ * towards the end node.  The forward search stops when the smallest key of its queue is not below the best path, which
+ * is then optimal as with the unidirectional router, given that the travel times are FIFO.
+ * </p>
+ * <p>
+ * With a {@link PreProcessEuclidean} the forward search is goal directed like {@link FastAStarEuclidean}.  Dead ends
+ * are not pruned.  The links of the routing network are copied into arrays once per instance, in both directions.
+ * </p>
+ *
+ * @see FastDijkstra
+ * @see FastAStarEuclidean
+ */
+public class FastBidirectionalDijkstra implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(FastBidirectionalDijkstra.class);
+
+	private final ArrayRoutingNetwork routingNetwork;
+	private final TravelDisutility costFunction;
+	private final TravelTime timeFunction;
+	/** may be <code>null</code>, in which case the forward search is not goal directed */
+	private final PreProcessEuclidean preProcessData;
+
+	private final Node[] nodes;
+	/** the out-links of node <code>n</code> are <code>outFirst[n]</code> to <code>outFirst[n+1] - 1</code> */
+	private final int[] outFirst;
+	private final int[] outToNodes;
+	private final Link[] outLinks;
+	/** the in-links of node <code>n</code> are <code>inFirst[n]</code> to <code>inFirst[n+1] - 1</code> */
+	private final int[] inFirst;
+	private final int[] inFromNodes;
+	private final Link[] inLinks;
+	private final double[] inMinCosts;
+
+	// forward search
+	private final double[] costs;
+	private final double[] times;
+	/** the position of the link over which a node was reached in the out-link arrays */
+	private final int[] forwardLinks;
+	private final int[] previousNodes;
+	private final int[] reachedFor;
+	private final int[] settledFor;
+	private final IntMinHeap forwardHeap;
+
+	// backward search
+	private final double[] lowerBounds;
+	/** the position of the link over which the end node is reached from a node in the in-link arrays */
+	private final int[] backwardLinks;
+	private final int[] nextNodes;
+	private final int[] reachedBackwardFor;
+	private final int[] settledBackwardFor;
+	private final IntMinHeap backwardHeap;
+
+	private int query = 0;
+
+	public FastBidirectionalDijkstra(final ArrayRoutingNetwork routingNetwork, final TravelDisutility costFunction,
+			final TravelTime timeFunction) {
+		this(routingNetwork, costFunction, timeFunction, null);
+	}
+
+	public FastBidirectionalDijkstra(final ArrayRoutingNetwork routingNetwork, final TravelDisutility costFunction,
+			final TravelTime timeFunction, final PreProcessEuclidean preProcessData) {
+		this.routingNetwork = routingNetwork;
+		this.costFunction = costFunction;
+		this.timeFunction = timeFunction;
+		this.preProcessData = preProcessData;
+
+		RoutingNetworkArrays arrays = new RoutingNetworkArrays(routingNetwork, true);
+		this.nodes = arrays.nodes;
+		this.outFirst = arrays.outFirst;
+		this.outToNodes = arrays.outToNodes;
+		this.outLinks = arrays.outLinks;
+		this.inFirst = arrays.inFirst;
+		this.inFromNodes = arrays.inFromNodes;
+		this.inLinks = arrays.inLinks;
+		this.inMinCosts = new double[this.inLinks.length];
+		for (int i = 0; i < this.inLinks.length; i++) {
+			this.inMinCosts[i] = costFunction.getLinkMinimumTravelDisutility(this.inLinks[i]);
+		}
+
+		int numberOfNodes = this.nodes.length;
+		this.costs = new double[numberOfNodes];
+		this.times = new double[numberOfNodes];
+		this.forwardLinks = new int[numberOfNodes];
+		this.previousNodes = new int[numberOfNodes];
+		this.reachedFor = new int[numberOfNodes];
+		this.settledFor = new int[numberOfNodes];
+		this.forwardHeap = new IntMinHeap(numberOfNodes);
+
+		this.lowerBounds = new double[numberOfNodes];
+		this.backwardLinks = new int[numberOfNodes];
+		this.nextNodes = new int[numberOfNodes];
+		this.reachedBackwardFor = new int[numberOfNodes];
+		this.settledBackwardFor = new int[numberOfNodes];
+		this.backwardHeap = new IntMinHeap(numberOfNodes);
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double startTime, final Person person, final Vehicle vehicle) {
+		int from = getIndex(fromNode);
+		int to = getIndex(toNode);
+		this.query++;
+		Node target = this.nodes[to];
+
+		this.costs[from] = 0.0;
+		this.times[from] = startTime;
+		this.forwardLinks[from] = -1;
+		this.reachedFor[from] = this.query;
+		this.forwardHeap.clear();
+		this.forwardHeap.add(from, estimateRemainingCost(this.nodes[from], target));
+
+		this.lowerBounds[to] = 0.0;
+		this.backwardLinks[to] = -1;
+		this.reachedBackwardFor[to] = this.query;
+		this.backwardHeap.clear();
+		this.backwardHeap.add(to, 0.0);
+		/* a lower bound of the cost to the end node for all nodes not yet settled by the backward search */
+		double radius = 0.0;
+		boolean backwardDone = false;
+
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+
+		while (!this.forwardHeap.isEmpty() && this.forwardHeap.peekKey() < bestCost) {
+			if (!backwardDone) {
+				if (this.backwardHeap.isEmpty()) {
+					// all nodes from which the end node can be reached are settled
+					radius = Double.POSITIVE_INFINITY;
+					backwardDone = true;
+				} else {
+					radius = this.backwardHeap.peekKey();
+					if (radius >= bestCost) {
+						backwardDone = true;
+					} else {
+						settleBackward(this.backwardHeap.poll());
+					}
+				}
+			}
+
+			int node = this.forwardHeap.poll();
+			this.settledFor[node] = this.query;
+			double cost = this.costs[node];
+			/* evaluating the backward tree of every node both searches have settled costs more than it saves, so only
+			 * the first one gives an upper bound, and the forward search has to reach the end node to improve it. */
+			if ((meetingNode < 0 || node == to) && this.settledBackwardFor[node] == this.query && cost + this.lowerBounds[node] < bestCost) {
+				double totalCost = cost + evaluateBackwardPath(node, person, vehicle);
+				if (totalCost < bestCost) {
+					bestCost = totalCost;
+					meetingNode = node;
+				}
+			}
+
+			double time = this.times[node];
+			for (int position = this.outFirst[node]; position < this.outFirst[node + 1]; position++) {
+				int toIndex = this.outToNodes[position];
+				Link link = this.outLinks[position];
+				double toCost = cost + this.costFunction.getLinkTravelDisutility(link, time, person, vehicle);
+				boolean reached = this.reachedFor[toIndex] == this.query;
+				if (reached && toCost >= this.costs[toIndex]) {
+					continue;
+				}
+				double lowerBound = this.settledBackwardFor[toIndex] == this.query ? this.lowerBounds[toIndex] : radius;
+				if (toCost + lowerBound >= bestCost) {
+					continue;
+				}
+				this.costs[toIndex] = toCost;
+				this.times[toIndex] = time + this.timeFunction.getLinkTravelTime(link, time, person, vehicle);
+				this.forwardLinks[toIndex] = position;
+				this.previousNodes[toIndex] = node;
+				double key = toCost + Math.max(lowerBound, estimateRemainingCost(this.nodes[toIndex], target));
+				if (reached && this.settledFor[toIndex] != this.query) {
+					this.forwardHeap.update(toIndex, key);
+				} else {
+					// the lower bounds grow while the backward search proceeds, so settled nodes may be improved later on
+					this.reachedFor[toIndex] = this.query;
+					this.settledFor[toIndex] = 0;
+					this.forwardHeap.add(toIndex, key);
+				}
+			}
+		}
+
+		if (meetingNode < 0) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId());
+			return null;
+		}
+		return constructPath(from, meetingNode, startTime, person, vehicle);
+	}
+
+	private void settleBackward(final int node) {
+		this.settledBackwardFor[node] = this.query;
+		double lowerBound = this.lowerBounds[node];
+		for (int position = this.inFirst[node]; position < this.inFirst[node + 1]; position++) {
+			int fromIndex = this.inFromNodes[position];
+			if (this.settledBackwardFor[fromIndex] == this.query) {
+				continue;
+			}
+			double fromLowerBound = lowerBound + this.inMinCosts[position];
+			if (this.reachedBackwardFor[fromIndex] != this.query) {
+				this.reachedBackwardFor[fromIndex] = this.query;
+				this.lowerBounds[fromIndex] = fromLowerBound;
+				this.backwardLinks[fromIndex] = position;
+				this.nextNodes[fromIndex] = node;
+				this.backwardHeap.add(fromIndex, fromLowerBound);
+			} else if (fromLowerBound < this.lowerBounds[fromIndex]) {
+				this.lowerBounds[fromIndex] = fromLowerBound;
+				this.backwardLinks[fromIndex] = position;
+				this.nextNodes[fromIndex] = node;
+				this.backwardHeap.decreaseKey(fromIndex, fromLowerBound);
+			}
+		}
+	}
+
+	/**
+	 * @return the time dependent cost from <code>node</code> to the end node along the tree of the backward search,
+	 * when leaving <code>node</code> at the time the forward search reached it
+	 */
+	private double evaluateBackwardPath(final int node, final Person person, final Vehicle vehicle) {
+		double time = this.times[node];
+		double cost = 0.0;
+		for (int n = node; this.backwardLinks[n] >= 0; n = this.nextNodes[n]) {
+			Link link = this.inLinks[this.backwardLinks[n]];
+			cost += this.costFunction.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.timeFunction.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return cost;
+	}
+
+	private Path constructPath(final int from, final int meetingNode, final double startTime, final Person person, final Vehicle vehicle) {
+		List<Link> links = new ArrayList<>();
+		for (int n = meetingNode; this.forwardLinks[n] >= 0; n = this.previousNodes[n]) {
+			links.add(this.outLinks[this.forwardLinks[n]]);
+		}
+		Collections.reverse(links);
+		for (int n = meetingNode; this.backwardLinks[n] >= 0; n = this.nextNodes[n]) {
+			links.add(this.inLinks[this.backwardLinks[n]]);
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(this.nodes[from]);
+		double time = startTime;
+		double cost = 0.0;
+		for (Link link : links) {
+			cost += this.costFunction.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.timeFunction.getLinkTravelTime(link, time, person, vehicle);
+			nodes.add(link.getToNode());
+		}
+		return new Path(nodes, links, time - startTime, cost);
+	}
+
+	private double estimateRemainingCost(final Node node, final Node target) {
+		if (this.preProcessData == null) {
+			return 0.0;
+		}
+		return this.preProcessData.getMinTravelCostPerLength() * CoordUtils.calcEuclideanDistance(node.getCoord(), target.getCoord());
+	}
+
+	private int getIndex(final Node node) {
+		RoutingNetworkNode routingNetworkNode = this.routingNetwork.getNodes().get(node.getId());
+		if (routingNetworkNode == null) {
+			throw new IllegalArgumentException("Node " + node.getId() + " is not part of the routing network.");
+		}
+		return ((ArrayRoutingNetworkNode) routingNetworkNode).getArrayIndex();
+	}
+
+}
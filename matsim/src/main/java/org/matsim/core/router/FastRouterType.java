@@ -24,9 +24,12 @@ package org.matsim.core.router;
  * Type Pointer is no longer supported. For now we still keep it here so we
  * can throw an exception if somebody tries to us it. 
  * 
+ * Type ARRAY_BIDIRECTIONAL uses array routing networks as well, but searches
+ * from both ends of the path, see {@link FastBidirectionalDijkstra}.
+ * 
  * @author cdobler
  */
 public enum FastRouterType {
-	ARRAY, POINTER
+	ARRAY, POINTER, ARRAY_BIDIRECTIONAL
 }
 
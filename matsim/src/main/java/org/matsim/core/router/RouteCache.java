@@ -0,0 +1,285 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouteCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Keeps least cost paths across iterations, per mode, start node, end node and departure time bin.
+ * <p></p>
+ * A cached path is reused as long as the travel time of none of its links, evaluated at the time the link is entered,
+ * has changed by more than the threshold relative to when the path was computed.  Otherwise the path is computed again
+ * and replaces the cached one.  Travel time and cost of a reused path are computed link by link for the actual
+ * departure time and person.  A path is not computed again if only links beside it became faster, and travel
+ * disutilities that differ by person are not considered, so the cache trades accuracy for speed.
+ * <p></p>
+ * The number of cached paths is limited by evicting the least recently used ones in {@link #evict()}, which is to be
+ * called after every iteration.  Within an iteration, the cache grows by the paths computed in that iteration.
+ *
+ * @see ControlerConfigGroup#getRouteCacheTimeBinSize()
+ */
+@Singleton
+public final class RouteCache {
+
+	private final double timeBinSize;
+	private final double travelTimeChangeThreshold;
+	private final int maxSize;
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	/** the number of calls to {@link #evict()} so far, to tell when a path was used last */
+	private int iteration = 0;
+
+	@Inject
+	RouteCache(final ControlerConfigGroup config) {
+		this(config.getRouteCacheTimeBinSize(), config.getRouteCacheTravelTimeChangeThreshold(), config.getRouteCacheMaxSize());
+	}
+
+	/**
+	 * Creates a cache without a limit on the number of paths.
+	 *
+	 * @see #RouteCache(double, double, int)
+	 */
+	public RouteCache(final double timeBinSize, final double travelTimeChangeThreshold) {
+		this(timeBinSize, travelTimeChangeThreshold, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param timeBinSize the size of the departure time bins, in seconds.  Not positive disables the cache.
+	 * @param travelTimeChangeThreshold the relative change of the travel time of a link above which paths over the link
+	 * are computed again
+	 * @param maxSize the number of paths that are kept by {@link #evict()}
+	 */
+	public RouteCache(final double timeBinSize, final double travelTimeChangeThreshold, final int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("The maximum size of the route cache must not be negative: " + maxSize);
+		}
+		this.timeBinSize = timeBinSize;
+		this.travelTimeChangeThreshold = travelTimeChangeThreshold;
+		this.maxSize = maxSize;
+	}
+
+	public boolean isEnabled() {
+		return this.timeBinSize > 0;
+	}
+
+	/**
+	 * @return a path calculator that looks up paths in this cache before computing them with <code>calculator</code>
+	 */
+	public LeastCostPathCalculator wrap(final String mode, final LeastCostPathCalculator calculator,
+			final TravelTime travelTime, final TravelDisutility travelDisutility) {
+		return new CachingPathCalculator(mode, calculator, travelTime, travelDisutility);
+	}
+
+	/** @return the number of paths that were reused since the last reset */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/** @return the number of paths that were not in the cache since the last reset */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/** @return the number of cached paths that were computed again because travel times changed, since the last reset */
+	public long getInvalidations() {
+		return this.invalidations.get();
+	}
+
+	/** @return the number of cached paths */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Ends an iteration.  If more than the maximum number of paths are cached, the paths are removed by the iteration in
+	 * which they were used last, starting with the oldest one, until at most the maximum number remain.  All paths of an
+	 * iteration are removed together, so fewer paths than the maximum may remain.  Must not be called while paths are
+	 * calculated.
+	 *
+	 * @return the number of removed paths
+	 */
+	public int evict() {
+		int evicted = 0;
+		int excess = this.entries.size() - this.maxSize;
+		if (excess > 0) {
+			int[] pathsByIteration = new int[this.iteration + 1];
+			for (Entry entry : this.entries.values()) {
+				pathsByIteration[entry.lastUsedIteration]++;
+			}
+			int firstKeptIteration = 0;
+			while (evicted < excess) {
+				evicted += pathsByIteration[firstKeptIteration];
+				firstKeptIteration++;
+			}
+			Iterator<Entry> iterator = this.entries.values().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().lastUsedIteration < firstKeptIteration) {
+					iterator.remove();
+				}
+			}
+		}
+		this.iteration++;
+		return evicted;
+	}
+
+	/**
+	 * Resets the statistics, the cached paths are kept.
+	 */
+	public void resetStatistics() {
+		this.hits.set(0);
+		this.misses.set(0);
+		this.invalidations.set(0);
+	}
+
+	private final class CachingPathCalculator implements LeastCostPathCalculator {
+
+		private final String mode;
+		private final LeastCostPathCalculator delegate;
+		private final TravelTime travelTime;
+		private final TravelDisutility travelDisutility;
+
+		CachingPathCalculator(final String mode, final LeastCostPathCalculator delegate, final TravelTime travelTime,
+				final TravelDisutility travelDisutility) {
+			this.mode = mode;
+			this.delegate = delegate;
+			this.travelTime = travelTime;
+			this.travelDisutility = travelDisutility;
+		}
+
+		@Override
+		public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+			Key key = new Key(this.mode, fromNode, toNode, (int) (starttime / RouteCache.this.timeBinSize));
+			Entry entry = RouteCache.this.entries.get(key);
+			if (entry != null) {
+				Path path = reuse(entry, fromNode, starttime, person, vehicle);
+				if (path != null) {
+					entry.lastUsedIteration = RouteCache.this.iteration;
+					RouteCache.this.hits.incrementAndGet();
+					return path;
+				}
+				RouteCache.this.invalidations.incrementAndGet();
+			} else {
+				RouteCache.this.misses.incrementAndGet();
+			}
+			Path path = this.delegate.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+			if (path != null) {
+				Link[] links = path.links.toArray(new Link[path.links.size()]);
+				double[] linkTravelTimes = new double[links.length];
+				double time = starttime;
+				for (int i = 0; i < links.length; i++) {
+					linkTravelTimes[i] = this.travelTime.getLinkTravelTime(links[i], time, person, vehicle);
+					time += linkTravelTimes[i];
+				}
+				RouteCache.this.entries.put(key, new Entry(links, linkTravelTimes, RouteCache.this.iteration));
+			}
+			return path;
+		}
+
+		/**
+		 * @return the cached path with travel time and cost for the start time, or <code>null</code> if the travel time
+		 * of one of its links has changed too much
+		 */
+		private Path reuse(final Entry entry, final Node fromNode, final double starttime, final Person person, final Vehicle vehicle) {
+			List<Node> nodes = new ArrayList<>(entry.links.length + 1);
+			nodes.add(fromNode);
+			double time = starttime;
+			double cost = 0.0;
+			for (int i = 0; i < entry.links.length; i++) {
+				Link link = entry.links[i];
+				double linkTravelTime = this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+				if (Math.abs(linkTravelTime - entry.linkTravelTimes[i]) > RouteCache.this.travelTimeChangeThreshold * entry.linkTravelTimes[i]) {
+					return null;
+				}
+				cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+				time += linkTravelTime;
+				nodes.add(link.getToNode());
+			}
+			return new Path(nodes, new ArrayList<>(Arrays.asList(entry.links)), time - starttime, cost);
+		}
+	}
+
+	private static final class Key {
+
+		private final String mode;
+		private final Node fromNode;
+		private final Node toNode;
+		private final int timeBin;
+
+		Key(final String mode, final Node fromNode, final Node toNode, final int timeBin) {
+			this.mode = mode;
+			this.fromNode = fromNode;
+			this.toNode = toNode;
+			this.timeBin = timeBin;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.fromNode == other.fromNode && this.toNode == other.toNode && this.timeBin == other.timeBin
+					&& this.mode.equals(other.mode);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((this.mode.hashCode() * 31 + this.fromNode.hashCode()) * 31 + this.toNode.hashCode()) * 31 + this.timeBin;
+		}
+	}
+
+	private static final class Entry {
+
+		final Link[] links;
+		/** the travel times of the links when the path was computed */
+		final double[] linkTravelTimes;
+		/** the iteration in which the path was used last; only read in {@link RouteCache#evict()} after the routing */
+		int lastUsedIteration;
+
+		Entry(final Link[] links, final double[] linkTravelTimes, final int lastUsedIteration) {
+			this.links = links;
+			this.linkTravelTimes = linkTravelTimes;
+			this.lastUsedIteration = lastUsedIteration;
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouteCacheStatistics.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Evicts paths from the {@link RouteCache} at the end of every iteration, writes the hits, misses, invalidations and
+ * evictions of the iteration and the number of cached paths to <code>ITERS/it.N/N.routeCache.txt</code>, and resets them.
+ */
+class RouteCacheStatistics implements IterationEndsListener {
+
+	private final static Logger log = Logger.getLogger(RouteCacheStatistics.class);
+
+	/*package*/ static final String FILENAME = "routeCache.txt";
+
+	private final RouteCache routeCache;
+	private final OutputDirectoryHierarchy controlerIO;
+
+	@Inject
+	RouteCacheStatistics(RouteCache routeCache, OutputDirectoryHierarchy controlerIO) {
+		this.routeCache = routeCache;
+		this.controlerIO = controlerIO;
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		long hits = this.routeCache.getHits();
+		long misses = this.routeCache.getMisses();
+		long invalidations = this.routeCache.getInvalidations();
+		long requests = hits + misses + invalidations;
+		int evictions = this.routeCache.evict();
+		int size = this.routeCache.size();
+		log.info("[" + event.getIteration() + "] route cache: " + hits + " of " + requests + " paths reused, "
+				+ invalidations + " computed again because of changed travel times, " + evictions + " evicted, "
+				+ size + " paths cached.");
+
+		BufferedWriter writer = IOUtils.getBufferedWriter(this.controlerIO.getIterationFilename(event.getIteration(), FILENAME));
+		try {
+			writer.write("hits\tmisses\tinvalidations\tevictions\tcachedPaths");
+			writer.newLine();
+			writer.write(hits + "\t" + misses + "\t" + invalidations + "\t" + evictions + "\t" + size);
+			writer.newLine();
+			writer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.routeCache.resetStatistics();
+	}
+
+}
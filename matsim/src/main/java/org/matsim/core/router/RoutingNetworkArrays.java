@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RoutingNetworkArrays.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.RoutingNetworkLink;
+import org.matsim.core.router.util.RoutingNetworkNode;
+
+/**
+ * The nodes and links of an {@link ArrayRoutingNetwork} copied into arrays, indexed by the array indices of the nodes,
+ * so that routers can traverse the network without objects per node.
+ */
+final class RoutingNetworkArrays {
+
+	final Node[] nodes;
+	/** the out-links of node <code>n</code> are <code>outFirst[n]</code> to <code>outFirst[n+1] - 1</code> */
+	final int[] outFirst;
+	final int[] outToNodes;
+	final Link[] outLinks;
+	/** the in-links of node <code>n</code> are <code>inFirst[n]</code> to <code>inFirst[n+1] - 1</code>, or <code>null</code> */
+	final int[] inFirst;
+	final int[] inFromNodes;
+	final Link[] inLinks;
+
+	/**
+	 * @param withInLinks whether the in-links are needed as well, e.g. for a backward search
+	 */
+	RoutingNetworkArrays(final ArrayRoutingNetwork routingNetwork, final boolean withInLinks) {
+		int numberOfNodes = routingNetwork.getNodes().size();
+		this.nodes = new Node[numberOfNodes];
+		int[] outDegrees = new int[numberOfNodes];
+		int[] inDegrees = new int[numberOfNodes];
+		int numberOfLinks = 0;
+		for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
+			int index = ((ArrayRoutingNetworkNode) node).getArrayIndex();
+			this.nodes[index] = node.getNode();
+			for (RoutingNetworkLink link : node.getOutLinksArray()) {
+				outDegrees[index]++;
+				inDegrees[((ArrayRoutingNetworkNode) link.getToNode()).getArrayIndex()]++;
+				numberOfLinks++;
+			}
+		}
+		this.outFirst = new int[numberOfNodes + 1];
+		for (int i = 0; i < numberOfNodes; i++) {
+			this.outFirst[i + 1] = this.outFirst[i] + outDegrees[i];
+		}
+		this.outToNodes = new int[numberOfLinks];
+		this.outLinks = new Link[numberOfLinks];
+		int[] inPositions = null;
+		if (withInLinks) {
+			this.inFirst = new int[numberOfNodes + 1];
+			for (int i = 0; i < numberOfNodes; i++) {
+				this.inFirst[i + 1] = this.inFirst[i] + inDegrees[i];
+			}
+			this.inFromNodes = new int[numberOfLinks];
+			this.inLinks = new Link[numberOfLinks];
+			inPositions = new int[numberOfNodes];
+			System.arraycopy(this.inFirst, 0, inPositions, 0, numberOfNodes);
+		} else {
+			this.inFirst = null;
+			this.inFromNodes = null;
+			this.inLinks = null;
+		}
+		for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
+			int fromIndex = ((ArrayRoutingNetworkNode) node).getArrayIndex();
+			int position = this.outFirst[fromIndex];
+			for (RoutingNetworkLink link : node.getOutLinksArray()) {
+				int toIndex = ((ArrayRoutingNetworkNode) link.getToNode()).getArrayIndex();
+				this.outToNodes[position] = toIndex;
+				this.outLinks[position] = link.getLink();
+				position++;
+
+				if (withInLinks) {
+					int inPosition = inPositions[toIndex]++;
+					this.inFromNodes[inPosition] = fromIndex;
+					this.inLinks[inPosition] = link.getLink();
+				}
+			}
+		}
+	}
+
+}
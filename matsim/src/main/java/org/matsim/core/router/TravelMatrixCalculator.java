@@ -0,0 +1,325 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelMatrixCalculator.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.priorityqueue.IntMinHeap;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.RoutingNetworkNode;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Computes the travel times, distances and travel disutilities of the least cost paths between many origins and many
+ * destinations, for one departure time.
+ * <p></p>
+ * Every origin is the root of one least cost path tree, like the one a {@link Dijkstra} would build, which is grown
+ * until all destinations are reached.  The links of the {@link ArrayRoutingNetwork} are copied into arrays once, so
+ * that the trees are grown without objects per node, and the trees of different origins are grown in parallel.  The
+ * travel time and travel disutility are thus called by several threads at once and must support this.
+ * <p></p>
+ * The trees follow the travel times of the links through the day.  For large matrices with travel times per time bin,
+ * the {@link BucketTravelMatrixCalculator} is several times faster once a {@link ContractionHierarchy} is customized.
+ */
+public class TravelMatrixCalculator {
+
+	private final Node[] nodes;
+	/** the out-links of node <code>n</code> are <code>outFirst[n]</code> to <code>outFirst[n+1] - 1</code> */
+	private final int[] outFirst;
+	private final int[] linkToNodes;
+	private final Link[] links;
+	private final Map<Node, Integer> indices = new HashMap<>();
+
+	private final TravelTime travelTime;
+	private final TravelDisutility travelDisutility;
+	private final int numberOfThreads;
+
+	public TravelMatrixCalculator(final Network network, final TravelTime travelTime,
+			final TravelDisutility travelDisutility, final int numberOfThreads) {
+		this(new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network), travelTime, travelDisutility, numberOfThreads);
+	}
+
+	public TravelMatrixCalculator(final ArrayRoutingNetwork routingNetwork, final TravelTime travelTime,
+			final TravelDisutility travelDisutility, final int numberOfThreads) {
+		this.travelTime = travelTime;
+		this.travelDisutility = travelDisutility;
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+
+		RoutingNetworkArrays arrays = new RoutingNetworkArrays(routingNetwork, false);
+		this.nodes = arrays.nodes;
+		this.outFirst = arrays.outFirst;
+		this.linkToNodes = arrays.outToNodes;
+		this.links = arrays.outLinks;
+		for (int i = 0; i < this.nodes.length; i++) {
+			this.indices.put(this.nodes[i], i);
+		}
+	}
+
+	/**
+	 * @param origins the nodes where the paths start
+	 * @param destinations the nodes where the paths end
+	 * @param departureTime the time at which all paths start
+	 * @return the matrix of all origins and destinations.  Destinations that cannot be reached from an origin have
+	 * infinite values.
+	 * @throws IllegalArgumentException if there are more than {@link TravelMatrix#MAX_SIZE} pairs of origins and
+	 * destinations
+	 */
+	public TravelMatrix calcTravelMatrix(final List<? extends Node> origins, final List<? extends Node> destinations,
+			final double departureTime) {
+		final int[] originIndices = getIndices(origins);
+		final int[] destinationIndices = getIndices(destinations);
+		final TravelMatrix matrix = new TravelMatrix(origins.size(), destinations.size());
+		final AtomicInteger nextOrigin = new AtomicInteger();
+		int threads = Math.min(this.numberOfThreads, originIndices.length);
+		if (threads <= 1) {
+			new Tree(destinationIndices).fill(matrix, originIndices, nextOrigin, departureTime);
+			return matrix;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						new Tree(destinationIndices).fill(matrix, originIndices, nextOrigin, departureTime);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return matrix;
+	}
+
+	private int[] getIndices(List<? extends Node> nodes) {
+		int[] result = new int[nodes.size()];
+		for (int i = 0; i < result.length; i++) {
+			Node node = nodes.get(i);
+			Integer index = this.indices.get(node instanceof RoutingNetworkNode ? ((RoutingNetworkNode) node).getNode() : node);
+			if (index == null) {
+				throw new IllegalArgumentException("The node " + node.getId() + " is not part of the routing network.");
+			}
+			result[i] = index;
+		}
+		return result;
+	}
+
+	/**
+	 * The travel times, distances and disutilities of the least cost paths from every origin to every destination,
+	 * stored row by row in arrays.
+	 */
+	public static final class TravelMatrix {
+
+		/** the largest number of origin-destination pairs, as the values are stored in arrays */
+		public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+		private final int numberOfOrigins;
+		private final int numberOfDestinations;
+		private final float[] travelTimes;
+		private final float[] distances;
+		private final float[] travelDisutilities;
+
+		/*package*/ TravelMatrix(final int numberOfOrigins, final int numberOfDestinations) {
+			long size = (long) numberOfOrigins * numberOfDestinations;
+			if (size > MAX_SIZE) {
+				throw new IllegalArgumentException("A matrix of " + numberOfOrigins + " origins and " + numberOfDestinations
+						+ " destinations has more than " + MAX_SIZE + " entries and cannot be stored in arrays. Compute it in parts of fewer origins.");
+			}
+			this.numberOfOrigins = numberOfOrigins;
+			this.numberOfDestinations = numberOfDestinations;
+			this.travelTimes = new float[(int) size];
+			this.distances = new float[(int) size];
+			this.travelDisutilities = new float[(int) size];
+		}
+
+		public int getNumberOfOrigins() {
+			return this.numberOfOrigins;
+		}
+
+		public int getNumberOfDestinations() {
+			return this.numberOfDestinations;
+		}
+
+		public float getTravelTime(final int origin, final int destination) {
+			return this.travelTimes[origin * this.numberOfDestinations + destination];
+		}
+
+		public float getDistance(final int origin, final int destination) {
+			return this.distances[origin * this.numberOfDestinations + destination];
+		}
+
+		public float getTravelDisutility(final int origin, final int destination) {
+			return this.travelDisutilities[origin * this.numberOfDestinations + destination];
+		}
+
+		/**
+		 * @return the travel times in seconds, the value for origin <code>o</code> and destination <code>d</code> at
+		 * <code>o * getNumberOfDestinations() + d</code>.  The array is not copied.
+		 */
+		public float[] getTravelTimes() {
+			return this.travelTimes;
+		}
+
+		/**
+		 * @return the distances in meters, in the same order as {@link #getTravelTimes()}.  The array is not copied.
+		 */
+		public float[] getDistances() {
+			return this.distances;
+		}
+
+		/**
+		 * @return the travel disutilities, in the same order as {@link #getTravelTimes()}.  The array is not copied.
+		 */
+		public float[] getTravelDisutilities() {
+			return this.travelDisutilities;
+		}
+	}
+
+	/**
+	 * The state of one thread: a least cost path tree from one origin at a time.
+	 */
+	private final class Tree {
+
+		private final int[] destinations;
+		/** the number of distinct destinations */
+		private final int numberOfTargets;
+		private final boolean[] isDestination;
+
+		private final double[] costs;
+		private final double[] times;
+		private final double[] distances;
+		/** the origin for which a node was reached, so that the arrays need not be cleared between origins */
+		private final int[] reachedFor;
+		private final int[] settledFor;
+		private final IntMinHeap heap;
+
+		Tree(final int[] destinations) {
+			int numberOfNodes = TravelMatrixCalculator.this.nodes.length;
+			this.destinations = destinations;
+			this.isDestination = new boolean[numberOfNodes];
+			int targets = 0;
+			for (int destination : destinations) {
+				if (!this.isDestination[destination]) {
+					this.isDestination[destination] = true;
+					targets++;
+				}
+			}
+			this.numberOfTargets = targets;
+			this.costs = new double[numberOfNodes];
+			this.times = new double[numberOfNodes];
+			this.distances = new double[numberOfNodes];
+			this.reachedFor = new int[numberOfNodes];
+			Arrays.fill(this.reachedFor, -1);
+			this.settledFor = new int[numberOfNodes];
+			Arrays.fill(this.settledFor, -1);
+			this.heap = new IntMinHeap(numberOfNodes);
+		}
+
+		void fill(final TravelMatrix matrix, final int[] origins, final AtomicInteger nextOrigin, final double departureTime) {
+			int origin;
+			while ((origin = nextOrigin.getAndIncrement()) < origins.length) {
+				grow(origin, origins[origin], departureTime);
+				int row = origin * matrix.numberOfDestinations;
+				for (int d = 0; d < this.destinations.length; d++) {
+					int node = this.destinations[d];
+					if (this.reachedFor[node] == origin) {
+						matrix.travelTimes[row + d] = (float) (this.times[node] - departureTime);
+						matrix.distances[row + d] = (float) this.distances[node];
+						matrix.travelDisutilities[row + d] = (float) this.costs[node];
+					} else {
+						matrix.travelTimes[row + d] = Float.POSITIVE_INFINITY;
+						matrix.distances[row + d] = Float.POSITIVE_INFINITY;
+						matrix.travelDisutilities[row + d] = Float.POSITIVE_INFINITY;
+					}
+				}
+			}
+		}
+
+		private void grow(final int origin, final int start, final double departureTime) {
+			int[] outFirst = TravelMatrixCalculator.this.outFirst;
+			int[] linkToNodes = TravelMatrixCalculator.this.linkToNodes;
+			Link[] links = TravelMatrixCalculator.this.links;
+			TravelTime travelTime = TravelMatrixCalculator.this.travelTime;
+			TravelDisutility travelDisutility = TravelMatrixCalculator.this.travelDisutility;
+
+			int reachedTargets = 0;
+			this.heap.clear();
+			this.reachedFor[start] = origin;
+			this.costs[start] = 0.0;
+			this.times[start] = departureTime;
+			this.distances[start] = 0.0;
+			this.heap.add(start, 0.0);
+			while (!this.heap.isEmpty() && reachedTargets < this.numberOfTargets) {
+				int node = this.heap.poll();
+				this.settledFor[node] = origin;
+				if (this.isDestination[node]) {
+					reachedTargets++;
+				}
+				double cost = this.costs[node];
+				double time = this.times[node];
+				for (int l = outFirst[node]; l < outFirst[node + 1]; l++) {
+					int toNode = linkToNodes[l];
+					if (this.settledFor[toNode] == origin) {
+						continue;
+					}
+					Link link = links[l];
+					double linkTime = travelTime.getLinkTravelTime(link, time, null, null);
+					double toCost = cost + travelDisutility.getLinkTravelDisutility(link, time, null, null);
+					if (this.reachedFor[toNode] != origin) {
+						this.reachedFor[toNode] = origin;
+						this.costs[toNode] = toCost;
+						this.times[toNode] = time + linkTime;
+						this.distances[toNode] = this.distances[node] + link.getLength();
+						this.heap.add(toNode, toCost);
+					} else if (toCost < this.costs[toNode]) {
+						this.costs[toNode] = toCost;
+						this.times[toNode] = time + linkTime;
+						this.distances[toNode] = this.distances[node] + link.getLength();
+						this.heap.decreaseKey(toNode, toCost);
+					}
+				}
+			}
+		}
+	}
+
+}
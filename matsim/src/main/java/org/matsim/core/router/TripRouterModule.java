@@ -43,6 +43,10 @@ public class TripRouterModule extends AbstractModule {
         install(new LeastCostPathCalculatorModule());
         install(new TransitRouterModule());
         bind(SingleModeNetworksCache.class).asEagerSingleton();
+        bind(RouteCache.class);
+        if (getConfig().controler().getRouteCacheTimeBinSize() > 0) {
+            addControlerListenerBinding().to(RouteCacheStatistics.class);
+        }
         PlansCalcRouteConfigGroup routeConfigGroup = getConfig().plansCalcRoute();
         for (String mode : routeConfigGroup.getTeleportedModeFreespeedFactors().keySet()) {
             if (getConfig().transit().isUseTransit() && getConfig().transit().getTransitModes().contains(mode)) {
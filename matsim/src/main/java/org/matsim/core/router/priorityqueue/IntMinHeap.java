@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IntMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of the int values <code>0</code> to <code>capacity - 1</code>, e.g. the array indices of the nodes
+ * of an {@link org.matsim.core.router.util.ArrayRoutingNetwork}, with the key of every value stored in an array.
+ * Unlike {@link BinaryMinHeap}, it needs no objects per element, so it is meant for routers which keep the network in
+ * arrays.  Every value is at most once in the heap.
+ * <p></p>
+ * The heap is not thread-safe; every thread needs its own.
+ */
+public final class IntMinHeap {
+
+	private final int[] heap;
+	/** the position of a value in the heap, or -1 if it is not in the heap */
+	private final int[] positions;
+	private final double[] keys;
+	private int size = 0;
+
+	public IntMinHeap(final int capacity) {
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		Arrays.fill(this.positions, -1);
+		this.keys = new double[capacity];
+	}
+
+	/**
+	 * Removes all values, in time proportional to the number of values in the heap.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.positions[this.heap[i]] = -1;
+		}
+		this.size = 0;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean contains(final int value) {
+		return this.positions[value] >= 0;
+	}
+
+	/**
+	 * @return the smallest key in the heap; the heap must not be empty
+	 */
+	public double peekKey() {
+		return this.keys[this.heap[0]];
+	}
+
+	/**
+	 * Adds a value that is not in the heap.
+	 */
+	public void add(final int value, final double key) {
+		this.keys[value] = key;
+		this.heap[this.size] = value;
+		this.positions[value] = this.size;
+		this.size++;
+		siftUp(this.size - 1);
+	}
+
+	/**
+	 * Sets a smaller key for a value that is in the heap.
+	 */
+	public void decreaseKey(final int value, final double key) {
+		this.keys[value] = key;
+		siftUp(this.positions[value]);
+	}
+
+	/**
+	 * Sets a smaller or larger key for a value that is in the heap.
+	 */
+	public void update(final int value, final double key) {
+		double oldKey = this.keys[value];
+		this.keys[value] = key;
+		if (key < oldKey) {
+			siftUp(this.positions[value]);
+		} else {
+			siftDown(this.positions[value]);
+		}
+	}
+
+	/**
+	 * Removes the value with the smallest key; the heap must not be empty.
+	 */
+	public int poll() {
+		int value = this.heap[0];
+		this.positions[value] = -1;
+		this.size--;
+		if (this.size > 0) {
+			this.heap[0] = this.heap[this.size];
+			this.positions[this.heap[0]] = 0;
+			siftDown(0);
+		}
+		return value;
+	}
+
+	private void siftUp(int position) {
+		int value = this.heap[position];
+		double key = this.keys[value];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			int parentValue = this.heap[parent];
+			if (this.keys[parentValue] <= key) {
+				break;
+			}
+			this.heap[position] = parentValue;
+			this.positions[parentValue] = position;
+			position = parent;
+		}
+		this.heap[position] = value;
+		this.positions[value] = position;
+	}
+
+	private void siftDown(int position) {
+		int value = this.heap[position];
+		double key = this.keys[value];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && this.keys[this.heap[child + 1]] < this.keys[this.heap[child]]) {
+				child++;
+			}
+			int childValue = this.heap[child];
+			if (this.keys[childValue] >= key) {
+				break;
+			}
+			this.heap[position] = childValue;
+			this.positions[childValue] = position;
+			position = child;
+		}
+		this.heap[position] = value;
+		this.positions[value] = position;
+	}
+
+}
@@ -25,20 +25,28 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.router.AStarLandmarks;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author dgrether
  */
 @Singleton
-public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
+public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
 
 	private PreProcessLandmarks preProcessData;
+	/** network, travel time and class of travel disutility for which the pre-processing was found valid this iteration */
+	private final Set<List<Object>> validFor = new HashSet<>();
 
 	@Inject
 	AStarLandmarksFactory(PlanCalcScoreConfigGroup planCalcScoreConfigGroup, GlobalConfigGroup globalConfigGroup, Network network, Map<String, TravelTime> travelTime, Map<String, TravelDisutilityFactory> travelDisutilityFactory) {
@@ -65,10 +73,34 @@ public class AStarLandmarksFactory implements LeastCostPathCalculatorFactory {
 		}
 	}
 	
+	/**
+	 * The landmarks and their distances are kept as long as they are valid for the travel costs, and only computed
+	 * again, with the same landmarks, when minimum travel disutilities decrease.  As checking this takes a pass over all
+	 * links, it is done only once per iteration for each network, travel time and travel disutility.  Instances of the
+	 * same class may have different minimum travel disutilities, e.g. with other marginal utilities, so each instance is
+	 * checked.
+	 *
+	 * @see PreProcessLandmarks#updateFor(TravelDisutility)
+	 */
 	@Override
-	public LeastCostPathCalculator createPathCalculator(Network network,
+	public synchronized LeastCostPathCalculator createPathCalculator(Network network,
 			TravelDisutility travelCosts, TravelTime travelTimes) {
+		List<Object> key = Arrays.<Object>asList(network, travelTimes, travelCosts);
+		if (!this.validFor.contains(key)) {
+			PreProcessLandmarks updated = this.preProcessData.updateFor(travelCosts);
+			if (updated != this.preProcessData) {
+				this.preProcessData = updated;
+				this.validFor.clear();
+			}
+			this.validFor.add(key);
+		}
 		return new AStarLandmarks(network, this.preProcessData, travelCosts, travelTimes);
 	}
 
+	@Override
+	public synchronized void notifyIterationStarts(IterationStartsEvent event) {
+		// the network may have changed, so the pre-processing is checked again
+		this.validFor.clear();
+	}
+
 }
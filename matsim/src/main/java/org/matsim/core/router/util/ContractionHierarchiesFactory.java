@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.ContractionHierarchies;
+import org.matsim.core.router.ContractionHierarchy;
+
+/**
+ * Creates {@link ContractionHierarchies} path calculators.  The {@link ContractionHierarchy} of a network is created
+ * once, when the first path calculator for the network is requested.  Its weights are customized once per iteration
+ * for each travel disutility that path calculators are requested for, i.e. once the travel times of the previous
+ * iteration are known, and are then shared by all path calculators for the network and that travel disutility.  As
+ * every customization needs the memory described in {@link ContractionHierarchy.Metric}, path calculators should share
+ * travel disutility instances where possible, e.g. one per mode.
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	/** the default size of the time bins of the customized weights, in seconds */
+	public static final int DEFAULT_TIME_BIN_SIZE = 3600;
+
+	private final int timeBinSize;
+	private final int numberOfTimeBins;
+	private final int numberOfThreads;
+	private final Map<Network, ContractionHierarchy> hierarchies = new HashMap<>();
+	/** per network and travel disutility */
+	private final Map<List<Object>, ContractionHierarchy.Metric> metrics = new HashMap<>();
+
+	@Inject
+	ContractionHierarchiesFactory(Config config) {
+		this(DEFAULT_TIME_BIN_SIZE, config.travelTimeCalculator().getMaxTime(), config.global().getNumberOfThreads());
+	}
+
+	/**
+	 * @param timeBinSize the size of the time bins for which the weights are customized, in seconds.  Every time bin
+	 * needs two float weights per edge of the hierarchy, see {@link ContractionHierarchy.Metric} for the memory this
+	 * takes; larger time bins or an earlier <code>maxTime</code> need less.
+	 * @param maxTime the start of the last time bin, which is used for all later times
+	 * @param numberOfThreads the number of threads that customize the time bins
+	 */
+	public ContractionHierarchiesFactory(final int timeBinSize, final int maxTime, final int numberOfThreads) {
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = maxTime / timeBinSize + 1;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		ContractionHierarchy hierarchy = this.hierarchies.get(network);
+		if (hierarchy == null) {
+			hierarchy = ContractionHierarchy.create(network);
+			this.hierarchies.put(network, hierarchy);
+		}
+		List<Object> key = Arrays.<Object>asList(network, travelCosts);
+		ContractionHierarchy.Metric metric = this.metrics.get(key);
+		if (metric == null) {
+			metric = hierarchy.customize(travelCosts, this.timeBinSize, this.numberOfTimeBins, this.numberOfThreads);
+			this.metrics.put(key, metric);
+		}
+		return new ContractionHierarchies(hierarchy, metric, travelCosts, travelTimes);
+	}
+
+	/**
+	 * Discards the customized weights, so that they are computed again for the next path calculator.
+	 */
+	public synchronized void invalidateCustomization() {
+		this.metrics.clear();
+	}
+
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		invalidateCustomization();
+	}
+
+}
@@ -23,6 +23,7 @@ package org.matsim.core.router.util;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.ArrayFastRouterDelegateFactory;
 import org.matsim.core.router.FastAStarEuclidean;
+import org.matsim.core.router.FastBidirectionalDijkstra;
 import org.matsim.core.router.FastRouterDelegateFactory;
 import org.matsim.core.router.FastRouterType;
 
@@ -35,6 +36,7 @@ import java.util.Map;
 public class FastAStarEuclideanFactory implements LeastCostPathCalculatorFactory {
 
 	private final PreProcessEuclidean preProcessData;
+	private final FastRouterType fastRouterType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
 
@@ -42,8 +44,9 @@ public class FastAStarEuclideanFactory implements LeastCostPathCalculatorFactory
 		this(network, fsttc, FastRouterType.ARRAY);		
 	}
 
-	private FastAStarEuclideanFactory(Network network, final TravelDisutility fsttc,
+	public FastAStarEuclideanFactory(Network network, final TravelDisutility fsttc,
 			FastRouterType fastRouterType) {
+		this.fastRouterType = fastRouterType;
 		this.preProcessData = new PreProcessEuclidean(fsttc);
 		this.preProcessData.run(network);
 
@@ -51,6 +54,7 @@ public class FastAStarEuclideanFactory implements LeastCostPathCalculatorFactory
 		
 		switch (fastRouterType) {
 		case ARRAY:
+		case ARRAY_BIDIRECTIONAL:
 			this.routingNetworkFactory = new ArrayRoutingNetworkFactory(preProcessData);
 			break;
 		case POINTER:
@@ -70,6 +74,10 @@ public class FastAStarEuclideanFactory implements LeastCostPathCalculatorFactory
 			routingNetwork = this.routingNetworkFactory.createRoutingNetwork(network);
 			this.routingNetworks.put(network, routingNetwork);
 		}
+		if (this.fastRouterType == FastRouterType.ARRAY_BIDIRECTIONAL) {
+			return new FastBidirectionalDijkstra((ArrayRoutingNetwork) routingNetwork, travelCosts, travelTimes,
+				this.preProcessData);
+		}
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 		
 		return new FastAStarEuclidean(routingNetwork, this.preProcessData, travelCosts, travelTimes, 1,
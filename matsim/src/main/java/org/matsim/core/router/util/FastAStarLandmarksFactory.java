@@ -23,6 +23,8 @@ package org.matsim.core.router.util;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.router.ArrayFastRouterDelegateFactory;
 import org.matsim.core.router.FastAStarLandmarks;
 import org.matsim.core.router.FastRouterDelegateFactory;
@@ -31,18 +33,24 @@ import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author cdobler
  */
 @Singleton
-public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory {
+public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
 
-	private final PreProcessLandmarks preProcessData;
-	private final RoutingNetworkFactory routingNetworkFactory;
+	private PreProcessLandmarks preProcessData;
+	private RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
+	/** network, travel time and class of travel disutility for which the pre-processing was found valid this iteration */
+	private final Set<List<Object>> validFor = new HashSet<>();
 
 	@Inject
 	FastAStarLandmarksFactory(Network network, Config config, Map<String,TravelTime> travelTime, Map<String,TravelDisutilityFactory> fsttc) {
@@ -73,10 +81,30 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 		}
 	}
 
+	/**
+	 * The landmarks and their distances are kept as long as they are valid for the travel costs, and only computed
+	 * again, with the same landmarks, when minimum travel disutilities decrease.  The routing networks refer to the
+	 * distances, so they are created again then.  As checking this takes a pass over all links, it is done only once
+	 * per iteration for each network, travel time and travel disutility.  Instances of the same class
+	 * may have different minimum travel disutilities, e.g. with other marginal utilities, so each instance is checked.
+	 *
+	 * @see PreProcessLandmarks#updateFor(TravelDisutility)
+	 */
 	@Override
-	public LeastCostPathCalculator createPathCalculator(Network network,
+	public synchronized LeastCostPathCalculator createPathCalculator(Network network,
 			TravelDisutility travelCosts, TravelTime travelTimes) {
-		
+		List<Object> key = Arrays.<Object>asList(network, travelTimes, travelCosts);
+		if (!this.validFor.contains(key)) {
+			PreProcessLandmarks updated = this.preProcessData.updateFor(travelCosts);
+			if (updated != this.preProcessData) {
+				this.preProcessData = updated;
+				this.routingNetworkFactory = new ArrayRoutingNetworkFactory(updated);
+				this.routingNetworks.clear();
+				this.validFor.clear();
+			}
+			this.validFor.add(key);
+		}
+
 		RoutingNetwork routingNetwork = this.routingNetworks.get(network);
 		if (routingNetwork == null) {
 			routingNetwork = this.routingNetworkFactory.createRoutingNetwork(network);
@@ -87,4 +115,11 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 		return new FastAStarLandmarks(routingNetwork, this.preProcessData, travelCosts, travelTimes, 1,
 				fastRouterFactory);
 	}
-}
\ No newline at end of file
+
+	@Override
+	public synchronized void notifyIterationStarts(IterationStartsEvent event) {
+		// the network may have changed, so the pre-processing is checked again
+		this.validFor.clear();
+	}
+
+}
@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FastBidirectionalDijkstraFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.core.router.FastBidirectionalDijkstra;
+import org.matsim.core.router.FastRouterType;
+
+/**
+ * A {@link FastDijkstraFactory} that creates {@link FastBidirectionalDijkstra} instances, so that it can be bound by
+ * class.
+ */
+@Singleton
+public class FastBidirectionalDijkstraFactory extends FastDijkstraFactory {
+
+	@Inject
+	public FastBidirectionalDijkstraFactory() {
+		super(null, FastRouterType.ARRAY_BIDIRECTIONAL);
+	}
+
+}
@@ -22,6 +22,7 @@ package org.matsim.core.router.util;
 
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.ArrayFastRouterDelegateFactory;
+import org.matsim.core.router.FastBidirectionalDijkstra;
 import org.matsim.core.router.FastDijkstra;
 import org.matsim.core.router.FastRouterDelegateFactory;
 import org.matsim.core.router.FastRouterType;
@@ -35,6 +36,7 @@ import java.util.Map;
 public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 	
 	private final PreProcessDijkstra preProcessData;
+	private final FastRouterType fastRouterType;
 	private final RoutingNetworkFactory routingNetworkFactory;
 	private final Map<Network, RoutingNetwork> routingNetworks;
 
@@ -47,13 +49,18 @@ public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 		this(preProcessData, FastRouterType.ARRAY);
 	}
 
-	private FastDijkstraFactory(final PreProcessDijkstra preProcessData, FastRouterType fastRouterType) {
+	/**
+	 * @param preProcessData may be <code>null</code>, is not used by {@link FastRouterType#ARRAY_BIDIRECTIONAL}
+	 */
+	public FastDijkstraFactory(final PreProcessDijkstra preProcessData, FastRouterType fastRouterType) {
 		this.preProcessData = preProcessData;
+		this.fastRouterType = fastRouterType;
 		
 		this.routingNetworks = new HashMap<Network, RoutingNetwork>();
 		
 		switch (fastRouterType) {
 		case ARRAY:
+		case ARRAY_BIDIRECTIONAL:
 			this.routingNetworkFactory = new ArrayRoutingNetworkFactory(preProcessData);
 			break;
 		case POINTER:
@@ -72,6 +79,9 @@ public class FastDijkstraFactory implements LeastCostPathCalculatorFactory {
 			routingNetwork = this.routingNetworkFactory.createRoutingNetwork(network);
 			this.routingNetworks.put(network, routingNetwork);
 		}
+		if (this.fastRouterType == FastRouterType.ARRAY_BIDIRECTIONAL) {
+			return new FastBidirectionalDijkstra((ArrayRoutingNetwork) routingNetwork, travelCosts, travelTimes);
+		}
 		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
 		
 		return new FastDijkstra(routingNetwork, travelCosts, travelTimes, preProcessData, fastRouterFactory);
@@ -24,15 +24,20 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
-import org.matsim.core.api.internal.MatsimComparator;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.priorityqueue.IntMinHeap;
+import org.matsim.vehicles.Vehicle;
 
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 /**
  * Pre-processes a given network, gathering information which can be used by
@@ -40,6 +45,10 @@ import java.util.concurrent.TimeUnit;
  * between a start and an end node. Specifically, designates some
  * nodes in the network that act as landmarks and computes the last-cost-path
  * from and to each node in the network to each of the landmarks.
+ * <p></p>
+ * The distances are lower bounds of the travel costs as long as no link's minimum travel disutility is smaller than
+ * during the pre-processing, so {@link #updateFor(TravelDisutility)} only repeats the pre-processing if this is the
+ * case.
  *
  * @author lnicolas
  */
@@ -50,6 +59,11 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	private final Landmarker landmarker;
 
 	private Node[] landmarks;
+
+	private Network network;
+	/** the minimum travel disutilities of the links of the network, as used for the distances */
+	private Link[] links;
+	private double[] linkCosts;
 	
 	private int numberOfThreads = 8;
 
@@ -108,6 +122,7 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	@Override
 	public void run(final Network network) {
 		super.run(network);
+		this.network = network;
 		
 		log.info("Putting landmarks on network...");
 		long now = System.currentTimeMillis();
@@ -119,29 +134,56 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 			this.nodeData.put(node, new LandmarksData(this.landmarkCount));
 		}
 		
+		// the network and the minimum travel disutilities as arrays, shared by all threads
+		Node[] nodes = network.getNodes().values().toArray(new Node[network.getNodes().size()]);
+		Map<Node, Integer> indices = new HashMap<>();
+		for (int i = 0; i < nodes.length; i++) {
+			indices.put(nodes[i], i);
+		}
+		this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+		this.linkCosts = new double[this.links.length];
+		int[] fromNodes = new int[this.links.length];
+		int[] toNodes = new int[this.links.length];
+		for (int i = 0; i < this.links.length; i++) {
+			this.linkCosts[i] = this.costFunction.getLinkMinimumTravelDisutility(this.links[i]);
+			fromNodes[i] = indices.get(this.links[i].getFromNode());
+			toNodes[i] = indices.get(this.links[i].getToNode());
+		}
+		Graph forward = new Graph(nodes.length, fromNodes, toNodes, this.linkCosts);
+		Graph backward = new Graph(nodes.length, toNodes, fromNodes, this.linkCosts);
+		LandmarksData[] data = new LandmarksData[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			data[i] = getNodeData(nodes[i]);
+		}
+
+		// every landmark has a tree from and a tree to it
 		int nOfThreads = this.numberOfThreads;
-		if (nOfThreads > this.landmarks.length) {
-			nOfThreads = this.landmarks.length;
+		if (nOfThreads > 2 * this.landmarks.length) {
+			nOfThreads = 2 * this.landmarks.length;
 		}
-		if (nOfThreads < 2) {
-			nOfThreads = 2; // always use at least two threads
+		if (nOfThreads < 1) {
+			nOfThreads = 1;
 		}
  		log.info("Calculating distance from each node to each of the " + this.landmarkCount + " landmarks using " + nOfThreads + " threads...");
 		now = System.currentTimeMillis();
 
-		
 		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
-		for (int i = 0; i < this.landmarks.length; i++) {
-			executor.execute(new Calculator(i, this.landmarks[i], this.nodeData, this.costFunction));
-		}
-		executor.shutdown();
-		while (!executor.isTerminated()) {
-			log.info("wait for landmarks Calculator to finish...");
-			try {
-				executor.awaitTermination(10, TimeUnit.MINUTES);
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < this.landmarks.length; i++) {
+				int root = indices.get(this.landmarks[i]);
+				futures.add(executor.submit(new Calculator(i, root, forward, data, true)));
+				futures.add(executor.submit(new Calculator(i, root, backward, data, false)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
 			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
 		}
 
 		for (Node node : network.getNodes().values()) {
@@ -161,75 +203,143 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
 	}
 
+	/**
+	 * Checks whether the distances of this pre-processing are still lower bounds of the travel costs, i.e. whether the
+	 * minimum travel disutility of no link is smaller than during the pre-processing.
+	 */
+	public boolean isValidFor(final TravelDisutility costFunction) {
+		for (int i = 0; i < this.links.length; i++) {
+			if (costFunction.getLinkMinimumTravelDisutility(this.links[i]) < this.linkCosts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return this pre-processing, if it is valid for the cost function, or else a new pre-processing of the same
+	 * network with the same landmarks.  The new pre-processing uses the smaller of the previous and the new minimum
+	 * travel disutility of every link, so that it is valid for both cost functions and alternating between them does
+	 * not repeat the pre-processing.  Its {@link #getCostFunction()} returns the travel disutilities of the new cost
+	 * function.
+	 * @see #isValidFor(TravelDisutility)
+	 */
+	public PreProcessLandmarks updateFor(final TravelDisutility costFunction) {
+		if (isValidFor(costFunction)) {
+			return this;
+		}
+		log.info("Minimum travel disutilities have decreased, the distances to the landmarks are computed again.");
+		final Map<Link, Double> previousCosts = new HashMap<>();
+		for (int i = 0; i < this.links.length; i++) {
+			previousCosts.put(this.links[i], this.linkCosts[i]);
+		}
+		TravelDisutility lowerBounds = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+				return costFunction.getLinkTravelDisutility(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				double minimum = costFunction.getLinkMinimumTravelDisutility(link);
+				Double previous = previousCosts.get(link);
+				return previous == null ? minimum : Math.min(minimum, previous);
+			}
+		};
+		final Node[] landmarks = this.landmarks.clone();
+		PreProcessLandmarks preProcessData = new PreProcessLandmarks(lowerBounds, new Landmarker() {
+			@Override
+			public Node[] identifyLandmarks(int nLandmarks, Network network) {
+				return landmarks;
+			}
+		}, this.landmarkCount);
+		preProcessData.setNumberOfThreads(this.numberOfThreads);
+		preProcessData.run(this.network);
+		return preProcessData;
+	}
+
+	/**
+	 * The links of a network as arrays, ordered by the node at which a tree reaches them.
+	 */
+	private static final class Graph {
+
+		/** the links from node <code>n</code> are <code>first[n]</code> to <code>first[n+1] - 1</code> */
+		final int[] first;
+		final int[] heads;
+		final double[] costs;
+
+		Graph(final int numberOfNodes, final int[] tails, final int[] heads, final double[] costs) {
+			this.first = new int[numberOfNodes + 1];
+			for (int tail : tails) {
+				this.first[tail + 1]++;
+			}
+			for (int i = 0; i < numberOfNodes; i++) {
+				this.first[i + 1] += this.first[i];
+			}
+			int[] next = Arrays.copyOf(this.first, numberOfNodes);
+			this.heads = new int[tails.length];
+			this.costs = new double[tails.length];
+			for (int i = 0; i < tails.length; i++) {
+				int position = next[tails[i]]++;
+				this.heads[position] = heads[i];
+				this.costs[position] = costs[i];
+			}
+		}
+	}
+
+	/**
+	 * Computes the travel costs from (or to) one landmark to all nodes.
+	 */
 	private static class Calculator implements Runnable {
-		
+
 		private final int landmarkIdx;
-		private final Node landmark;
-		private final Map<Node, DeadEndData> nodeData;
-		private final TravelDisutility costFunction;
-		
-		public Calculator(final int landmarkIdx, final Node landmark, final Map<Node, DeadEndData> nodeData, final TravelDisutility costFunction) {
+		private final int root;
+		private final Graph graph;
+		private final LandmarksData[] data;
+		private final boolean fromLandmark;
+
+		public Calculator(final int landmarkIdx, final int root, final Graph graph, final LandmarksData[] data, final boolean fromLandmark) {
 			this.landmarkIdx = landmarkIdx;
-			this.landmark = landmark;
-			this.nodeData = nodeData;
-			this.costFunction = costFunction;
+			this.root = root;
+			this.graph = graph;
+			this.data = data;
+			this.fromLandmark = fromLandmark;
 		}
-		
+
 		@Override
 		public void run() {
-			expandLandmarkFrom();
-			expandLandmarkTo();
-		}
-	
-		private void expandLandmarkFrom() {
-			LandmarksFromTravelTimeComparator comparator = new LandmarksFromTravelTimeComparator(this.nodeData, this.landmarkIdx);
-			PriorityQueue<Node> pendingNodes = new PriorityQueue<>(100, comparator);
-			LandmarksData role = (LandmarksData) this.nodeData.get(this.landmark);
-			role.setToLandmarkTravelTime(this.landmarkIdx, 0.0);
-			role.setFromLandmarkTravelTime(this.landmarkIdx, 0.0);
-			pendingNodes.add(this.landmark);
-			while (!pendingNodes.isEmpty()) {
-				Node node = pendingNodes.poll();
-				double fromTravTime = ((LandmarksData) this.nodeData.get(node)).getFromLandmarkTravelTime(this.landmarkIdx);
-				LandmarksData role2;
-				for (Link l : node.getOutLinks().values()) {
-					Node n;
-					n = l.getToNode();
-					double linkTravTime = this.costFunction.getLinkMinimumTravelDisutility(l);
-					role2 = (LandmarksData) this.nodeData.get(n);
-					double totalTravelTime = fromTravTime + linkTravTime;
-					if (role2.getFromLandmarkTravelTime(this.landmarkIdx) > totalTravelTime) {
-						role2.setFromLandmarkTravelTime(this.landmarkIdx, totalTravelTime);
-						pendingNodes.add(n);
+			int n = this.data.length;
+			double[] costs = new double[n];
+			Arrays.fill(costs, Double.POSITIVE_INFINITY);
+			IntMinHeap heap = new IntMinHeap(n);
+
+			costs[this.root] = 0.0;
+			heap.add(this.root, 0.0);
+			while (!heap.isEmpty()) {
+				int node = heap.poll();
+				double cost = costs[node];
+				for (int l = this.graph.first[node]; l < this.graph.first[node + 1]; l++) {
+					int head = this.graph.heads[l];
+					double headCost = cost + this.graph.costs[l];
+					if (headCost < costs[head]) {
+						costs[head] = headCost;
+						if (heap.contains(head)) {
+							heap.decreaseKey(head, headCost);
+						} else {
+							heap.add(head, headCost);
+						}
 					}
 				}
 			}
-		}
 
-		private void expandLandmarkTo() {
-			LandmarksToTravelTimeComparator comparator = new LandmarksToTravelTimeComparator(this.nodeData, this.landmarkIdx);
-			PriorityQueue<Node> pendingNodes = new PriorityQueue<>(100, comparator);
-			LandmarksData role = (LandmarksData) this.nodeData.get(this.landmark);
-			role.setToLandmarkTravelTime(this.landmarkIdx, 0.0);
-			role.setFromLandmarkTravelTime(this.landmarkIdx, 0.0);
-			pendingNodes.add(this.landmark);
-			while (!pendingNodes.isEmpty()) {
-				Node node = pendingNodes.poll();
-				double toTravTime = ((LandmarksData) this.nodeData.get(node)).getToLandmarkTravelTime(this.landmarkIdx);
-				LandmarksData role2;
-				for (Link l : node.getInLinks().values()) {
-					Node n = l.getFromNode();
-					double linkTravTime = this.costFunction.getLinkMinimumTravelDisutility(l);
-					role2 = (LandmarksData) this.nodeData.get(n);
-					double totalTravelTime = toTravTime + linkTravTime;
-					if (role2.getToLandmarkTravelTime(this.landmarkIdx) > totalTravelTime) {
-						role2.setToLandmarkTravelTime(this.landmarkIdx, totalTravelTime);
-						pendingNodes.add(n);
-					}
+			for (int i = 0; i < n; i++) {
+				if (this.fromLandmark) {
+					this.data[i].setFromLandmarkTravelTime(this.landmarkIdx, costs[i]);
+				} else {
+					this.data[i].setToLandmarkTravelTime(this.landmarkIdx, costs[i]);
 				}
 			}
 		}
-	
 	}
 
 	public Node[] getLandmarks() {
@@ -307,66 +417,4 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		}
 	}
 
-    /**
-	 * Sorts the Nodes ascending according to their ToLandmarkTravelTime.
-	 *
-	 * @author lnicolas
-	 * @author mrieser
-	 */
-	private static class LandmarksToTravelTimeComparator implements Comparator<Node>, MatsimComparator {
-		private final Map<Node, DeadEndData> roleData;
-		private final int landmarkIndex;
-
-		protected LandmarksToTravelTimeComparator(final Map<Node, DeadEndData> roleData, final int landmarkIndex) {
-			this.roleData = roleData;
-			this.landmarkIndex = landmarkIndex;
-		}
-
-		@Override
-		public int compare(final Node n1, final Node n2) {
-
-			double c1 = ((LandmarksData) this.roleData.get(n1)).getToLandmarkTravelTime(this.landmarkIndex);
-			double c2 = ((LandmarksData) this.roleData.get(n2)).getToLandmarkTravelTime(this.landmarkIndex);
-
-			if (c1 < c2) {
-				return -1;
-			}
-			if (c1 > c2) {
-				return +1;
-			}
-			return n1.getId().compareTo(n2.getId());
-		}
-	}
-
-	/**
-	 * Sorts the Nodes ascending according to their FromLandmarkTravelTime.
-	 *
-	 * @author lnicolas
-	 * @author mrieser
-	 */
-	private static class LandmarksFromTravelTimeComparator implements Comparator<Node>, MatsimComparator {
-		private final Map<Node, DeadEndData> roleData;
-		private final int landmarkIndex;
-		
-		protected LandmarksFromTravelTimeComparator(final Map<Node, DeadEndData> roleData, final int landmarkIndex) {
-			this.roleData = roleData;
-			this.landmarkIndex = landmarkIndex;
-		}
-		
-		@Override
-		public int compare(final Node n1, final Node n2) {
-			
-			double c1 = ((LandmarksData) this.roleData.get(n1)).getFromLandmarkTravelTime(this.landmarkIndex);
-			double c2 = ((LandmarksData) this.roleData.get(n2)).getFromLandmarkTravelTime(this.landmarkIndex);
-			
-			if (c1 < c2) {
-				return -1;
-			}
-			if (c1 > c2) {
-				return +1;
-			}
-			return n1.getId().compareTo(n2.getId());
-		}
-	}
-	
 }
@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * DenseDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator.DataContainer;
+
+/**
+ * Stores the travel times of all links of the network in a few arrays, indexed by link and time bin, instead of
+ * arrays per link.  The data containers of all links are created at once, so no map of data containers has to be
+ * kept up to date while events are handled, and a travel time is read from an array.  The sums of the travel times
+ * are kept as <code>float</code>s, which is precise to fractions of a second for the number of vehicles entering a
+ * link in one time bin.
+ * <p></p>
+ * Uses memory for every link of the network and time bin, so {@link TravelTimeDataHashMap} may still be better for
+ * short time bins.  Links that are not part of the network have no travel time data, so their free speed travel time
+ * is used.
+ *
+ * @see org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType#TravelTimeCalculatorDense
+ */
+public class DenseDataContainerProvider implements DataContainerProvider {
+
+	/** the largest number of entries of the arrays, which is the number of links times the number of time bins */
+	public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	private final int numSlots;
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final DataContainer[] dataContainers;
+
+	/** the data of link <code>l</code> in time bin <code>s</code> is at position <code>l * numSlots + s</code> */
+	private final float[] timeSums;
+	private final int[] timeCounts;
+	private final float[] travelTimes;
+
+	/**
+	 * @throws IllegalArgumentException if there are more than {@link #MAX_SIZE} pairs of links and time bins
+	 */
+	public DenseDataContainerProvider(final Network network, final int numSlots) {
+		this.numSlots = numSlots;
+		int numberOfLinks = network.getLinks().size();
+		long size = (long) numberOfLinks * numSlots;
+		if (size > MAX_SIZE) {
+			throw new IllegalArgumentException("The travel times of " + numberOfLinks + " links in " + numSlots
+					+ " time bins are more than " + MAX_SIZE + " entries and cannot be stored in arrays. Use longer time bins or another travel time calculator type.");
+		}
+		this.linkIndices = new HashMap<>((int) (numberOfLinks * 1.4));
+		this.dataContainers = new DataContainer[numberOfLinks];
+		this.timeSums = new float[(int) size];
+		this.timeCounts = new int[(int) size];
+		this.travelTimes = new float[(int) size];
+		int index = 0;
+		for (Link link : network.getLinks().values()) {
+			this.linkIndices.put(link.getId(), index);
+			this.dataContainers[index] = new DataContainer(new DenseTravelTimeData(link, index * numSlots));
+			index++;
+		}
+		resetTravelTimes();
+	}
+
+	/**
+	 * Resets the travel times of all links.
+	 */
+	public void resetTravelTimes() {
+		Arrays.fill(this.timeSums, 0.0f);
+		Arrays.fill(this.timeCounts, 0);
+		Arrays.fill(this.travelTimes, -1.0f);
+		for (DataContainer data : this.dataContainers) {
+			data.needsConsolidation = false;
+		}
+	}
+
+	@Override
+	public DataContainer getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
+		Integer index = this.linkIndices.get(linkId);
+		return index == null ? null : this.dataContainers[index];
+	}
+
+	@Override
+	public DataContainer getTravelTimeData(final Link link, final boolean createIfMissing) {
+		return getTravelTimeData(link.getId(), createIfMissing);
+	}
+
+	/**
+	 * Same as {@link TravelTimeDataArray}, but on the arrays of the provider.
+	 */
+	private final class DenseTravelTimeData implements TravelTimeData {
+
+		private final Link link;
+		private final int offset;
+
+		DenseTravelTimeData(final Link link, final int offset) {
+			this.link = link;
+			this.offset = offset;
+		}
+
+		@Override
+		public void resetTravelTimes() {
+			Arrays.fill(timeSums, this.offset, this.offset + numSlots, 0.0f);
+			Arrays.fill(timeCounts, this.offset, this.offset + numSlots, 0);
+			Arrays.fill(travelTimes, this.offset, this.offset + numSlots, -1.0f);
+		}
+
+		@Override
+		public void setTravelTime(final int timeSlot, final double traveltime) {
+			timeSums[this.offset + timeSlot] = (float) traveltime;
+			timeCounts[this.offset + timeSlot] = 1;
+			travelTimes[this.offset + timeSlot] = (float) traveltime;
+		}
+
+		@Override
+		public void addTravelTime(final int timeSlot, final double traveltime) {
+			timeSums[this.offset + timeSlot] += (float) traveltime;
+			timeCounts[this.offset + timeSlot]++;
+			travelTimes[this.offset + timeSlot] = -1.0f; // invalidate the cached travel time
+		}
+
+		@Override
+		public double getTravelTime(final int timeSlot, final double now) {
+			int position = this.offset + timeSlot;
+			float ttime = travelTimes[position];
+			if (ttime >= 0.0f) return ttime; // negative values are invalid.
+			int cnt = timeCounts[position];
+			if (cnt == 0) {
+				travelTimes[position] = (float) (this.link.getLength() / this.link.getFreespeed(now));
+			} else {
+				travelTimes[position] = timeSums[position] / cnt;
+			}
+			return travelTimes[position];
+		}
+	}
+
+}
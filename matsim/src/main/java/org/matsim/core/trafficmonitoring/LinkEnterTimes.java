@@ -0,0 +1,101 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnterTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The link every vehicle has entered last, and when, in arrays indexed by vehicle.  Vehicles get their index when
+ * they are seen first and keep it across iterations, so that handling a link enter event does not create objects.
+ * <p></p>
+ * Not thread-safe, like the event handling of the {@link TravelTimeCalculator}.
+ */
+/*package*/ final class LinkEnterTimes {
+
+	private final Map<Id<Vehicle>, Integer> vehicleIndices = new HashMap<>();
+	/** <code>null</code> if the vehicle is not on a link */
+	private Id<Link>[] linkIds;
+	private double[] times;
+
+	@SuppressWarnings("unchecked")
+	LinkEnterTimes() {
+		this.linkIds = new Id[1024];
+		this.times = new double[1024];
+	}
+
+	/**
+	 * @return the index of the vehicle, which is created if the vehicle was not seen before
+	 */
+	int getOrCreateIndex(final Id<Vehicle> vehicleId) {
+		Integer index = this.vehicleIndices.get(vehicleId);
+		if (index == null) {
+			index = this.vehicleIndices.size();
+			this.vehicleIndices.put(vehicleId, index);
+			if (index == this.linkIds.length) {
+				this.linkIds = Arrays.copyOf(this.linkIds, 2 * index);
+				this.times = Arrays.copyOf(this.times, 2 * index);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return the index of the vehicle, or <code>-1</code> if the vehicle was not seen before
+	 */
+	int getIndex(final Id<Vehicle> vehicleId) {
+		Integer index = this.vehicleIndices.get(vehicleId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the link the vehicle has entered last, or <code>null</code> if it has left traffic since then
+	 */
+	Id<Link> getLinkId(final int vehicle) {
+		return this.linkIds[vehicle];
+	}
+
+	double getTime(final int vehicle) {
+		return this.times[vehicle];
+	}
+
+	void set(final int vehicle, final Id<Link> linkId, final double time) {
+		this.linkIds[vehicle] = linkId;
+		this.times[vehicle] = time;
+	}
+
+	void remove(final Id<Vehicle> vehicleId) {
+		int vehicle = getIndex(vehicleId);
+		if (vehicle >= 0) {
+			this.linkIds[vehicle] = null;
+		}
+	}
+
+	void clear() {
+		Arrays.fill(this.linkIds, null);
+	}
+
+}
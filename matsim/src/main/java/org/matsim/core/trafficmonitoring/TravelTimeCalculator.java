@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
@@ -44,10 +45,11 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
+import org.matsim.core.events.handler.ShardableEventHandler;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.collections.CollectionUtils;
-import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
 
 /**
@@ -60,14 +62,21 @@ import org.matsim.vehicles.Vehicle;
  * is stored in {@link TravelTimeData}-objects. If a short binSize is used, it is useful to
  * use {@link TravelTimeDataHashMap} (see {@link #setTravelTimeDataFactory(TravelTimeDataFactory)}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
- * {@link TravelTimeDataArray} is used.
+ * {@link TravelTimeDataArray} is used.  For large networks, the travel times of all links can be stored in
+ * a few arrays instead, see {@link DenseDataContainerProvider}.
+ * <p></p>
+ * The event handling can be split by link, see {@link ShardableEventHandler}.  The shards write the travel times
+ * straight into the data of this calculator, which is safe as all events of a link go to the same shard.  Only the
+ * link-to-link travel times cannot be split, as the turn is known at the link enter event of the next link, so all
+ * events go to one shard then.  Vehicles that are on a link when the events of the shards are merged are forgotten, so
+ * the parallel processing should cover whole iterations.
  * 
  * @author dgrether
  * @author mrieser
  */
 public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEventHandler, 
 	VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler, VehicleArrivesAtFacilityEventHandler, 
-	VehicleAbortsEventHandler {
+	VehicleAbortsEventHandler, ShardableEventHandler<TravelTimeCalculator> {
 
 	private static final String ERROR_STUCK_AND_LINKTOLINK = "Using the stuck feature with turning move travel times is not available. As the next link of a stucked" +
 			"agent is not known the turning move travel time cannot be calculated!";
@@ -78,13 +87,19 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	private static final Logger log = Logger.getLogger(TravelTimeCalculator.class);
 
+	/** the shard key of all events if link-to-link travel times are calculated */
+	private static final Id<TravelTimeCalculator> LINK_TO_LINK_SHARD_KEY = Id.create("linkToLink", TravelTimeCalculator.class);
+
 	private Map<Id<Link>, DataContainer> linkData;
 
-	private Map<Tuple<Id<Link>, Id<Link>>, DataContainer> linkToLinkData;
+	private TurnTable linkToLinkData;
+
+	private DataContainerProvider dataContainerProvider;
 
-	private final DataContainerProvider dataContainerProvider;
+	/** only set if the travel times of all links are stored in arrays, see {@link DenseDataContainerProvider} */
+	private DenseDataContainerProvider denseDataContainerProvider = null;
 	
-	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
+	private final LinkEnterTimes linkEnterTimes;
 
 	private final Set<Id<Vehicle>> vehiclesToIgnore;
 	private final Set<String> analyzedModes;
@@ -98,7 +113,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 	private TravelTimeDataFactory ttDataFactory = null;
 
 	public static TravelTimeCalculator create(Network network, TravelTimeCalculatorConfigGroup group) {
-		TravelTimeCalculator calculator = new TravelTimeCalculator(network, group);
+		TravelTimeCalculator calculator = new TravelTimeCalculator(network, group.getTraveltimeBinSize(), group.getMaxTime(), group.isCalculateLinkTravelTimes(), group.isCalculateLinkToLinkTravelTimes(), group.isFilterModes(), CollectionUtils.stringToSet(group.getAnalyzedModes()), isDense(group));
 		configure(calculator, group, network);
 		return calculator;
 	}
@@ -112,6 +127,13 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			case TravelTimeCalculatorHashMap:
 				calculator.setTravelTimeDataFactory(new TravelTimeDataHashMapFactory(network));
 				break;
+			case TravelTimeCalculatorDense:
+				// link to link travel times are still stored per pair of links
+				calculator.setTravelTimeDataFactory(new TravelTimeDataArrayFactory(network, calculator.numSlots));
+				if (calculator.calculateLinkTravelTimes && calculator.denseDataContainerProvider == null) {
+					throw new IllegalArgumentException("The calculator must be created with dense link data to use " + config.getTravelTimeCalculatorType());
+				}
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -144,10 +166,14 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		return calculator;
 	}
 
+	/*package*/ static boolean isDense(TravelTimeCalculatorConfigGroup config) {
+		return config.getTravelTimeCalculatorType() == TravelTimeCalculatorType.TravelTimeCalculatorDense;
+	}
+
 	@Inject
 	TravelTimeCalculator(TravelTimeCalculatorConfigGroup ttconfigGroup, EventsManager eventsManager, Network network) {
 		// this injected constructor is not used when getSeparateModes is true
-		this(network, ttconfigGroup.getTraveltimeBinSize(), ttconfigGroup.getMaxTime(), ttconfigGroup.isCalculateLinkTravelTimes(), ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModes()));
+		this(network, ttconfigGroup.getTraveltimeBinSize(), ttconfigGroup.getMaxTime(), ttconfigGroup.isCalculateLinkTravelTimes(), ttconfigGroup.isCalculateLinkToLinkTravelTimes(), ttconfigGroup.isFilterModes(), CollectionUtils.stringToSet(ttconfigGroup.getAnalyzedModes()), isDense(ttconfigGroup));
 		eventsManager.addHandler(this);
 		configure(this, ttconfigGroup, network);
 	}
@@ -162,6 +188,16 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	TravelTimeCalculator(final Network network, final int timeslice, final int maxTime,
 								boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes) {
+		this(network, timeslice, maxTime, calculateLinkTravelTimes, calculateLinkToLinkTravelTimes, filterModes, analyzedModes, false);
+	}
+
+	/**
+	 * @param denseLinkData whether the travel times of all links are stored in arrays, see {@link DenseDataContainerProvider}.
+	 * Then no per-link data containers are allocated.
+	 */
+	TravelTimeCalculator(final Network network, final int timeslice, final int maxTime,
+								boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes,
+								boolean denseLinkData) {
 		this.calculateLinkTravelTimes = calculateLinkTravelTimes;
 		this.calculateLinkToLinkTravelTimes = calculateLinkToLinkTravelTimes;
 		this.filterAnalyzedModes = filterModes;
@@ -170,7 +206,10 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		this.numSlots = TimeBinUtils.getTimeBinCount(maxTime, timeslice);
 		this.aggregator = new OptimisticTravelTimeAggregator(this.numSlots, this.timeSlice);
 		this.ttDataFactory = new TravelTimeDataArrayFactory(network, this.numSlots);
-		if (this.calculateLinkTravelTimes){
+		if (this.calculateLinkTravelTimes && denseLinkData) {
+			this.denseDataContainerProvider = new DenseDataContainerProvider(network, this.numSlots);
+			this.dataContainerProvider = this.denseDataContainerProvider;
+		} else if (this.calculateLinkTravelTimes){
 			this.linkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4));
 
 			/*
@@ -187,10 +226,9 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			this.dataContainerProvider = new ArrayBasedDataContainerProvider(linkData, ttDataFactory, network);
 		} else this.dataContainerProvider = null;
 		if (this.calculateLinkToLinkTravelTimes){
-			// assume that every link has 2 outgoing links as default
-			this.linkToLinkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4 * 2));
+			this.linkToLinkData = new TurnTable(network);
 		}
-		this.linkEnterEvents = new ConcurrentHashMap<>();
+		this.linkEnterTimes = new LinkEnterTimes();
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
@@ -201,30 +239,91 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	}
 
+	/**
+	 * Creates a shard of the calculator, which shares the travel time data with it, but keeps track of the vehicles on
+	 * links itself.
+	 */
+	private TravelTimeCalculator(final TravelTimeCalculator calculator) {
+		this.calculateLinkTravelTimes = calculator.calculateLinkTravelTimes;
+		this.calculateLinkToLinkTravelTimes = calculator.calculateLinkToLinkTravelTimes;
+		this.filterAnalyzedModes = calculator.filterAnalyzedModes;
+		this.analyzedModes = calculator.analyzedModes;
+		this.timeSlice = calculator.timeSlice;
+		this.numSlots = calculator.numSlots;
+		this.aggregator = calculator.aggregator;
+		this.ttDataFactory = calculator.ttDataFactory;
+		this.linkData = calculator.linkData;
+		this.dataContainerProvider = calculator.dataContainerProvider;
+		this.denseDataContainerProvider = calculator.denseDataContainerProvider;
+		this.linkToLinkData = calculator.linkToLinkData;
+		this.linkEnterTimes = new LinkEnterTimes();
+		this.vehiclesToIgnore = new HashSet<>();
+	}
+
+	@Override
+	public Id<?> getShardKey(final Event event) {
+		if (this.calculateLinkToLinkTravelTimes) {
+			return LINK_TO_LINK_SHARD_KEY;
+		}
+		if (event instanceof LinkEnterEvent) {
+			return ((LinkEnterEvent) event).getLinkId();
+		}
+		if (event instanceof LinkLeaveEvent) {
+			return ((LinkLeaveEvent) event).getLinkId();
+		}
+		if (event instanceof VehicleAbortsEvent) {
+			return ((VehicleAbortsEvent) event).getLinkId();
+		}
+		// all shards need to know which vehicles are ignored and which have left traffic
+		return null;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException for subclasses, whose event handling would be lost in the shards, unless
+	 * they override this method
+	 */
+	@Override
+	public TravelTimeCalculator createShard() {
+		if (getClass() != TravelTimeCalculator.class) {
+			throw new UnsupportedOperationException(getClass().getName() + " must override createShard() to handle events in shards.");
+		}
+		return new TravelTimeCalculator(this);
+	}
+
+	@Override
+	public void mergeShard(final TravelTimeCalculator shard) {
+		// the shards have written the travel times into the data of this calculator already
+	}
+
 	@Override
 	public void handleEvent(final LinkEnterEvent e) {
 		/* if only some modes are analyzed, we check whether the vehicles
 		 * performs a trip with one of those modes. if not, we skip the event. */
 		if (filterAnalyzedModes && vehiclesToIgnore.contains(e.getVehicleId())) return;
 
-		LinkEnterEvent oldEvent = this.linkEnterEvents.remove(e.getVehicleId());
-		if ((oldEvent != null) && this.calculateLinkToLinkTravelTimes) {
-			Tuple<Id<Link>, Id<Link>> fromToLink = new Tuple<>(oldEvent.getLinkId(), e.getLinkId());
-			DataContainer data = getLinkToLinkTravelTimeData(fromToLink, true);
-			this.aggregator.addTravelTime(data.ttData, oldEvent.getTime(), e.getTime());
-			data.needsConsolidation = true;
+		int vehicle = this.linkEnterTimes.getOrCreateIndex(e.getVehicleId());
+		Id<Link> oldLinkId = this.linkEnterTimes.getLinkId(vehicle);
+		if ((oldLinkId != null) && this.calculateLinkToLinkTravelTimes) {
+			int turn = this.linkToLinkData.getTurnIndex(oldLinkId, e.getLinkId());
+			if (turn >= 0) {
+				DataContainer data = this.linkToLinkData.getOrCreateDataContainer(turn, oldLinkId, this.ttDataFactory);
+				this.aggregator.addTravelTime(data.ttData, this.linkEnterTimes.getTime(vehicle), e.getTime());
+				data.needsConsolidation = true;
+			}
 		}
-		this.linkEnterEvents.put(e.getVehicleId(), e);
+		this.linkEnterTimes.set(vehicle, e.getLinkId(), e.getTime());
 	}
 
 	@Override
 	public void handleEvent(final LinkLeaveEvent e) {
 		if (this.calculateLinkTravelTimes) {
-			LinkEnterEvent oldEvent = this.linkEnterEvents.get(e.getVehicleId());
-			if (oldEvent != null) {
+			int vehicle = this.linkEnterTimes.getIndex(e.getVehicleId());
+			if (vehicle >= 0 && this.linkEnterTimes.getLinkId(vehicle) != null) {
 				DataContainer data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
-				this.aggregator.addTravelTime(data.ttData, oldEvent.getTime(), e.getTime());
-				data.needsConsolidation = true;
+				if (data != null) {
+					this.aggregator.addTravelTime(data.ttData, this.linkEnterTimes.getTime(vehicle), e.getTime());
+					data.needsConsolidation = true;
+				}
 			}
 		}
 	}
@@ -244,7 +343,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		/* remove EnterEvents from list when a vehicle arrives.
 		 * otherwise, the activity duration would counted as travel time, when the
 		 * vehicle departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId());
 
 		// try to remove vehicles from set with filtered vehicles
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
@@ -255,16 +354,21 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		/* remove EnterEvents from list when a bus stops on a link.
 		 * otherwise, the stop time would counted as travel time, when the
 		 * bus departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		this.linkEnterTimes.remove(event.getVehicleId());
 	}
 
 	@Override
 	public void handleEvent(VehicleAbortsEvent event) {
-		LinkEnterEvent e = this.linkEnterEvents.remove(event.getVehicleId());
-		if (e != null) {
-			DataContainer data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
-			data.needsConsolidation = true;
-			this.aggregator.addStuckEventTravelTime(data.ttData, e.getTime(), event.getTime());
+		int vehicle = this.linkEnterTimes.getIndex(event.getVehicleId());
+		Id<Link> linkId = vehicle < 0 ? null : this.linkEnterTimes.getLinkId(vehicle);
+		if (linkId != null) {
+			double enterTime = this.linkEnterTimes.getTime(vehicle);
+			this.linkEnterTimes.remove(event.getVehicleId());
+			DataContainer data = this.dataContainerProvider.getTravelTimeData(linkId, true);
+			if (data != null) {
+				data.needsConsolidation = true;
+				this.aggregator.addStuckEventTravelTime(data.ttData, enterTime, event.getTime());
+			}
 			if (this.calculateLinkToLinkTravelTimes){
 				log.error(ERROR_STUCK_AND_LINKTOLINK);
 				throw new IllegalStateException(ERROR_STUCK_AND_LINKTOLINK);
@@ -275,18 +379,35 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
 	}
 
-	private DataContainer getLinkToLinkTravelTimeData(Tuple<Id<Link>, Id<Link>> fromLinkToLink, final boolean createIfMissing) {
-		DataContainer data = this.linkToLinkData.get(fromLinkToLink);
-		if ((null == data) && createIfMissing) {
-			data = new DataContainer(this.ttDataFactory.createTravelTimeData(fromLinkToLink.getFirst()));
-			this.linkToLinkData.put(fromLinkToLink, data);
-		}
-		return data;
-	}
-	
+	/**
+	 * @throws IllegalArgumentException if the travel times are stored with a {@link DenseDataContainerProvider} and the
+	 * link is not part of its network; use {@link #getLinkTravelTime(Link, double)} to get the free speed travel time then
+	 */
 	public double getLinkTravelTime(final Id<Link> linkId, final double time) {
 		if (this.calculateLinkTravelTimes) {
 			DataContainer data = this.dataContainerProvider.getTravelTimeData(linkId, true);
+			if (data == null) {
+				throw new IllegalArgumentException("There is no travel time data for link " + linkId + ", as it is not part of the network.");
+			}
+			if (data.needsConsolidation) {
+				consolidateData(data);
+			}
+			return this.aggregator.getTravelTime(data.ttData, time);
+		}
+		throw new IllegalStateException("No link travel time is available " +
+				"if calculation is switched off by config option!");
+	}
+
+	/**
+	 * Same as {@link #getLinkTravelTime(Id, double)}, but for links without travel time data, e.g. links that are not
+	 * part of the network of a {@link DenseDataContainerProvider}, the free speed travel time is returned.
+	 */
+	public double getLinkTravelTime(final Link link, final double time) {
+		if (this.calculateLinkTravelTimes) {
+			DataContainer data = this.dataContainerProvider.getTravelTimeData(link, true);
+			if (data == null) {
+				return link.getLength() / link.getFreespeed(time);
+			}
 			if (data.needsConsolidation) {
 				consolidateData(data);
 			}
@@ -301,7 +422,13 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			throw new IllegalStateException("No link to link travel time is available " +
 					"if calculation is switched off by config option!");
 		}
-		DataContainer data = this.getLinkToLinkTravelTimeData(new Tuple<>(fromLinkId, toLinkId), true);
+		int turn = this.linkToLinkData.getTurnIndex(fromLinkId, toLinkId);
+		DataContainer data = turn < 0 ? null : this.linkToLinkData.getDataContainer(turn);
+		if (data == null) {
+			// no vehicle has made the turn, which is what the travel time data would return then
+			Link fromLink = this.linkToLinkData.getLink(fromLinkId);
+			return fromLink.getLength() / fromLink.getFreespeed(time);
+		}
 		if (data.needsConsolidation) {
 			consolidateData(data);
 		}
@@ -310,19 +437,18 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	@Override
 	public void reset(int iteration) {
-		if (this.calculateLinkTravelTimes) {
+		if (this.denseDataContainerProvider != null) {
+			this.denseDataContainerProvider.resetTravelTimes();
+		} else if (this.calculateLinkTravelTimes) {
 			for (DataContainer data : this.linkData.values()){
 				data.ttData.resetTravelTimes();
 				data.needsConsolidation = false;
 			}
 		}
 		if (this.calculateLinkToLinkTravelTimes){
-			for (DataContainer data : this.linkToLinkData.values()){
-				data.ttData.resetTravelTimes();
-				data.needsConsolidation = false;
-			}
+			this.linkToLinkData.resetTravelTimes();
 		}
-		this.linkEnterEvents.clear();
+		this.linkEnterTimes.clear();
 		this.vehiclesToIgnore.clear();
 	}
 
@@ -412,7 +538,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 			@Override
 			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
-				return TravelTimeCalculator.this.getLinkTravelTime(link.getId(), time);
+				return TravelTimeCalculator.this.getLinkTravelTime(link, time);
 			}
 
 		};
@@ -97,7 +97,8 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 		@Override
 		public TravelTimeCalculator get() {
 			TravelTimeCalculator calculator = new TravelTimeCalculator(network, config.getTraveltimeBinSize(), config.getMaxTime(), 
-					config.isCalculateLinkTravelTimes(), config.isCalculateLinkToLinkTravelTimes(), true, CollectionUtils.stringToSet(mode));
+					config.isCalculateLinkTravelTimes(), config.isCalculateLinkToLinkTravelTimes(), true, CollectionUtils.stringToSet(mode),
+					TravelTimeCalculator.isDense(config));
 			eventsManager.addHandler(calculator);
 			return TravelTimeCalculator.configure(calculator, config, network);
 		}
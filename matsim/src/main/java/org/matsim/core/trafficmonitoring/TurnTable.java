@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TurnTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator.DataContainer;
+
+/**
+ * The link to link travel time data of the {@link TravelTimeCalculator}, per turn from an in-link to one of the
+ * out-links of its to-node.  The turns of in-link <code>i</code> are numbered <code>turnFirst[i]</code> to
+ * <code>turnFirst[i+1] - 1</code>, in the order of the out-links of the node, so looking up a turn needs one map
+ * lookup for the in-link and a scan of the few out-links of its node, but no key object.
+ * <p></p>
+ * The data of a turn is only created once a vehicle has made the turn.  Pairs of links that are not connected by a
+ * node are no turns and have no data.
+ */
+/*package*/ final class TurnTable {
+
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final Link[] links;
+	private final int[] turnFirst;
+	private final Id<Link>[] turnToLinkIds;
+	private final DataContainer[] dataContainers;
+
+	@SuppressWarnings("unchecked")
+	TurnTable(final Network network) {
+		int numberOfLinks = network.getLinks().size();
+		this.linkIndices = new HashMap<>((int) (numberOfLinks * 1.4));
+		this.links = new Link[numberOfLinks];
+		this.turnFirst = new int[numberOfLinks + 1];
+		int index = 0;
+		for (Link link : network.getLinks().values()) {
+			this.linkIndices.put(link.getId(), index);
+			this.links[index] = link;
+			this.turnFirst[index + 1] = this.turnFirst[index] + link.getToNode().getOutLinks().size();
+			index++;
+		}
+		this.turnToLinkIds = new Id[this.turnFirst[numberOfLinks]];
+		this.dataContainers = new DataContainer[this.turnFirst[numberOfLinks]];
+		for (int i = 0; i < numberOfLinks; i++) {
+			int turn = this.turnFirst[i];
+			for (Link outLink : this.links[i].getToNode().getOutLinks().values()) {
+				this.turnToLinkIds[turn++] = outLink.getId();
+			}
+		}
+	}
+
+	/**
+	 * @return the link with the id, or <code>null</code> if it is not part of the network
+	 */
+	Link getLink(final Id<Link> linkId) {
+		Integer index = this.linkIndices.get(linkId);
+		return index == null ? null : this.links[index];
+	}
+
+	/**
+	 * @return the index of the turn, or <code>-1</code> if the links are not connected or not part of the network
+	 */
+	int getTurnIndex(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		Integer index = this.linkIndices.get(fromLinkId);
+		if (index == null) {
+			return -1;
+		}
+		for (int turn = this.turnFirst[index]; turn < this.turnFirst[index + 1]; turn++) {
+			Id<Link> turnToLinkId = this.turnToLinkIds[turn];
+			if (turnToLinkId == toLinkId || turnToLinkId.equals(toLinkId)) {
+				return turn;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the data of the turn, or <code>null</code> if no vehicle has made the turn yet
+	 */
+	DataContainer getDataContainer(final int turn) {
+		return this.dataContainers[turn];
+	}
+
+	/**
+	 * Called while events are handled only, so the data of a turn is not created twice.
+	 */
+	DataContainer getOrCreateDataContainer(final int turn, final Id<Link> fromLinkId, final TravelTimeDataFactory ttDataFactory) {
+		DataContainer data = this.dataContainers[turn];
+		if (data == null) {
+			data = new DataContainer(ttDataFactory.createTravelTimeData(fromLinkId));
+			this.dataContainers[turn] = data;
+		}
+		return data;
+	}
+
+	void resetTravelTimes() {
+		for (DataContainer data : this.dataContainers) {
+			if (data != null) {
+				data.ttData.resetTravelTimes();
+				data.needsConsolidation = false;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BlockOutputStream.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An output stream to a file that can be split into blocks, so that reading can start at the beginning of any block.
+ * If the filename ends with ".gz", every block is a separate gzip member.  Such files are still read completely by
+ * all gzip readers, including {@link IOUtils#getInputStream(String)}; a {@link java.util.zip.GZIPInputStream} that
+ * starts at the offset of a block reads from there to the end of the file.
+ */
+public final class BlockOutputStream extends OutputStream {
+
+	/** the length of the header that {@link GZIPOutputStream} writes when it is created */
+	private static final int GZIP_HEADER_LENGTH = 10;
+
+	private final CountingOutputStream file;
+	private final boolean compressed;
+	private OutputStream block;
+	private boolean empty = true;
+
+	public BlockOutputStream(final String filename) {
+		this.compressed = filename.toLowerCase(Locale.ROOT).endsWith(".gz");
+		try {
+			this.file = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 64 * 1024));
+			this.block = this.compressed ? new GzipMember(this.file) : this.file;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Ends the current block, unless it is empty.
+	 *
+	 * @return the offset in the file at which the new block starts
+	 */
+	public long startBlock() throws IOException {
+		if (this.compressed && !this.empty) {
+			((GzipMember) this.block).finishMember();
+			this.block = new GzipMember(this.file);
+			this.empty = true;
+		}
+		return this.compressed ? this.file.count - GZIP_HEADER_LENGTH : this.file.count;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.block.write(b);
+		this.empty = false;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		this.block.write(b, off, len);
+		this.empty = this.empty && len == 0;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.block.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.block.close();
+	}
+
+	/**
+	 * A gzip member that can be finished without closing the file.  {@link GZIPOutputStream#finish()} keeps the native
+	 * memory of the deflater until the stream is closed, so it is released here when the member is finished.
+	 */
+	private static final class GzipMember extends GZIPOutputStream {
+
+		GzipMember(OutputStream out) throws IOException {
+			super(out, 64 * 1024);
+		}
+
+		void finishMember() throws IOException {
+			finish();
+			this.def.end();
+		}
+
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		private long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+		}
+
+	}
+
+}
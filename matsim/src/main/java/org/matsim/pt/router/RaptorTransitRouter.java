@@ -0,0 +1,539 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Round-based transit router ("RAPTOR", Delling, Pajor and Werneck, "Round-Based Public Transit Routing", 2012) on
+ * the arrays of {@link RaptorTransitRouterData}.  Instead of running a Dijkstra over the {@link TransitRouterNetwork},
+ * every round scans the transit routes serving the route stops that were improved by the previous round once, from
+ * the first improved route stop to the end of the route, and then relaxes the transfers from the route stops
+ * improved by the scans.  The rounds end when no route stop is improved anymore.
+ * <p></p>
+ * Labels are the travel disutilities of {@link TransitRouterNetworkTravelTimeAndDisutility} under the same
+ * {@link TransitRouterConfig}, including the waiting time before boarding, so the router finds the routes of
+ * {@link TransitRouterImpl} with its default travel time and disutility, and creates the same legs from them.  As the
+ * waiting time makes the disutilities time-dependent, a route stop reached earlier at a higher disutility can still
+ * lead to a cheaper route, which the Dijkstra of {@link TransitRouterImpl} does not continue from, so some routes
+ * found here are cheaper than the ones of {@link TransitRouterImpl}, but never more expensive.  Route
+ * stops are not improved any further once their disutility is not below the best disutility found to the
+ * destination.  Every improvement is stored as a separate label pointing to the label it was reached from, so the
+ * route can be traced back even if labels on the way are improved later.
+ * <p></p>
+ * Not thread-safe, because the search state is kept between calls.  Use one instance per thread, sharing the
+ * {@link RaptorTransitRouterData}.
+ *
+ * @see RaptorTransitRouterFactory
+ */
+public class RaptorTransitRouter implements TransitRouter {
+
+	private final RaptorTransitRouterData data;
+	private final TransitRouterConfig config;
+
+	/** the best label of every route stop, or <code>-1</code> */
+	private final int[] bestLabels;
+	/** the disutility to walk from the route stop to the destination, or infinity if it is no destination */
+	private final double[] egressCosts;
+	private final int[] destinations;
+	private int destinationCount = 0;
+
+	private final boolean[] marked;
+	private final int[] markedRouteStops;
+	private int markedCount = 0;
+	/** the first route stop to scan of every route, or <code>-1</code> if the route is not scanned in this round */
+	private final int[] scanFrom;
+	private final int[] routesToScan;
+	private int[] improvedRouteStops;
+	private int improvedCount = 0;
+	private double bestDestinationCost = Double.POSITIVE_INFINITY;
+
+	private double[] labelCosts;
+	private double[] labelTimes;
+	private int[] labelRouteStops;
+	/** the label the label was reached from, or <code>-1</code> for the labels at the access stops */
+	private int[] labelPrevious;
+	private boolean[] labelTransfers;
+	private int labelCount = 0;
+
+	public RaptorTransitRouter(final TransitRouterConfig config, final TransitSchedule schedule) {
+		this(config, RaptorTransitRouterData.createFromSchedule(schedule, config));
+	}
+
+	public RaptorTransitRouter(final TransitRouterConfig config, final RaptorTransitRouterData data) {
+		this.config = config;
+		this.data = data;
+		int numberOfRouteStops = data.routeStops.length;
+		this.bestLabels = new int[numberOfRouteStops];
+		Arrays.fill(this.bestLabels, -1);
+		this.egressCosts = new double[numberOfRouteStops];
+		Arrays.fill(this.egressCosts, Double.POSITIVE_INFINITY);
+		this.destinations = new int[numberOfRouteStops];
+		this.marked = new boolean[numberOfRouteStops];
+		this.markedRouteStops = new int[numberOfRouteStops];
+		this.scanFrom = new int[data.routes.length];
+		Arrays.fill(this.scanFrom, -1);
+		this.routesToScan = new int[data.routes.length];
+		this.improvedRouteStops = new int[Math.max(16, numberOfRouteStops)];
+		int capacity = Math.max(16, numberOfRouteStops);
+		this.labelCosts = new double[capacity];
+		this.labelTimes = new double[capacity];
+		this.labelRouteStops = new int[capacity];
+		this.labelPrevious = new int[capacity];
+		this.labelTransfers = new boolean[capacity];
+	}
+
+	@Override
+	public List<Leg> calcRoute(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final Person person) {
+		if (this.data.stops.length == 0) {
+			return null;
+		}
+		Coord fromCoord = fromFacility.getCoord();
+		Coord toCoord = toFacility.getCoord();
+		try {
+			// find possible end stops
+			for (TransitStopFacility stop : locateNearestStops(toCoord)) {
+				double egressCost = getWalkDisutility(toCoord, stop.getCoord());
+				int s = this.data.stopIndices.get(stop.getId());
+				for (int i = this.data.stopRouteStopFirst[s]; i < this.data.stopRouteStopFirst[s + 1]; i++) {
+					int routeStop = this.data.stopRouteStops[i];
+					this.egressCosts[routeStop] = egressCost;
+					this.destinations[this.destinationCount++] = routeStop;
+				}
+			}
+			// find possible start stops
+			for (TransitStopFacility stop : locateNearestStops(fromCoord)) {
+				double accessTime = getWalkTime(fromCoord, stop.getCoord());
+				double accessCost = getWalkDisutility(fromCoord, stop.getCoord());
+				int s = this.data.stopIndices.get(stop.getId());
+				for (int i = this.data.stopRouteStopFirst[s]; i < this.data.stopRouteStopFirst[s + 1]; i++) {
+					int routeStop = this.data.stopRouteStops[i];
+					addLabel(routeStop, accessCost, accessTime + departureTime, -1, false);
+					mark(routeStop);
+					addImproved(routeStop);
+				}
+			}
+
+			search();
+
+			int bestLabel = -1;
+			double minCost = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < this.destinationCount; i++) {
+				int label = this.bestLabels[this.destinations[i]];
+				if (label >= 0) {
+					double cost = this.labelCosts[label] + this.egressCosts[this.destinations[i]];
+					if (cost < minCost) {
+						minCost = cost;
+						bestLabel = label;
+					}
+				}
+			}
+			if (bestLabel < 0) {
+				return null;
+			}
+
+			int[] path = getPath(bestLabel);
+			int firstLabel = path[0];
+			double travelCost = this.labelCosts[bestLabel] - this.labelCosts[firstLabel];
+			double pathCost = travelCost + this.labelCosts[firstLabel] + this.egressCosts[this.labelRouteStops[bestLabel]];
+			double directWalkCost = getWalkDisutility(fromCoord, toCoord);
+			if (directWalkCost * this.config.getDirectWalkFactor() < pathCost) {
+				return createDirectWalkLegList(fromCoord, toCoord);
+			}
+			return convertPathToLegList(departureTime, path, fromCoord, toCoord);
+		} finally {
+			reset();
+		}
+	}
+
+	private Collection<TransitStopFacility> locateNearestStops(final Coord coord) {
+		Collection<TransitStopFacility> nearestStops = this.data.qtStops.getDisk(coord.getX(), coord.getY(), this.config.getSearchRadius());
+		int numberOfRouteStops = 0;
+		for (TransitStopFacility stop : nearestStops) {
+			numberOfRouteStops += this.data.getNumberOfRouteStops(stop);
+		}
+		if (numberOfRouteStops < 2) {
+			// also enlarge search area if only one route stop found, maybe a second one is near the border of the search area
+			TransitStopFacility nearestStop = this.data.qtStops.getClosest(coord.getX(), coord.getY());
+			double distance = CoordUtils.calcEuclideanDistance(coord, nearestStop.getCoord());
+			nearestStops = this.data.qtStops.getDisk(coord.getX(), coord.getY(), distance + this.config.getExtensionRadius());
+		}
+		return nearestStops;
+	}
+
+	private void search() {
+		relaxTransfers();
+		while (this.markedCount > 0) {
+			int routeCount = 0;
+			for (int i = 0; i < this.markedCount; i++) {
+				int routeStop = this.markedRouteStops[i];
+				int route = this.data.routeStopRoutes[routeStop];
+				if (this.scanFrom[route] < 0) {
+					this.routesToScan[routeCount++] = route;
+					this.scanFrom[route] = routeStop;
+				} else if (routeStop < this.scanFrom[route]) {
+					this.scanFrom[route] = routeStop;
+				}
+			}
+			for (int i = 0; i < routeCount; i++) {
+				int route = this.routesToScan[i];
+				scanRoute(route, this.scanFrom[route]);
+				this.scanFrom[route] = -1;
+			}
+			for (int i = 0; i < this.markedCount; i++) {
+				this.marked[this.markedRouteStops[i]] = false;
+			}
+			this.markedCount = 0;
+			relaxTransfers();
+		}
+	}
+
+	/**
+	 * Rides the route from the first marked route stop to its end.  At every route stop, the ride continues from the
+	 * cheaper of the label reached by the ride and the marked label of the route stop, the way the Dijkstra of
+	 * {@link TransitRouterImpl} continues from the best label of a node.  The departure found at one route stop is
+	 * checked first at the next one, so the departures are only searched when boarding another vehicle.
+	 */
+	private void scanRoute(final int route, final int firstRouteStop) {
+		if (this.data.routeDepartures[route].length == 0) {
+			return;
+		}
+		int end = this.data.routeFirstStop[route + 1];
+		int label = -1;
+		int departure = -1;
+		for (int routeStop = firstRouteStop; routeStop < end; routeStop++) {
+			if (label >= 0) {
+				int from = routeStop - 1;
+				double time = this.labelTimes[label];
+				departure = this.data.getNextDeparture(route, from, time, departure);
+				double nextDepartureTime = this.data.getDepartureTime(route, from, departure, time);
+				double departureOffset = this.data.departureOffsets[from];
+				double travelTime = (nextDepartureTime - time) + (this.data.arrivalOffsets[routeStop] - departureOffset);
+				if (travelTime < 0) {
+					// (this can only happen when the departure is after midnight but the time was before)
+					travelTime += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+				}
+				double vehicleArrivalTime = nextDepartureTime - (departureOffset - this.data.arrivalOffsets[from]);
+				double waitTime = (time < vehicleArrivalTime) ? vehicleArrivalTime - time : 0;
+				double inVehicleTime = travelTime - waitTime;
+				double cost = this.labelCosts[label] + (- inVehicleTime * this.config.getMarginalUtilityOfTravelTimePt_utl_s()
+						- waitTime * this.config.getMarginalUtilityOfWaitingPt_utl_s()
+						- this.data.lengths[routeStop] * this.config.getMarginalUtilityOfTravelDistancePt_utl_m());
+				int best = this.bestLabels[routeStop];
+				if (cost < this.bestDestinationCost && (best < 0 || cost < this.labelCosts[best])) {
+					label = addLabel(routeStop, cost, time + travelTime, label, false);
+					addImproved(routeStop);
+					continue;
+				}
+			}
+			// labels that are not marked were already ridden from in an earlier round
+			int best = this.bestLabels[routeStop];
+			label = (this.marked[routeStop] && this.labelCosts[best] < this.bestDestinationCost) ? best : -1;
+		}
+	}
+
+	/**
+	 * Relaxes the transfers from the improved route stops, and from the route stops improved by these transfers.
+	 * Marks all route stops improved by transfers for the next round.
+	 */
+	private void relaxTransfers() {
+		for (int i = 0; i < this.improvedCount; i++) {
+			int routeStop = this.improvedRouteStops[i];
+			int route = this.data.routeStopRoutes[routeStop];
+			if (routeStop == this.data.routeFirstStop[route]) {
+				continue; // nothing arrives at the first stop of a route
+			}
+			int label = this.bestLabels[routeStop];
+			double cost = this.labelCosts[label];
+			if (cost >= this.bestDestinationCost) {
+				continue;
+			}
+			double time = this.labelTimes[label];
+			int stop = this.data.routeStopStops[routeStop];
+			TransitLine line = this.data.routeLines[route];
+			for (int t = this.data.transferFirst[stop]; t < this.data.transferFirst[stop + 1]; t++) {
+				double transferCost = cost + this.data.transferDisutilities[t];
+				if (transferCost >= this.bestDestinationCost) {
+					continue;
+				}
+				int toStop = this.data.transferStops[t];
+				for (int j = this.data.stopRouteStopFirst[toStop]; j < this.data.stopRouteStopFirst[toStop + 1]; j++) {
+					int toRouteStop = this.data.stopRouteStops[j];
+					int toRoute = this.data.routeStopRoutes[toRouteStop];
+					if (toRouteStop == this.data.routeFirstStop[toRoute + 1] - 1) {
+						continue; // nothing departs at the last stop of a route
+					}
+					if (toStop == stop && this.data.routeLines[toRoute] == line) {
+						continue; // no transfers between the routes of a line at the same stop
+					}
+					int best = this.bestLabels[toRouteStop];
+					if (best >= 0 && transferCost >= this.labelCosts[best]) {
+						continue;
+					}
+					addLabel(toRouteStop, transferCost, time + this.data.transferTimes[t], label, true);
+					mark(toRouteStop);
+					addImproved(toRouteStop);
+				}
+			}
+		}
+		this.improvedCount = 0;
+	}
+
+	private int addLabel(final int routeStop, final double cost, final double time, final int previous, final boolean transfer) {
+		if (this.labelCount == this.labelCosts.length) {
+			int capacity = 2 * this.labelCount;
+			this.labelCosts = Arrays.copyOf(this.labelCosts, capacity);
+			this.labelTimes = Arrays.copyOf(this.labelTimes, capacity);
+			this.labelRouteStops = Arrays.copyOf(this.labelRouteStops, capacity);
+			this.labelPrevious = Arrays.copyOf(this.labelPrevious, capacity);
+			this.labelTransfers = Arrays.copyOf(this.labelTransfers, capacity);
+		}
+		int label = this.labelCount++;
+		this.labelCosts[label] = cost;
+		this.labelTimes[label] = time;
+		this.labelRouteStops[label] = routeStop;
+		this.labelPrevious[label] = previous;
+		this.labelTransfers[label] = transfer;
+		this.bestLabels[routeStop] = label;
+		double destinationCost = cost + this.egressCosts[routeStop];
+		if (destinationCost < this.bestDestinationCost) {
+			this.bestDestinationCost = destinationCost;
+		}
+		return label;
+	}
+
+	private void mark(final int routeStop) {
+		if (!this.marked[routeStop]) {
+			this.marked[routeStop] = true;
+			this.markedRouteStops[this.markedCount++] = routeStop;
+		}
+	}
+
+	private void addImproved(final int routeStop) {
+		if (this.improvedCount == this.improvedRouteStops.length) {
+			this.improvedRouteStops = Arrays.copyOf(this.improvedRouteStops, 2 * this.improvedCount);
+		}
+		this.improvedRouteStops[this.improvedCount++] = routeStop;
+	}
+
+	private void reset() {
+		for (int i = 0; i < this.labelCount; i++) {
+			this.bestLabels[this.labelRouteStops[i]] = -1;
+		}
+		this.labelCount = 0;
+		for (int i = 0; i < this.destinationCount; i++) {
+			this.egressCosts[this.destinations[i]] = Double.POSITIVE_INFINITY;
+		}
+		this.destinationCount = 0;
+		for (int i = 0; i < this.markedCount; i++) {
+			this.marked[this.markedRouteStops[i]] = false;
+		}
+		this.markedCount = 0;
+		this.improvedCount = 0;
+		this.bestDestinationCost = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @return the labels from the access stop to the label, in this order
+	 */
+	private int[] getPath(final int label) {
+		int size = 1;
+		for (int l = label; this.labelPrevious[l] >= 0; l = this.labelPrevious[l]) {
+			size++;
+		}
+		int[] path = new int[size];
+		for (int l = label; l >= 0; l = this.labelPrevious[l]) {
+			path[--size] = l;
+		}
+		return path;
+	}
+
+	private double getWalkTime(final Coord coord, final Coord toCoord) {
+		return CoordUtils.calcEuclideanDistance(coord, toCoord) / this.config.getBeelineWalkSpeed();
+	}
+
+	private double getTransferTime(final Coord coord, final Coord toCoord) {
+		return getWalkTime(coord, toCoord) + this.config.getAdditionalTransferTime();
+	}
+
+	private double getWalkDisutility(final Coord coord, final Coord toCoord) {
+		// as TransitRouterNetworkTravelTimeAndDisutility.getTravelDisutility
+		double timeCost = - getWalkTime(coord, toCoord) * this.config.getMarginalUtilityOfTravelTimeWalk_utl_s();
+		double distanceCost = - CoordUtils.calcEuclideanDistance(coord, toCoord) * this.config.getMarginalUtilityOfTravelDistancePt_utl_m();
+		return timeCost + distanceCost;
+	}
+
+	private List<Leg> createDirectWalkLegList(final Coord fromCoord, final Coord toCoord) {
+		List<Leg> legs = new ArrayList<>();
+		Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+		double walkTime = getWalkTime(fromCoord, toCoord);
+		leg.setTravelTime(walkTime);
+		Route walkRoute = new GenericRouteImpl(null, null);
+		walkRoute.setTravelTime(walkTime);
+		leg.setRoute(walkRoute);
+		legs.add(leg);
+		return legs;
+	}
+
+	/**
+	 * Same as {@link TransitRouterImpl#convertPathToLegList}, where every label but the first corresponds to a link of
+	 * the transit router network.
+	 */
+	private List<Leg> convertPathToLegList(final double departureTime, final int[] path, final Coord fromCoord, final Coord toCoord) {
+		double time = departureTime;
+		List<Leg> legs = new ArrayList<>();
+		Leg leg;
+		TransitLine line = null;
+		TransitRoute route = null;
+		TransitStopFacility accessStop = null;
+		int transitRouteStart = -1;
+		int prevRouteStop = -1;
+		int transitLegCnt = 0;
+		for (int i = 1; i < path.length; i++) {
+			int fromRouteStop = this.labelRouteStops[path[i - 1]];
+			int toRouteStop = this.labelRouteStops[path[i]];
+			if (this.labelTransfers[path[i]]) {
+				// finish the pt leg, if there was one before...
+				TransitStopFacility egressStop = this.data.routeStops[fromRouteStop].getStopFacility();
+				if (route != null) {
+					leg = PopulationUtils.createLeg(TransportMode.pt);
+					ExperimentalTransitRoute ptRoute = new ExperimentalTransitRoute(accessStop, line, route, egressStop);
+					double arrivalTime = getArrivalTime(transitRouteStart, fromRouteStop, time);
+					ptRoute.setTravelTime(arrivalTime - time);
+					// the length of the transfer, as in TransitRouterImpl (see MATSIM-556)
+					ptRoute.setDistance(CoordUtils.calcEuclideanDistance(this.data.routeStops[toRouteStop].getStopFacility().getCoord(), egressStop.getCoord()));
+					leg.setRoute(ptRoute);
+					leg.setTravelTime(arrivalTime - time);
+					time = arrivalTime;
+					legs.add(leg);
+					transitLegCnt++;
+					accessStop = egressStop;
+				}
+				line = null;
+				route = null;
+				transitRouteStart = -1;
+			} else {
+				int r = this.data.routeStopRoutes[toRouteStop];
+				if (this.data.routes[r] != route) {
+					// the line changed
+					TransitStopFacility egressStop = this.data.routeStops[fromRouteStop].getStopFacility();
+					if (route == null) {
+						// previously, the agent was on a transfer, add the walk leg
+						transitRouteStart = fromRouteStop;
+						if (accessStop != egressStop) {
+							if (accessStop != null) {
+								leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+								double transferTime = getTransferTime(accessStop.getCoord(), egressStop.getCoord());
+								Route walkRoute = new GenericRouteImpl(accessStop.getLinkId(), egressStop.getLinkId());
+								walkRoute.setTravelTime(transferTime);
+								walkRoute.setDistance(this.config.getBeelineDistanceFactor() *
+										NetworkUtils.getEuclideanDistance(accessStop.getCoord(), egressStop.getCoord()));
+								leg.setRoute(walkRoute);
+								leg.setTravelTime(transferTime);
+								time += transferTime;
+								legs.add(leg);
+							} else { // accessStop == null, so it must be the first walk-leg
+								leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+								double walkTime = getWalkTime(fromCoord, egressStop.getCoord());
+								Route walkRoute = new GenericRouteImpl(null, egressStop.getLinkId());
+								walkRoute.setTravelTime(walkTime);
+								walkRoute.setDistance(this.config.getBeelineDistanceFactor() *
+										NetworkUtils.getEuclideanDistance(fromCoord, egressStop.getCoord()));
+								leg.setRoute(walkRoute);
+								leg.setTravelTime(walkTime);
+								time += walkTime;
+								legs.add(leg);
+							}
+						}
+					}
+					line = this.data.routeLines[r];
+					route = this.data.routes[r];
+					accessStop = egressStop;
+				}
+			}
+			prevRouteStop = toRouteStop;
+		}
+		if (route != null) {
+			// the last part of the path was with a transit route, so add the pt-leg and final walk-leg
+			leg = PopulationUtils.createLeg(TransportMode.pt);
+			TransitStopFacility egressStop = this.data.routeStops[prevRouteStop].getStopFacility();
+			ExperimentalTransitRoute ptRoute = new ExperimentalTransitRoute(accessStop, line, route, egressStop);
+			ptRoute.setDistance(this.config.getBeelineDistanceFactor() * NetworkUtils.getEuclideanDistance(accessStop.getCoord(), egressStop.getCoord()));
+			leg.setRoute(ptRoute);
+			double arrivalTime = getArrivalTime(transitRouteStart, prevRouteStop, time);
+			leg.setTravelTime(arrivalTime - time);
+			ptRoute.setTravelTime(arrivalTime - time);
+			legs.add(leg);
+			transitLegCnt++;
+			accessStop = egressStop;
+		}
+		if (prevRouteStop >= 0) {
+			leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+			double walkTime;
+			if (accessStop == null) {
+				walkTime = getWalkTime(fromCoord, toCoord);
+			} else {
+				walkTime = getWalkTime(accessStop.getCoord(), toCoord);
+			}
+			leg.setTravelTime(walkTime);
+			legs.add(leg);
+		}
+		if (transitLegCnt == 0) {
+			// it seems, the agent only walked
+			legs.clear();
+			leg = PopulationUtils.createLeg(TransportMode.transit_walk);
+			double walkTime = getWalkTime(fromCoord, toCoord);
+			leg.setTravelTime(walkTime);
+			legs.add(leg);
+		}
+		return legs;
+	}
+
+	/**
+	 * @return the arrival time at the route stop <code>to</code> when boarding the next departure at the route stop
+	 * <code>from</code> of the same route at the time
+	 */
+	private double getArrivalTime(final int from, final int to, final double time) {
+		TransitRouteStop start = this.data.routeStops[from];
+		return this.data.getNextDepartureTime(this.data.routeStopRoutes[from], from, time) + (this.data.arrivalOffsets[to] - start.getDepartureOffset());
+	}
+
+}
@@ -0,0 +1,289 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouterData.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * The transit schedule in arrays, as used by the {@link RaptorTransitRouter}.  Contains the same information as the
+ * {@link TransitRouterNetwork}: every stop of every transit route is a <em>route stop</em>, the route stops of a
+ * route have consecutive indices, and the transfers between route stops are derived from the transfers between
+ * stop facilities that are at most <code>beelineWalkConnectionDistance</code> apart, following the same rules as
+ * the transfer links of the {@link TransitRouterNetwork}.  The travel times and disutilities of the transfers do
+ * not depend on the time of day and are calculated once.
+ * <p></p>
+ * Does not expect the TransitSchedule to change once created.  Thread-safe, so one instance can be shared by the
+ * routers of all threads.
+ */
+public final class RaptorTransitRouterData {
+
+	private final static Logger log = Logger.getLogger(RaptorTransitRouterData.class);
+
+	/** the stop facilities served by at least one route stop */
+	final TransitStopFacility[] stops;
+	final Map<Id<TransitStopFacility>, Integer> stopIndices;
+	final QuadTree<TransitStopFacility> qtStops;
+	/** the route stops of stop <code>s</code> are at <code>stopRouteStopFirst[s] ... stopRouteStopFirst[s+1]-1</code> */
+	final int[] stopRouteStopFirst;
+	final int[] stopRouteStops;
+	/** the transfers from stop <code>s</code>, including the one to itself, are at <code>transferFirst[s] ... transferFirst[s+1]-1</code> */
+	final int[] transferFirst;
+	final int[] transferStops;
+	final double[] transferLengths;
+	final double[] transferTimes;
+	final double[] transferDisutilities;
+
+	final TransitLine[] routeLines;
+	final TransitRoute[] routes;
+	/** the route stops of route <code>r</code> are <code>routeFirstStop[r] ... routeFirstStop[r+1]-1</code> */
+	final int[] routeFirstStop;
+	/** the sorted departure times at the first stop of every route */
+	final double[][] routeDepartures;
+
+	final TransitRouteStop[] routeStops;
+	final int[] routeStopRoutes;
+	final int[] routeStopStops;
+	/** the arrival offset of the route stop, or its departure offset if it has no arrival offset */
+	final double[] arrivalOffsets;
+	final double[] departureOffsets;
+	/** the beeline distance from the previous route stop of the route */
+	final double[] lengths;
+
+	@SuppressWarnings("unchecked")
+	private RaptorTransitRouterData(final TransitSchedule schedule, final TransitRouterConfig config) {
+		List<TransitLine> lines = new ArrayList<>();
+		List<TransitRoute> routeList = new ArrayList<>();
+		int numberOfRouteStops = 0;
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				lines.add(line);
+				routeList.add(route);
+				numberOfRouteStops += route.getStops().size();
+			}
+		}
+		int numberOfRoutes = routeList.size();
+		this.routeLines = lines.toArray(new TransitLine[numberOfRoutes]);
+		this.routes = routeList.toArray(new TransitRoute[numberOfRoutes]);
+		this.routeFirstStop = new int[numberOfRoutes + 1];
+		this.routeDepartures = new double[numberOfRoutes][];
+		this.routeStops = new TransitRouteStop[numberOfRouteStops];
+		this.routeStopRoutes = new int[numberOfRouteStops];
+		this.routeStopStops = new int[numberOfRouteStops];
+		this.arrivalOffsets = new double[numberOfRouteStops];
+		this.departureOffsets = new double[numberOfRouteStops];
+		this.lengths = new double[numberOfRouteStops];
+
+		this.stopIndices = new HashMap<>();
+		List<TransitStopFacility> stopList = new ArrayList<>();
+		int rs = 0;
+		for (int r = 0; r < numberOfRoutes; r++) {
+			TransitRoute route = this.routes[r];
+			this.routeFirstStop[r] = rs;
+			double[] departures = new double[route.getDepartures().size()];
+			int i = 0;
+			for (Departure departure : route.getDepartures().values()) {
+				departures[i++] = departure.getDepartureTime();
+			}
+			Arrays.sort(departures);
+			this.routeDepartures[r] = departures;
+			TransitRouteStop previousStop = null;
+			for (TransitRouteStop stop : route.getStops()) {
+				TransitStopFacility facility = stop.getStopFacility();
+				Integer stopIndex = this.stopIndices.get(facility.getId());
+				if (stopIndex == null) {
+					stopIndex = stopList.size();
+					this.stopIndices.put(facility.getId(), stopIndex);
+					stopList.add(facility);
+				}
+				this.routeStops[rs] = stop;
+				this.routeStopRoutes[rs] = r;
+				this.routeStopStops[rs] = stopIndex;
+				this.arrivalOffsets[rs] = (stop.getArrivalOffset() != Time.UNDEFINED_TIME) ? stop.getArrivalOffset() : stop.getDepartureOffset();
+				this.departureOffsets[rs] = stop.getDepartureOffset();
+				if (previousStop != null) {
+					this.lengths[rs] = CoordUtils.calcEuclideanDistance(facility.getCoord(), previousStop.getStopFacility().getCoord());
+				}
+				previousStop = stop;
+				rs++;
+			}
+		}
+		this.routeFirstStop[numberOfRoutes] = rs;
+
+		int numberOfStops = stopList.size();
+		this.stops = stopList.toArray(new TransitStopFacility[numberOfStops]);
+		this.stopRouteStopFirst = new int[numberOfStops + 1];
+		for (int i = 0; i < numberOfRouteStops; i++) {
+			this.stopRouteStopFirst[this.routeStopStops[i] + 1]++;
+		}
+		for (int s = 0; s < numberOfStops; s++) {
+			this.stopRouteStopFirst[s + 1] += this.stopRouteStopFirst[s];
+		}
+		this.stopRouteStops = new int[numberOfRouteStops];
+		int[] positions = Arrays.copyOf(this.stopRouteStopFirst, numberOfStops);
+		for (int i = 0; i < numberOfRouteStops; i++) {
+			this.stopRouteStops[positions[this.routeStopStops[i]]++] = i;
+		}
+
+		this.qtStops = createQuadTree(this.stops);
+
+		this.transferFirst = new int[numberOfStops + 1];
+		List<Collection<TransitStopFacility>> nearbyStops = new ArrayList<>(numberOfStops);
+		for (int s = 0; s < numberOfStops; s++) {
+			Coord coord = this.stops[s].getCoord();
+			Collection<TransitStopFacility> nearby = this.qtStops.getDisk(coord.getX(), coord.getY(), config.getBeelineWalkConnectionDistance());
+			nearbyStops.add(nearby);
+			this.transferFirst[s + 1] = this.transferFirst[s] + nearby.size();
+		}
+		int numberOfTransfers = this.transferFirst[numberOfStops];
+		this.transferStops = new int[numberOfTransfers];
+		this.transferLengths = new double[numberOfTransfers];
+		this.transferTimes = new double[numberOfTransfers];
+		this.transferDisutilities = new double[numberOfTransfers];
+		int t = 0;
+		for (int s = 0; s < numberOfStops; s++) {
+			for (TransitStopFacility toStop : nearbyStops.get(s)) {
+				double length = CoordUtils.calcEuclideanDistance(toStop.getCoord(), this.stops[s].getCoord());
+				this.transferStops[t] = this.stopIndices.get(toStop.getId());
+				this.transferLengths[t] = length;
+				// as the transfer links in TransitRouterNetworkTravelTimeAndDisutility
+				double transferTime = length / config.getBeelineWalkSpeed() + config.getAdditionalTransferTime();
+				double waitTime = config.getAdditionalTransferTime();
+				double walkTime = transferTime - waitTime;
+				this.transferTimes[t] = transferTime;
+				this.transferDisutilities[t] = - walkTime * config.getMarginalUtilityOfTravelTimeWalk_utl_s()
+						- length * config.getMarginalUtilityOfTravelDistanceWalk_utl_m()
+						- waitTime * config.getMarginalUtilityOfWaitingPt_utl_s()
+						- config.getUtilityOfLineSwitch_utl();
+				t++;
+			}
+		}
+	}
+
+	private static QuadTree<TransitStopFacility> createQuadTree(final TransitStopFacility[] stops) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (TransitStopFacility stop : stops) {
+			Coord c = stop.getCoord();
+			minX = Math.min(minX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxX = Math.max(maxX, c.getX());
+			maxY = Math.max(maxY, c.getY());
+		}
+		QuadTree<TransitStopFacility> quadTree = new QuadTree<>(minX, minY, maxX, maxY);
+		for (TransitStopFacility stop : stops) {
+			quadTree.put(stop.getCoord().getX(), stop.getCoord().getY(), stop);
+		}
+		return quadTree;
+	}
+
+	public static RaptorTransitRouterData createFromSchedule(final TransitSchedule schedule, final TransitRouterConfig config) {
+		log.info("start creating raptor transit router data");
+		RaptorTransitRouterData data = new RaptorTransitRouterData(schedule, config);
+		log.info("raptor transit router data statistics:");
+		log.info(" # routes:      " + data.routes.length);
+		log.info(" # route stops: " + data.routeStops.length);
+		log.info(" # stops:       " + data.stops.length);
+		log.info(" # transfers between stops: " + data.transferStops.length);
+		return data;
+	}
+
+	/**
+	 * @return the number of route stops at the stop facility
+	 */
+	int getNumberOfRouteStops(final TransitStopFacility stop) {
+		Integer s = this.stopIndices.get(stop.getId());
+		return s == null ? 0 : this.stopRouteStopFirst[s + 1] - this.stopRouteStopFirst[s];
+	}
+
+	/**
+	 * Same as {@link PreparedTransitSchedule#getNextDepartureTime(TransitRoute, TransitRouteStop, double)}, on the
+	 * sorted departures of the route.
+	 *
+	 * @return the next departure time at the route stop, or the first one of the next day
+	 */
+	double getNextDepartureTime(final int route, final int routeStop, final double depTime) {
+		return getDepartureTime(route, routeStop, getNextDeparture(route, routeStop, depTime, -1), depTime);
+	}
+
+	/**
+	 * Finds the departure at the first stop of the route whose vehicle departs next at the route stop, like
+	 * {@link #getNextDepartureTime(int, int, double)}.  Checks the given departure first, because riding a route
+	 * usually continues with the vehicle that was boarded, so the binary search is only needed for boarding.
+	 *
+	 * @param departure the index of the departure that probably departs next, or <code>-1</code>
+	 * @return the index of the departure in {@link #routeDepartures}
+	 */
+	int getNextDeparture(final int route, final int routeStop, final double depTime, final int departure) {
+		double earliestDepartureTimeAtTerminus = depTime - this.departureOffsets[routeStop];
+		if (earliestDepartureTimeAtTerminus >= TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+			earliestDepartureTimeAtTerminus = earliestDepartureTimeAtTerminus % TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		if (earliestDepartureTimeAtTerminus < 0) {
+			earliestDepartureTimeAtTerminus += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		double[] departures = this.routeDepartures[route];
+		if (departure >= 0 && departures[departure] >= earliestDepartureTimeAtTerminus
+				&& (departure == 0 || departures[departure - 1] < earliestDepartureTimeAtTerminus)) {
+			return departure;
+		}
+		int pos = Arrays.binarySearch(departures, earliestDepartureTimeAtTerminus);
+		if (pos < 0) {
+			pos = -(pos + 1);
+		}
+		if (pos >= departures.length) {
+			pos = 0; // there is no later departure time, take the first in the morning
+		}
+		return pos;
+	}
+
+	/**
+	 * @return the time the vehicle of the departure leaves the route stop, on the first day it does so not before
+	 * <code>depTime</code>
+	 */
+	double getDepartureTime(final int route, final int routeStop, final int departure, final double depTime) {
+		double bestDepartureTime = this.routeDepartures[route][departure] + this.departureOffsets[routeStop];
+		while (bestDepartureTime < depTime) {
+			bestDepartureTime += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		return bestDepartureTime;
+	}
+
+}
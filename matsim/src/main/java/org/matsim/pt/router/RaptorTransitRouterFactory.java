@@ -0,0 +1,69 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouterFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import org.matsim.core.config.Config;
+import org.matsim.pt.config.TransitRouterConfigGroup.TransitRouterType;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+/**
+ * Creates {@link RaptorTransitRouter}s sharing one {@link RaptorTransitRouterData}.
+ */
+@Singleton
+public class RaptorTransitRouterFactory implements Provider<TransitRouter> {
+
+	private final TransitRouterConfig config;
+	private final RaptorTransitRouterData data;
+
+	/**
+	 * Fails if a {@link TransitTravelDisutility} is bound, because the router would silently ignore it.
+	 */
+	@Inject
+	RaptorTransitRouterFactory(final TransitSchedule schedule, final Config config, final Injector injector) {
+		this(schedule, new TransitRouterConfig(
+				config.planCalcScore(),
+				config.plansCalcRoute(),
+				config.transitRouter(),
+				config.vspExperimental()));
+		if (injector.getExistingBinding(Key.get(TransitTravelDisutility.class)) != null) {
+			throw new RuntimeException("A " + TransitTravelDisutility.class.getSimpleName() + " is bound, but the transit router type "
+					+ TransitRouterType.Raptor + " only uses the default travel disutility. Use the router type "
+					+ TransitRouterType.Dijkstra + " instead.");
+		}
+	}
+
+	public RaptorTransitRouterFactory(final TransitSchedule schedule, final TransitRouterConfig config) {
+		this.config = config;
+		this.data = RaptorTransitRouterData.createFromSchedule(schedule, this.config);
+	}
+
+	@Override
+	public TransitRouter get() {
+		return new RaptorTransitRouter(this.config, this.data);
+	}
+
+}
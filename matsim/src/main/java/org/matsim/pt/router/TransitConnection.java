@@ -0,0 +1,133 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitConnection.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.population.PopulationUtils;
+
+/**
+ * One connection of a profile search of the {@link TransitRouterImpl}: the legs of a pt trip, starting at the latest
+ * time at which the first vehicle is reached without waiting for it.
+ *
+ * @see TransitRouterImpl#calcRouteProfile
+ */
+public final class TransitConnection {
+
+	private final double departureTime;
+	private final double arrivalTime;
+	private final List<Leg> legs;
+
+	/** the departure time of the search which found the connection */
+	private final double searchTime;
+	/** the travel disutility of the connection when departing at the search time */
+	private final double searchTravelDisutility;
+	/** the latest departure time to reach the first vehicle, while it dwells at the stop */
+	private final double lastDepartureTime;
+	/** the latest departure time for which the search finds this connection, may be before the search time */
+	private final double lastValidTime;
+
+	TransitConnection(final double departureTime, final List<Leg> legs, final double searchTime, final double searchTravelDisutility,
+			final double lastDepartureTime, final double lastValidTime) {
+		this.departureTime = departureTime;
+		double travelTime = 0.0;
+		for (Leg leg : legs) {
+			travelTime += leg.getTravelTime();
+		}
+		this.arrivalTime = departureTime + travelTime;
+		this.legs = Collections.unmodifiableList(legs);
+		this.searchTime = searchTime;
+		this.searchTravelDisutility = searchTravelDisutility;
+		this.lastDepartureTime = lastDepartureTime;
+		this.lastValidTime = Math.min(lastValidTime, departureTime);
+	}
+
+	/**
+	 * @return the latest departure time at the origin to take this connection without waiting for the first vehicle
+	 */
+	public double getDepartureTime() {
+		return this.departureTime;
+	}
+
+	public double getArrivalTime() {
+		return this.arrivalTime;
+	}
+
+	/**
+	 * @return the legs when departing at {@link #getDepartureTime()}, not to be modified
+	 */
+	public List<Leg> getLegs() {
+		return this.legs;
+	}
+
+	/**
+	 * Creates a copy of the legs for an earlier departure.  The agent waits for the first vehicle, so the travel time
+	 * of the first pt leg is longer by the difference, like in the legs created by {@link TransitRouterImpl}.
+	 *
+	 * @param time a departure time not after {@link #getDepartureTime()}
+	 */
+	public List<Leg> createLegs(final double time) {
+		List<Leg> copy = new ArrayList<>(this.legs.size());
+		double waitTime = this.departureTime - time;
+		for (Leg leg : this.legs) {
+			Leg newLeg = PopulationUtils.createLeg(leg);
+			if (waitTime > 0 && TransportMode.pt.equals(newLeg.getMode())) {
+				newLeg.setTravelTime(newLeg.getTravelTime() + waitTime);
+				newLeg.getRoute().setTravelTime(newLeg.getRoute().getTravelTime() + waitTime);
+				waitTime = 0;
+			}
+			copy.add(newLeg);
+		}
+		return copy;
+	}
+
+	double getSearchTime() {
+		return this.searchTime;
+	}
+
+	double getLastDepartureTime() {
+		return this.lastDepartureTime;
+	}
+
+	double getLastValidTime() {
+		return this.lastValidTime;
+	}
+
+	/**
+	 * @return whether the connection is the one the search finds for the departure time
+	 */
+	boolean isValidFor(final double time) {
+		return time >= this.searchTime && time <= this.lastValidTime;
+	}
+
+	/**
+	 * @return the travel disutility of the connection for a departure at a time it is valid for, which is only lower
+	 * by the disutility of waiting less for the first vehicle than the one at the search time
+	 */
+	double getTravelDisutility(final double time, final TransitRouterConfig config) {
+		return this.searchTravelDisutility + (time - this.searchTime) * config.getMarginalUtilityOfWaitingPt_utl_s();
+	}
+
+}
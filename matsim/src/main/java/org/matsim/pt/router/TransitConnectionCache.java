@@ -0,0 +1,109 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitConnectionCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+
+/**
+ * The connections the {@link TransitRouterImpl} has found between pairs of coordinates.  A connection is the one
+ * the router finds for all departure times from the time of the search which found it up to the time at which the
+ * first vehicle of any route the search considered reaches its stop, as departing later only shortens the wait for
+ * the first vehicle of all routes by the same time.  Connections for which a first vehicle already dwells at its stop
+ * are not kept, because boarding it is weighted as travelling instead of waiting.
+ * <p></p>
+ * Lives as long as the router, which is created per replanning thread and iteration by the
+ * {@link TransitRouterImplFactory}, so it does not need to be cleared.  Not thread-safe, like the router.
+ *
+ * @see TransitRouterConfig#isCacheConnections()
+ */
+/*package*/ final class TransitConnectionCache {
+
+	private final Map<Key, List<TransitConnection>> connections = new HashMap<>();
+
+	/**
+	 * @return the connection the router finds for the departure time, or <code>null</code> if it is not known
+	 */
+	TransitConnection getConnection(final Coord fromCoord, final Coord toCoord, final double departureTime) {
+		List<TransitConnection> list = this.connections.get(new Key(fromCoord, toCoord));
+		if (list != null) {
+			for (TransitConnection connection : list) {
+				if (connection.isValidFor(departureTime)) {
+					return connection;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a connection, replacing the ones which are valid for a part of its departure times only.  Ignores the
+	 * connection if it is not even valid for the departure time of its search.
+	 */
+	void addConnection(final Coord fromCoord, final Coord toCoord, final TransitConnection connection) {
+		if (!connection.isValidFor(connection.getSearchTime())) {
+			return;
+		}
+		Key key = new Key(fromCoord, toCoord);
+		List<TransitConnection> list = this.connections.get(key);
+		if (list == null) {
+			list = new ArrayList<>(4);
+			this.connections.put(key, list);
+		}
+		for (Iterator<TransitConnection> iter = list.iterator(); iter.hasNext(); ) {
+			TransitConnection other = iter.next();
+			if (connection.isValidFor(other.getSearchTime()) && connection.isValidFor(other.getLastValidTime())) {
+				iter.remove();
+			}
+		}
+		list.add(connection);
+	}
+
+	private static final class Key {
+		private final Coord fromCoord;
+		private final Coord toCoord;
+
+		Key(final Coord fromCoord, final Coord toCoord) {
+			this.fromCoord = fromCoord;
+			this.toCoord = toCoord;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.fromCoord.equals(other.fromCoord) && this.toCoord.equals(other.toCoord);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.fromCoord.hashCode() + this.toCoord.hashCode();
+		}
+	}
+
+}
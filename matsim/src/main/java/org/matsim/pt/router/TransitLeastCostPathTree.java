@@ -381,6 +381,14 @@ public class TransitLeastCostPathTree {
 		}
 	}
 
+	/**
+	 * @return the data of the node, or <code>null</code> if the search did not reach it
+	 */
+	/*package*/ DijkstraNodeData getVisitedData(final Node n) {
+		DijkstraNodeData data = this.nodeData.get(n.getId());
+		return (data != null && data.isVisited(getIterationId())) ? data : null;
+	}
+
 	/**
 	 * Returns the data for the given node. Creates a new NodeData if none exists
 	 * yet.
@@ -95,6 +95,11 @@ public class TransitRouterConfig implements MatsimParameters {
 
 	private final double directWalkFactor ;
 
+	/**
+	 * Whether the {@link TransitRouterImpl} keeps the connections it finds, see {@link TransitConnectionCache}.
+	 */
+	private boolean cacheConnections = false;
+
 	public TransitRouterConfig(final Config config) {
 		this(config.planCalcScore(), config.plansCalcRoute(), config.transitRouter(), config.vspExperimental());
 	}
@@ -129,6 +134,7 @@ public class TransitRouterConfig implements MatsimParameters {
 		this.setBeelineWalkConnectionDistance(trConfig.getMaxBeelineWalkConnectionDistance());
 		this.setAdditionalTransferTime(trConfig.getAdditionalTransferTime());
 		this.directWalkFactor = trConfig.getDirectWalkFactor() ;
+		this.setCacheConnections(trConfig.isCacheConnections());
 	}
 
 	public void setUtilityOfLineSwitch_utl(final double utilityOfLineSwitch_utl_sec) {
@@ -242,5 +248,13 @@ public class TransitRouterConfig implements MatsimParameters {
 		return this.directWalkFactor ;
 	}
 
+	public boolean isCacheConnections() {
+		return this.cacheConnections;
+	}
+
+	public void setCacheConnections(boolean cacheConnections) {
+		this.cacheConnections = cacheConnections;
+	}
+
 
 }
@@ -22,6 +22,7 @@ package org.matsim.pt.router;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.matsim.api.core.v01.population.Route;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.router.util.DijkstraNodeData;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.geometry.CoordUtils;
@@ -53,6 +55,9 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
  * Not thread-safe because MultiNodeDijkstra is not. Does not expect the TransitSchedule to change once constructed! michaz '13
+ * <p></p>
+ * If {@link TransitRouterConfig#isCacheConnections() connections are cached}, the connections found by searches and by
+ * {@link #calcRouteProfile profile searches} are kept, and routes which would find one of them again are taken from it.
  *
  * @author mrieser
  */
@@ -67,6 +72,12 @@ public class TransitRouterImpl implements TransitRouter {
 
 	private final PreparedTransitSchedule preparedTransitSchedule;
 
+	/** <code>null</code> if routes are not cached */
+	private final TransitConnectionCache connectionCache;
+
+	/** <code>null</code> if the stops are searched for every trip */
+	private final TransitStopAccessTable accessTable;
+
 	public TransitRouterImpl(final TransitRouterConfig trConfig, final TransitSchedule schedule) {
 		this.preparedTransitSchedule = new PreparedTransitSchedule(schedule);
 		TransitRouterNetworkTravelTimeAndDisutility transitRouterNetworkTravelTimeAndDisutility = new TransitRouterNetworkTravelTimeAndDisutility(trConfig, preparedTransitSchedule);
@@ -74,6 +85,8 @@ public class TransitRouterImpl implements TransitRouter {
 		this.trConfig = trConfig;
 		this.travelDisutility = transitRouterNetworkTravelTimeAndDisutility;
 		this.transitNetwork = TransitRouterNetwork.createFromSchedule(schedule, trConfig.getBeelineWalkConnectionDistance());
+		this.connectionCache = createConnectionCache(trConfig, this.travelDisutility);
+		this.accessTable = null;
 	}
 
 	public TransitRouterImpl(
@@ -82,21 +95,65 @@ public class TransitRouterImpl implements TransitRouter {
 			final TransitRouterNetwork routerNetwork,
 			final TravelTime travelTime,
 			final TransitTravelDisutility travelDisutility) {
+		this(config, preparedTransitSchedule, routerNetwork, travelTime, travelDisutility, null);
+	}
+
+	/**
+	 * @param accessTable the stops near the coordinates most trips start or end at, built for the same network, or
+	 * <code>null</code> to search the stops for every trip
+	 */
+	public TransitRouterImpl(
+			final TransitRouterConfig config,
+			final PreparedTransitSchedule preparedTransitSchedule,
+			final TransitRouterNetwork routerNetwork,
+			final TravelTime travelTime,
+			final TransitTravelDisutility travelDisutility,
+			final TransitStopAccessTable accessTable) {
+		if (accessTable != null && accessTable.getNetwork() != routerNetwork) {
+			throw new IllegalArgumentException("The transit stop access table was built for a different transit router network.");
+		}
 		this.trConfig = config;
 		this.transitNetwork = routerNetwork;
 		this.travelTime = travelTime;
 		this.travelDisutility = travelDisutility;
 		this.preparedTransitSchedule = preparedTransitSchedule;
+		this.connectionCache = createConnectionCache(config, travelDisutility);
+		this.accessTable = accessTable;
 	}
 
-	private Map<Node, InitialNode> locateWrappedNearestTransitNodes(Person person, Coord coord, double departureTime) {
-		Collection<TransitRouterNetworkNode> nearestNodes = this.transitNetwork.getNearestNodes(coord, this.trConfig.getSearchRadius());
+	private static TransitConnectionCache createConnectionCache(final TransitRouterConfig config, final TransitTravelDisutility travelDisutility) {
+		// cached connections are only the ones a new search would find if the disutility of waiting for the first vehicle
+		// is the same for all of them, which is known for the default disutility only
+		if (config.isCacheConnections() && travelDisutility.getClass() == TransitRouterNetworkTravelTimeAndDisutility.class) {
+			return new TransitConnectionCache();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the nodes of the network the router considers as first or last stop of trips starting or ending at the
+	 * coordinate
+	 */
+	/*package*/ static Collection<TransitRouterNetworkNode> getNearestNodes(final TransitRouterNetwork network,
+			final TransitRouterConfig config, final Coord coord) {
+		Collection<TransitRouterNetworkNode> nearestNodes = network.getNearestNodes(coord, config.getSearchRadius());
 		if (nearestNodes.size() < 2) {
 			// also enlarge search area if only one stop found, maybe a second one is near the border of the search area
-			TransitRouterNetworkNode nearestNode = this.transitNetwork.getNearestNode(coord);
+			TransitRouterNetworkNode nearestNode = network.getNearestNode(coord);
 			double distance = CoordUtils.calcEuclideanDistance(coord, nearestNode.stop.getStopFacility().getCoord());
-			nearestNodes = this.transitNetwork.getNearestNodes(coord, distance + this.trConfig.getExtensionRadius());
+			nearestNodes = network.getNearestNodes(coord, distance + config.getExtensionRadius());
 		}
+		return nearestNodes;
+	}
+
+	private Map<Node, InitialNode> locateWrappedNearestTransitNodes(Person person, Coord coord, double departureTime) {
+		if (this.accessTable != null) {
+			Map<Node, InitialNode> initialNodes = this.accessTable.getInitialNodes(coord, person, departureTime, this.travelDisutility);
+			if (initialNodes != null) {
+				return initialNodes;
+			}
+		}
+		Collection<TransitRouterNetworkNode> nearestNodes = getNearestNodes(this.transitNetwork, this.trConfig, coord);
 		Map<Node, InitialNode> wrappedNearestNodes = new LinkedHashMap<>();
 		for (TransitRouterNetworkNode node : nearestNodes) {
 			Coord toCoord = node.stop.getStopFacility().getCoord();
@@ -121,6 +178,13 @@ public class TransitRouterImpl implements TransitRouter {
 
 	@Override
 	public List<Leg> calcRoute(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final Person person) {
+		if (this.connectionCache != null) {
+			TransitConnection connection = this.connectionCache.getConnection(fromFacility.getCoord(), toFacility.getCoord(), departureTime);
+			if (connection != null) {
+				return createLegList(connection, departureTime, fromFacility.getCoord(), toFacility.getCoord(), person);
+			}
+		}
+
 		// find possible start stops
 		Map<Node, InitialNode> wrappedFromNodes = this.locateWrappedNearestTransitNodes(person, fromFacility.getCoord(), departureTime);
 		// find possible end stops
@@ -140,12 +204,160 @@ public class TransitRouterImpl implements TransitRouter {
 		double directWalkCost = getWalkDisutility(person, fromFacility.getCoord(), toFacility.getCoord());
 		double pathCost = p.travelCost + wrappedFromNodes.get(p.nodes.get(0)).initialCost + wrappedToNodes.get(p.nodes.get(p.nodes.size() - 1)).initialCost;
 
+		if (this.connectionCache != null) {
+			TransitConnection connection = createConnection(departureTime, tree, p, pathCost, fromFacility.getCoord(), toFacility.getCoord(), person);
+			if (connection != null) {
+				this.connectionCache.addConnection(fromFacility.getCoord(), toFacility.getCoord(), connection);
+				return createLegList(connection, departureTime, fromFacility.getCoord(), toFacility.getCoord(), person);
+			}
+		}
+
 		if (directWalkCost * trConfig.getDirectWalkFactor() < pathCost ) {
 			return this.createDirectWalkLegList(null, fromFacility.getCoord(), toFacility.getCoord());
 		}
 		return convertPathToLegList(departureTime, p, fromFacility.getCoord(), toFacility.getCoord(), person);
 	}
 
+	/**
+	 * Searches the connections between two facilities for all departure times in a time window.  For every departure
+	 * time, the connection is the least cost route {@link #calcRoute} finds, without comparing it to walking directly.
+	 * Of these, the ones not dominated by a connection departing later and arriving no later are returned.  If
+	 * connections are cached, all connections found are added to the cache, so routes in the time window are looked up.
+	 *
+	 * @return the connections, ordered by departure time
+	 */
+	public List<TransitConnection> calcRouteProfile(final Facility<?> fromFacility, final Facility<?> toFacility,
+			final double earliestDepartureTime, final double latestDepartureTime, final Person person) {
+		List<TransitConnection> connections = searchConnections(fromFacility.getCoord(), toFacility.getCoord(),
+				earliestDepartureTime, latestDepartureTime, person);
+		List<TransitConnection> profile = new ArrayList<>();
+		double bestArrivalTime = Double.POSITIVE_INFINITY;
+		for (int i = connections.size() - 1; i >= 0; i--) {
+			TransitConnection connection = connections.get(i);
+			if (connection.getDepartureTime() <= latestDepartureTime && connection.getArrivalTime() < bestArrivalTime) {
+				profile.add(connection);
+				bestArrivalTime = connection.getArrivalTime();
+			}
+		}
+		Collections.reverse(profile);
+		return profile;
+	}
+
+	/**
+	 * Searches the route for the earliest departure time, then again for a departure just after the first vehicle of
+	 * that route has left, and so on.
+	 *
+	 * @return all connections found, ordered by departure time; the last one may depart after the time window
+	 */
+	private List<TransitConnection> searchConnections(final Coord fromCoord, final Coord toCoord,
+			final double earliestDepartureTime, final double latestDepartureTime, final Person person) {
+		List<TransitConnection> connections = new ArrayList<>();
+		double time = earliestDepartureTime;
+		while (time <= latestDepartureTime) {
+			Map<Node, InitialNode> wrappedFromNodes = this.locateWrappedNearestTransitNodes(person, fromCoord, time);
+			Map<Node, InitialNode> wrappedToNodes = this.locateWrappedNearestTransitNodes(person, toCoord, time);
+			TransitLeastCostPathTree tree = new TransitLeastCostPathTree(transitNetwork, travelDisutility, travelTime,
+					wrappedFromNodes, wrappedToNodes, person);
+			Path p = tree.getPath(wrappedToNodes);
+			if (p == null) {
+				break;
+			}
+			double pathCost = p.travelCost + wrappedFromNodes.get(p.nodes.get(0)).initialCost + wrappedToNodes.get(p.nodes.get(p.nodes.size() - 1)).initialCost;
+			TransitConnection connection = createConnection(time, tree, p, pathCost, fromCoord, toCoord, person);
+			if (connection == null) {
+				// only walking
+				break;
+			}
+			if (this.connectionCache != null) {
+				this.connectionCache.addConnection(fromCoord, toCoord, connection);
+			}
+			connections.add(connection);
+			time = connection.getLastDepartureTime() + 1.0;
+		}
+		return connections;
+	}
+
+	/**
+	 * @return the connection of the path found for the departure time, or <code>null</code> if it uses no pt vehicle
+	 */
+	private TransitConnection createConnection(final double departureTime, final TransitLeastCostPathTree tree, final Path path,
+			final double pathCost, final Coord fromCoord, final Coord toCoord, final Person person) {
+		TransitRouterNetworkLink boardingLink = null;
+		for (Link link : path.links) {
+			if (((TransitRouterNetworkLink) link).route != null) {
+				boardingLink = (TransitRouterNetworkLink) link;
+				break;
+			}
+		}
+		if (boardingLink == null) {
+			return null;
+		}
+		List<Leg> legs = convertPathToLegList(departureTime, path, fromCoord, toCoord, person);
+
+		// the first leg is the walk to the stop of the first vehicle
+		double accessTime = legs.get(0).getTravelTime();
+		TransitRouteStop boardingStop = boardingLink.fromNode.stop;
+		double boardingTime = this.preparedTransitSchedule.getNextDepartureTime(boardingLink.route, boardingStop, departureTime + accessTime);
+		double arrivalOffset = (boardingStop.getArrivalOffset() != Time.UNDEFINED_TIME) ? boardingStop.getArrivalOffset() : boardingStop.getDepartureOffset();
+		double vehicleArrivalTime = boardingTime - (boardingStop.getDepartureOffset() - arrivalOffset);
+		double connectionDepartureTime = Math.max(departureTime, vehicleArrivalTime - accessTime);
+		if (connectionDepartureTime > departureTime) {
+			legs = convertPathToLegList(connectionDepartureTime, path, fromCoord, toCoord, person);
+		}
+		return new TransitConnection(connectionDepartureTime, legs, departureTime, pathCost, boardingTime - accessTime,
+				getLastValidTime(tree, departureTime));
+	}
+
+	/**
+	 * A later departure shortens the wait for the first vehicle of all routes by the same time, so the search finds
+	 * the same route until the first vehicle of one of them reaches its stop.  Then that vehicle is either missed or
+	 * boarded while it dwells at the stop, which is weighted as travelling instead of waiting.  The first vehicles of
+	 * all routes depart at the stops the search reached without a vehicle.
+	 *
+	 * @return the latest departure time for which no such vehicle reaches its stop, before the departure time if a
+	 * vehicle already dwells at one
+	 */
+	private double getLastValidTime(final TransitLeastCostPathTree tree, final double departureTime) {
+		double lastValidTime = Double.POSITIVE_INFINITY;
+		for (TransitRouterNetworkNode node : this.transitNetwork.getNodes().values()) {
+			DijkstraNodeData data = tree.getVisitedData(node);
+			if (data == null || !isReachedWithoutVehicle(tree, data)) {
+				continue;
+			}
+			for (Link link : node.getOutLinks().values()) {
+				TransitRoute route = ((TransitRouterNetworkLink) link).route;
+				if (route != null) {
+					double arrivalOffset = (node.stop.getArrivalOffset() != Time.UNDEFINED_TIME) ? node.stop.getArrivalOffset() : node.stop.getDepartureOffset();
+					double vehicleArrivalTime = this.preparedTransitSchedule.getNextDepartureTime(route, node.stop, data.getTime())
+							- (node.stop.getDepartureOffset() - arrivalOffset);
+					lastValidTime = Math.min(lastValidTime, departureTime + (vehicleArrivalTime - data.getTime()));
+				}
+			}
+		}
+		return lastValidTime;
+	}
+
+	private static boolean isReachedWithoutVehicle(final TransitLeastCostPathTree tree, final DijkstraNodeData data) {
+		DijkstraNodeData current = data;
+		while (current.getPrevLink() != null) {
+			TransitRouterNetworkLink link = (TransitRouterNetworkLink) current.getPrevLink();
+			if (link.route != null) {
+				return false;
+			}
+			current = tree.getVisitedData(link.fromNode);
+		}
+		return true;
+	}
+
+	private List<Leg> createLegList(final TransitConnection connection, final double departureTime, final Coord fromCoord, final Coord toCoord,
+			final Person person) {
+		double directWalkCost = getWalkDisutility(person, fromCoord, toCoord);
+		if (directWalkCost * trConfig.getDirectWalkFactor() < connection.getTravelDisutility(departureTime, this.trConfig)) {
+			return this.createDirectWalkLegList(null, fromCoord, toCoord);
+		}
+		return connection.createLegs(departureTime);
+	}
+
 	private List<Leg> createDirectWalkLegList(Person person, Coord fromCoord, Coord toCoord) {
 		List<Leg> legs = new ArrayList<>();
 		Leg leg = PopulationUtils.createLeg(TransportMode.transit_walk);
@@ -20,7 +20,18 @@
 
 package org.matsim.pt.router;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.Config;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 
 import javax.inject.Inject;
@@ -36,26 +47,59 @@ public class TransitRouterImplFactory implements Provider<TransitRouter> {
 	private final TransitRouterConfig config;
 	private final TransitRouterNetwork routerNetwork;
 	private final PreparedTransitSchedule preparedTransitSchedule;
+	private final TransitStopAccessTable accessTable;
 
 	@Inject
-	TransitRouterImplFactory(final TransitSchedule schedule, final Config config) {
+	TransitRouterImplFactory(final TransitSchedule schedule, final Config config, final Population population,
+			final ActivityFacilities facilities) {
 		this(schedule, new TransitRouterConfig(
 				config.planCalcScore(),
 				config.plansCalcRoute(),
 				config.transitRouter(),
-				config.vspExperimental()));
+				config.vspExperimental()),
+				config.transitRouter().isPrecomputeAccessStops() ? getCoords(population, facilities) : null,
+				config.global().getNumberOfThreads());
 	}
 
 	public TransitRouterImplFactory(final TransitSchedule schedule, final TransitRouterConfig config) {
+		this(schedule, config, null, 1);
+	}
+
+	/**
+	 * @param accessCoords the coordinates most trips start or end at, for which the nearby stops are searched once,
+	 * or <code>null</code> to search the stops for every trip
+	 * @param numberOfThreads the number of threads searching the stops near the coordinates
+	 */
+	public TransitRouterImplFactory(final TransitSchedule schedule, final TransitRouterConfig config,
+			final Collection<Coord> accessCoords, final int numberOfThreads) {
 		this.config = config;
 		this.routerNetwork = TransitRouterNetwork.createFromSchedule(schedule, this.config.getBeelineWalkConnectionDistance());
 		this.preparedTransitSchedule = new PreparedTransitSchedule(schedule);
+		this.accessTable = accessCoords == null ? null
+				: new TransitStopAccessTable(this.routerNetwork, this.config, accessCoords, numberOfThreads);
+	}
+
+	private static Collection<Coord> getCoords(final Population population, final ActivityFacilities facilities) {
+		Collection<Coord> coords = new ArrayList<>();
+		for (ActivityFacility facility : facilities.getFacilities().values()) {
+			coords.add(facility.getCoord());
+		}
+		for (Person person : population.getPersons().values()) {
+			for (Plan plan : person.getPlans()) {
+				for (PlanElement pe : plan.getPlanElements()) {
+					if (pe instanceof Activity && ((Activity) pe).getCoord() != null) {
+						coords.add(((Activity) pe).getCoord());
+					}
+				}
+			}
+		}
+		return coords;
 	}
 
 	@Override
 	public TransitRouter get() {
 		TransitRouterNetworkTravelTimeAndDisutility ttCalculator = new TransitRouterNetworkTravelTimeAndDisutility(this.config, this.preparedTransitSchedule);
-		return new TransitRouterImpl(this.config, this.preparedTransitSchedule, this.routerNetwork, ttCalculator, ttCalculator);
+		return new TransitRouterImpl(this.config, this.preparedTransitSchedule, this.routerNetwork, ttCalculator, ttCalculator, this.accessTable);
 	}
 	
 }
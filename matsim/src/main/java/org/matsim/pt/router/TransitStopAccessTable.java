@@ -0,0 +1,212 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitStopAccessTable.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.pt.router.TransitLeastCostPathTree.InitialNode;
+import org.matsim.pt.router.TransitRouterNetwork.TransitRouterNetworkNode;
+
+/**
+ * The nodes of a {@link TransitRouterNetwork} near a fixed set of coordinates, e.g. the ones of all facilities, so the
+ * {@link TransitRouterImpl} does not search them again for every trip starting or ending there.  The nodes are the
+ * ones the router would search, in the same order.
+ * <p></p>
+ * The nodes are stored compactly: all nodes at the same stop location are stored once, and a coordinate only refers
+ * to the indices of the stop locations near it.  The walk times and disutilities are not stored, as they may depend on
+ * the person, but they are calculated once per stop location instead of once per node.
+ * <p></p>
+ * Immutable, so one table can be shared by all routers using the same network.
+ *
+ * @see TransitRouterImplFactory
+ */
+public final class TransitStopAccessTable {
+
+	private final static Logger log = Logger.getLogger(TransitStopAccessTable.class);
+
+	private final TransitRouterNetwork network;
+
+	/** the nodes of location l are nodes[locationFirst[l]] to nodes[locationFirst[l + 1] - 1] */
+	private final TransitRouterNetworkNode[] nodes;
+	private final int[] locationFirst;
+
+	private final Map<Coord, Integer> coordIndices;
+	/** the locations near coordinate c are locations[first[c]] to locations[first[c + 1] - 1] */
+	private final int[] first;
+	private final int[] locations;
+
+	/**
+	 * @param network the network of the routers using the table
+	 * @param config the configuration of the routers using the table, for the search radius
+	 * @param coords the coordinates trips start or end at
+	 * @param numberOfThreads the number of threads searching the stops
+	 */
+	public TransitStopAccessTable(final TransitRouterNetwork network, final TransitRouterConfig config,
+			final Collection<Coord> coords, final int numberOfThreads) {
+		log.info("start creating transit stop access table");
+		this.network = network;
+
+		// the spatial index of the network keeps the nodes at the same location together, in the order of the network
+		final Map<TransitRouterNetworkNode, Integer> nodeLocations = new HashMap<>();
+		Map<Coord, Integer> locationIndices = new HashMap<>();
+		List<List<TransitRouterNetworkNode>> nodesPerLocation = new ArrayList<>();
+		for (TransitRouterNetworkNode node : network.getNodes().values()) {
+			Coord stopCoord = node.stop.getStopFacility().getCoord();
+			Coord key = new Coord(stopCoord.getX(), stopCoord.getY());
+			Integer location = locationIndices.get(key);
+			if (location == null) {
+				location = nodesPerLocation.size();
+				locationIndices.put(key, location);
+				nodesPerLocation.add(new ArrayList<TransitRouterNetworkNode>());
+			}
+			nodesPerLocation.get(location).add(node);
+			nodeLocations.put(node, location);
+		}
+		this.nodes = new TransitRouterNetworkNode[nodeLocations.size()];
+		this.locationFirst = new int[nodesPerLocation.size() + 1];
+		int n = 0;
+		for (int l = 0; l < nodesPerLocation.size(); l++) {
+			this.locationFirst[l] = n;
+			for (TransitRouterNetworkNode node : nodesPerLocation.get(l)) {
+				this.nodes[n++] = node;
+			}
+		}
+		this.locationFirst[nodesPerLocation.size()] = n;
+
+		final Coord[] distinctCoords = new LinkedHashSet<>(coords).toArray(new Coord[0]);
+		this.coordIndices = new HashMap<>((int) (distinctCoords.length / 0.75) + 1);
+		for (int c = 0; c < distinctCoords.length; c++) {
+			this.coordIndices.put(distinctCoords[c], c);
+		}
+		final int[][] nearLocations = new int[distinctCoords.length][];
+		final AtomicInteger nextCoord = new AtomicInteger();
+		Runnable search = new Runnable() {
+			@Override
+			public void run() {
+				int c;
+				while ((c = nextCoord.getAndIncrement()) < distinctCoords.length) {
+					Collection<TransitRouterNetworkNode> nearestNodes = TransitRouterImpl.getNearestNodes(network, config, distinctCoords[c]);
+					int[] near = new int[nearestNodes.size()];
+					int count = 0;
+					int last = -1;
+					for (TransitRouterNetworkNode node : nearestNodes) {
+						int location = nodeLocations.get(node);
+						if (location != last) {
+							near[count++] = location;
+							last = location;
+						}
+					}
+					nearLocations[c] = Arrays.copyOf(near, count);
+				}
+			}
+		};
+		int threads = Math.min(Math.max(1, numberOfThreads), distinctCoords.length);
+		if (threads <= 1) {
+			search.run();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int i = 0; i < threads; i++) {
+					futures.add(executor.submit(search));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+		}
+
+		this.first = new int[distinctCoords.length + 1];
+		int size = 0;
+		for (int c = 0; c < distinctCoords.length; c++) {
+			this.first[c] = size;
+			size += nearLocations[c].length;
+		}
+		this.first[distinctCoords.length] = size;
+		this.locations = new int[size];
+		for (int c = 0; c < distinctCoords.length; c++) {
+			System.arraycopy(nearLocations[c], 0, this.locations, this.first[c], nearLocations[c].length);
+		}
+
+		log.info("transit stop access table statistics:");
+		log.info(" # coordinates:    " + distinctCoords.length);
+		log.info(" # stop locations: " + nodesPerLocation.size());
+		log.info(" # entries:        " + size);
+		log.info("done creating transit stop access table");
+	}
+
+	TransitRouterNetwork getNetwork() {
+		return this.network;
+	}
+
+	/**
+	 * @return the nodes near the coordinate, each with the walk time and disutility to reach it when departing at the
+	 * given time, or <code>null</code> if the coordinate is not part of the table
+	 */
+	Map<Node, InitialNode> getInitialNodes(final Coord coord, final Person person, final double departureTime,
+			final TransitTravelDisutility travelDisutility) {
+		Integer c = this.coordIndices.get(coord);
+		if (c == null) {
+			return null;
+		}
+		Map<Node, InitialNode> initialNodes = new LinkedHashMap<>();
+		for (int i = this.first[c]; i < this.first[c + 1]; i++) {
+			int location = this.locations[i];
+			Coord lastStopCoord = null;
+			InitialNode initialNode = null;
+			for (int n = this.locationFirst[location]; n < this.locationFirst[location + 1]; n++) {
+				TransitRouterNetworkNode node = this.nodes[n];
+				Coord stopCoord = node.stop.getStopFacility().getCoord();
+				if (!stopCoord.equals(lastStopCoord)) {
+					double initialTime = travelDisutility.getTravelTime(person, coord, stopCoord);
+					double initialCost = travelDisutility.getTravelDisutility(person, coord, stopCoord);
+					initialNode = new InitialNode(initialCost, initialTime + departureTime);
+					lastStopCoord = stopCoord;
+				}
+				initialNodes.put(node, initialNode);
+			}
+		}
+		return initialNodes;
+	}
+
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.api.core.v01.population.Person;
 
 /**
@@ -56,6 +57,14 @@ public class ReplanningEvent extends Event {
 		return attr;
 	}
 
+	@Override
+	protected void streamAttributes(EventAttributeSink sink) {
+		writeTimeAndType(sink);
+
+		sink.addAttribute(ATTRIBUTE_PERSON, this.personId);
+		sink.addAttribute(ATTRIBUTE_REPLANNERTYPE, this.replannerType);
+	}
+
 	public String getReplannerType() {
 		return this.replannerType;
 	}
@@ -20,6 +20,8 @@
 
 package org.matsim.core.events;
 
+import java.util.Map;
+
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.network.Link;
@@ -40,4 +42,17 @@ public class LinkLeaveEventTest extends MatsimTestCase {
 		assertEquals(event1.getLinkId(), event2.getLinkId());
 		assertEquals(event1.getVehicleId(), event2.getVehicleId());
 	}
+
+	public void testWriteAttributes_SubclassOverridingGetAttributes() {
+		LinkLeaveEvent event = new LinkLeaveEvent(68423.98, Id.create("veh", Vehicle.class), Id.create(".235", Link.class)) {
+			@Override
+			public Map<String, String> getAttributes() {
+				Map<String, String> attributes = super.getAttributes();
+				attributes.put("lane", "2");
+				return attributes;
+			}
+		};
+		XmlEventsTester.assertSameAttributesWritten(event);
+		assertTrue(event.toString().contains("lane=\"2\""));
+	}
 }
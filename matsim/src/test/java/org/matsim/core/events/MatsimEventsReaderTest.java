@@ -0,0 +1,197 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MatsimEventsReaderTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class MatsimEventsReaderTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testGetEventTypes() {
+		Assert.assertEquals(new HashSet<>(Arrays.asList(LinkLeaveEvent.EVENT_TYPE)),
+				MatsimEventsReader.getEventTypes(Collections.<Class<?>>singleton(LinkLeaveEvent.class)));
+		Assert.assertNull("handlers for all events need all types.",
+				MatsimEventsReader.getEventTypes(Arrays.<Class<?>>asList(LinkLeaveEvent.class, Event.class)));
+		Assert.assertNull(MatsimEventsReader.getEventTypes(Collections.<Class<?>>singleton(GenericEvent.class)));
+		Assert.assertNull("a subclass without its own type constant has an unknown type.",
+				MatsimEventsReader.getEventTypes(Collections.<Class<?>>singleton(CustomLinkLeaveEvent.class)));
+	}
+
+	@Test
+	public void testOnlyHandledEventsAreRead() {
+		List<Event> written = createEvents();
+		for (String filename : writeEvents(written)) {
+			for (int numberOfThreads : new int[] {1, 2}) {
+				EventsManager events = EventsUtils.createEventsManager();
+				final List<Event> linkLeaveEvents = new ArrayList<>();
+				events.addHandler(new LinkLeaveEventHandler() {
+					@Override
+					public void handleEvent(LinkLeaveEvent event) {
+						linkLeaveEvents.add(event);
+					}
+
+					@Override
+					public void reset(int iteration) {
+					}
+				});
+				MatsimEventsReader reader = new MatsimEventsReader(events);
+				reader.setNumberOfThreads(numberOfThreads);
+				reader.readFile(filename);
+				Assert.assertEquals(filename, written.subList(0, 100), linkLeaveEvents);
+			}
+
+			EventsCollector collector = new EventsCollector();
+			EventsManager events = EventsUtils.createEventsManager();
+			events.addHandler(collector);
+			MatsimEventsReader reader = new MatsimEventsReader(events);
+			reader.setEventTypes(Collections.singleton(PersonDepartureEvent.EVENT_TYPE));
+			reader.readFile(filename);
+			Assert.assertEquals(filename, written.subList(100, 200), collector.getEvents());
+		}
+	}
+
+	@Test
+	public void testAllEventsAreReadForBasicEventHandlers() {
+		List<Event> written = createEvents();
+		for (String filename : writeEvents(written)) {
+			EventsManager events = EventsUtils.createEventsManager();
+			EventsCollector collector = new EventsCollector();
+			events.addHandler(collector);
+			events.addHandler(new BasicEventHandler() {
+				@Override
+				public void handleEvent(Event event) {
+				}
+
+				@Override
+				public void reset(int iteration) {
+				}
+			});
+			new MatsimEventsReader(events).readFile(filename);
+			Assert.assertEquals(filename, written, collector.getEvents());
+		}
+	}
+
+	/**
+	 * More events than fit into a binary block, so that blocks before and after the window are skipped.
+	 */
+	@Test
+	public void testReadTimeWindow() {
+		List<Event> written = new ArrayList<>();
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			Event event = new LinkLeaveEvent(i / 10, Id.create(i, Vehicle.class), Id.create(i % 10, Link.class));
+			written.add(event);
+			if (event.getTime() >= 5000 && event.getTime() < 6000) {
+				expected.add(event);
+			}
+		}
+		String dir = this.utils.getOutputDirectory();
+		write(written, new EventWriterXML(dir + "indexed.xml.gz", 900));
+		write(written, new EventWriterXML(dir + "indexed.xml", 900));
+		write(written, new EventWriterXML(dir + "events.xml"));
+		write(written, new EventWriterBinary(dir + "events" + BinaryEventsFormat.FILE_EXTENSION));
+		String index = EventsFileIndex.getIndexFilename(dir + "indexed.xml.gz");
+		Assert.assertEquals(0, EventsFileIndex.findOffset(index, -1.0));
+		Assert.assertTrue(EventsFileIndex.findOffset(index, 10.0) < EventsFileIndex.findOffset(index, 5000.0));
+
+		for (String filename : Arrays.asList("indexed.xml.gz", "indexed.xml", "events.xml", "events" + BinaryEventsFormat.FILE_EXTENSION)) {
+			EventsManager events = EventsUtils.createEventsManager();
+			EventsCollector collector = new EventsCollector();
+			events.addHandler(collector);
+			new MatsimEventsReader(events).readTimeWindow(dir + filename, 5000, 6000);
+			Assert.assertEquals(filename, expected, collector.getEvents());
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(dir + "indexed.xml.gz");
+		Assert.assertEquals("an indexed file must still be readable as a whole.", written, collector.getEvents());
+	}
+
+	private static List<Event> createEvents() {
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			events.add(new LinkLeaveEvent(i, Id.create(i, Vehicle.class), Id.create(i % 10, Link.class)));
+		}
+		for (int i = 0; i < 100; i++) {
+			events.add(new PersonDepartureEvent(100 + i, Id.create(i, Person.class), Id.create(i % 10, Link.class), "car"));
+		}
+		for (int i = 0; i < 100; i++) {
+			GenericEvent event = new GenericEvent("custom", 200 + i);
+			event.getAttributes().put("value", Integer.toString(i));
+			events.add(event);
+		}
+		return events;
+	}
+
+	private List<String> writeEvents(List<Event> events) {
+		String xmlFilename = this.utils.getOutputDirectory() + "events.xml";
+		String binaryFilename = this.utils.getOutputDirectory() + "events" + BinaryEventsFormat.FILE_EXTENSION;
+		write(events, new EventWriterXML(xmlFilename));
+		write(events, new EventWriterBinary(binaryFilename));
+		return Arrays.asList(xmlFilename, binaryFilename);
+	}
+
+	private static <W extends EventWriter & BasicEventHandler> void write(List<Event> events, W writer) {
+		for (Event event : events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+	}
+
+	private static class CustomLinkLeaveEvent extends LinkLeaveEvent {
+		public CustomLinkLeaveEvent(double time, Id<Vehicle> vehicleId, Id<Link> linkId) {
+			super(time, vehicleId, linkId);
+		}
+
+		@Override
+		public String getEventType() {
+			return "customLinkLeave";
+		}
+	}
+
+}
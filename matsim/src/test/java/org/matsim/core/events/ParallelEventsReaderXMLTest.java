@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsReaderXMLTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.events;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class ParallelEventsReaderXMLTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Enough events for several chunks, so the order in which they are delivered matters.
+	 */
+	@Test
+	public void testSameEventsAsSequentialReader() {
+		String filename = this.utils.getOutputDirectory() + "events.xml.gz";
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (int i = 0; i < 50000; i++) {
+			writer.handleEvent(new LinkEnterEvent(i, Id.create("vehicle<" + i + ">", Vehicle.class), Id.create("link&" + (i % 100), Link.class)));
+			writer.handleEvent(new PersonArrivalEvent(i, Id.create("\"person\"" + i, Person.class), Id.create(i % 100, Link.class), "car"));
+			GenericEvent event = new GenericEvent("generic", i);
+			event.getAttributes().put("text", "a \u00e4 b");
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		List<Event> expected = readEvents(filename, 1);
+		Assert.assertEquals(150000, expected.size());
+		Assert.assertEquals(expected, readEvents(filename, 3));
+	}
+
+	@Test
+	public void testHandwrittenFile() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "events.xml";
+		BufferedWriter writer = IOUtils.getBufferedWriter(filename);
+		writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+		writer.write("<!-- a comment -->\n");
+		writer.write("\t<event time=\"1.0\" type=\"entered link\"\n\t\tvehicle='v&#49;' link=\"l&apos;1\" />\n");
+		writer.write("\t<event time = \"2.0\" type=\"generic\" value=\"&#x3c;\"/>\n");
+		writer.write("</events>");
+		writer.close();
+
+		List<Event> events = readEvents(filename, 2);
+		Assert.assertEquals(2, events.size());
+		LinkEnterEvent linkEnterEvent = (LinkEnterEvent) events.get(0);
+		Assert.assertEquals("v1", linkEnterEvent.getVehicleId().toString());
+		Assert.assertEquals("l'1", linkEnterEvent.getLinkId().toString());
+		Assert.assertEquals("<", events.get(1).getAttributes().get("value"));
+		Assert.assertEquals(readEvents(filename, 1), events);
+	}
+
+	private static List<Event> readEvents(String filename, int numberOfThreads) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setNumberOfThreads(numberOfThreads);
+		reader.readFile(filename);
+		return collector.getEvents();
+	}
+
+}
@@ -0,0 +1,245 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ShardedEventsManagerImplTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.analysis.VolumesAnalyzer;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
+import org.matsim.core.events.handler.ShardableEventHandler;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class ShardedEventsManagerImplTest {
+
+	@Test
+	public void testVolumesAnalyzer() {
+		Network network = NetworkUtils.createNetwork();
+		List<Event> allEvents = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			Id<Vehicle> vehicleId = Id.create(i % 500, Vehicle.class);
+			if (i < 500) {
+				allEvents.add(new VehicleEntersTrafficEvent(i, Id.create(i, Person.class), Id.create(0, Link.class), vehicleId, i % 3 == 0 ? "bike" : "car", 1.0));
+			}
+			allEvents.add(new LinkLeaveEvent(i, vehicleId, Id.create(i % 97, Link.class)));
+		}
+
+		VolumesAnalyzer expected = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(expected);
+		for (Event event : allEvents) {
+			events.processEvent(event);
+		}
+
+		VolumesAnalyzer sharded = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		EventsCollector collector = new EventsCollector();
+		ShardedEventsManagerImpl shardedEvents = new ShardedEventsManagerImpl(EventsUtils.createEventsManager(), 3);
+		shardedEvents.addHandler(sharded);
+		shardedEvents.addHandler(collector);
+		shardedEvents.initProcessing();
+		for (Event event : allEvents) {
+			shardedEvents.processEvent(event);
+		}
+		shardedEvents.finishProcessing();
+
+		Assert.assertEquals("other handlers must get all events.", allEvents, collector.getEvents());
+		Assert.assertEquals(expected.getLinkIds(), sharded.getLinkIds());
+		Assert.assertEquals(expected.getModes(), sharded.getModes());
+		for (Id<Link> linkId : expected.getLinkIds()) {
+			Assert.assertArrayEquals(expected.getVolumesForLink(linkId), sharded.getVolumesForLink(linkId));
+			for (String mode : expected.getModes()) {
+				Assert.assertArrayEquals(expected.getVolumesForLink(linkId, mode), sharded.getVolumesForLink(linkId, mode));
+			}
+		}
+	}
+
+	@Test
+	public void testTravelTimeCalculator() {
+		for (TravelTimeCalculatorType type : new TravelTimeCalculatorType[] {TravelTimeCalculatorType.TravelTimeCalculatorArray, TravelTimeCalculatorType.TravelTimeCalculatorDense}) {
+			TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+			config.setTravelTimeCalculatorType(type.name());
+			config.setFilterModes(true);
+			config.setAnalyzedModes("car");
+			assertSameTravelTimes(config);
+		}
+	}
+
+	@Test
+	public void testTravelTimeCalculator_LinkToLink() {
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setCalculateLinkToLinkTravelTimes(true);
+		assertSameTravelTimes(config);
+	}
+
+	private static void assertSameTravelTimes(TravelTimeCalculatorConfigGroup config) {
+		// a ring of links, on which the vehicles drive several links from their departure:
+		Network network = NetworkUtils.createNetwork();
+		int numberOfLinks = 30;
+		for (int i = 0; i < numberOfLinks; i++) {
+			NetworkUtils.createAndAddNode(network, Id.create(i, Node.class), new Coord(i * 500.0, 0.0));
+		}
+		for (int i = 0; i < numberOfLinks; i++) {
+			NetworkUtils.createAndAddLink(network, Id.create(i, Link.class), network.getNodes().get(Id.create(i, Node.class)),
+					network.getNodes().get(Id.create((i + 1) % numberOfLinks, Node.class)), 500.0, 10.0, 1800.0, 1.0);
+		}
+		Random random = new Random(4711);
+		List<Event> allEvents = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			Id<Vehicle> vehicleId = Id.create(i, Vehicle.class);
+			int link = random.nextInt(numberOfLinks);
+			double time = random.nextInt(20 * 3600);
+			allEvents.add(new VehicleEntersTrafficEvent(time, Id.create(i, Person.class), Id.create(link, Link.class), vehicleId, i % 4 == 0 ? "bike" : "car", 1.0));
+			for (int j = 1 + random.nextInt(10); j > 0; j--) {
+				allEvents.add(new LinkLeaveEvent(time, vehicleId, Id.create(link, Link.class)));
+				link = (link + 1) % numberOfLinks;
+				allEvents.add(new LinkEnterEvent(time, vehicleId, Id.create(link, Link.class)));
+				time += 50 + random.nextInt(600);
+			}
+			allEvents.add(new VehicleLeavesTrafficEvent(time, Id.create(i, Person.class), Id.create(link, Link.class), vehicleId, "car", 1.0));
+		}
+		Collections.sort(allEvents, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				return Double.compare(e1.getTime(), e2.getTime());
+			}
+		});
+
+		TravelTimeCalculator expected = TravelTimeCalculator.create(network, config);
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(expected);
+		for (Event event : allEvents) {
+			events.processEvent(event);
+		}
+
+		TravelTimeCalculator sharded = TravelTimeCalculator.create(network, config);
+		ShardedEventsManagerImpl shardedEvents = new ShardedEventsManagerImpl(EventsUtils.createEventsManager(), 3);
+		shardedEvents.addHandler(sharded);
+		shardedEvents.initProcessing();
+		for (Event event : allEvents) {
+			shardedEvents.processEvent(event);
+		}
+		shardedEvents.finishProcessing();
+
+		int congestedBins = 0;
+		for (Link link : network.getLinks().values()) {
+			for (double time = 0; time < 24 * 3600; time += 300) {
+				double travelTime = expected.getLinkTravelTimes().getLinkTravelTime(link, time, null, null);
+				Assert.assertEquals(travelTime, sharded.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), 0.0);
+				if (travelTime > 50.0) {
+					congestedBins++;
+				}
+				if (config.isCalculateLinkToLinkTravelTimes()) {
+					for (Link toLink : link.getToNode().getOutLinks().values()) {
+						Assert.assertEquals(expected.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link, toLink, time),
+								sharded.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link, toLink, time), 0.0);
+					}
+				}
+			}
+		}
+		Assert.assertTrue("the events must result in travel times other than the free speed travel time.", congestedBins > 0);
+	}
+
+	@Test
+	public void testOrderPerKey() {
+		DeparturesPerPerson handler = new DeparturesPerPerson();
+		ShardedEventsManagerImpl events = new ShardedEventsManagerImpl(EventsUtils.createEventsManager(), 4);
+		events.addHandler(handler);
+		events.initProcessing();
+		for (int i = 0; i < 10000; i++) {
+			events.processEvent(new PersonDepartureEvent(i, Id.create(i % 10, Person.class), Id.create(0, Link.class), "car"));
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(10, handler.departureTimes.size());
+		for (Map.Entry<Id<Person>, List<Double>> entry : handler.departureTimes.entrySet()) {
+			List<Double> times = entry.getValue();
+			Assert.assertEquals(1000, times.size());
+			for (int i = 0; i < times.size(); i++) {
+				Assert.assertEquals("wrong order for " + entry.getKey(), 10.0 * i + Integer.parseInt(entry.getKey().toString()), times.get(i), 0.0);
+			}
+		}
+
+		// after finishProcessing, events go directly to the handler
+		events.processEvent(new PersonDepartureEvent(10000, Id.create(0, Person.class), Id.create(0, Link.class), "car"));
+		Assert.assertEquals(1001, handler.departureTimes.get(Id.create(0, Person.class)).size());
+	}
+
+	private static class DeparturesPerPerson implements PersonDepartureEventHandler, ShardableEventHandler<DeparturesPerPerson> {
+
+		private final Map<Id<Person>, List<Double>> departureTimes = new HashMap<>();
+
+		@Override
+		public void handleEvent(PersonDepartureEvent event) {
+			List<Double> times = this.departureTimes.get(event.getPersonId());
+			if (times == null) {
+				times = new ArrayList<>();
+				this.departureTimes.put(event.getPersonId(), times);
+			}
+			times.add(event.getTime());
+		}
+
+		@Override
+		public Id<?> getShardKey(Event event) {
+			return ((PersonDepartureEvent) event).getPersonId();
+		}
+
+		@Override
+		public DeparturesPerPerson createShard() {
+			return new DeparturesPerPerson();
+		}
+
+		@Override
+		public void mergeShard(DeparturesPerPerson shard) {
+			this.departureTimes.putAll(shard.departureTimes);
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.departureTimes.clear();
+		}
+
+	}
+
+}
@@ -1,11 +1,18 @@
 package org.matsim.core.events;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
 import org.matsim.testcases.utils.EventsCollector;
 
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
@@ -51,4 +58,217 @@ public class SimStepParallelEventsManagerImplTest {
 					new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")));
 	}
 
+	@Test(timeout = 60000)
+	public void testWrapAroundSmallRing() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(2, 4);
+		EventsCollector collector0 = new EventsCollector();
+		EventsCollector collector1 = new EventsCollector();
+		events.addHandler(collector0);
+		events.addHandler(collector1);
+		events.initProcessing();
+		List<Event> allEvents = new ArrayList<>();
+		for (int time = 0; time < 100; time++) {
+			for (int i = 0; i < 100; i++) {
+				Event event = new LinkLeaveEvent(time, Id.createVehicleId(i), Id.createLinkId(i));
+				allEvents.add(event);
+				events.processEvent(event);
+			}
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(allEvents, collector0.getEvents());
+		Assert.assertEquals(allEvents, collector1.getEvents());
+	}
+
+	@Test(timeout = 60000)
+	public void testBackpressureWhenRingIsFull() throws InterruptedException {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(1, 4);
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		events.addHandler(new LinkLeaveEventHandler() {
+			@Override
+			public void handleEvent(LinkLeaveEvent event) {
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		final List<Event> allEvents = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			allEvents.add(new LinkLeaveEvent(0.0, Id.createVehicleId(i), Id.createLinkId(i)));
+		}
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (Event event : allEvents) {
+					events.processEvent(event);
+				}
+			}
+		});
+		producer.start();
+		entered.await();
+		// the handler blocks on the first event, so the fifth event has no free slot
+		producer.join(500);
+		Assert.assertTrue("adding events must wait while the ring is full", producer.isAlive());
+		release.countDown();
+		producer.join();
+		events.afterSimStep(0.0);
+		events.finishProcessing();
+
+		Assert.assertEquals(allEvents, collector.getEvents());
+	}
+
+	@Test(timeout = 60000)
+	public void testEventHandlerCanProduceEventsWithSmallRing() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(2, 8);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), event.getLinkId(), "car"));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		for (int time = 0; time < 1000; time++) {
+			events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(0), Id.createLinkId(0)));
+			events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(1), Id.createLinkId(1)));
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+
+		List<Event> collected = collector.getEvents();
+		Assert.assertEquals(4000, collected.size());
+		for (int i = 0; i < collected.size(); i++) {
+			// the created events of a time step are processed before the next time step starts
+			Assert.assertEquals(i / 4, (int) collected.get(i).getTime());
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testHandlerExceptionReachesCaller() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(2, 4);
+		final IllegalStateException exception = new IllegalStateException("handler crashed");
+		events.addHandler(new LinkLeaveEventHandler() {
+			@Override
+			public void handleEvent(LinkLeaveEvent event) {
+				if (event.getTime() == 5.0) {
+					throw exception;
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		events.addHandler(new EventsCollector());
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			// more events than slots in one time step, so adding waits for the crashed thread
+			events.processEvent(new LinkLeaveEvent(5.0, Id.createVehicleId(i), Id.createLinkId(i)));
+		}
+		events.afterSimStep(5.0);
+		try {
+			events.finishProcessing();
+			Assert.fail("expected exception");
+		} catch (RuntimeException e) {
+			Assert.assertSame(exception, e.getCause());
+		}
+	}
+
+	/**
+	 * The handler adds more events than fit into the ring while its own thread holds the ring back.
+	 */
+	@Test(timeout = 60000)
+	public void testHandlerCanAddMoreEventsThanFitIntoRing() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(1, 4);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				for (int i = 0; i < 10; i++) {
+					events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(i), event.getLinkId(), "car"));
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		List<Event> expected = new ArrayList<>();
+		for (int time = 0; time < 10; time++) {
+			Event event = new LinkEnterEvent(time, Id.createVehicleId(0), Id.createLinkId(0));
+			expected.add(event);
+			for (int i = 0; i < 10; i++) {
+				expected.add(new PersonStuckEvent(time, Id.createPersonId(i), Id.createLinkId(0), "car"));
+			}
+			events.processEvent(event);
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	/**
+	 * The handler adds events while the ring is full because another thread is slow.
+	 */
+	@Test(timeout = 60000)
+	public void testHandlerCanAddEventsWhileOtherThreadIsBehind() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(2, 4);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				for (int i = 0; i < 20; i++) {
+					events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(i), event.getLinkId(), "car"));
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		for (int time = 0; time < 10; time++) {
+			for (int i = 0; i < 5; i++) {
+				events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+			}
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+
+		List<Event> collected = collector.getEvents();
+		Assert.assertEquals(10 * 5 * 21, collected.size());
+		for (int i = 1; i < collected.size(); i++) {
+			Assert.assertTrue(collected.get(i - 1).getTime() <= collected.get(i).getTime());
+		}
+	}
+
 }
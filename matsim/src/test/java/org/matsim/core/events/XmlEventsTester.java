@@ -21,18 +21,25 @@
 package org.matsim.core.events;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
 
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.EventAttributeSink;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterBinary;
 import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.testcases.utils.EventsCollector;
 
 /**
  * An abstract class providing static methods to verify that events are correctly
- * handled with the XML-events-file-format.
+ * handled with the XML-events-file-format, and with the binary one.
  *
  * @author mrieser
  */
@@ -41,7 +48,8 @@ public abstract class XmlEventsTester extends TestCase {
 	/**
 	 * Writes out the given event to the specified file in the XML format,
 	 * then reads the file again and makes sure the freshly read in event
-	 * has the same attributes as the original event.
+	 * has the same attributes as the original event.  Does the same with
+	 * the binary format, in a file next to the specified one.
 	 *
 	 * @param <T> the type/class of the event
 	 * @param eventsFile filename where to write the event into
@@ -49,7 +57,14 @@ public abstract class XmlEventsTester extends TestCase {
 	 * @return the read-in event
 	 */
 	public static <T extends Event> T testWriteReadXml(final String eventsFile, final T event) {
-		EventWriterXML writer = new EventWriterXML(eventsFile);
+		T readEvent = testWriteRead(new EventWriterXML(eventsFile), eventsFile, event);
+		String binaryEventsFile = eventsFile + BinaryEventsFormat.FILE_EXTENSION;
+		testWriteRead(new EventWriterBinary(binaryEventsFile), binaryEventsFile, event);
+		return readEvent;
+	}
+
+	private static <T extends Event, W extends EventWriter & BasicEventHandler> T testWriteRead(final W writer,
+			final String eventsFile, final T event) {
 		writer.handleEvent(event);
 		writer.closeFile();
 		assertTrue(new File(eventsFile).exists());
@@ -70,7 +85,40 @@ public abstract class XmlEventsTester extends TestCase {
 					attribute.getValue(), readAttributes.get(attribute.getKey()));
 		}
 
+		assertSameAttributesWritten(event);
+		assertSameAttributesWritten(readEvent);
+
 		return (T) readEvent;
 	}
 
+	/**
+	 * Makes sure that {@link Event#writeAttributes(EventAttributeSink)} passes on the same attributes, in the same order, as
+	 * {@link Event#getAttributes()}, and that the hash code did not change by not using the latter.
+	 */
+	public static void assertSameAttributesWritten(final Event event) {
+		final List<String> written = new ArrayList<>();
+		event.writeAttributes(new EventAttributeSink() {
+			@Override
+			public void addAttribute(String name, String value) {
+				written.add(name + "=" + value);
+			}
+
+			@Override
+			public void addAttribute(String name, Id<?> value) {
+				written.add(name + "=" + value);
+			}
+
+			@Override
+			public void addAttribute(String name, double value) {
+				written.add(name + "=" + Double.toString(value));
+			}
+		});
+		List<String> expected = new ArrayList<>();
+		for (Map.Entry<String, String> attribute : event.getAttributes().entrySet()) {
+			expected.add(attribute.getKey() + "=" + attribute.getValue());
+		}
+		assertEquals("written attributes differ from getAttributes().", expected, written);
+		assertEquals(event.getAttributes().hashCode(), event.hashCode());
+	}
+
 }
@@ -0,0 +1,132 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.events.algorithms;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.BinaryEventsFormat;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class EventWriterBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * More events than fit into one block, with strings and ids that are reused across blocks.
+	 */
+	@Test
+	public void testWriteReadSeveralBlocks() {
+		List<Event> written = new ArrayList<>();
+		for (int i = 0; i < 2 * BinaryEventsFormat.BLOCK_SIZE + 10; i++) {
+			double time = Math.floor(i / 7.0);
+			written.add(new LinkLeaveEvent(time, Id.create("vehicle>" + (i % 100), Vehicle.class), Id.create("link<" + (i % 1000), Link.class)));
+			written.add(new PersonDepartureEvent(time, Id.create(i, Person.class), Id.create("link<" + (i % 1000), Link.class), i % 2 == 0 ? "car" : null));
+		}
+		GenericEvent genericEvent = new GenericEvent("TEST", 1e6);
+		genericEvent.getAttributes().put("dummy", null);
+		genericEvent.getAttributes().put("name", "\u00e4\"&");
+		written.add(genericEvent);
+
+		String filename = this.utils.getOutputDirectory() + "testEvents" + BinaryEventsFormat.FILE_EXTENSION;
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		for (Event event : written) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		new MatsimEventsReader(events).readFile(filename);
+
+		Assert.assertEquals(written, collector.getEvents());
+	}
+
+	@Test
+	public void testReadStream() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "testEvents" + BinaryEventsFormat.FILE_EXTENSION;
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		writer.handleEvent(new LinkLeaveEvent(3600.0, Id.create("vehicle", Vehicle.class), Id.create("link", Link.class)));
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		try (InputStream stream = new FileInputStream(filename)) {
+			new MatsimEventsReader(events).readStream(stream);
+		}
+
+		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
+		LinkLeaveEvent event = (LinkLeaveEvent) collector.getEvents().iterator().next();
+		Assert.assertEquals("link", event.getLinkId().toString());
+		Assert.assertEquals("vehicle", event.getVehicleId().toString());
+	}
+
+	/**
+	 * The position has no default in xml events files, so it must not have one in binary events files either.
+	 */
+	@Test
+	public void testMissingPositionFailsAsInXml() {
+		GenericEvent event = new GenericEvent(VehicleEntersTrafficEvent.EVENT_TYPE, 3600.0);
+		event.getAttributes().put(VehicleEntersTrafficEvent.ATTRIBUTE_DRIVER, "person");
+		event.getAttributes().put(VehicleEntersTrafficEvent.ATTRIBUTE_LINK, "link");
+		event.getAttributes().put(VehicleEntersTrafficEvent.ATTRIBUTE_VEHICLE, "vehicle");
+		event.getAttributes().put(VehicleEntersTrafficEvent.ATTRIBUTE_NETWORKMODE, "car");
+
+		String xmlFilename = this.utils.getOutputDirectory() + "testEvents.xml";
+		EventWriterXML xmlWriter = new EventWriterXML(xmlFilename);
+		xmlWriter.handleEvent(event);
+		xmlWriter.closeFile();
+		String binaryFilename = this.utils.getOutputDirectory() + "testEvents" + BinaryEventsFormat.FILE_EXTENSION;
+		EventWriterBinary binaryWriter = new EventWriterBinary(binaryFilename);
+		binaryWriter.handleEvent(event);
+		binaryWriter.closeFile();
+
+		for (String filename : new String[] {xmlFilename, binaryFilename}) {
+			try {
+				new MatsimEventsReader(EventsUtils.createEventsManager()).readFile(filename);
+				Assert.fail("expected exception for " + filename);
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+	}
+
+}
@@ -31,6 +31,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.testcases.MatsimTestUtils;
 import org.matsim.testcases.utils.EventsCollector;
 import org.matsim.vehicles.Vehicle;
@@ -92,4 +93,17 @@ public class EventWriterXMLTest {
 		
 		Assert.assertEquals("there must be 1 event.", 1, collector.getEvents().size());
 	}
+	@Test
+	public void testWriteErrorIsThrown() {
+		String filename = this.utils.getOutputDirectory() + "testEvents.xml";
+		EventWriterXML writer = new EventWriterXML(filename);
+		writer.closeFile();
+		try {
+			writer.handleEvent(new LinkLeaveEvent(3600.0, Id.create("1", Vehicle.class), Id.create("2", Link.class)));
+			Assert.fail("expected UncheckedIOException, as the file is closed.");
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+	}
+
 }
@@ -0,0 +1,97 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.handler;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+
+/**
+ * Tests that the events manager calls handlers through an interface it cannot access, which is the case for handler
+ * interfaces that are private to a class in another package.
+ */
+public class InaccessibleEventHandlerTest {
+
+	@Test
+	public void testProcessEvent_PrivateEventHandlerInterface() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CountingHiddenEventHandler handler = new CountingHiddenEventHandler();
+		manager.addHandler(handler);
+		manager.processEvent(new HiddenEvent(123.45));
+		manager.processEvent(new HiddenEvent(234.56));
+		Assert.assertEquals("EventHandler was not called.", 2, handler.counter);
+	}
+
+	@Test
+	public void testProcessEvent_ExceptionInPrivateEventHandlerInterface() {
+		EventsManager manager = EventsUtils.createEventsManager();
+		CrashingHiddenEventHandler handler = new CrashingHiddenEventHandler();
+		manager.addHandler(handler);
+		try {
+			manager.processEvent(new HiddenEvent(123.45));
+			Assert.fail("expected exception, but got none.");
+		} catch (final RuntimeException e) {
+			Assert.assertEquals(1, handler.counter);
+			Assert.assertTrue(e.getCause().getCause() instanceof ArithmeticException);
+		}
+	}
+
+	private static class HiddenEvent extends Event {
+		public HiddenEvent(final double time) {
+			super(time);
+		}
+		@Override
+		public String getEventType() {
+			return "hiddenEvent";
+		}
+	}
+
+	private static interface HiddenEventHandler extends EventHandler {
+		public void handleEvent(final HiddenEvent e);
+	}
+
+	private static class CountingHiddenEventHandler implements HiddenEventHandler {
+		/*package*/ int counter = 0;
+		@Override
+		public void reset(final int iteration) {
+			this.counter = 0;
+		}
+		@Override
+		public void handleEvent(final HiddenEvent e) {
+			this.counter++;
+		}
+	}
+
+	private static class CrashingHiddenEventHandler implements HiddenEventHandler {
+		/*package*/ int counter = 0;
+		@Override
+		public void reset(final int iteration) {
+			this.counter = 0;
+		}
+		@Override
+		public void handleEvent(final HiddenEvent e) {
+			this.counter++;
+			int i = 1 / 0; // produce ArithmeticException
+			System.out.println(i);
+		}
+	}
+}
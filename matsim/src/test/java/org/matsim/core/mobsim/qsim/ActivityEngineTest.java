@@ -0,0 +1,331 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEngineTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.interfaces.Netsim;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.testcases.utils.EventsCollector;
+
+/**
+ * Tests the activity end calendar of {@link ActivityEngine}.
+ */
+public class ActivityEngineTest {
+
+	private QSim qsim;
+	private EventsCollector collector;
+	private ActivityEngine engine;
+	private List<String> endedActivities;
+
+	@Before
+	public void setUp() {
+		EventsManager events = EventsUtils.createEventsManager();
+		this.collector = new EventsCollector();
+		events.addHandler(this.collector);
+		this.qsim = new QSim(ScenarioUtils.createScenario(ConfigUtils.createConfig()), events);
+		this.engine = new ActivityEngine(events);
+		this.engine.setInternalInterface(new FakeInternalInterface(this.qsim));
+		this.endedActivities = new ArrayList<>();
+	}
+
+	@Test
+	public void testActivitiesEndInOrderOfEndTime() {
+		handleActivity("a", 10.5);
+		handleActivity("b", 10.2);
+		handleActivity("c", 11.0);
+		handleActivity("d", 9.0);
+
+		Assert.assertEquals(9.0, this.engine.getNextWakeUpTime(), 0.0);
+		this.engine.doSimStep(9.0);
+		Assert.assertEquals(Arrays.asList("d@9.0"), this.endedActivities);
+		Assert.assertEquals(10.2, this.engine.getNextWakeUpTime(), 0.0);
+		this.engine.doSimStep(10.0);
+		Assert.assertEquals(Arrays.asList("d@9.0"), this.endedActivities);
+		this.engine.doSimStep(11.0);
+		Assert.assertEquals(Arrays.asList("d@9.0", "b@11.0", "a@11.0", "c@11.0"), this.endedActivities);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, this.engine.getNextWakeUpTime(), 0.0);
+	}
+
+	@Test
+	public void testSameEndTimeOrderedById() {
+		handleActivity("1", 100.0);
+		handleActivity("3", 100.0);
+		handleActivity("2", 100.0);
+		handleActivity("4", 100.0);
+
+		this.engine.doSimStep(100.0);
+		// agents with the larger id end their activity first:
+		Assert.assertEquals(Arrays.asList("4@100.0", "3@100.0", "2@100.0", "1@100.0"), this.endedActivities);
+	}
+
+	@Test
+	public void testRescheduleActivityEnd() {
+		FakeAgent a = handleActivity("a", 100.0);
+		handleActivity("b", 150.0);
+
+		a.activityEndTime = 50.0;
+		this.engine.rescheduleActivityEnd(a);
+		Assert.assertEquals(50.0, this.engine.getNextWakeUpTime(), 0.0);
+		this.engine.doSimStep(50.0);
+		Assert.assertEquals(Arrays.asList("a@50.0"), this.endedActivities);
+
+		// the bucket a was in before is gone:
+		Assert.assertEquals(150.0, this.engine.getNextWakeUpTime(), 0.0);
+		this.engine.doSimStep(100.0);
+		Assert.assertEquals(Arrays.asList("a@50.0"), this.endedActivities);
+	}
+
+	@Test
+	public void testRescheduleActivityEnd_later() {
+		FakeAgent a = handleActivity("a", 100.0);
+
+		a.activityEndTime = 200.0;
+		this.engine.rescheduleActivityEnd(a);
+		Assert.assertEquals(200.0, this.engine.getNextWakeUpTime(), 0.0);
+		this.engine.doSimStep(100.0);
+		Assert.assertTrue(this.endedActivities.isEmpty());
+		this.engine.doSimStep(200.0);
+		Assert.assertEquals(Arrays.asList("a@200.0"), this.endedActivities);
+	}
+
+	@Test
+	public void testRescheduleActivityEnd_removesAgent() {
+		FakeAgent a = handleActivity("a", 100.0);
+		handleActivity("b", 100.0);
+		((AgentCounter) this.qsim.getAgentCounter()).incLiving();
+		((AgentCounter) this.qsim.getAgentCounter()).incLiving();
+
+		a.activityEndTime = Double.POSITIVE_INFINITY;
+		this.engine.rescheduleActivityEnd(a);
+		Assert.assertEquals(1, this.qsim.getAgentCounter().getLiving());
+		this.engine.doSimStep(100.0);
+		Assert.assertEquals(Arrays.asList("b@100.0"), this.endedActivities);
+
+		// and back again:
+		a.activityEndTime = 300.0;
+		this.engine.rescheduleActivityEnd(a);
+		Assert.assertEquals(2, this.qsim.getAgentCounter().getLiving());
+		Assert.assertEquals(300.0, this.engine.getNextWakeUpTime(), 0.0);
+	}
+
+	@Test
+	public void testRescheduleMostAgentsOfOneBucket() {
+		List<FakeAgent> agents = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			agents.add(handleActivity(Integer.toString(i), 100.0));
+		}
+		// enough to purge the removed entries from the bucket:
+		for (int i = 0; i < 7; i++) {
+			FakeAgent agent = agents.get(i);
+			agent.activityEndTime = (i % 2 == 0) ? 200.0 : 50.0;
+			this.engine.rescheduleActivityEnd(agent);
+		}
+
+		this.engine.doSimStep(50.0);
+		Assert.assertEquals(Arrays.asList("5@50.0", "3@50.0", "1@50.0"), this.endedActivities);
+		this.endedActivities.clear();
+		this.engine.doSimStep(100.0);
+		Assert.assertEquals(Arrays.asList("9@100.0", "8@100.0", "7@100.0"), this.endedActivities);
+		this.endedActivities.clear();
+		this.engine.doSimStep(200.0);
+		Assert.assertEquals(Arrays.asList("6@200.0", "4@200.0", "2@200.0", "0@200.0"), this.endedActivities);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, this.engine.getNextWakeUpTime(), 0.0);
+	}
+
+	@Test
+	public void testRescheduleActivityEnd_whileBucketIsHandled() {
+		final FakeAgent a = handleActivity("a", 100.0);
+		FakeAgent b = handleActivity("b", 100.0);
+		// b ends first and postpones the activity end of a, which is in the same bucket:
+		b.onActivityEnd = new Runnable() {
+			@Override
+			public void run() {
+				a.activityEndTime = 150.0;
+				ActivityEngineTest.this.engine.rescheduleActivityEnd(a);
+			}
+		};
+
+		this.engine.doSimStep(100.0);
+		Assert.assertEquals(Arrays.asList("b@100.0"), this.endedActivities);
+		Assert.assertEquals(150.0, this.engine.getNextWakeUpTime(), 0.0);
+		this.engine.doSimStep(150.0);
+		Assert.assertEquals(Arrays.asList("b@100.0", "a@150.0"), this.endedActivities);
+	}
+
+	@Test
+	public void testAfterSim_stuckAgents() {
+		FakeAgent a = handleActivity("a", 100.0);
+		handleActivity("b", 100.0);
+		handleActivity("c", 200.0);
+		a.activityEndTime = 300.0;
+		this.engine.rescheduleActivityEnd(a);
+
+		this.engine.afterSim();
+		List<String> stuckAgents = new ArrayList<>();
+		for (Object event : this.collector.getEvents()) {
+			stuckAgents.add(((PersonStuckEvent) event).getPersonId().toString());
+		}
+		Assert.assertEquals(Arrays.asList("b", "c", "a"), stuckAgents);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, this.engine.getNextWakeUpTime(), 0.0);
+	}
+
+	private FakeAgent handleActivity(String id, double activityEndTime) {
+		FakeAgent agent = new FakeAgent(id, activityEndTime, this.endedActivities);
+		this.engine.handleActivity(agent);
+		return agent;
+	}
+
+	private static class FakeInternalInterface implements InternalInterface {
+
+		private final QSim qsim;
+
+		FakeInternalInterface(QSim qsim) {
+			this.qsim = qsim;
+		}
+
+		@Override
+		public Netsim getMobsim() {
+			return this.qsim;
+		}
+
+		@Override
+		public void arrangeNextAgentState(MobsimAgent agent) {
+		}
+
+		@Override
+		public void registerAdditionalAgentOnLink(MobsimAgent agent) {
+		}
+
+		@Override
+		public MobsimAgent unregisterAdditionalAgentOnLink(Id<Person> agentId, Id<Link> linkId) {
+			return null;
+		}
+
+		@Override
+		public void rescheduleActivityEnd(MobsimAgent agent) {
+		}
+
+	}
+
+	private static class FakeAgent implements MobsimAgent {
+
+		private final Id<Person> id;
+		private final List<String> endedActivities;
+		double activityEndTime;
+		Runnable onActivityEnd = null;
+
+		FakeAgent(String id, double activityEndTime, List<String> endedActivities) {
+			this.id = Id.createPersonId(id);
+			this.activityEndTime = activityEndTime;
+			this.endedActivities = endedActivities;
+		}
+
+		@Override
+		public Id<Person> getId() {
+			return this.id;
+		}
+
+		@Override
+		public double getActivityEndTime() {
+			return this.activityEndTime;
+		}
+
+		@Override
+		public void endActivityAndComputeNextState(double now) {
+			this.endedActivities.add(this.id + "@" + now);
+			if (this.onActivityEnd != null) {
+				this.onActivityEnd.run();
+			}
+		}
+
+		@Override
+		public Id<Link> getCurrentLinkId() {
+			return null;
+		}
+
+		@Override
+		public Id<Link> getDestinationLinkId() {
+			return null;
+		}
+
+		@Override
+		public String getMode() {
+			return null;
+		}
+
+		@Override
+		public State getState() {
+			return State.ACTIVITY;
+		}
+
+		@Override
+		public void endLegAndComputeNextState(double now) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void setStateToAbort(double now) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Double getExpectedTravelTime() {
+			return null;
+		}
+
+		@Override
+		public Double getExpectedTravelDistance() {
+			return null;
+		}
+
+		@Override
+		public void notifyArrivalOnLinkByNonNetworkMode(Id<Link> linkId) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Facility<? extends Facility<?>> getCurrentFacility() {
+			return null;
+		}
+
+		@Override
+		public Facility<? extends Facility<?>> getDestinationFacility() {
+			return null;
+		}
+
+	}
+
+}
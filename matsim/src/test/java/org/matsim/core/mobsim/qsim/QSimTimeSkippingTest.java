@@ -0,0 +1,112 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimTimeSkippingTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Tests that {@link org.matsim.core.config.groups.QSimConfigGroup#isUsingTimeSkipping()} leaves the events unchanged, but
+ * saves time steps.
+ */
+public class QSimTimeSkippingTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameEventsWithTimeSkipping() {
+		List<String> events = new ArrayList<>();
+		int steps = runQSim(false, 1, events);
+		List<String> eventsWithSkipping = new ArrayList<>();
+		int stepsWithSkipping = runQSim(true, 1, eventsWithSkipping);
+
+		Assert.assertFalse(events.isEmpty());
+		Assert.assertEquals(events, eventsWithSkipping);
+		Assert.assertTrue("no time steps were skipped", stepsWithSkipping < steps);
+	}
+
+	@Test
+	public void testSameEventsWithTimeSkipping_multipleThreads() {
+		List<String> events = new ArrayList<>();
+		runQSim(false, 2, events);
+		List<String> eventsWithSkipping = new ArrayList<>();
+		runQSim(true, 2, eventsWithSkipping);
+
+		Assert.assertEquals(events, eventsWithSkipping);
+	}
+
+	/**
+	 * @return the number of simulated time steps
+	 */
+	private int runQSim(boolean usingTimeSkipping, int numberOfThreads, final List<String> events) {
+		MatsimRandom.reset();
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.qsim().setUsingTimeSkipping(usingTimeSkipping);
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingThreadIndependentNetsim(numberOfThreads > 1);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		// with all agents, some vehicle is on the network during the whole simulation, so there would be nothing to skip:
+		for (Id<Person> personId : new ArrayList<>(scenario.getPopulation().getPersons().keySet())) {
+			if (!personId.toString().equals("1") && !personId.toString().equals("2")) {
+				scenario.getPopulation().removePerson(personId);
+			}
+		}
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(new BasicEventHandler() {
+			@Override
+			public void reset(int iteration) {
+			}
+
+			@Override
+			public void handleEvent(Event event) {
+				events.add(event.toString());
+			}
+		});
+		QSim qsim = QSimUtils.createDefaultQSim(scenario, eventsManager);
+		final int[] steps = new int[1];
+		qsim.addQueueSimulationListeners(new MobsimAfterSimStepListener() {
+			@Override
+			public void notifyMobsimAfterSimStep(@SuppressWarnings("rawtypes") MobsimAfterSimStepEvent e) {
+				steps[0]++;
+			}
+		});
+		qsim.run();
+		return steps[0];
+	}
+
+}
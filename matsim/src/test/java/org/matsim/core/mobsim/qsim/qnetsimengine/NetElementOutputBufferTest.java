@@ -0,0 +1,129 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetElementOutputBufferTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+public class NetElementOutputBufferTest {
+
+	/**
+	 * The output of elements handled by several runners, in whatever order the runners moved them, is passed on like the
+	 * output of a single runner that moved them in the order of the elements.
+	 */
+	@Test
+	public void testSeveralBuffersLikeOneInElementOrder() {
+		List<String> output = new ArrayList<>();
+		EventsManager events = createEventsManager(output);
+
+		NetElementOutputBuffer single = new NetElementOutputBuffer();
+		for (int element = 0; element < 6; element++) {
+			emit(single, events, output, element);
+		}
+		new NetElementOutputBuffer.Merger().process(Arrays.asList(single));
+		List<String> expected = new ArrayList<>(output);
+		output.clear();
+
+		NetElementOutputBuffer first = new NetElementOutputBuffer();
+		NetElementOutputBuffer second = new NetElementOutputBuffer();
+		NetElementOutputBuffer third = new NetElementOutputBuffer();
+		emit(second, events, output, 4);
+		emit(first, events, output, 3);
+		emit(second, events, output, 1);
+		emit(third, events, output, 5);
+		emit(first, events, output, 0);
+		emit(third, events, output, 2);
+		Assert.assertTrue("nothing must be passed on before the buffers are merged", output.isEmpty());
+		new NetElementOutputBuffer.Merger().process(Arrays.asList(first, second, third));
+
+		Assert.assertEquals(18, expected.size());
+		Assert.assertEquals(expected, output);
+		Assert.assertEquals(0, first.size());
+		Assert.assertEquals(0, second.size());
+		Assert.assertEquals(0, third.size());
+	}
+
+	/**
+	 * The buffers and the merger grow beyond their initial capacity, and are reused afterwards.
+	 */
+	@Test
+	public void testGrowAndReuse() {
+		List<String> output = new ArrayList<>();
+		EventsManager events = createEventsManager(output);
+		NetElementOutputBuffer.Merger merger = new NetElementOutputBuffer.Merger();
+		NetElementOutputBuffer first = new NetElementOutputBuffer();
+		NetElementOutputBuffer second = new NetElementOutputBuffer();
+		for (int step = 0; step < 2; step++) {
+			for (int element = 4999; element >= 0; element--) {
+				emit(element % 2 == 0 ? first : second, events, output, element);
+			}
+			Assert.assertEquals(7500, first.size());
+			merger.process(Arrays.asList(first, second));
+			Assert.assertEquals(15000, output.size());
+			for (int element = 0; element < 5000; element++) {
+				Assert.assertEquals("element " + element + ", event", output.get(3 * element));
+				Assert.assertEquals("element " + element + ", action", output.get(3 * element + 1));
+			}
+			output.clear();
+		}
+	}
+
+	/*
+	 * Every element emits an event, an action, and another event.
+	 */
+	private static void emit(NetElementOutputBuffer buffer, EventsManager events, final List<String> output, final int element) {
+		buffer.addEvent(element, events, new LinkEnterEvent(element, Id.createVehicleId(element), Id.createLinkId(element)));
+		buffer.addAction(element, new Runnable() {
+			@Override
+			public void run() {
+				output.add("element " + element + ", action");
+			}
+		});
+		buffer.addEvent(element, events, new LinkEnterEvent(element, Id.createVehicleId(element), Id.createLinkId("second")));
+	}
+
+	private static EventsManager createEventsManager(final List<String> output) {
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				LinkEnterEvent linkEnter = (LinkEnterEvent) event;
+				output.add("element " + linkEnter.getVehicleId() + (linkEnter.getLinkId().toString().equals("second") ? ", second event" : ", event"));
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		return events;
+	}
+
+}
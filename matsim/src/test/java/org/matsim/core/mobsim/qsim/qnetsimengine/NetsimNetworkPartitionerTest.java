@@ -0,0 +1,157 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetsimNetworkPartitionerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Checks the partitioners of the {@link QNetsimEngine} on a 10x10 grid network with links in both directions.
+ */
+public class NetsimNetworkPartitionerTest {
+
+	private static final int GRID_SIZE = 10;
+
+	@Test
+	public void testRoundRobin() {
+		List<QNode> nodes = createGridQNodes();
+		int[] partitions = new RoundRobinNetsimNetworkPartitioner().partition(nodes, unitWeights(nodes.size()), 3);
+
+		for (int n = 0; n < partitions.length; n++) {
+			Assert.assertEquals(n % 3, partitions[n]);
+		}
+	}
+
+	@Test
+	public void testRecursiveCoordinateBisection_balanced() {
+		List<QNode> nodes = createGridQNodes();
+		int[] partitions = new RecursiveCoordinateBisectionPartitioner().partition(nodes, unitWeights(nodes.size()), 4);
+
+		int[] sizes = new int[4];
+		for (int partition : partitions) {
+			sizes[partition]++;
+		}
+		for (int size : sizes) {
+			Assert.assertEquals(GRID_SIZE * GRID_SIZE / 4, size);
+		}
+	}
+
+	@Test
+	public void testRecursiveCoordinateBisection_unevenNumberOfPartitions() {
+		List<QNode> nodes = createGridQNodes();
+		int[] partitions = new RecursiveCoordinateBisectionPartitioner().partition(nodes, unitWeights(nodes.size()), 5);
+
+		int[] sizes = new int[5];
+		for (int partition : partitions) {
+			sizes[partition]++;
+		}
+		for (int size : sizes) {
+			Assert.assertEquals(GRID_SIZE * GRID_SIZE / 5, size);
+		}
+	}
+
+	@Test
+	public void testRecursiveCoordinateBisection_edgeCut() {
+		List<QNode> nodes = createGridQNodes();
+		double[] weights = unitWeights(nodes.size());
+
+		int rcbCut = edgeCut(nodes, new RecursiveCoordinateBisectionPartitioner().partition(nodes, weights, 4));
+		int roundRobinCut = edgeCut(nodes, new RoundRobinNetsimNetworkPartitioner().partition(nodes, weights, 4));
+
+		// the four quadrants are separated by two lines of ten links in each direction:
+		Assert.assertEquals(2 * 2 * GRID_SIZE, rcbCut);
+		Assert.assertTrue(rcbCut < roundRobinCut);
+	}
+
+	@Test
+	public void testRecursiveCoordinateBisection_deterministic() {
+		List<QNode> nodes = createGridQNodes();
+		double[] weights = unitWeights(nodes.size());
+		int[] partitions1 = new RecursiveCoordinateBisectionPartitioner().partition(nodes, weights, 7);
+		int[] partitions2 = new RecursiveCoordinateBisectionPartitioner().partition(nodes, weights, 7);
+		Assert.assertArrayEquals(partitions1, partitions2);
+	}
+
+	private static int edgeCut(List<QNode> nodes, int[] partitions) {
+		Map<Id<Node>, Integer> nodePartitions = new HashMap<>();
+		for (int n = 0; n < nodes.size(); n++) {
+			nodePartitions.put(nodes.get(n).getNode().getId(), partitions[n]);
+		}
+		int cut = 0;
+		for (QNode node : nodes) {
+			for (Link link : node.getNode().getOutLinks().values()) {
+				if (!nodePartitions.get(link.getFromNode().getId()).equals(nodePartitions.get(link.getToNode().getId()))) {
+					cut++;
+				}
+			}
+		}
+		return cut;
+	}
+
+	private static double[] unitWeights(int size) {
+		double[] weights = new double[size];
+		Arrays.fill(weights, 1.);
+		return weights;
+	}
+
+	private static List<QNode> createGridQNodes() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		Node[][] grid = new Node[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				grid[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(100. * x, 100. * y));
+			}
+		}
+		int linkCnt = 0;
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					NetworkUtils.createAndAddLink(network, Id.create(linkCnt++, Link.class), grid[x][y], grid[x + 1][y], 100., 10., 1000., 1.);
+					NetworkUtils.createAndAddLink(network, Id.create(linkCnt++, Link.class), grid[x + 1][y], grid[x][y], 100., 10., 1000., 1.);
+				}
+				if (y + 1 < GRID_SIZE) {
+					NetworkUtils.createAndAddLink(network, Id.create(linkCnt++, Link.class), grid[x][y], grid[x][y + 1], 100., 10., 1000., 1.);
+					NetworkUtils.createAndAddLink(network, Id.create(linkCnt++, Link.class), grid[x][y + 1], grid[x][y], 100., 10., 1000., 1.);
+				}
+			}
+		}
+		QNetwork qNetwork = (QNetwork) QSimUtils.createDefaultQSim(scenario, EventsUtils.createEventsManager()).getNetsimNetwork();
+		return new ArrayList<>(qNetwork.getNetsimNodes().values());
+	}
+
+}
@@ -0,0 +1,151 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetsimRebalancingTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimPartitioning;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Tests the rebalancing of the runners of the {@link QNetsimEngine} with
+ * {@link org.matsim.core.config.groups.QSimConfigGroup#getNetsimRebalancingPeriod()}.
+ */
+public class NetsimRebalancingTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRebalancingMovesNodes() {
+		Run run = runQSim(3, true, 600.);
+		Assert.assertFalse("no node was moved to another runner", run.initialRunners.equals(run.finalRunners));
+	}
+
+	@Test
+	public void testRebalancingIsDeterministic() {
+		Run run = runQSim(3, true, 600.);
+		Run otherRun = runQSim(3, true, 600.);
+		Assert.assertEquals(run.initialRunners, otherRun.initialRunners);
+		Assert.assertEquals(run.finalRunners, otherRun.finalRunners);
+		Assert.assertEquals(run.events, otherRun.events);
+	}
+
+	@Test
+	public void testSameEventsWithRebalancing() {
+		List<String> reference = runQSim(1, true, 0.).events;
+		Assert.assertFalse(reference.isEmpty());
+		Assert.assertEquals(reference, runQSim(3, true, 600.).events);
+		Assert.assertEquals(reference, runQSim(4, false, 300.).events);
+	}
+
+	private Run runQSim(int numberOfThreads, boolean usingThreadpool, double rebalancingPeriod) {
+		MatsimRandom.reset();
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.qsim().setUsingThreadIndependentNetsim(true);
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		config.qsim().setNetsimPartitioning(NetsimPartitioning.recursiveCoordinateBisection);
+		config.qsim().setNetsimRebalancingPeriod(rebalancingPeriod);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		final Run run = new Run();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(new BasicEventHandler() {
+			@Override
+			public void reset(int iteration) {
+			}
+
+			@Override
+			public void handleEvent(Event event) {
+				run.events.add(event.toString());
+			}
+		});
+		final QSim qsim = QSimUtils.createDefaultQSim(scenario, eventsManager);
+		qsim.addQueueSimulationListeners(new MobsimInitializedListener() {
+			@Override
+			public void notifyMobsimInitialized(@SuppressWarnings("rawtypes") MobsimInitializedEvent e) {
+				run.initialRunners.putAll(getRunners(qsim));
+			}
+		});
+		qsim.addQueueSimulationListeners(new MobsimBeforeCleanupListener() {
+			@Override
+			public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+				run.finalRunners.putAll(getRunners(qsim));
+			}
+		});
+		qsim.run();
+		return run;
+	}
+
+	/**
+	 * @return for every node, the number of the runner that handles it, where runners are numbered in the order in which
+	 * they first handle a node, so that the numbers can be compared between runs
+	 */
+	private static Map<Id<Node>, Integer> getRunners(QSim qsim) {
+		Map<Id<Node>, Integer> runners = new TreeMap<>();
+		Map<NetElementActivationRegistry, Integer> runnerNumbers = new IdentityHashMap<>();
+		for (QNode node : new TreeMap<>(((QNetwork) qsim.getNetsimNetwork()).getNetsimNodes()).values()) {
+			NetElementActivationRegistry runner = node.getNetElementActivationRegistry();
+			if (!runnerNumbers.containsKey(runner)) {
+				runnerNumbers.put(runner, runnerNumbers.size());
+			}
+			runners.put(node.getNode().getId(), runnerNumbers.get(runner));
+			for (Id<Link> linkId : node.getNode().getOutLinks().keySet()) {
+				QLinkI link = ((QNetwork) qsim.getNetsimNetwork()).getNetsimLink(linkId);
+				Assert.assertSame("an out link is not handled by the runner of its from node", runner, link.getNetElementActivationRegistry());
+			}
+		}
+		return runners;
+	}
+
+	private static class Run {
+		final List<String> events = new ArrayList<>();
+		final Map<Id<Node>, Integer> initialRunners = new TreeMap<>();
+		final Map<Id<Node>, Integer> finalRunners = new TreeMap<>();
+	}
+
+}
@@ -0,0 +1,162 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ThreadIndependentNetsimTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.QSimConfigGroup.NetsimPartitioning;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Tests that, with {@link org.matsim.core.config.groups.QSimConfigGroup#isUsingThreadIndependentNetsim()}, the events
+ * do not depend on the number of threads, on the threading model, or on how the network is partitioned.
+ */
+public class ThreadIndependentNetsimTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameEventsForDifferentNumbersOfThreads() {
+		List<String> reference = runQSim(1, true, NetsimPartitioning.roundRobin);
+		Assert.assertFalse(reference.isEmpty());
+
+		Assert.assertEquals(reference, runQSim(2, true, NetsimPartitioning.roundRobin));
+		Assert.assertEquals(reference, runQSim(4, true, NetsimPartitioning.roundRobin));
+		Assert.assertEquals(reference, runQSim(4, false, NetsimPartitioning.roundRobin));
+		Assert.assertEquals(reference, runQSim(3, true, NetsimPartitioning.recursiveCoordinateBisection));
+		Assert.assertEquals(reference, runQSim(3, false, NetsimPartitioning.recursiveCoordinateBisection));
+	}
+
+	/**
+	 * Without thread independence, the runners still buffer their output and pass it on at the end of the time step, so the
+	 * events still come in the order of time, and none of them get lost.
+	 */
+	@Test
+	public void testBufferedOutputWithoutThreadIndependence() {
+		List<String> reference = runQSim(1, true, NetsimPartitioning.roundRobin);
+		final List<Event> allEvents = new ArrayList<>();
+		List<String> events = runQSim("equil", 4, false, NetsimPartitioning.recursiveCoordinateBisection, false, allEvents);
+
+		Assert.assertEquals(reference.size(), events.size());
+		for (int i = 1; i < allEvents.size(); i++) {
+			Assert.assertTrue("events are not ordered by time", allEvents.get(i - 1).getTime() <= allEvents.get(i).getTime());
+		}
+	}
+
+	/**
+	 * Transit drivers throw their events from within the runners, and these are buffered together with the link events, so
+	 * a transit vehicle arrives at a stop after it entered the link of the stop, and departs before it leaves it.
+	 */
+	@Test
+	public void testTransitDriverEventsInOrder() {
+		final List<Event> events = new ArrayList<>();
+		List<String> reference = runQSim("pt-simple", 1, true, NetsimPartitioning.roundRobin, true, events);
+		Assert.assertEquals(reference, runQSim("pt-simple", 3, true, NetsimPartitioning.roundRobin, true, new ArrayList<Event>()));
+
+		events.clear();
+		runQSim("pt-simple", 3, false, NetsimPartitioning.recursiveCoordinateBisection, false, events);
+		Scenario scenario = ScenarioUtils.loadScenario(utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("pt-simple"), "config.xml")));
+		Map<Id<Vehicle>, Id<Link>> currentLinks = new HashMap<>();
+		int stops = 0;
+		for (Event event : events) {
+			if (event instanceof LinkEnterEvent) {
+				currentLinks.put(((LinkEnterEvent) event).getVehicleId(), ((LinkEnterEvent) event).getLinkId());
+			} else if (event instanceof LinkLeaveEvent) {
+				currentLinks.remove(((LinkLeaveEvent) event).getVehicleId());
+			} else if (event instanceof VehicleArrivesAtFacilityEvent || event instanceof VehicleDepartsAtFacilityEvent) {
+				Id<Vehicle> vehicleId = event instanceof VehicleArrivesAtFacilityEvent ? ((VehicleArrivesAtFacilityEvent) event).getVehicleId()
+						: ((VehicleDepartsAtFacilityEvent) event).getVehicleId();
+				Id<TransitStopFacility> facilityId = event instanceof VehicleArrivesAtFacilityEvent ? ((VehicleArrivesAtFacilityEvent) event).getFacilityId()
+						: ((VehicleDepartsAtFacilityEvent) event).getFacilityId();
+				Id<Link> stopLinkId = scenario.getTransitSchedule().getFacilities().get(facilityId).getLinkId();
+				// (the vehicle starts at the first stop without entering its link)
+				if (currentLinks.containsKey(vehicleId)) {
+					Assert.assertEquals(event.toString(), stopLinkId, currentLinks.get(vehicleId));
+					stops++;
+				}
+			}
+		}
+		Assert.assertTrue("no transit vehicle stopped after entering a link", stops > 0);
+	}
+
+	private List<String> runQSim(int numberOfThreads, boolean usingThreadpool, NetsimPartitioning partitioning) {
+		return runQSim("equil", numberOfThreads, usingThreadpool, partitioning, true, new ArrayList<Event>());
+	}
+
+	private List<String> runQSim(String scenarioName, int numberOfThreads, boolean usingThreadpool, NetsimPartitioning partitioning,
+			boolean threadIndependent, final List<Event> allEvents) {
+		MatsimRandom.reset();
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL(scenarioName), "config.xml"));
+		config.qsim().setUsingThreadIndependentNetsim(threadIndependent);
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		config.qsim().setNetsimPartitioning(partitioning);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		if (config.transit().isUseTransit()) {
+			// the passengers of the pt scenarios have no routes, and only the transit drivers matter here
+			for (Id<Person> personId : new ArrayList<>(scenario.getPopulation().getPersons().keySet())) {
+				scenario.getPopulation().removePerson(personId);
+			}
+		}
+
+		final List<String> events = new ArrayList<>();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(new BasicEventHandler() {
+			@Override
+			public void reset(int iteration) {
+			}
+
+			@Override
+			public void handleEvent(Event event) {
+				events.add(event.toString());
+				allEvents.add(event);
+			}
+		});
+		QSimUtils.createDefaultQSim(scenario, eventsManager).run();
+		return events;
+	}
+
+}
@@ -20,12 +20,19 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 
 /**
@@ -60,6 +67,32 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testAllPlansHandledOnce() {
+		for (int batchSize : new int[] { 0, 1, 7 }) {
+			Config config = new Config();
+			config.addCoreModules();
+			config.global().setNumberOfThreads(3);
+			config.global().setReplanningBatchSize(batchSize);
+			CollectingModule testee = new CollectingModule(config.global());
+			for (int iteration = 0; iteration < 2; iteration++) {
+				List<Plan> plans = new ArrayList<>();
+				testee.prepareReplanning(null);
+				for (int i = 0; i < 100; i++) {
+					Plan plan = PopulationUtils.createPlan();
+					plans.add(plan);
+					testee.handlePlan(plan);
+				}
+				testee.finishReplanning();
+				Assert.assertEquals(100, testee.handled.size());
+				Assert.assertTrue(testee.handled.containsAll(plans));
+				Assert.assertEquals(100, testee.count);
+				testee.handled.clear();
+				testee.count = 0;
+			}
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -80,6 +113,26 @@ public class AbstractMultithreadedModuleTest {
 		}
 	}
 
+	private static class CollectingModule extends AbstractMultithreadedModule {
+		/*package*/ final Set<Plan> handled = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Plan, Boolean>()));
+		/*package*/ int count = 0;
+		public CollectingModule(GlobalConfigGroup globalConfigGroup) {
+			super(globalConfigGroup);
+		}
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			return new PlanAlgorithm() {
+				@Override
+				public void run(Plan plan) {
+					synchronized (CollectingModule.this) {
+						count++;
+					}
+					handled.add(plan);
+				}
+			};
+		}
+	}
+
 	private static class CrashingPlanAlgo implements PlanAlgorithm {
 		@Override
 		public void run(Plan plan) {
@@ -20,11 +20,22 @@
 
 package org.matsim.core.router;
 
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.AStarLandmarksFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.core.router.util.PreProcessLandmarks;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
 
 public class AStarLandmarksTest extends AbstractLeastCostPathCalculatorTest {
 
@@ -36,4 +47,116 @@ public class AStarLandmarksTest extends AbstractLeastCostPathCalculatorTest {
 		return new AStarLandmarks(network, preProcessData, travelTimeCostCalculator);
 	}
 
+	public void testUpdateFor() {
+		Scenario scenario = ScenarioUtils.createScenario(loadConfig(null));
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readFile("test/scenarios/equil/network.xml");
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		PreProcessLandmarks preProcessData = new PreProcessLandmarks(freespeed, 2);
+		preProcessData.run(network);
+
+		assertSame("equal minimum disutilities must not repeat the pre-processing.", preProcessData, preProcessData.updateFor(freespeed));
+		assertSame(preProcessData, preProcessData.updateFor(new ScaledDisutility(freespeed, 2.0)));
+
+		TravelDisutility cheaper = new ScaledDisutility(freespeed, 0.5);
+		assertFalse(preProcessData.isValidFor(cheaper));
+		PreProcessLandmarks updated = preProcessData.updateFor(cheaper);
+		assertNotSame(preProcessData, updated);
+		assertTrue(updated.isValidFor(cheaper));
+		assertTrue("the update must stay valid for the previous cost function.", updated.isValidFor(freespeed));
+		assertEquals(preProcessData.getLandmarks().length, updated.getLandmarks().length);
+		for (int i = 0; i < updated.getLandmarks().length; i++) {
+			assertSame(preProcessData.getLandmarks()[i], updated.getLandmarks()[i]);
+		}
+
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+		Node node15 = network.getNodes().get(Id.create("15", Node.class));
+		Path expected = new Dijkstra(network, cheaper, freespeed).calcLeastCostPath(node12, node15, 8.0 * 3600, null, null);
+		Path path = new AStarLandmarks(network, updated, cheaper, freespeed).calcLeastCostPath(node12, node15, 8.0 * 3600, null, null);
+		assertEquals(expected.travelCost, path.travelCost, 1e-8);
+	}
+
+	public void testFactoryChecksValidityOncePerIteration() {
+		Scenario scenario = ScenarioUtils.createScenario(loadConfig(null));
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readFile("test/scenarios/equil/network.xml");
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		AStarLandmarksFactory factory = new AStarLandmarksFactory(network, freespeed, 1);
+
+		CountingDisutility first = new CountingDisutility(freespeed);
+		factory.createPathCalculator(network, first, freespeed);
+		assertTrue(first.minimumCalls > 0);
+		first.minimumCalls = 0;
+		factory.createPathCalculator(network, first, freespeed);
+		assertEquals("the validity must only be checked once per iteration.", 0, first.minimumCalls);
+		CountingDisutility second = new CountingDisutility(freespeed);
+		factory.createPathCalculator(network, second, freespeed);
+		assertTrue("every instance must be checked.", second.minimumCalls > 0);
+
+		factory.notifyIterationStarts(null);
+		CountingDisutility third = new CountingDisutility(freespeed);
+		factory.createPathCalculator(network, third, freespeed);
+		assertTrue(third.minimumCalls > 0);
+	}
+
+	/**
+	 * Instances of the same class with lower minimum travel disutilities must not use landmarks that overestimate.
+	 */
+	public void testFactoryChecksEachDisutilityInstance() {
+		Scenario scenario = ScenarioUtils.createScenario(loadConfig(null));
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readFile("test/scenarios/equil/network.xml");
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		AStarLandmarksFactory factory = new AStarLandmarksFactory(network, freespeed, 1);
+		factory.createPathCalculator(network, new ScaledDisutility(freespeed, 2.0), freespeed);
+
+		TravelDisutility cheaper = new ScaledDisutility(freespeed, 0.5);
+		LeastCostPathCalculator router = factory.createPathCalculator(network, cheaper, freespeed);
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+		Node node15 = network.getNodes().get(Id.create("15", Node.class));
+		Path expected = new Dijkstra(network, cheaper, freespeed).calcLeastCostPath(node12, node15, 8.0 * 3600, null, null);
+		Path path = router.calcLeastCostPath(node12, node15, 8.0 * 3600, null, null);
+		assertEquals(expected.travelCost, path.travelCost, 1e-8);
+	}
+
+	private static class CountingDisutility implements TravelDisutility {
+		private final TravelDisutility delegate;
+		int minimumCalls = 0;
+
+		CountingDisutility(TravelDisutility delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return this.delegate.getLinkTravelDisutility(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			this.minimumCalls++;
+			return this.delegate.getLinkMinimumTravelDisutility(link);
+		}
+	}
+
+	private static class ScaledDisutility implements TravelDisutility {
+		private final TravelDisutility delegate;
+		private final double factor;
+
+		ScaledDisutility(TravelDisutility delegate, double factor) {
+			this.delegate = delegate;
+			this.factor = factor;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return this.factor * this.delegate.getLinkTravelDisutility(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return this.factor * this.delegate.getLinkMinimumTravelDisutility(link);
+		}
+	}
+
 }
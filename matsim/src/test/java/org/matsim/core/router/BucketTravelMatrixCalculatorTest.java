@@ -0,0 +1,96 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BucketTravelMatrixCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.TravelMatrixCalculator.TravelMatrix;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+
+public class BucketTravelMatrixCalculatorTest {
+
+	@Test
+	public void testSameAsTravelMatrixCalculator() {
+		int size = 12;
+		Random random = new Random(4711);
+		RandomGridNetwork grid = new RandomGridNetwork(size, random, true);
+		Network network = grid.network;
+
+		List<Node> origins = new ArrayList<>();
+		List<Node> destinations = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			origins.add(grid.nodes[random.nextInt(size)][random.nextInt(size)]);
+			destinations.add(grid.nodes[random.nextInt(size)][random.nextInt(size)]);
+		}
+		origins.add(grid.island);
+		destinations.add(grid.island);
+		// an origin that is also a destination
+		origins.add(destinations.get(0));
+
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelMatrix expected = new TravelMatrixCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator, 1)
+				.calcTravelMatrix(origins, destinations, 8 * 3600);
+		ContractionHierarchy hierarchy = ContractionHierarchy.create(network);
+		ContractionHierarchy.Metric metric = hierarchy.customize(travelTimeCostCalculator, 3600, 31, 1);
+		for (int numberOfThreads : new int[] {1, 3}) {
+			TravelMatrix matrix = new BucketTravelMatrixCalculator(hierarchy, metric, travelTimeCostCalculator, numberOfThreads)
+					.calcTravelMatrix(origins, destinations, 8 * 3600);
+			Assert.assertEquals(origins.size(), matrix.getNumberOfOrigins());
+			Assert.assertEquals(destinations.size(), matrix.getNumberOfDestinations());
+			for (int o = 0; o < origins.size(); o++) {
+				for (int d = 0; d < destinations.size(); d++) {
+					String message = "from " + origins.get(o).getId() + " to " + destinations.get(d).getId();
+					Assert.assertEquals(message, expected.getTravelDisutility(o, d), matrix.getTravelDisutility(o, d), 1e-3);
+					Assert.assertEquals(message, expected.getTravelTime(o, d), matrix.getTravelTime(o, d), 1e-2);
+					Assert.assertEquals(message, expected.getDistance(o, d), matrix.getDistance(o, d), 1e-2);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUnknownNode() {
+		Network network = NetworkUtils.createNetwork();
+		Node node = NetworkUtils.createAndAddNode(network, Id.create("a", Node.class), new Coord(0.0, 0.0));
+		Node other = NetworkUtils.createNode(Id.create("b", Node.class), new Coord(0.0, 0.0));
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		ContractionHierarchy hierarchy = ContractionHierarchy.create(network);
+		BucketTravelMatrixCalculator calculator = new BucketTravelMatrixCalculator(hierarchy,
+				hierarchy.customize(travelTimeCostCalculator, 3600, 1, 1), travelTimeCostCalculator, 1);
+		try {
+			calculator.calcTravelMatrix(Arrays.asList(node), Arrays.asList(other), 0.0);
+			Assert.fail("expected an exception for a node that is not part of the network.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Random;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.ContractionHierarchiesFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory(3600, 30 * 3600, 2).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testSameCostsAsDijkstra() {
+		Network network = new RandomGridNetwork(20, new Random(4711), false).network;
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		LeastCostPathCalculator contractionHierarchies = getLeastCostPathCalculator(network);
+
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes[random.nextInt(nodes.length)];
+			Node to = nodes[random.nextInt(nodes.length)];
+			Path expected = dijkstra.calcLeastCostPath(from, to, 8 * 3600, null, null);
+			Path path = contractionHierarchies.calcLeastCostPath(from, to, 8 * 3600, null, null);
+			assertEquals(expected.travelCost, path.travelCost, 1e-6);
+			assertEquals(expected.travelTime, path.travelTime, 1e-6);
+			assertEquals(path.links.size() + 1, path.nodes.size());
+			assertEquals(from, path.nodes.get(0));
+			for (int k = 0; k < path.links.size(); k++) {
+				assertEquals(path.nodes.get(k), path.links.get(k).getFromNode());
+				assertEquals(path.nodes.get(k + 1), path.links.get(k).getToNode());
+			}
+			assertEquals(to, path.nodes.get(path.nodes.size() - 1));
+		}
+	}
+
+	/**
+	 * The path depends on the travel disutilities in the time bin of the start time.
+	 */
+	public void testTimeBins() {
+		Network network = new RandomGridNetwork(3, new Random(4711), false).network;
+		Node from = network.getNodes().get(Id.create("0_0", Node.class));
+		Node to = network.getNodes().get(Id.create("2_0", Node.class));
+		final Link blocked = network.getLinks().get(Id.create("0_0-1_0", Link.class));
+		// fast enough to be on the least cost path before it is blocked
+		blocked.setFreespeed(100.0);
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelDisutility disutility = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+				double factor = link == blocked && time >= 8 * 3600 ? 1000 : 1;
+				return factor * freespeed.getLinkTravelDisutility(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				return freespeed.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		LeastCostPathCalculator router = new ContractionHierarchiesFactory(3600, 30 * 3600, 1).createPathCalculator(network, disutility, freespeed);
+
+		assertEquals(blocked, router.calcLeastCostPath(from, to, 7 * 3600, null, null).links.get(0));
+		assertFalse(router.calcLeastCostPath(from, to, 8 * 3600, null, null).links.contains(blocked));
+	}
+
+	/**
+	 * Path calculators for different travel disutilities on the same network must not share the customized weights.
+	 */
+	public void testDifferentDisutilitiesOnOneNetwork() {
+		Network network = new RandomGridNetwork(3, new Random(4711), false).network;
+		Node from = network.getNodes().get(Id.create("0_0", Node.class));
+		Node to = network.getNodes().get(Id.create("2_0", Node.class));
+		final Link blocked = network.getLinks().get(Id.create("0_0-1_0", Link.class));
+		blocked.setFreespeed(100.0);
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelDisutility avoiding = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+				return (link == blocked ? 1000 : 1) * freespeed.getLinkTravelDisutility(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				return freespeed.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(3600, 30 * 3600, 1);
+		LeastCostPathCalculator fastRouter = factory.createPathCalculator(network, freespeed, freespeed);
+		LeastCostPathCalculator avoidingRouter = factory.createPathCalculator(network, avoiding, freespeed);
+
+		assertEquals(blocked, fastRouter.calcLeastCostPath(from, to, 7 * 3600, null, null).links.get(0));
+		assertFalse(avoidingRouter.calcLeastCostPath(from, to, 7 * 3600, null, null).links.contains(blocked));
+		assertEquals(blocked, factory.createPathCalculator(network, freespeed, freespeed).calcLeastCostPath(from, to, 7 * 3600, null, null).links.get(0));
+	}
+
+	public void testDisutilityNeedingPersonFails() {
+		Network network = new RandomGridNetwork(3, new Random(4711), false).network;
+		final FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelDisutility perPerson = new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+				if (person == null) {
+					throw new RuntimeException("no person");
+				}
+				return freespeed.getLinkTravelDisutility(link, time, person, vehicle);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				return freespeed.getLinkMinimumTravelDisutility(link);
+			}
+		};
+		try {
+			new ContractionHierarchiesFactory(3600, 30 * 3600, 1).createPathCalculator(network, perPerson, freespeed);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("without a person"));
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FastBidirectionalDijkstraTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Random;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.FastAStarEuclideanFactory;
+import org.matsim.core.router.util.FastDijkstraFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class FastBidirectionalDijkstraTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new FastDijkstraFactory(null, FastRouterType.ARRAY_BIDIRECTIONAL).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testTimeDependentSameAsDijkstra() {
+		int size = 10;
+		Random random = new Random(4711);
+		RandomGridNetwork grid = new RandomGridNetwork(size, random, true);
+		Network network = grid.network;
+		Node[][] nodes = grid.nodes;
+		Node island = grid.island;
+
+		CongestedTravelTime travelTime = new CongestedTravelTime();
+		Dijkstra dijkstra = new Dijkstra(network, travelTime, travelTime);
+		LeastCostPathCalculator bidirectional = new FastDijkstraFactory(null, FastRouterType.ARRAY_BIDIRECTIONAL)
+				.createPathCalculator(network, travelTime, travelTime);
+		LeastCostPathCalculator bidirectionalAStar = new FastAStarEuclideanFactory(network, travelTime, FastRouterType.ARRAY_BIDIRECTIONAL)
+				.createPathCalculator(network, travelTime, travelTime);
+		for (int i = 0; i < 100; i++) {
+			Node from = nodes[random.nextInt(size)][random.nextInt(size)];
+			Node to = nodes[random.nextInt(size)][random.nextInt(size)];
+			double time = 6 * 3600 + random.nextInt(4 * 3600);
+			Path expected = dijkstra.calcLeastCostPath(from, to, time, null, null);
+			for (LeastCostPathCalculator router : new LeastCostPathCalculator[] {bidirectional, bidirectionalAStar}) {
+				Path path = router.calcLeastCostPath(from, to, time, null, null);
+				assertEquals(expected.travelCost, path.travelCost, 1e-6);
+				assertEquals(expected.travelTime, path.travelTime, 1e-6);
+				assertEquals(from, path.nodes.get(0));
+				assertEquals(to, path.nodes.get(path.nodes.size() - 1));
+				assertEquals(path.links.size() + 1, path.nodes.size());
+				for (int l = 0; l < path.links.size(); l++) {
+					assertEquals(path.nodes.get(l), path.links.get(l).getFromNode());
+					assertEquals(path.nodes.get(l + 1), path.links.get(l).getToNode());
+				}
+			}
+		}
+		assertNull(bidirectional.calcLeastCostPath(nodes[0][0], island, 8 * 3600, null, null));
+		assertNull(bidirectional.calcLeastCostPath(island, nodes[0][0], 8 * 3600, null, null));
+	}
+
+	/**
+	 * Free speed travel times, up to three times as long depending on the time of day and the link; the travel
+	 * disutility is the travel time.
+	 */
+	private static class CongestedTravelTime implements TravelTime, TravelDisutility {
+
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			double freeSpeedTravelTime = link.getLength() / link.getFreespeed();
+			return freeSpeedTravelTime * (2.0 + Math.sin(time / 3600.0 + link.getId().hashCode() % 7));
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RandomGridNetwork.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * A grid of size x size nodes, 100 m apart, with links in both directions between neighbors, of random speeds, to
+ * compare routers with each other.  Optionally, there is an additional node without links, which is only reachable
+ * from itself.
+ */
+final class RandomGridNetwork {
+
+	final Network network = NetworkUtils.createNetwork();
+	final Node[][] nodes;
+	/** <code>null</code> if the grid was created without it */
+	final Node island;
+
+	RandomGridNetwork(final int size, final Random random, final boolean withIsland) {
+		this.nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				this.nodes[x][y] = NetworkUtils.createAndAddNode(this.network, Id.create(x + "_" + y, Node.class), new Coord(100.0 * x, 100.0 * y));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(this.nodes[x][y], this.nodes[x + 1][y], random);
+				}
+				if (y + 1 < size) {
+					addLinks(this.nodes[x][y], this.nodes[x][y + 1], random);
+				}
+			}
+		}
+		this.island = withIsland ? NetworkUtils.createAndAddNode(this.network, Id.create("island", Node.class), new Coord(-1000.0, -1000.0)) : null;
+	}
+
+	private void addLinks(final Node a, final Node b, final Random random) {
+		NetworkUtils.createAndAddLink(this.network, Id.create(a.getId() + "-" + b.getId(), Link.class), a, b, 100.0, 5.0 + 10.0 * random.nextDouble(), 1000.0, 1.0);
+		NetworkUtils.createAndAddLink(this.network, Id.create(b.getId() + "-" + a.getId(), Link.class), b, a, 100.0, 5.0 + 10.0 * random.nextDouble(), 1000.0, 1.0);
+	}
+
+}
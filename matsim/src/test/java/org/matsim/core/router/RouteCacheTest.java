@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RouteCacheTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class RouteCacheTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testHitsMissesAndInvalidations() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readFile("test/scenarios/equil/network.xml");
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+		Node node15 = network.getNodes().get(Id.create("15", Node.class));
+		Link link21 = network.getLinks().get(Id.create("21", Link.class));
+
+		SlowedDownTravelTime travelTime = new SlowedDownTravelTime();
+		RouteCache cache = new RouteCache(900, 0.05);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelTime, travelTime);
+		LeastCostPathCalculator cached = cache.wrap("car", dijkstra, travelTime, travelTime);
+
+		Path first = cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		Assert.assertEquals(1, cache.getMisses());
+		Path second = cached.calcLeastCostPath(node12, node15, 8 * 3600 + 60, null, null);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(first.links, second.links);
+		Assert.assertEquals(first.nodes, second.nodes);
+		Assert.assertEquals(first.travelCost, second.travelCost, 1e-8);
+
+		cached.calcLeastCostPath(node12, node15, 9 * 3600, null, null);
+		Assert.assertEquals("another departure time bin is another entry.", 2, cache.getMisses());
+
+		travelTime.factors.put(link21, 1.02);
+		cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		Assert.assertEquals("small changes must not invalidate the path.", 2, cache.getHits());
+
+		travelTime.factors.put(link21, 10.0);
+		Path changed = cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		Assert.assertEquals(1, cache.getInvalidations());
+		Path expected = dijkstra.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		Assert.assertEquals(expected.links, changed.links);
+		cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		Assert.assertEquals("the path computed again must replace the cached one.", 3, cache.getHits());
+
+		Assert.assertEquals(2, cache.size());
+		cache.resetStatistics();
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(0, cache.getMisses());
+		Assert.assertEquals(0, cache.getInvalidations());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		new MatsimNetworkReader(network).readFile("test/scenarios/equil/network.xml");
+		Node node1 = network.getNodes().get(Id.create("1", Node.class));
+		Node node12 = network.getNodes().get(Id.create("12", Node.class));
+		Node node15 = network.getNodes().get(Id.create("15", Node.class));
+
+		SlowedDownTravelTime travelTime = new SlowedDownTravelTime();
+		RouteCache cache = new RouteCache(900, 0.05, 3);
+		LeastCostPathCalculator cached = cache.wrap("car", new Dijkstra(network, travelTime, travelTime), travelTime, travelTime);
+
+		cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		cached.calcLeastCostPath(node15, node12, 8 * 3600, null, null);
+		Assert.assertEquals(0, cache.evict());
+		Assert.assertEquals(2, cache.size());
+
+		// the second iteration uses one of the cached paths, and computes two new ones:
+		cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		cached.calcLeastCostPath(node1, node15, 8 * 3600, null, null);
+		cached.calcLeastCostPath(node1, node12, 8 * 3600, null, null);
+		Assert.assertEquals(4, cache.size());
+		Assert.assertEquals("only the path that was not used in the second iteration must be evicted.", 1, cache.evict());
+		Assert.assertEquals(3, cache.size());
+		cached.calcLeastCostPath(node12, node15, 8 * 3600, null, null);
+		cached.calcLeastCostPath(node1, node15, 8 * 3600, null, null);
+		cached.calcLeastCostPath(node1, node12, 8 * 3600, null, null);
+		cached.calcLeastCostPath(node15, node1, 8 * 3600, null, null);
+		Assert.assertEquals(4, cache.getHits());
+
+		// all paths were used last in the same iteration, so all are evicted:
+		Assert.assertEquals(4, cache.evict());
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testControler() throws IOException {
+		Config config = this.utils.loadConfig("test/scenarios/equil/config.xml");
+		config.controler().setLastIteration(1);
+		config.controler().setRouteCacheTimeBinSize(900);
+		config.controler().setRouteCacheMaxSize(0);
+		new Controler(config).run();
+
+		BufferedReader reader = IOUtils.getBufferedReader(this.utils.getOutputDirectory() + "ITERS/it.1/1." + RouteCacheStatistics.FILENAME);
+		Assert.assertEquals("hits\tmisses\tinvalidations\tevictions\tcachedPaths", reader.readLine());
+		String[] values = reader.readLine().split("\t");
+		reader.close();
+		Assert.assertTrue("no path was computed.", Integer.parseInt(values[1]) > 0);
+		Assert.assertTrue("no path was evicted.", Integer.parseInt(values[3]) > 0);
+		Assert.assertEquals("0", values[4]);
+	}
+
+	/**
+	 * Free speed travel times, multiplied by a factor per link; the travel disutility is the travel time.
+	 */
+	private static class SlowedDownTravelTime implements TravelTime, TravelDisutility {
+
+		final Map<Link, Double> factors = new HashMap<>();
+
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			Double factor = this.factors.get(link);
+			return (factor == null ? 1.0 : factor) * link.getLength() / link.getFreespeed();
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelMatrixCalculatorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.TravelMatrixCalculator.TravelMatrix;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+public class TravelMatrixCalculatorTest {
+
+	@Test
+	public void testSameAsDijkstra() {
+		int size = 10;
+		Random random = new Random(4711);
+		RandomGridNetwork grid = new RandomGridNetwork(size, random, true);
+		Network network = grid.network;
+		Node[][] nodes = grid.nodes;
+		Node island = grid.island;
+
+		List<Node> origins = new ArrayList<>();
+		List<Node> destinations = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			origins.add(nodes[random.nextInt(size)][random.nextInt(size)]);
+			destinations.add(nodes[random.nextInt(size)][random.nextInt(size)]);
+		}
+		origins.add(island);
+		destinations.add(island);
+
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		Dijkstra dijkstra = new Dijkstra(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		for (int numberOfThreads : new int[] {1, 3}) {
+			TravelMatrix matrix = new TravelMatrixCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator, numberOfThreads)
+					.calcTravelMatrix(origins, destinations, 8 * 3600);
+			Assert.assertEquals(origins.size(), matrix.getNumberOfOrigins());
+			Assert.assertEquals(destinations.size(), matrix.getNumberOfDestinations());
+			for (int o = 0; o < origins.size(); o++) {
+				for (int d = 0; d < destinations.size(); d++) {
+					if ((origins.get(o) == island) != (destinations.get(d) == island)) {
+						Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getTravelTime(o, d), 0.0);
+						Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getDistance(o, d), 0.0);
+						Assert.assertEquals(Float.POSITIVE_INFINITY, matrix.getTravelDisutility(o, d), 0.0);
+						continue;
+					}
+					Path path = dijkstra.calcLeastCostPath(origins.get(o), destinations.get(d), 8 * 3600, null, null);
+					double distance = 0.0;
+					for (Link link : path.links) {
+						distance += link.getLength();
+					}
+					Assert.assertEquals(path.travelTime, matrix.getTravelTime(o, d), 1e-2);
+					Assert.assertEquals(path.travelCost, matrix.getTravelDisutility(o, d), 1e-4);
+					Assert.assertEquals(distance, matrix.getDistance(o, d), 1e-2);
+				}
+			}
+			Assert.assertEquals(origins.size() * destinations.size(), matrix.getTravelTimes().length);
+		}
+	}
+
+	@Test
+	public void testTooManyPairs() {
+		Network network = NetworkUtils.createNetwork();
+		Node node = NetworkUtils.createAndAddNode(network, Id.create("a", Node.class), new Coord(0.0, 0.0));
+		// the number of pairs overflows an int
+		List<Node> nodes = Collections.nCopies(50000, node);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelMatrixCalculator calculator = new TravelMatrixCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator, 1);
+		try {
+			calculator.calcTravelMatrix(nodes, nodes, 0.0);
+			Assert.fail("expected an exception for a matrix that does not fit into an array.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testUnknownNode() {
+		Network network = NetworkUtils.createNetwork();
+		Node node = NetworkUtils.createAndAddNode(network, Id.create("a", Node.class), new Coord(0.0, 0.0));
+		Node other = NetworkUtils.createNode(Id.create("b", Node.class), new Coord(0.0, 0.0));
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		TravelMatrixCalculator calculator = new TravelMatrixCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator, 1);
+		try {
+			calculator.calcTravelMatrix(Arrays.asList(node), Arrays.asList(other), 0.0);
+			Assert.fail("expected an exception for a node that is not part of the network.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+}
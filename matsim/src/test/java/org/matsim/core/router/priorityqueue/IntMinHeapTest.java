@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IntMinHeapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.priorityqueue;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntMinHeapTest {
+
+	@Test
+	public void testPollInKeyOrder() {
+		IntMinHeap heap = new IntMinHeap(10);
+		heap.add(5, 3.0);
+		heap.add(3, 1.0);
+		heap.add(7, 2.0);
+		heap.add(0, 4.0);
+		Assert.assertEquals(4, heap.size());
+		Assert.assertTrue(heap.contains(7));
+		Assert.assertFalse(heap.contains(1));
+		Assert.assertEquals(1.0, heap.peekKey(), 0.0);
+		Assert.assertEquals(3, heap.poll());
+		Assert.assertFalse(heap.contains(3));
+		Assert.assertEquals(7, heap.poll());
+		Assert.assertEquals(5, heap.poll());
+		Assert.assertEquals(0, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testDecreaseKeyAndUpdate() {
+		IntMinHeap heap = new IntMinHeap(10);
+		heap.add(1, 5.0);
+		heap.add(2, 6.0);
+		heap.add(3, 7.0);
+		heap.decreaseKey(3, 1.0);
+		heap.update(1, 8.0);
+		Assert.assertEquals(3, heap.poll());
+		Assert.assertEquals(2, heap.poll());
+		Assert.assertEquals(1, heap.poll());
+	}
+
+	@Test
+	public void testClear() {
+		IntMinHeap heap = new IntMinHeap(10);
+		heap.add(1, 5.0);
+		heap.add(2, 6.0);
+		heap.clear();
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertFalse(heap.contains(1));
+		Assert.assertFalse(heap.contains(2));
+		heap.add(2, 1.0);
+		Assert.assertEquals(2, heap.poll());
+	}
+
+	@Test
+	public void testRandomKeys() {
+		Random random = new Random(4711);
+		int n = 1000;
+		IntMinHeap heap = new IntMinHeap(n);
+		for (int i = 0; i < n; i++) {
+			heap.add(i, random.nextDouble());
+		}
+		for (int i = 0; i < n; i += 3) {
+			heap.update(i, random.nextDouble());
+		}
+		double previous = Double.NEGATIVE_INFINITY;
+		while (!heap.isEmpty()) {
+			double key = heap.peekKey();
+			heap.poll();
+			Assert.assertTrue(key >= previous);
+			previous = key;
+		}
+	}
+
+}
@@ -103,4 +103,27 @@ public class LinkToLinkTravelTimeCalculatorTest extends MatsimTestCase {
 		assertEquals( 1 * 60, ttcalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link1, link3, 7.0 * 3600 + 5 * 60 + 4*timeBinSize), EPSILON);  // linkTravelTime3 - 1*timeBinSize
 		assertEquals(10     , ttcalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link1, link3, 7.0 * 3600 + 5 * 60 + 5*timeBinSize), EPSILON);  // freespeedTravelTime > linkTravelTime2b - 2*timeBinSize
 	}
+
+	public void testNonAdjacentLinksAreIgnored() {
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(loadConfig(null));
+		scenario.getConfig().travelTimeCalculator().setCalculateLinkToLinkTravelTimes(true);
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create(1, Node.class), new Coord((double) 0, (double) 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create(2, Node.class), new Coord((double) 1000, (double) 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create(3, Node.class), new Coord((double) 2000, (double) 0));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.create(1, Link.class), node1, node2, 1000.0, 100.0, 3600.0, 1.0);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.create(2, Link.class), node2, node3, 1000.0, 100.0, 3600.0, 1.0);
+
+		TravelTimeCalculator ttcalc = new TravelTimeCalculator(network, 15 * 60, 12 * 3600, scenario.getConfig().travelTimeCalculator());
+
+		// a vehicle that "jumps" from the end of link 2 to link 1, e.g. because it was teleported
+		Id<Vehicle> vehId = Id.create(11, Vehicle.class);
+		ttcalc.handleEvent(new LinkEnterEvent(Time.parseTime("07:00:00"), vehId, link2.getId()));
+		ttcalc.handleEvent(new LinkLeaveEvent(Time.parseTime("07:10:00"), vehId, link2.getId()));
+		ttcalc.handleEvent(new LinkEnterEvent(Time.parseTime("07:10:00"), vehId, link1.getId()));
+
+		assertEquals(10, ttcalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link2, link1, Time.parseTime("07:00:00")), EPSILON); // no turn, free speed
+		assertEquals(10, ttcalc.getLinkToLinkTravelTimes().getLinkToLinkTravelTime(link1, link2, Time.parseTime("07:00:00")), EPSILON); // no vehicle yet, free speed
+		assertEquals(10 * 60, ttcalc.getLinkTravelTimes().getLinkTravelTime(link2, Time.parseTime("07:00:00"), null, null), EPSILON); // link travel time still counted
+	}
 }
@@ -47,6 +47,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
 import org.matsim.core.events.EventsManagerImpl;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
@@ -285,6 +286,81 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		assertEquals(10     , ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60 + 5*timeBinSize, null, null), EPSILON);  // freespeedTravelTime > linkTravelTime2 - 2*timeBinSize
 	}
 
+	public void testLongTravelTimeInEmptySlot_Dense() {
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
+
+		Network network = (Network) scenario.getNetwork();
+		network.setCapacityPeriod(3600.0);
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Link link1 = NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, 1000.0, 100.0, 3600.0, 1.0 );
+		Link link2 = NetworkUtils.createAndAddLink(network,Id.create("2", Link.class), node2, node1, 1000.0, 50.0, 3600.0, 1.0 );
+
+		TravelTimeCalculatorConfigGroup config = scenario.getConfig().travelTimeCalculator();
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorType.TravelTimeCalculatorDense.name());
+		int timeBinSize = config.getTraveltimeBinSize();
+		TravelTimeCalculator ttcalc = TravelTimeCalculator.create(network, config);
+
+		Id<Vehicle> vehId = Id.create(1980, Vehicle.class);
+		ttcalc.handleEvent(new LinkEnterEvent(7.0 * 3600 + 10, vehId, link1.getId()));
+		ttcalc.handleEvent(new LinkLeaveEvent(7.0 * 3600 + 10 + 50 * 60, vehId, link1.getId()));
+		ttcalc.handleEvent(new LinkEnterEvent(7.75 * 3600 + 10, vehId, link1.getId()));
+		ttcalc.handleEvent(new LinkLeaveEvent(7.75 * 3600 + 10 + 10 * 60, vehId, link1.getId()));
+
+		assertEquals(50 * 60, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60, null, null), EPSILON);
+		assertEquals(35 * 60, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60 + 1*timeBinSize, null, null), EPSILON);
+		assertEquals(20 * 60, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60 + 2*timeBinSize, null, null), EPSILON);
+		assertEquals(10 * 60, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60 + 3*timeBinSize, null, null), EPSILON);
+		assertEquals(10     , ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60 + 4*timeBinSize, null, null), EPSILON);
+		assertEquals(20     , ttcalc.getLinkTravelTimes().getLinkTravelTime(link2, 7.0 * 3600, null, null), EPSILON);
+
+		ttcalc.reset(1);
+		assertEquals(10     , ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0 * 3600 + 5 * 60, null, null), EPSILON);
+	}
+
+	public void testLinkNotInNetwork_Dense() {
+		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = (Network) scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, 1000.0, 100.0, 3600.0, 1.0 );
+
+		Network otherNetwork = NetworkUtils.createNetwork();
+		Node otherNode1 = NetworkUtils.createAndAddNode(otherNetwork, Id.create("1", Node.class), new Coord(0, 0));
+		Node otherNode2 = NetworkUtils.createAndAddNode(otherNetwork, Id.create("2", Node.class), new Coord(1000, 0));
+		Link otherLink = NetworkUtils.createAndAddLink(otherNetwork,Id.create("99", Link.class), otherNode1, otherNode2, 1000.0, 25.0, 3600.0, 1.0 );
+
+		TravelTimeCalculatorConfigGroup config = scenario.getConfig().travelTimeCalculator();
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorType.TravelTimeCalculatorDense.name());
+		TravelTimeCalculator ttcalc = TravelTimeCalculator.create(network, config);
+
+		Id<Vehicle> vehId = Id.create(1980, Vehicle.class);
+		ttcalc.handleEvent(new LinkEnterEvent(7.0 * 3600, vehId, otherLink.getId()));
+		ttcalc.handleEvent(new LinkLeaveEvent(7.0 * 3600 + 100, vehId, otherLink.getId()));
+
+		assertEquals(40, ttcalc.getLinkTravelTimes().getLinkTravelTime(otherLink, 7.0 * 3600, null, null), EPSILON);
+		try {
+			ttcalc.getLinkTravelTime(otherLink.getId(), 7.0 * 3600);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			log.info("caught expected exception: " + e.getMessage());
+		}
+	}
+
+	public void testTooManyTimeBins_Dense() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, 1000.0, 100.0, 3600.0, 1.0 );
+		NetworkUtils.createAndAddLink(network,Id.create("2", Link.class), node2, node1, 1000.0, 100.0, 3600.0, 1.0 );
+		try {
+			new DenseDataContainerProvider(network, Integer.MAX_VALUE / 2 + 1);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			log.info("caught expected exception: " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Tests that calculating LinkTravelTimes works also without reading in a complete scenario including population.
 	 *
@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.scenario.ScenarioByInstanceModule;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.config.TransitRouterConfigGroup.TransitRouterType;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestCase;
+
+import com.google.inject.ProvisionException;
+
+public class RaptorTransitRouterTest {
+
+	@Test
+	public void testSingleLine() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		RaptorTransitRouter router = new RaptorTransitRouter(config, f.schedule);
+		Coord fromCoord = new Coord((double) 3800, (double) 5100);
+		Coord toCoord = new Coord((double) 16100, (double) 5050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, null);
+		assertEquals(3, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		assertTrue("expected TransitRoute in leg.", legs.get(1).getRoute() instanceof ExperimentalTransitRoute);
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("6", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.blueLine.getId(), ptRoute.getLineId());
+		assertEquals(Id.create("blue A > I", TransitRoute.class), ptRoute.getRouteId());
+		double expectedTravelTime = 29.0 * 60 + // agent takes the *:06 course, arriving in D at *:29
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, TransitRouterComparison.getTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testDirectWalkCheaper() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		RaptorTransitRouter router = new RaptorTransitRouter(config, f.schedule);
+		Coord fromCoord = new Coord((double) 4000, (double) 3000);
+		Coord toCoord = new Coord((double) 8000, (double) 3000);
+		List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, null);
+		assertEquals(1, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		double expectedTravelTime = CoordUtils.calcEuclideanDistance(fromCoord, toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, TransitRouterComparison.getTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testLineChange() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		RaptorTransitRouter router = new RaptorTransitRouter(config, f.schedule);
+		Coord toCoord = new Coord((double) 16100, (double) 10050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord((double) 3800, (double) 5100)), new FakeFacility(toCoord), 6.0*3600, null);
+		assertEquals(5, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		assertEquals(TransportMode.pt, legs.get(3).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(4).getMode());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("4", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.blueLine.getId(), ptRoute.getLineId());
+		ptRoute = (ExperimentalTransitRoute) legs.get(3).getRoute();
+		assertEquals(Id.create("18", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("19", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(f.greenLine.getId(), ptRoute.getLineId());
+		assertEquals(Id.create("green clockwise", TransitRoute.class), ptRoute.getRouteId());
+		double expectedTravelTime = 31.0 * 60 + // agent takes the *:06 course, arriving in C at *:18, departing at *:21, arriving in K at*:31
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("19", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, TransitRouterComparison.getTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testAfterMidnight() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		config.setBeelineWalkSpeed(0.1); // something very slow, so the agent does not walk over night
+		RaptorTransitRouter router = new RaptorTransitRouter(config, f.schedule);
+		Coord toCoord = new Coord((double) 16100, (double) 5050);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord((double) 3800, (double) 5100)), new FakeFacility(toCoord), 25.0*3600, null);
+		assertEquals(3, legs.size());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("0", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("6", TransitStopFacility.class), ptRoute.getEgressStopId());
+		double expectedTravelTime = 4*3600 + 29.0 * 60 + // arrival at 05:29 at D
+				CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, TransitRouterComparison.getTravelTime(legs), MatsimTestCase.EPSILON);
+	}
+
+	/**
+	 * The routes may differ from the ones of the {@link TransitRouterImpl}, as that router continues only from the
+	 * cheapest arrival at a stop and misses cheaper routes which use an earlier, more expensive arrival, e.g. staying
+	 * on a line instead of changing lines.  They are never more expensive, and in this network, they never arrive later.
+	 */
+	@Test
+	public void testNoWorseRoutesThanTransitRouterImpl() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		TransitRouterImpl reference = new TransitRouterImpl(config, f.schedule);
+		RaptorTransitRouter router = new RaptorTransitRouter(config, f.schedule);
+		TransitRouterComparison.assertNoWorseRoutes(config, f.schedule, reference, router, 5.0*3600, 8.0*3600, 13.0*60);
+	}
+
+	@Test
+	public void testModuleBindsRaptorTransitRouter() {
+		Fixture f = new Fixture();
+		f.init();
+		f.config.transitRouter().setRouterType(TransitRouterType.Raptor);
+		com.google.inject.Injector injector = Injector.createInjector(f.config, new TransitRouterModule(), new ScenarioByInstanceModule(f.scenario));
+		assertTrue(injector.getInstance(TransitRouter.class) instanceof RaptorTransitRouter);
+	}
+
+	@Test
+	public void testModuleFailsWithCustomDisutility() {
+		Fixture f = new Fixture();
+		f.init();
+		f.config.transitRouter().setRouterType(TransitRouterType.Raptor);
+		final TransitRouterNetworkTravelTimeAndDisutility disutility = new TransitRouterNetworkTravelTimeAndDisutility(
+				TransitRouterComparison.createConfig(f), new PreparedTransitSchedule(f.schedule));
+		com.google.inject.Injector injector = Injector.createInjector(f.config, new TransitRouterModule(), new ScenarioByInstanceModule(f.scenario),
+				new AbstractModule() {
+					@Override
+					public void install() {
+						bind(TransitTravelDisutility.class).toInstance(disutility);
+					}
+				});
+		try {
+			injector.getInstance(TransitRouter.class);
+			fail("expected an exception, as the Raptor router ignores the bound travel disutility");
+		} catch (ProvisionException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(TransitTravelDisutility.class.getSimpleName() + " is bound"));
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitRouterComparison.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2016 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.testcases.MatsimTestCase;
+
+/**
+ * Compares the routes of a transit router to the ones of a reference router on the {@link Fixture}, between all pairs
+ * of {@link #COORDS} and for several departure times.
+ */
+/*package*/ final class TransitRouterComparison {
+
+	/** coordinates near the stops of the {@link Fixture}, and a few between them */
+	/*package*/ static final Coord[] COORDS = new Coord[] {
+			new Coord((double) 3800, (double) 5100), new Coord((double) 5000, (double) 5100),
+			new Coord((double) 8000, (double) 5002), new Coord((double) 11900, (double) 5100),
+			new Coord((double) 16100, (double) 5050), new Coord((double) 16100, (double) 10050),
+			new Coord((double) 24100, (double) 4950), new Coord((double) 28100, (double) 4950),
+			new Coord((double) 40000, (double) 5000) };
+
+	private TransitRouterComparison() {
+	}
+
+	/*package*/ static TransitRouterConfig createConfig(final Fixture f) {
+		return new TransitRouterConfig(f.scenario.getConfig().planCalcScore(),
+				f.scenario.getConfig().plansCalcRoute(), f.scenario.getConfig().transitRouter(),
+				f.scenario.getConfig().vspExperimental());
+	}
+
+	/**
+	 * Asserts that both routers return legs with the same modes and travel times.
+	 */
+	/*package*/ static void assertSameRoutes(final TransitRouter reference, final TransitRouter router,
+			final double fromTime, final double toTime, final double timeStep) {
+		compareRoutes(reference, router, fromTime, toTime, timeStep, new RouteAssertion() {
+			@Override
+			public void assertRoute(String message, double departureTime, List<Leg> expected, List<Leg> legs) {
+				assertEquals(message, expected.size(), legs.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(message, expected.get(i).getMode(), legs.get(i).getMode());
+					assertEquals(message, expected.get(i).getTravelTime(), legs.get(i).getTravelTime(), MatsimTestCase.EPSILON);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Asserts that the routes of the router arrive no later and have no higher disutility than the ones of the reference.
+	 */
+	/*package*/ static void assertNoWorseRoutes(final TransitRouterConfig config, final TransitSchedule schedule,
+			final TransitRouter reference, final TransitRouter router, final double fromTime, final double toTime, final double timeStep) {
+		final PreparedTransitSchedule preparedSchedule = new PreparedTransitSchedule(schedule);
+		compareRoutes(reference, router, fromTime, toTime, timeStep, new RouteAssertion() {
+			@Override
+			public void assertRoute(String message, double departureTime, List<Leg> expected, List<Leg> legs) {
+				assertTrue(message, getTravelTime(legs) <= getTravelTime(expected) + MatsimTestCase.EPSILON);
+				double expectedDisutility = getDisutility(config, schedule, preparedSchedule, expected, departureTime);
+				double disutility = getDisutility(config, schedule, preparedSchedule, legs, departureTime);
+				assertTrue(message + ": " + disutility + " > " + expectedDisutility, disutility <= expectedDisutility + MatsimTestCase.EPSILON);
+			}
+		});
+	}
+
+	/**
+	 * Asserts that the routes of both routers have the same disutility.
+	 */
+	/*package*/ static void assertSameDisutilities(final TransitRouterConfig config, final TransitSchedule schedule,
+			final TransitRouter reference, final TransitRouter router, final double fromTime, final double toTime, final double timeStep) {
+		final PreparedTransitSchedule preparedSchedule = new PreparedTransitSchedule(schedule);
+		compareRoutes(reference, router, fromTime, toTime, timeStep, new RouteAssertion() {
+			@Override
+			public void assertRoute(String message, double departureTime, List<Leg> expected, List<Leg> legs) {
+				assertEquals(message, getDisutility(config, schedule, preparedSchedule, expected, departureTime),
+						getDisutility(config, schedule, preparedSchedule, legs, departureTime), MatsimTestCase.EPSILON);
+			}
+		});
+	}
+
+	/*package*/ static double getTravelTime(final List<Leg> legs) {
+		double travelTime = 0.0;
+		for (Leg leg : legs) {
+			travelTime += leg.getTravelTime();
+		}
+		return travelTime;
+	}
+
+	/**
+	 * Calculates the disutility of the legs as {@link TransitRouterNetworkTravelTimeAndDisutility} does for the links
+	 * of the route.  The legs contain neither the lengths of the links nor the additional transfer times, so the config
+	 * must not use them.
+	 */
+	/*package*/ static double getDisutility(final TransitRouterConfig config, final TransitSchedule schedule,
+			final PreparedTransitSchedule preparedSchedule, final List<Leg> legs, final double departureTime) {
+		assertEquals(0.0, config.getMarginalUtilityOfTravelDistancePt_utl_m(), 0.0);
+		assertEquals(0.0, config.getMarginalUtilityOfTravelDistanceWalk_utl_m(), 0.0);
+		assertEquals(0.0, config.getAdditionalTransferTime(), 0.0);
+		double time = departureTime;
+		double disutility = 0.0;
+		int ptLegs = 0;
+		for (Leg leg : legs) {
+			if (leg.getRoute() instanceof ExperimentalTransitRoute) {
+				ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) leg.getRoute();
+				TransitRoute route = schedule.getTransitLines().get(ptRoute.getLineId()).getRoutes().get(ptRoute.getRouteId());
+				TransitRouteStop stop = route.getStop(schedule.getFacilities().get(ptRoute.getAccessStopId()));
+				double arrivalOffset = (stop.getArrivalOffset() != Time.UNDEFINED_TIME) ? stop.getArrivalOffset() : stop.getDepartureOffset();
+				double vehicleArrivalTime = preparedSchedule.getNextDepartureTime(route, stop, time) - (stop.getDepartureOffset() - arrivalOffset);
+				double waitTime = (time < vehicleArrivalTime) ? vehicleArrivalTime - time : 0;
+				disutility += - waitTime * config.getMarginalUtilityOfWaitingPt_utl_s()
+						- (leg.getTravelTime() - waitTime) * config.getMarginalUtilityOfTravelTimePt_utl_s();
+				if (ptLegs > 0) {
+					disutility -= config.getUtilityOfLineSwitch_utl();
+				}
+				ptLegs++;
+			} else {
+				disutility -= leg.getTravelTime() * config.getMarginalUtilityOfTravelTimeWalk_utl_s();
+			}
+			time += leg.getTravelTime();
+		}
+		return disutility;
+	}
+
+	private static void compareRoutes(final TransitRouter reference, final TransitRouter router,
+			final double fromTime, final double toTime, final double timeStep, final RouteAssertion assertion) {
+		for (Coord fromCoord : COORDS) {
+			for (Coord toCoord : COORDS) {
+				if (fromCoord == toCoord) {
+					continue;
+				}
+				for (double time = fromTime; time < toTime; time += timeStep) {
+					List<Leg> expected = reference.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), time, null);
+					List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), time, null);
+					assertion.assertRoute(fromCoord + " to " + toCoord + " at " + Time.writeTime(time), time, expected, legs);
+				}
+			}
+		}
+	}
+
+	private interface RouteAssertion {
+		void assertRoute(String message, double departureTime, List<Leg> expected, List<Leg> legs);
+	}
+
+}
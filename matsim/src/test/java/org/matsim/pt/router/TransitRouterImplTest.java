@@ -24,6 +24,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
@@ -163,6 +164,69 @@ public class TransitRouterImplTest {
 		}
 	}
 
+	@Test
+	public void testCalcRouteProfile() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = new TransitRouterConfig(f.scenario.getConfig().planCalcScore(),
+				f.scenario.getConfig().plansCalcRoute(), f.scenario.getConfig().transitRouter(),
+				f.scenario.getConfig().vspExperimental());
+		TransitRouterImpl router = new TransitRouterImpl(config, f.schedule);
+		Coord fromCoord = new Coord((double) 3800, (double) 5100);
+		Coord toCoord = new Coord((double) 16100, (double) 5050);
+		List<TransitConnection> connections = router.calcRouteProfile(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, 6.0*3600, null);
+		assertEquals(3, connections.size()); // the courses departing in A at 05:06, 05:26 and 05:46
+		double accessTime = CoordUtils.calcEuclideanDistance(fromCoord, f.schedule.getFacilities().get(Id.create("0", TransitStopFacility.class)).getCoord()) / config.getBeelineWalkSpeed();
+		double egressTime = CoordUtils.calcEuclideanDistance(f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)).getCoord(), toCoord) / config.getBeelineWalkSpeed();
+		for (int i = 0; i < 3; i++) {
+			TransitConnection connection = connections.get(i);
+			assertEquals(5.0*3600 + (6 + 20*i)*60 - accessTime, connection.getDepartureTime(), MatsimTestCase.EPSILON);
+			assertEquals(5.0*3600 + (29 + 20*i)*60 + egressTime, connection.getArrivalTime(), MatsimTestCase.EPSILON);
+			assertEquals(3, connection.getLegs().size());
+			List<Leg> legs = connection.createLegs(connection.getDepartureTime() - 60.0);
+			assertEquals(connection.getLegs().get(1).getTravelTime() + 60.0, legs.get(1).getTravelTime(), MatsimTestCase.EPSILON);
+		}
+	}
+
+	@Test
+	public void testCachedConnections() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		TransitRouterImpl router = new TransitRouterImpl(config, f.schedule);
+		config.setCacheConnections(true);
+		TransitRouterImpl cachingRouter = new TransitRouterImpl(config, f.schedule);
+		TransitRouterComparison.assertSameRoutes(router, cachingRouter, 5.0*3600, 6.0*3600, 3.0*60);
+		TransitRouterComparison.assertSameDisutilities(config, f.schedule, router, cachingRouter, 5.0*3600 + 7.0, 6.0*3600, 2.0*60);
+
+		// the cache filled by profile queries
+		TransitRouterImpl profileRouter = new TransitRouterImpl(config, f.schedule);
+		for (Coord fromCoord : TransitRouterComparison.COORDS) {
+			for (Coord toCoord : TransitRouterComparison.COORDS) {
+				if (fromCoord != toCoord) {
+					profileRouter.calcRouteProfile(new FakeFacility(fromCoord), new FakeFacility(toCoord), 5.0*3600, 6.0*3600, null);
+				}
+			}
+		}
+		TransitRouterComparison.assertSameDisutilities(config, f.schedule, router, profileRouter, 5.0*3600, 6.0*3600, 2.0*60 + 11.0);
+	}
+
+	@Test
+	public void testStopAccessTable() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig config = TransitRouterComparison.createConfig(f);
+		TransitRouterImpl router = new TransitRouterImpl(config, f.schedule);
+		PreparedTransitSchedule preparedSchedule = new PreparedTransitSchedule(f.schedule);
+		TransitRouterNetwork network = TransitRouterNetwork.createFromSchedule(f.schedule, config.getBeelineWalkConnectionDistance());
+		// the last coordinate is not part of the table, so its stops are searched
+		List<Coord> coords = Arrays.asList(TransitRouterComparison.COORDS);
+		TransitStopAccessTable accessTable = new TransitStopAccessTable(network, config, coords.subList(0, coords.size() - 1), 2);
+		TransitRouterNetworkTravelTimeAndDisutility ttCalculator = new TransitRouterNetworkTravelTimeAndDisutility(config, preparedSchedule);
+		TransitRouterImpl tableRouter = new TransitRouterImpl(config, preparedSchedule, network, ttCalculator, ttCalculator, accessTable);
+		TransitRouterComparison.assertSameRoutes(router, tableRouter, 5.0*3600, 7.0*3600, 17.0*60);
+	}
+
 	@Test
 	public void testLineChange() {
 		Fixture f = new Fixture();